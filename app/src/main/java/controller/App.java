@@ -1,22 +1,86 @@
 package controller;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * The Main class is the entry point of the program.
  */
 public class App {
+  private static final long DISK_POOL_BYTES = 16L << 20;
 
   /**
    * The main method creates instances of SolarSystemController, SolarSystemView,
-   * and Menu, and starts the program.
+   * and Menu, and starts the program. Passing `--lazy` only indexes the catalog
+   * and parses each solar system on first access. Passing
+   * `--max-memory=<bytes>` bounds the memory of resident solar systems, with
+   * `--eviction=lru|fifo` and `--store=<directory>` configuring the eviction.
+   * Passing `--disk-store=<file>` keeps the solar systems in a B+tree file on
+   * disk instead, read through a buffer pool of `--disk-pool=<bytes>`; the
+   * catalog is only loaded if the file holds no solar systems yet.
+   * Passing `--segments=<directory>` loads a segmented catalog saved from the
+   * menu instead of the catalog file.
+   * Passing `--watch` reloads changed solar systems when the catalog is edited.
+   * Passing `--check-orbits` rejects planets and moons whose orbits overlap a
+   * sibling's. Passing `--ephemeris-memory=<bytes>` bounds the cache of
+   * positions used for position queries.
    *
    * @param args the command line arguments
    */
   public static void main(String[] args) throws IOException {
     SolarSystemController solarSystemController = new SolarSystemController();
-    solarSystemController.loadSolarSystemFromFile("src/main/java/file.txt");
+    String maxMemory = option(args, "--max-memory=");
+    String diskStore = option(args, "--disk-store=");
+    boolean stored = false;
+    if (diskStore != null) {
+      String diskPool = option(args, "--disk-pool=");
+      stored = solarSystemController.enableDiskStore(diskStore,
+          diskPool != null ? Long.parseLong(diskPool) : DISK_POOL_BYTES);
+    } else if (maxMemory != null) {
+      String eviction = option(args, "--eviction=");
+      String store = option(args, "--store=");
+      solarSystemController.enableBoundedMemory(Long.parseLong(maxMemory),
+          eviction != null ? eviction : "lru", store != null ? store : "build/solar-systems");
+    }
+    String ephemerisMemory = option(args, "--ephemeris-memory=");
+    if (ephemerisMemory != null) {
+      solarSystemController.setEphemerisMemory(Long.parseLong(ephemerisMemory));
+    }
+    if (Arrays.asList(args).contains("--check-orbits")) {
+      solarSystemController.enableOrbitSpacingCheck();
+    }
+    String segments = option(args, "--segments=");
+    if (!stored && segments != null) {
+      solarSystemController.loadSolarSystemFromFile(segments);
+    } else if (!stored) {
+      if (Arrays.asList(args).contains("--lazy")) {
+        solarSystemController.loadSolarSystemFromFileLazily("src/main/java/file.txt");
+      } else {
+        solarSystemController.loadSolarSystemFromFile("src/main/java/file.txt");
+      }
+    }
+    if (Arrays.asList(args).contains("--watch")) {
+      solarSystemController.watchSolarSystemFile("src/main/java/file.txt");
+    }
     solarSystemController.run();
   }
 
+  /**
+   * Returns the value of a `--name=value` command line option.
+   *
+   * @param args   the command line arguments
+   *
+   * @param prefix the option name including the `=`
+   *
+   * @return the option value, or null if the option is not given
+   */
+  private static String option(String[] args, String prefix) {
+    for (String arg : args) {
+      if (arg.startsWith(prefix)) {
+        return arg.substring(prefix.length());
+      }
+    }
+    return null;
+  }
+
 }
@@ -0,0 +1,371 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The BPlusTree class is a B+tree of byte string keys and values stored in the
+ * pages of a {@link PageFile}, with its root page kept in a slot of the file's
+ * header. Keys are ordered by their unsigned bytes. Entries live in the leaves,
+ * which are linked in key order, so a range is scanned by finding its first
+ * leaf and following the links; inner pages only hold separator keys.
+ *
+ * <p>A page starts with its kind, its number of keys and either the next leaf
+ * or the leftmost child, followed by the entries, each a length-prefixed key
+ * and then a length-prefixed value in a leaf or the child holding the keys from
+ * that key on in an inner page. Pages are decoded when they are visited and
+ * written back after a change; a page that outgrows {@value PageFile#PAGE_SIZE}
+ * bytes is split in two by size. An entry may take at most a quarter of a page,
+ * so both halves always fit.
+ *
+ * <p>Removed entries are taken out of their leaf without merging leaves, so a
+ * tree that shrinks keeps its pages until they are filled again.
+ */
+final class BPlusTree {
+  static final int MAX_ENTRY_BYTES = (PageFile.PAGE_SIZE - 7) / 4 - 4;
+  private static final byte LEAF = 0;
+  private static final byte INNER = 1;
+  private static final int NODE_HEADER = 7;
+
+  private final PageFile file;
+  private final int slot;
+
+  /**
+   * A decoded page. An inner node has one more child than keys.
+   */
+  private static final class Node {
+    private final boolean leaf;
+    private final List<byte[]> keys = new ArrayList<>();
+    private final List<byte[]> values = new ArrayList<>();
+    private final List<Integer> children = new ArrayList<>();
+    private int next;
+
+    private Node(boolean leaf) {
+      this.leaf = leaf;
+    }
+
+    private int size() {
+      int size = NODE_HEADER;
+      for (int i = 0; i < keys.size(); i++) {
+        size += entrySize(i);
+      }
+      return size;
+    }
+
+    private int entrySize(int index) {
+      return 2 + keys.get(index).length + (leaf ? 2 + values.get(index).length : Integer.BYTES);
+    }
+  }
+
+  /**
+   * A page split: the first key of the new right page and its page number.
+   */
+  private static final class Split {
+    private final byte[] key;
+    private final int page;
+
+    private Split(byte[] key, int page) {
+      this.key = key;
+      this.page = page;
+    }
+  }
+
+  /**
+   * Walks the entries of the tree in key order, one decoded leaf at a time.
+   */
+  final class Cursor {
+    private Node leaf;
+    private int index;
+
+    private Cursor(Node leaf, int index) {
+      this.leaf = leaf;
+      this.index = index - 1;
+    }
+
+    /**
+     * Moves to the next entry.
+     *
+     * @return `false` after the last entry
+     *
+     * @throws IOException if a page cannot be read
+     */
+    boolean next() throws IOException {
+      index++;
+      while (index >= leaf.keys.size()) {
+        if (leaf.next == 0) {
+          return false;
+        }
+        leaf = read(leaf.next);
+        index = 0;
+      }
+      return true;
+    }
+
+    /**
+     * Returns the key of the current entry.
+     *
+     * @return the key
+     */
+    byte[] key() {
+      return leaf.keys.get(index);
+    }
+
+    /**
+     * Returns the value of the current entry.
+     *
+     * @return the value
+     */
+    byte[] value() {
+      return leaf.values.get(index);
+    }
+  }
+
+  /**
+   * Opens the tree whose root is kept in a slot of a page file, creating an
+   * empty tree if the slot is empty.
+   *
+   * @param file the page file
+   *
+   * @param slot the header slot of the root page
+   *
+   * @throws IOException if the root page cannot be written
+   */
+  BPlusTree(PageFile file, int slot) throws IOException {
+    this.file = file;
+    this.slot = slot;
+    if (file.getRoot(slot) == 0) {
+      int root = file.allocate();
+      write(root, new Node(true));
+      file.setRoot(slot, root);
+    }
+  }
+
+  /**
+   * Looks up a key.
+   *
+   * @param key the key
+   *
+   * @return the value, or null if the key is not in the tree
+   *
+   * @throws IOException if a page cannot be read
+   */
+  byte[] get(byte[] key) throws IOException {
+    Node leaf = findLeaf(key);
+    int index = search(leaf.keys, key);
+    return index >= 0 ? leaf.values.get(index) : null;
+  }
+
+  /**
+   * Stores a value under a key, replacing any value it had.
+   *
+   * @param key   the key
+   *
+   * @param value the value
+   *
+   * @throws IOException if a page cannot be read or written
+   *
+   * @throws IllegalArgumentException if the key and value are too long for a
+   *                                  page
+   */
+  void put(byte[] key, byte[] value) throws IOException {
+    if (key.length + value.length > MAX_ENTRY_BYTES) {
+      throw new IllegalArgumentException("Key is too long for the disk store.");
+    }
+    int root = file.getRoot(slot);
+    Split split = insert(root, key, value);
+    if (split != null) {
+      Node newRoot = new Node(false);
+      newRoot.children.add(root);
+      newRoot.keys.add(split.key);
+      newRoot.children.add(split.page);
+      int page = file.allocate();
+      write(page, newRoot);
+      file.setRoot(slot, page);
+    }
+  }
+
+  /**
+   * Removes a key.
+   *
+   * @param key the key
+   *
+   * @return `true` if the key was in the tree
+   *
+   * @throws IOException if a page cannot be read or written
+   */
+  boolean remove(byte[] key) throws IOException {
+    int page = file.getRoot(slot);
+    Node node = read(page);
+    while (!node.leaf) {
+      page = node.children.get(childIndex(node.keys, key));
+      node = read(page);
+    }
+    int index = search(node.keys, key);
+    if (index < 0) {
+      return false;
+    }
+    node.keys.remove(index);
+    node.values.remove(index);
+    write(page, node);
+    return true;
+  }
+
+  /**
+   * Returns a cursor before the first entry whose key is at least a key.
+   *
+   * @param from the smallest key, or an empty key for all entries
+   *
+   * @return the cursor; call {@link Cursor#next()} to reach the first entry
+   *
+   * @throws IOException if a page cannot be read
+   */
+  Cursor seek(byte[] from) throws IOException {
+    Node leaf = findLeaf(from);
+    int index = search(leaf.keys, from);
+    return new Cursor(leaf, index >= 0 ? index : -index - 1);
+  }
+
+  private Node findLeaf(byte[] key) throws IOException {
+    Node node = read(file.getRoot(slot));
+    while (!node.leaf) {
+      node = read(node.children.get(childIndex(node.keys, key)));
+    }
+    return node;
+  }
+
+  private Split insert(int page, byte[] key, byte[] value) throws IOException {
+    Node node = read(page);
+    if (node.leaf) {
+      int index = search(node.keys, key);
+      if (index >= 0) {
+        node.values.set(index, value);
+      } else {
+        node.keys.add(-index - 1, key);
+        node.values.add(-index - 1, value);
+      }
+    } else {
+      int index = childIndex(node.keys, key);
+      Split split = insert(node.children.get(index), key, value);
+      if (split == null) {
+        return null;
+      }
+      node.keys.add(index, split.key);
+      node.children.add(index + 1, split.page);
+    }
+    if (node.size() <= PageFile.PAGE_SIZE) {
+      write(page, node);
+      return null;
+    }
+    return split(page, node);
+  }
+
+  /**
+   * Moves the upper half of an overfull node, by size, to a new page. A leaf
+   * keeps the first key of the new page as a copy in its parent, while an
+   * inner node moves its middle key up.
+   */
+  private Split split(int page, Node node) throws IOException {
+    int half = node.size() / 2;
+    int middle = 0;
+    for (int size = NODE_HEADER; middle < node.keys.size() - 1 && size < half; middle++) {
+      size += node.entrySize(middle);
+    }
+    middle = Math.max(1, middle);
+    Node right = new Node(node.leaf);
+    int rightPage = file.allocate();
+    byte[] separator = node.keys.get(middle);
+    if (node.leaf) {
+      right.keys.addAll(node.keys.subList(middle, node.keys.size()));
+      right.values.addAll(node.values.subList(middle, node.values.size()));
+      node.values.subList(middle, node.values.size()).clear();
+      right.next = node.next;
+      node.next = rightPage;
+    } else {
+      right.keys.addAll(node.keys.subList(middle + 1, node.keys.size()));
+      right.children.addAll(node.children.subList(middle + 1, node.children.size()));
+      node.children.subList(middle + 1, node.children.size()).clear();
+    }
+    node.keys.subList(middle, node.keys.size()).clear();
+    write(page, node);
+    write(rightPage, right);
+    return new Split(separator, rightPage);
+  }
+
+  private Node read(int page) throws IOException {
+    ByteBuffer buffer = file.page(page);
+    Node node = new Node(buffer.get(0) == LEAF);
+    int count = Short.toUnsignedInt(buffer.getShort(1));
+    int first = buffer.getInt(3);
+    if (node.leaf) {
+      node.next = first;
+    } else {
+      node.children.add(first);
+    }
+    buffer.position(NODE_HEADER);
+    for (int i = 0; i < count; i++) {
+      node.keys.add(bytes(buffer));
+      if (node.leaf) {
+        node.values.add(bytes(buffer));
+      } else {
+        node.children.add(buffer.getInt());
+      }
+    }
+    return node;
+  }
+
+  private void write(int page, Node node) throws IOException {
+    ByteBuffer buffer = file.page(page);
+    buffer.put(node.leaf ? LEAF : INNER).putShort((short) node.keys.size())
+        .putInt(node.leaf ? node.next : node.children.get(0));
+    for (int i = 0; i < node.keys.size(); i++) {
+      byte[] key = node.keys.get(i);
+      buffer.putShort((short) key.length).put(key);
+      if (node.leaf) {
+        byte[] value = node.values.get(i);
+        buffer.putShort((short) value.length).put(value);
+      } else {
+        buffer.putInt(node.children.get(i + 1));
+      }
+    }
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Binary searches sorted keys.
+   *
+   * @return the index of the key, or -1 minus the index of the first larger key
+   */
+  private static int search(List<byte[]> keys, byte[] key) {
+    int low = 0;
+    int high = keys.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int order = Arrays.compareUnsigned(keys.get(middle), key);
+      if (order < 0) {
+        low = middle + 1;
+      } else if (order > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -low - 1;
+  }
+
+  /**
+   * Returns the index of the child of an inner node that holds a key: the
+   * number of separators that are not larger than the key.
+   */
+  private static int childIndex(List<byte[]> keys, byte[] key) {
+    int index = search(keys, key);
+    return index >= 0 ? index + 1 : -index - 1;
+  }
+}
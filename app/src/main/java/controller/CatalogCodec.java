@@ -0,0 +1,311 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * The CatalogCodec class opens catalog files for reading and writing, with
+ * transparent compression. Reading detects the format from the magic bytes at
+ * the start of the file: gzip, the block-compressed format, or plain text.
+ * Writing picks the format from the file extension: `.gz` for gzip, `.ssz` for
+ * the block-compressed format and plain text otherwise.
+ *
+ * <p>The block-compressed format is the magic `SSZ1` followed by independent
+ * deflate blocks, each prefixed with its compressed and uncompressed length.
+ * Since blocks do not depend on each other, they are decompressed in parallel.
+ */
+final class CatalogCodec {
+  private static final byte[] BLOCK_MAGIC = "SSZ1".getBytes(StandardCharsets.US_ASCII);
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int BLOCK_SIZE = 1 << 20;
+  private static final int BLOCKS_PER_BATCH = 2 * Runtime.getRuntime().availableProcessors();
+
+  private CatalogCodec() {
+  }
+
+  /**
+   * Returns whether a catalog file is compressed.
+   *
+   * @param filePath the path to the catalog file
+   *
+   * @return `true` if the file starts with gzip or block-compressed magic bytes
+   *
+   * @throws IOException if the file cannot be read
+   */
+  static boolean isCompressed(String filePath) throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(filePath)))) {
+      return isGzip(in) || isBlockCompressed(in);
+    }
+  }
+
+  /**
+   * Opens a catalog file for reading, decompressing it if needed.
+   *
+   * @param filePath the path to the catalog file
+   *
+   * @return a stream of the uncompressed catalog text
+   *
+   * @throws IOException if the file cannot be read
+   */
+  static InputStream open(String filePath) throws IOException {
+    InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(filePath)), 1 << 16);
+    if (isGzip(in)) {
+      return new GZIPInputStream(in, 1 << 16);
+    }
+    if (isBlockCompressed(in)) {
+      in.readNBytes(BLOCK_MAGIC.length);
+      return new BlockInputStream(new DataInputStream(in));
+    }
+    return in;
+  }
+
+  /**
+   * Creates a catalog file for writing, compressing it according to its
+   * extension.
+   *
+   * @param filePath the path to the catalog file
+   *
+   * @return a stream that takes the uncompressed catalog text
+   *
+   * @throws IOException if the file cannot be created
+   */
+  static OutputStream create(String filePath) throws IOException {
+    OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(filePath)), 1 << 16);
+    String lowerCasePath = filePath.toLowerCase(Locale.ROOT);
+    if (lowerCasePath.endsWith(".gz")) {
+      return new GZIPOutputStream(out, 1 << 16);
+    }
+    if (lowerCasePath.endsWith(".ssz")) {
+      out.write(BLOCK_MAGIC);
+      return new BlockOutputStream(new DataOutputStream(out));
+    }
+    return out;
+  }
+
+  private static boolean isGzip(InputStream in) throws IOException {
+    in.mark(2);
+    int first = in.read();
+    int second = in.read();
+    in.reset();
+    return (first | (second << 8)) == GZIP_MAGIC;
+  }
+
+  private static boolean isBlockCompressed(InputStream in) throws IOException {
+    byte[] magic = new byte[BLOCK_MAGIC.length];
+    in.mark(magic.length);
+    int read = in.readNBytes(magic, 0, magic.length);
+    in.reset();
+    return read == magic.length && Arrays.equals(magic, BLOCK_MAGIC);
+  }
+
+  /**
+   * Compresses the written text into independent deflate blocks. Blocks end at
+   * line boundaries where possible, so a block rarely splits a body. Long
+   * text without line breaks is cut where the block is full, which readers do
+   * not notice, since they serve the blocks as one stream.
+   */
+  private static final class BlockOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream block;
+    private final Deflater deflater;
+
+    private BlockOutputStream(DataOutputStream out) {
+      this.out = out;
+      this.block = new ByteArrayOutputStream(BLOCK_SIZE);
+      this.deflater = new Deflater(Deflater.BEST_SPEED);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      block.write(b);
+      if (block.size() >= BLOCK_SIZE) {
+        flushBlock(false);
+      }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      block.write(bytes, offset, length);
+      if (block.size() >= BLOCK_SIZE) {
+        flushBlock(false);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      flushBlock(true);
+      deflater.end();
+      out.close();
+    }
+
+    /**
+     * Compresses the buffered text up to its last line break, or all of it when
+     * the stream is closed or its second half holds no line break, and keeps the
+     * rest buffered. Every block thus takes at least half of the buffer, so the
+     * rest is never searched and copied again and again.
+     */
+    private void flushBlock(boolean all) throws IOException {
+      byte[] buffered = block.toByteArray();
+      int length = buffered.length;
+      if (!all) {
+        int lineEnd = length;
+        while (lineEnd > length / 2 && buffered[lineEnd - 1] != '\n') {
+          lineEnd--;
+        }
+        if (lineEnd > length / 2) {
+          length = lineEnd;
+        }
+      }
+      if (length == 0) {
+        return;
+      }
+      deflater.reset();
+      deflater.setInput(buffered, 0, length);
+      deflater.finish();
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+      byte[] buffer = new byte[1 << 16];
+      while (!deflater.finished()) {
+        compressed.write(buffer, 0, deflater.deflate(buffer));
+      }
+      out.writeInt(compressed.size());
+      out.writeInt(length);
+      compressed.writeTo(out);
+      block.reset();
+      block.write(buffered, length, buffered.length - length);
+    }
+  }
+
+  /**
+   * Reads a batch of compressed blocks at a time and inflates the blocks of a
+   * batch in parallel, serving them in file order.
+   */
+  private static final class BlockInputStream extends InputStream {
+    private final DataInputStream in;
+    private final List<byte[]> batch;
+    private int blockIndex;
+    private int position;
+    private boolean exhausted;
+
+    private BlockInputStream(DataInputStream in) {
+      this.in = in;
+      this.batch = new ArrayList<>();
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!ensureData()) {
+        return -1;
+      }
+      return batch.get(blockIndex)[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (!ensureData()) {
+        return -1;
+      }
+      byte[] block = batch.get(blockIndex);
+      int count = Math.min(length, block.length - position);
+      System.arraycopy(block, position, bytes, offset, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+    private boolean ensureData() throws IOException {
+      while (blockIndex >= batch.size() || position >= batch.get(blockIndex).length) {
+        if (blockIndex < batch.size() - 1) {
+          blockIndex++;
+          position = 0;
+        } else if (!readBatch()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean readBatch() throws IOException {
+      if (exhausted) {
+        return false;
+      }
+      List<byte[]> compressed = new ArrayList<>();
+      List<Integer> rawLengths = new ArrayList<>();
+      while (compressed.size() < BLOCKS_PER_BATCH) {
+        int compressedLength;
+        try {
+          compressedLength = in.readInt();
+        } catch (EOFException e) {
+          exhausted = true;
+          break;
+        }
+        rawLengths.add(in.readInt());
+        byte[] block = new byte[compressedLength];
+        in.readFully(block);
+        compressed.add(block);
+      }
+      batch.clear();
+      blockIndex = 0;
+      position = 0;
+      try {
+        IntStream.range(0, compressed.size()).parallel()
+            .mapToObj(i -> inflate(compressed.get(i), rawLengths.get(i)))
+            .forEachOrdered(batch::add);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      return !batch.isEmpty();
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        int filled = 0;
+        while (filled < rawLength && !inflater.finished()) {
+          int inflated = inflater.inflate(raw, filled, rawLength - filled);
+          if (inflated == 0 && inflater.needsInput()) {
+            break;
+          }
+          filled += inflated;
+        }
+        if (filled != rawLength) {
+          throw new UncheckedIOException(new IOException("Corrupt compressed catalog block."));
+        }
+        return raw;
+      } catch (DataFormatException e) {
+        throw new UncheckedIOException(new IOException("Corrupt compressed catalog block.", e));
+      } finally {
+        inflater.end();
+      }
+    }
+  }
+}
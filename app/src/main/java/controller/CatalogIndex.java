@@ -0,0 +1,322 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The CatalogIndex class records the byte offset, length and content hash of
+ * every star block in a catalog file, so single solar systems can be parsed on
+ * demand and changed blocks can be detected.
+ * The index is persisted next to the catalog in a sidecar file and rebuilt
+ * whenever the catalog's size or modification time changes.
+ *
+ * <p>A rebuild reads and hashes the whole catalog. Block offsets and lengths
+ * cannot tell which block an edit touched, since an edit may keep the length
+ * of its block, so a changed catalog is never indexed from an offset onward.
+ * A refresh of a catalog whose size and modification time did not change
+ * reads nothing.
+ */
+final class CatalogIndex {
+
+  /**
+   * Receives the planet and moon names of a catalog while it is scanned.
+   */
+  interface BodyVisitor {
+    /**
+     * Receives one planet or moon.
+     *
+     * @param star the name of the star whose block holds the body
+     *
+     * @param kind `planet` or `moon`
+     *
+     * @param name the name of the body
+     */
+    void body(String star, String kind, String name);
+  }
+
+  static final String SIDECAR_SUFFIX = ".idx";
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final Path catalog;
+  private final String stamp;
+  private final Map<String, long[]> blocks;
+
+  private CatalogIndex(Path catalog, String stamp, Map<String, long[]> blocks) {
+    this.catalog = catalog;
+    this.stamp = stamp;
+    this.blocks = blocks;
+  }
+
+  /**
+   * Opens the index of a catalog file, reading the sidecar file if it is up to
+   * date and rebuilding it otherwise.
+   *
+   * @param filePath the path to the catalog file
+   *
+   * @return the index of the catalog
+   *
+   * @throws IOException if the catalog cannot be read
+   */
+  static CatalogIndex open(String filePath) throws IOException {
+    return open(filePath, null);
+  }
+
+  /**
+   * Opens the index of a catalog file like `open(String)`, but if a visitor is
+   * given the catalog is always scanned, and the visitor receives the name of
+   * every planet and moon on the way.
+   *
+   * @param filePath the path to the catalog file
+   *
+   * @param bodies   receives the planet and moon names, or null
+   *
+   * @return the index of the catalog
+   *
+   * @throws IOException if the catalog cannot be read
+   */
+  static CatalogIndex open(String filePath, BodyVisitor bodies) throws IOException {
+    Path catalog = Paths.get(filePath);
+    Path sidecar = Paths.get(filePath + SIDECAR_SUFFIX);
+    String stamp = stamp(catalog);
+    Map<String, long[]> blocks = bodies == null ? readSidecar(sidecar, stamp) : null;
+    if (blocks == null) {
+      blocks = scan(catalog, bodies);
+      writeSidecar(sidecar, stamp, blocks);
+    }
+    return new CatalogIndex(catalog, stamp, blocks);
+  }
+
+  /**
+   * Indexes the current version of the catalog file. The index itself is
+   * returned if the size and modification time of the file did not change, and
+   * the file is scanned and the sidecar rewritten otherwise.
+   *
+   * @return the index of the current version
+   *
+   * @throws IOException if the catalog cannot be read
+   */
+  CatalogIndex refresh() throws IOException {
+    String current = stamp(catalog);
+    if (current.equals(stamp)) {
+      return this;
+    }
+    Map<String, long[]> refreshed = scan(catalog, null);
+    writeSidecar(Paths.get(catalog + SIDECAR_SUFFIX), current, refreshed);
+    return new CatalogIndex(catalog, current, refreshed);
+  }
+
+  /**
+   * Returns whether the catalog contains a star with the given name.
+   *
+   * @param name the name of the star
+   *
+   * @return `true` if the star is in the catalog, `false` otherwise
+   */
+  boolean contains(String name) {
+    return blocks.containsKey(name);
+  }
+
+  /**
+   * Returns the names of all stars in the catalog, in file order.
+   *
+   * @return the star names
+   */
+  Set<String> names() {
+    return Collections.unmodifiableSet(blocks.keySet());
+  }
+
+  /**
+   * Returns the FNV-1a hash of the block that starts with the given star.
+   *
+   * @param name the name of the star
+   *
+   * @return the block hash, or 0 if the star is not in the catalog
+   */
+  long hash(String name) {
+    long[] block = blocks.get(name);
+    return block == null ? 0 : block[2];
+  }
+
+  /**
+   * Reads the text of the block that starts with the given star, including its
+   * planets and moons.
+   *
+   * @param name the name of the star
+   *
+   * @return the block text, or null if the star is not in the catalog
+   *
+   * @throws IOException if the catalog cannot be read
+   */
+  String readBlock(String name) throws IOException {
+    long[] block = blocks.get(name);
+    if (block == null) {
+      return null;
+    }
+    byte[] bytes = new byte[Math.toIntExact(block[1])];
+    try (RandomAccessFile file = new RandomAccessFile(catalog.toFile(), "r")) {
+      file.seek(block[0]);
+      file.readFully(bytes);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the size and modification time of a catalog file, which change
+   * whenever the file is written.
+   *
+   * @param catalog the catalog file
+   *
+   * @return the stamp of the file
+   *
+   * @throws IOException if the file cannot be read
+   */
+  static String stamp(Path catalog) throws IOException {
+    return Files.size(catalog) + ":" + Files.getLastModifiedTime(catalog).toMillis();
+  }
+
+  /**
+   * Finds the star blocks of a catalog, reading it in large chunks and hashing
+   * every block while it is read. Offsets and lengths cannot reveal an edit
+   * that keeps the length of its block, so no hash is taken over from an
+   * earlier index. The names on the planet and moon lines are passed to a
+   * visitor if one is given.
+   */
+  private static Map<String, long[]> scan(Path catalog, BodyVisitor bodies) throws IOException {
+    Map<String, long[]> blocks = new LinkedHashMap<>();
+    try (InputStream in = Files.newInputStream(catalog)) {
+      byte[] buffer = new byte[1 << 16];
+      ByteArrayOutputStream name = new ByteArrayOutputStream();
+      long offset = 0;
+      long lineStart = 0;
+      long hash = FNV_OFFSET_BASIS;
+      long[] current = null;
+      String star = null;
+      boolean readingName = false;
+      boolean readingBody = false;
+      int depth = 0;
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        for (int i = 0; i < read; i++) {
+          int b = buffer[i] & 0xff;
+          if (offset == lineStart && b != '-' && b != '\n' && b != '\r') {
+            if (current != null) {
+              current[1] = lineStart - current[0];
+              current[2] = hash;
+            }
+            current = new long[] {lineStart, 0, 0};
+            hash = FNV_OFFSET_BASIS;
+            readingName = true;
+            name.reset();
+          } else if (offset == lineStart && b == '-' && bodies != null && star != null) {
+            readingBody = true;
+            depth = 0;
+            name.reset();
+          }
+          if (readingName) {
+            if (b == ':' || b == '\n' || b == '\r') {
+              star = new String(name.toByteArray(), StandardCharsets.UTF_8);
+              blocks.putIfAbsent(star, current);
+              readingName = false;
+            } else {
+              name.write(b);
+            }
+          } else if (readingBody) {
+            if (b == ':' || b == '\n' || b == '\r') {
+              visit(bodies, star, depth, name);
+              readingBody = false;
+            } else if (b == '-' && name.size() == 0) {
+              depth++;
+            } else {
+              name.write(b);
+            }
+          }
+          hash = (hash ^ b) * FNV_PRIME;
+          offset++;
+          if (b == '\n') {
+            lineStart = offset;
+          }
+        }
+      }
+      if (current != null) {
+        current[1] = offset - current[0];
+        current[2] = hash;
+      }
+      if (readingBody) {
+        visit(bodies, star, depth, name);
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Passes a planet (one hyphen) or moon (two hyphens) to the visitor.
+   */
+  private static void visit(BodyVisitor bodies, String star, int depth, ByteArrayOutputStream name) {
+    if (depth == 1 || depth == 2) {
+      bodies.body(star, depth == 1 ? "planet" : "moon", new String(name.toByteArray(), StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Returns the FNV-1a hash of some bytes, as used for the blocks.
+   *
+   * @param bytes the bytes
+   *
+   * @return the hash
+   */
+  static long hash(byte[] bytes) {
+    long hash = FNV_OFFSET_BASIS;
+    for (byte b : bytes) {
+      hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static Map<String, long[]> readSidecar(Path sidecar, String stamp) {
+    if (!Files.exists(sidecar)) {
+      return null;
+    }
+    Map<String, long[]> blocks = new LinkedHashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+      if (!stamp.equals(reader.readLine())) {
+        return null;
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split(":");
+        blocks.put(parts[0], new long[] {
+            Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3])});
+      }
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+    return blocks;
+  }
+
+  private static void writeSidecar(Path sidecar, String stamp, Map<String, long[]> blocks) {
+    try (BufferedWriter writer = Files.newBufferedWriter(sidecar, StandardCharsets.UTF_8)) {
+      writer.write(stamp);
+      writer.newLine();
+      for (Map.Entry<String, long[]> entry : blocks.entrySet()) {
+        long[] block = entry.getValue();
+        writer.write(entry.getKey() + ":" + block[0] + ":" + block[1] + ":" + block[2]);
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      // the sidecar is only a cache, the index is rebuilt on the next start
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.function.Consumer;
+import model.Moon;
+import model.Planet;
+import model.SolarSystem;
+import model.Star;
+
+/**
+ * The CatalogParser class parses the hyphen-depth catalog text format, where a
+ * line without hyphens is a star, one hyphen is a planet and two hyphens are a
+ * moon.
+ */
+final class CatalogParser {
+
+  private CatalogParser() {
+  }
+
+  /**
+   * Parses solar systems, planets and moons from a reader. Each solar system is
+   * handed to the sink as soon as its star line is read, and its planets and
+   * moons are added to it afterwards.
+   *
+   * @param reader the reader to parse from
+   *
+   * @param sink   receives every parsed solar system
+   *
+   * @throws IOException if the reader fails
+   */
+  static void parse(BufferedReader reader, Consumer<SolarSystem> sink) throws IOException {
+    String line;
+    SolarSystem currentSolarSystem = null;
+    Planet currentPlanet = null;
+
+    while ((line = reader.readLine()) != null) {
+      int depth = countLeadingHyphens(line);
+      String[] parts = line.split(":");
+
+      if (depth == 0) {
+        String starName = parts[0];
+        double starRadius = Double.parseDouble(parts[1]);
+        currentSolarSystem = new SolarSystem(starName, new Star(starName, starRadius));
+        sink.accept(currentSolarSystem);
+      } else if (depth == 1 && currentSolarSystem != null) {
+        String planetName = parts[0].substring(1);
+        double radius = Double.parseDouble(parts[1]);
+        double orbitRadius = Double.parseDouble(parts[2]);
+        currentPlanet = new Planet(planetName, radius, orbitRadius, currentSolarSystem.getStar());
+        currentSolarSystem.addPlanet(currentPlanet);
+      } else if (depth == 2 && currentPlanet != null) {
+        String moonName = parts[0].substring(2);
+        double radius = Double.parseDouble(parts[1]);
+        double orbitRadius = Double.parseDouble(parts[2]);
+        Moon moon = new Moon(moonName, radius, orbitRadius, currentPlanet);
+        currentPlanet.addMoon(moon);
+      }
+    }
+  }
+
+  /**
+   * Counts the number of leading hyphens ('-') in a string.
+   *
+   * @param str The input string.
+   * @return The count of leading hyphens.
+   */
+  private static int countLeadingHyphens(String str) {
+    int count = 0;
+    for (char c : str.toCharArray()) {
+      if (c == '-') {
+        count++;
+      } else {
+        break;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,46 @@
+package controller;
+
+/**
+ * The CatalogSink interface receives the bodies read by a streaming catalog
+ * reader, one at a time and parents before children. Planets and moons name
+ * their parents, so a sink can resolve them without the reader keeping state.
+ */
+interface CatalogSink {
+
+  /**
+   * Receives a star, which starts a new solar system.
+   *
+   * @param name   the name of the star
+   *
+   * @param radius the radius of the star
+   */
+  void star(String name, double radius);
+
+  /**
+   * Receives a planet.
+   *
+   * @param starName    the name of the parent star
+   *
+   * @param name        the name of the planet
+   *
+   * @param radius      the radius of the planet
+   *
+   * @param orbitRadius the orbit radius of the planet
+   */
+  void planet(String starName, String name, double radius, double orbitRadius);
+
+  /**
+   * Receives a moon.
+   *
+   * @param starName    the name of the star of the parent planet
+   *
+   * @param planetName  the name of the parent planet
+   *
+   * @param name        the name of the moon
+   *
+   * @param radius      the radius of the moon
+   *
+   * @param orbitRadius the orbit radius of the moon
+   */
+  void moon(String starName, String planetName, String name, double radius, double orbitRadius);
+}
@@ -0,0 +1,161 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CatalogWatcher class watches a catalog file with a `WatchService` and,
+ * whenever it changes, compares the block hashes of the new index with the
+ * previous one. The resulting sets of added, changed and removed stars are
+ * queued for the controller, which applies them on its own thread.
+ *
+ * <p>Events are debounced: the catalog is only indexed again once no event
+ * arrived for {@value #DEBOUNCE_MILLIS} ms, so an editor writing the file in
+ * several steps causes one refresh. Errors while indexing a half-written file
+ * are queued for the controller to report, and the watcher keeps running.
+ */
+final class CatalogWatcher implements AutoCloseable {
+  static final long DEBOUNCE_MILLIS = 200;
+
+  /**
+   * The stars that differ between two versions of the catalog, together with
+   * the index of the new version.
+   */
+  static final class Diff {
+    final CatalogIndex index;
+    final Set<String> added = new LinkedHashSet<>();
+    final Set<String> changed = new LinkedHashSet<>();
+    final Set<String> removed = new LinkedHashSet<>();
+
+    Diff(CatalogIndex index) {
+      this.index = index;
+    }
+
+    boolean isEmpty() {
+      return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+  }
+
+  private final WatchService watchService;
+  private final Queue<Diff> pending;
+  private final Queue<String> errors;
+  private final Thread thread;
+  private CatalogIndex current;
+
+  /**
+   * Starts watching a catalog file.
+   *
+   * @param filePath the path to the catalog file
+   *
+   * @param current  the index of the catalog version that is loaded
+   *
+   * @throws IOException if the directory of the file cannot be watched
+   */
+  CatalogWatcher(String filePath, CatalogIndex current) throws IOException {
+    this.current = current;
+    this.pending = new ConcurrentLinkedQueue<>();
+    this.errors = new ConcurrentLinkedQueue<>();
+    Path file = Paths.get(filePath).toAbsolutePath();
+    Path directory = file.getParent();
+    this.watchService = FileSystems.getDefault().newWatchService();
+    directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    this.thread = new Thread(() -> watch(file.getFileName()), "catalog-watcher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Returns the next change detected in the catalog, if any.
+   *
+   * @return the next diff, or null if there are no pending changes
+   */
+  Diff poll() {
+    return pending.poll();
+  }
+
+  /**
+   * Returns the next error met while indexing the catalog, if any.
+   *
+   * @return the error message, or null if there are no pending errors
+   */
+  String pollError() {
+    return errors.poll();
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void watch(Path fileName) {
+    try {
+      while (true) {
+        boolean touched = touched(watchService.take(), fileName);
+        WatchKey key;
+        while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          touched |= touched(key, fileName);
+        }
+        if (touched) {
+          try {
+            diff();
+          } catch (RuntimeException e) {
+            errors.add("Cannot index the changed catalog: " + e);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // the watcher was closed
+    }
+  }
+
+  private static boolean touched(WatchKey key, Path fileName) {
+    boolean touched = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      touched |= fileName.equals(event.context());
+    }
+    key.reset();
+    return touched;
+  }
+
+  private void diff() {
+    CatalogIndex next;
+    try {
+      next = current.refresh();
+    } catch (IOException e) {
+      // the file is being replaced, the next event will pick it up
+      return;
+    }
+    Diff diff = new Diff(next);
+    for (String name : next.names()) {
+      if (!current.contains(name)) {
+        diff.added.add(name);
+      } else if (current.hash(name) != next.hash(name)) {
+        diff.changed.add(name);
+      }
+    }
+    for (String name : current.names()) {
+      if (!next.contains(name)) {
+        diff.removed.add(name);
+      }
+    }
+    current = next;
+    if (!diff.isEmpty()) {
+      pending.add(diff);
+    }
+  }
+}
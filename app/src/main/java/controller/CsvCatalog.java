@@ -0,0 +1,132 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import model.Moon;
+import model.Planet;
+import model.SolarSystem;
+
+/**
+ * The CsvCatalog class streams catalogs as flat CSV with one row per body and
+ * the columns `type,name,radius,orbitRadius,star,planet`. Stars leave the orbit
+ * radius and parent columns empty, and planets leave the planet column empty.
+ * Reading handles one row at a time.
+ */
+final class CsvCatalog {
+  static final String HEADER = "type,name,radius,orbitRadius,star,planet";
+
+  private CsvCatalog() {
+  }
+
+  /**
+   * Writes solar systems as CSV.
+   *
+   * @param solarSystems the solar systems to write
+   *
+   * @param out          the writer to write to
+   *
+   * @throws IOException if writing fails
+   */
+  static void write(Iterable<SolarSystem> solarSystems, Writer out) throws IOException {
+    out.write(HEADER);
+    out.write('\n');
+    for (SolarSystem solarSystem : solarSystems) {
+      if (solarSystem.getStar() == null) {
+        continue;
+      }
+      String starName = quote(solarSystem.getStar().getName());
+      out.write("star," + starName + "," + solarSystem.getStar().getRadius() + ",,,\n");
+      for (Planet planet : solarSystem.getPlanets()) {
+        String planetName = quote(planet.getName());
+        out.write("planet," + planetName + "," + planet.getRadius() + "," + planet.getOrbitRadius()
+            + "," + starName + ",\n");
+        for (Moon moon : planet.getMoons()) {
+          out.write("moon," + quote(moon.getName()) + "," + moon.getRadius() + "," + moon.getOrbitRadius()
+              + "," + starName + "," + planetName + "\n");
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads a CSV catalog and passes its bodies to the sink row by row. A header
+   * row is skipped.
+   *
+   * @param in   the reader to read from
+   *
+   * @param sink receives the bodies
+   *
+   * @throws IOException if reading fails or a row is malformed
+   */
+  static void read(BufferedReader in, CatalogSink sink) throws IOException {
+    String line;
+    int lineNumber = 0;
+    while ((line = in.readLine()) != null) {
+      lineNumber++;
+      if (line.isEmpty() || (lineNumber == 1 && line.startsWith("type,"))) {
+        continue;
+      }
+      List<String> fields = split(line);
+      if (fields.size() < 6) {
+        throw new IOException("Expected 6 columns on line " + lineNumber + ".");
+      }
+      try {
+        switch (fields.get(0)) {
+          case "star":
+            sink.star(fields.get(1), Double.parseDouble(fields.get(2)));
+            break;
+          case "planet":
+            sink.planet(fields.get(4), fields.get(1), Double.parseDouble(fields.get(2)),
+                Double.parseDouble(fields.get(3)));
+            break;
+          case "moon":
+            sink.moon(fields.get(4), fields.get(5), fields.get(1), Double.parseDouble(fields.get(2)),
+                Double.parseDouble(fields.get(3)));
+            break;
+          default:
+            throw new IOException("Unknown body type on line " + lineNumber + ": " + fields.get(0));
+        }
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid number on line " + lineNumber + ".", e);
+      }
+    }
+  }
+
+  private static List<String> split(String line) {
+    List<String> fields = new ArrayList<>(6);
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  private static String quote(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+      return value;
+    }
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+}
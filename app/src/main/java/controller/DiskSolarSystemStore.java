@@ -0,0 +1,564 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+import model.Planet;
+import model.SolarSystem;
+
+/**
+ * The DiskSolarSystemStore class is a map of solar systems kept in a page file
+ * on disk, for catalogs larger than the memory. A primary B+tree maps the name
+ * of every solar system to its catalog text, which is stored in a chain of
+ * pages, and a secondary B+tree holds an entry for every planet keyed by its
+ * solar system and orbit radius, so the planets in an orbit range are found
+ * without reading the solar system.
+ *
+ * <p>Only the {@value #RESIDENT} most recently used solar systems are kept as
+ * objects. The caller may change them, so a solar system is written back when
+ * it leaves that set, if its text differs from the stored one, and when the
+ * store is flushed. All pages are read through the buffer pool of the page
+ * file, so the memory used is bounded by the pool and the resident systems,
+ * whatever the size of the file.
+ */
+final class DiskSolarSystemStore extends AbstractMap<String, SolarSystem> implements AutoCloseable {
+  static final int RESIDENT = 16;
+  private static final int SYSTEMS = 0;
+  private static final int ORBITS = 1;
+  private static final int SIZE = 0;
+  private static final int CHAIN_HEADER = 8;
+
+  private final PageFile file;
+  private final BPlusTree systems;
+  private final BPlusTree orbits;
+  private final LinkedHashMap<String, SolarSystem> resident;
+  private final Map<String, String> residentText;
+  private long reads;
+  private long writeBacks;
+
+  /**
+   * Returns the pages of a chain.
+   */
+  private interface Pages {
+    ByteBuffer page(int page) throws IOException;
+  }
+
+  /**
+   * Opens a store, creating the file if it does not exist.
+   *
+   * @param path      the store file
+   *
+   * @param poolBytes the largest number of bytes of the file mapped at a time
+   *
+   * @throws IOException if the file cannot be opened or is not a store
+   */
+  DiskSolarSystemStore(Path path, long poolBytes) throws IOException {
+    this.file = new PageFile(path, poolBytes);
+    this.systems = new BPlusTree(file, SYSTEMS);
+    this.orbits = new BPlusTree(file, ORBITS);
+    this.resident = new LinkedHashMap<>(16, 0.75f, true);
+    this.residentText = new HashMap<>();
+  }
+
+  @Override
+  public SolarSystem get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    String name = (String) key;
+    SolarSystem solarSystem = resident.get(name);
+    if (solarSystem != null) {
+      return solarSystem;
+    }
+    String text = readText(name);
+    if (text == null) {
+      return null;
+    }
+    solarSystem = parse(name, text);
+    admit(name, solarSystem, text);
+    return solarSystem;
+  }
+
+  @Override
+  public SolarSystem put(String key, SolarSystem solarSystem) {
+    SolarSystem previous = remove(key);
+    String text = text(solarSystem);
+    store(key, solarSystem, text, false);
+    admit(key, solarSystem, text);
+    return previous;
+  }
+
+  @Override
+  public SolarSystem remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    String name = (String) key;
+    SolarSystem previous = resident.remove(name);
+    residentText.remove(name);
+    try {
+      byte[] location = systems.get(bytes(name));
+      if (location == null) {
+        return previous;
+      }
+      if (previous == null) {
+        previous = parse(name, readChain(location));
+      }
+      freeChain(ByteBuffer.wrap(location).order(ByteOrder.LITTLE_ENDIAN).getInt());
+      systems.remove(bytes(name));
+      removeOrbits(name);
+      file.setCounter(SIZE, file.getCounter(SIZE) - 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return previous;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    try {
+      return key instanceof String && (resident.containsKey(key) || systems.get(bytes((String) key)) != null);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public int size() {
+    return (int) file.getCounter(SIZE);
+  }
+
+  /**
+   * Returns a view of all entries in name order. The iterator reads one leaf of
+   * the primary tree at a time and parses each solar system that is not
+   * resident without making it resident, so walking the entries does not hold
+   * more than one of them.
+   *
+   * @return the entries of all stored solar systems
+   */
+  @Override
+  public Set<Map.Entry<String, SolarSystem>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Map.Entry<String, SolarSystem>> iterator() {
+        return entryIterator();
+      }
+
+      @Override
+      public int size() {
+        return DiskSolarSystemStore.this.size();
+      }
+    };
+  }
+
+  /**
+   * Returns a view of the names of all stored solar systems in name order,
+   * which walks the leaves of the primary tree without reading any solar
+   * system.
+   *
+   * @return the names
+   */
+  @Override
+  public Set<String> keySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<String> iterator() {
+        Iterator<byte[]> keys = keyIterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return keys.hasNext();
+          }
+
+          @Override
+          public String next() {
+            return new String(keys.next(), StandardCharsets.UTF_8);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return DiskSolarSystemStore.this.size();
+      }
+    };
+  }
+
+  /**
+   * Returns the resident solar systems, without reading any other from its
+   * pages.
+   *
+   * @return an unmodifiable view of the resident solar systems by name
+   */
+  Map<String, SolarSystem> residents() {
+    return Collections.unmodifiableMap(resident);
+  }
+
+  /**
+   * Returns a reader of every stored solar system, without reading any of them.
+   * A resident solar system is returned as it is, and any other is parsed from
+   * its chain of pages, which are read from the file rather than through the
+   * buffer pool, so the reader may run on any thread as long as the solar
+   * system is not stored again or removed.
+   *
+   * @return the readers by name
+   */
+  Map<String, Supplier<SolarSystem>> readers() {
+    Map<String, SolarSystem> residents = new HashMap<>(resident);
+    Map<String, Supplier<SolarSystem>> readers = new LinkedHashMap<>();
+    try {
+      BPlusTree.Cursor cursor = systems.seek(new byte[0]);
+      while (cursor.next()) {
+        String name = new String(cursor.key(), StandardCharsets.UTF_8);
+        SolarSystem solarSystem = residents.get(name);
+        byte[] location = cursor.value();
+        readers.put(name, solarSystem != null ? () -> solarSystem : () -> {
+          try {
+            return parse(name, readChain(location, file::read));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return readers;
+  }
+
+  /**
+   * Finds the planets of a solar system whose orbit radius lies in a range, in
+   * the order of their orbit radii, by scanning the secondary tree.
+   *
+   * @param name           the name of the solar system
+   *
+   * @param minOrbitRadius the smallest orbit radius, inclusive
+   *
+   * @param maxOrbitRadius the largest orbit radius, inclusive
+   *
+   * @return the names of the planets
+   */
+  List<String> findPlanetsByOrbit(String name, double minOrbitRadius, double maxOrbitRadius) {
+    List<String> planets = new ArrayList<>();
+    try {
+      writeBack(name);
+      byte[] prefix = systemPrefix(name);
+      long max = sortable(maxOrbitRadius);
+      BPlusTree.Cursor cursor = orbits.seek(orbitKey(prefix, minOrbitRadius, new byte[0]));
+      while (cursor.next()) {
+        byte[] key = cursor.key();
+        if (!startsWith(key, prefix)
+            || Long.compareUnsigned(ByteBuffer.wrap(key, prefix.length, Long.BYTES).getLong(), max) > 0) {
+          break;
+        }
+        planets.add(new String(key, prefix.length + Long.BYTES, key.length - prefix.length - Long.BYTES,
+            StandardCharsets.UTF_8));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return planets;
+  }
+
+  /**
+   * Returns the counters of the store and of its buffer pool.
+   *
+   * @return the statistics by name
+   */
+  Map<String, Long> getStatistics() {
+    Map<String, Long> statistics = new LinkedHashMap<>();
+    statistics.put("stored", (long) size());
+    statistics.put("resident", (long) resident.size());
+    statistics.put("diskReads", reads);
+    statistics.put("writeBacks", writeBacks);
+    statistics.putAll(file.getStatistics());
+    return statistics;
+  }
+
+  /**
+   * Writes back every changed resident solar system and forces the pages to
+   * the disk.
+   */
+  void flush() {
+    for (String name : new ArrayList<>(resident.keySet())) {
+      writeBack(name);
+    }
+    file.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    resident.clear();
+    residentText.clear();
+    file.close();
+  }
+
+  private Iterator<Map.Entry<String, SolarSystem>> entryIterator() {
+    BPlusTree.Cursor cursor;
+    try {
+      cursor = systems.seek(new byte[0]);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new Iterator<>() {
+      private Map.Entry<String, SolarSystem> next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Map.Entry<String, SolarSystem> next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        Map.Entry<String, SolarSystem> entry = next;
+        next = advance();
+        return entry;
+      }
+
+      private Map.Entry<String, SolarSystem> advance() {
+        try {
+          if (!cursor.next()) {
+            return null;
+          }
+          String name = new String(cursor.key(), StandardCharsets.UTF_8);
+          SolarSystem solarSystem = resident.get(name);
+          if (solarSystem == null) {
+            solarSystem = parse(name, readChain(cursor.value()));
+          }
+          return new SimpleImmutableEntry<>(name, solarSystem);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+  }
+
+  private Iterator<byte[]> keyIterator() {
+    BPlusTree.Cursor cursor;
+    try {
+      cursor = systems.seek(new byte[0]);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new Iterator<>() {
+      private byte[] next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public byte[] next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        byte[] key = next;
+        next = advance();
+        return key;
+      }
+
+      private byte[] advance() {
+        try {
+          return cursor.next() ? cursor.key() : null;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+  }
+
+  private void admit(String name, SolarSystem solarSystem, String text) {
+    resident.put(name, solarSystem);
+    residentText.put(name, text);
+    if (resident.size() > RESIDENT) {
+      String eldest = resident.keySet().iterator().next();
+      writeBack(eldest);
+      resident.remove(eldest);
+      residentText.remove(eldest);
+    }
+  }
+
+  /**
+   * Stores a resident solar system again if its text changed since it was last
+   * stored.
+   */
+  private void writeBack(String name) {
+    SolarSystem solarSystem = resident.get(name);
+    if (solarSystem == null) {
+      return;
+    }
+    String text = text(solarSystem);
+    if (!text.equals(residentText.get(name))) {
+      store(name, solarSystem, text, true);
+      residentText.put(name, text);
+      writeBacks++;
+    }
+  }
+
+  /**
+   * Writes the text and the planet entries of a solar system, replacing those
+   * it had if it was already stored.
+   */
+  private void store(String name, SolarSystem solarSystem, String text, boolean replace) {
+    try {
+      byte[] key = bytes(name);
+      byte[] previous = replace ? systems.get(key) : null;
+      if (previous != null) {
+        freeChain(ByteBuffer.wrap(previous).order(ByteOrder.LITTLE_ENDIAN).getInt());
+        removeOrbits(name);
+      }
+      byte[] content = text.getBytes(StandardCharsets.UTF_8);
+      byte[] location = ByteBuffer.allocate(2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+          .putInt(writeChain(content)).putInt(content.length).array();
+      systems.put(key, location);
+      byte[] prefix = systemPrefix(name);
+      for (Planet planet : solarSystem.getPlanets()) {
+        orbits.put(orbitKey(prefix, planet.getOrbitRadius(), bytes(planet.getName())), new byte[0]);
+      }
+      if (previous == null) {
+        file.setCounter(SIZE, file.getCounter(SIZE) + 1);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void removeOrbits(String name) throws IOException {
+    byte[] prefix = systemPrefix(name);
+    List<byte[]> keys = new ArrayList<>();
+    BPlusTree.Cursor cursor = orbits.seek(prefix);
+    while (cursor.next() && startsWith(cursor.key(), prefix)) {
+      keys.add(cursor.key());
+    }
+    for (byte[] key : keys) {
+      orbits.remove(key);
+    }
+  }
+
+  private String readText(String name) {
+    try {
+      byte[] location = systems.get(bytes(name));
+      return location == null ? null : readChain(location);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes bytes to a chain of pages, each starting with the next page of the
+   * chain and the number of bytes it holds.
+   *
+   * @return the first page of the chain
+   */
+  private int writeChain(byte[] content) throws IOException {
+    int capacity = PageFile.PAGE_SIZE - CHAIN_HEADER;
+    int first = file.allocate();
+    int page = first;
+    int offset = 0;
+    while (true) {
+      int length = Math.min(capacity, content.length - offset);
+      int next = offset + length < content.length ? file.allocate() : 0;
+      file.page(page).putInt(0, next).putInt(4, length).put(CHAIN_HEADER, content, offset, length);
+      offset += length;
+      if (next == 0) {
+        return first;
+      }
+      page = next;
+    }
+  }
+
+  private String readChain(byte[] location) throws IOException {
+    reads++;
+    return readChain(location, file::page);
+  }
+
+  private static String readChain(byte[] location, Pages pages) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(location).order(ByteOrder.LITTLE_ENDIAN);
+    int page = buffer.getInt();
+    byte[] content = new byte[buffer.getInt()];
+    int offset = 0;
+    while (page != 0) {
+      ByteBuffer chain = pages.page(page);
+      int length = chain.getInt(4);
+      chain.get(CHAIN_HEADER, content, offset, length);
+      offset += length;
+      page = chain.getInt(0);
+    }
+    return new String(content, StandardCharsets.UTF_8);
+  }
+
+  private void freeChain(int page) throws IOException {
+    while (page != 0) {
+      int next = file.page(page).getInt(0);
+      file.free(page);
+      page = next;
+    }
+  }
+
+  private static String text(SolarSystem solarSystem) {
+    return solarSystem.getStar() == null ? "" : solarSystem.toString();
+  }
+
+  private static SolarSystem parse(String name, String text) {
+    SolarSystem[] solarSystem = new SolarSystem[1];
+    try {
+      CatalogParser.parse(new BufferedReader(new StringReader(text)), parsed -> solarSystem[0] = parsed);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return solarSystem[0] != null ? solarSystem[0] : new SolarSystem(name, null);
+  }
+
+  private static byte[] bytes(String name) {
+    return name.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the length-prefixed name of a solar system that starts the keys of
+   * its planets, so no system's keys start with another system's prefix.
+   */
+  private static byte[] systemPrefix(String name) {
+    byte[] bytes = bytes(name);
+    return ByteBuffer.allocate(Short.BYTES + bytes.length).putShort((short) bytes.length).put(bytes).array();
+  }
+
+  private static byte[] orbitKey(byte[] prefix, double orbitRadius, byte[] planet) {
+    return ByteBuffer.allocate(prefix.length + Long.BYTES + planet.length)
+        .put(prefix).putLong(sortable(orbitRadius)).put(planet).array();
+  }
+
+  /**
+   * Maps a double to a long whose unsigned order is the order of the doubles.
+   */
+  private static long sortable(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+  }
+
+  private static boolean startsWith(byte[] key, byte[] prefix) {
+    return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+  }
+}
@@ -0,0 +1,363 @@
+package controller;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import model.Moon;
+import model.Planet;
+import model.SolarSystem;
+
+/**
+ * The JsonCatalog class streams catalogs in JSON, as an array of stars with
+ * nested planets and moons:
+ * `[{"name":"Sun","radius":696340.0,"planets":[{"name":"Earth","radius":6371.0,
+ * "orbitRadius":6.9634E7,"moons":[...]}]}]`. Reading only holds the current
+ * token, and a star's `name` and `radius` must come before its `planets`.
+ */
+final class JsonCatalog {
+  private final Reader in;
+  private int peeked;
+
+  private JsonCatalog(Reader in) {
+    this.in = in;
+    this.peeked = -2;
+  }
+
+  /**
+   * Writes solar systems as JSON.
+   *
+   * @param solarSystems the solar systems to write
+   *
+   * @param out          the writer to write to
+   *
+   * @throws IOException if writing fails
+   */
+  static void write(Iterable<SolarSystem> solarSystems, Writer out) throws IOException {
+    out.write('[');
+    boolean firstSystem = true;
+    for (SolarSystem solarSystem : solarSystems) {
+      if (solarSystem.getStar() == null) {
+        continue;
+      }
+      out.write(firstSystem ? "\n" : ",\n");
+      firstSystem = false;
+      out.write("{\"name\":");
+      writeString(solarSystem.getStar().getName(), out);
+      out.write(",\"radius\":" + solarSystem.getStar().getRadius() + ",\"planets\":[");
+      boolean firstPlanet = true;
+      for (Planet planet : solarSystem.getPlanets()) {
+        out.write(firstPlanet ? "\n  " : ",\n  ");
+        firstPlanet = false;
+        out.write("{\"name\":");
+        writeString(planet.getName(), out);
+        out.write(",\"radius\":" + planet.getRadius() + ",\"orbitRadius\":" + planet.getOrbitRadius()
+            + ",\"moons\":[");
+        boolean firstMoon = true;
+        for (Moon moon : planet.getMoons()) {
+          out.write(firstMoon ? "\n    " : ",\n    ");
+          firstMoon = false;
+          out.write("{\"name\":");
+          writeString(moon.getName(), out);
+          out.write(",\"radius\":" + moon.getRadius() + ",\"orbitRadius\":" + moon.getOrbitRadius() + "}");
+        }
+        out.write("]}");
+      }
+      out.write("]}");
+    }
+    out.write("\n]\n");
+  }
+
+  /**
+   * Reads a JSON catalog and passes its bodies to the sink as they are read.
+   *
+   * @param in   the reader to read from
+   *
+   * @param sink receives the bodies
+   *
+   * @throws IOException if reading fails or the JSON is malformed
+   */
+  static void read(Reader in, CatalogSink sink) throws IOException {
+    JsonCatalog reader = new JsonCatalog(in);
+    reader.expect('[');
+    if (reader.peek() == ']') {
+      reader.next();
+      return;
+    }
+    do {
+      reader.readStar(sink);
+    } while (reader.separator(']'));
+  }
+
+  private void readStar(CatalogSink sink) throws IOException {
+    expect('{');
+    String name = null;
+    Double radius = null;
+    boolean received = false;
+    if (peek() != '}') {
+      do {
+        String key = readString();
+        expect(':');
+        if ("name".equals(key)) {
+          name = readString();
+        } else if ("radius".equals(key)) {
+          radius = readNumber();
+        } else if ("planets".equals(key)) {
+          received = receiveStar(sink, name, radius, received);
+          expect('[');
+          if (peek() != ']') {
+            do {
+              readPlanet(sink, name);
+            } while (separator(']'));
+          } else {
+            next();
+          }
+        } else {
+          skipValue();
+        }
+      } while (separator('}'));
+    } else {
+      next();
+    }
+    receiveStar(sink, name, radius, received);
+  }
+
+  private boolean receiveStar(CatalogSink sink, String name, Double radius, boolean received)
+      throws IOException {
+    if (!received) {
+      if (name == null || radius == null) {
+        throw new IOException("A star needs a name and radius before its planets.");
+      }
+      sink.star(name, radius);
+    }
+    return true;
+  }
+
+  private void readPlanet(CatalogSink sink, String starName) throws IOException {
+    expect('{');
+    String name = null;
+    Double radius = null;
+    Double orbitRadius = null;
+    boolean received = false;
+    if (peek() != '}') {
+      do {
+        String key = readString();
+        expect(':');
+        if ("name".equals(key)) {
+          name = readString();
+        } else if ("radius".equals(key)) {
+          radius = readNumber();
+        } else if ("orbitRadius".equals(key)) {
+          orbitRadius = readNumber();
+        } else if ("moons".equals(key)) {
+          received = receivePlanet(sink, starName, name, radius, orbitRadius, received);
+          expect('[');
+          if (peek() != ']') {
+            do {
+              readMoon(sink, starName, name);
+            } while (separator(']'));
+          } else {
+            next();
+          }
+        } else {
+          skipValue();
+        }
+      } while (separator('}'));
+    } else {
+      next();
+    }
+    receivePlanet(sink, starName, name, radius, orbitRadius, received);
+  }
+
+  private boolean receivePlanet(CatalogSink sink, String starName, String name, Double radius,
+      Double orbitRadius, boolean received) throws IOException {
+    if (!received) {
+      if (name == null || radius == null || orbitRadius == null) {
+        throw new IOException("A planet needs a name, radius and orbit radius before its moons.");
+      }
+      sink.planet(starName, name, radius, orbitRadius);
+    }
+    return true;
+  }
+
+  private void readMoon(CatalogSink sink, String starName, String planetName) throws IOException {
+    expect('{');
+    String name = null;
+    Double radius = null;
+    Double orbitRadius = null;
+    if (peek() != '}') {
+      do {
+        String key = readString();
+        expect(':');
+        if ("name".equals(key)) {
+          name = readString();
+        } else if ("radius".equals(key)) {
+          radius = readNumber();
+        } else if ("orbitRadius".equals(key)) {
+          orbitRadius = readNumber();
+        } else {
+          skipValue();
+        }
+      } while (separator('}'));
+    } else {
+      next();
+    }
+    if (name == null || radius == null || orbitRadius == null) {
+      throw new IOException("A moon needs a name, radius and orbit radius.");
+    }
+    sink.moon(starName, planetName, name, radius, orbitRadius);
+  }
+
+  /**
+   * Reads a `,` or the closing character.
+   *
+   * @return `true` if another element follows, `false` if the container ended
+   */
+  private boolean separator(char close) throws IOException {
+    int c = next();
+    if (c == ',') {
+      return true;
+    }
+    if (c == close) {
+      return false;
+    }
+    throw unexpected(c);
+  }
+
+  private void skipValue() throws IOException {
+    int c = peek();
+    if (c == '"') {
+      readString();
+    } else if (c == '{' || c == '[') {
+      char close = c == '{' ? '}' : ']';
+      next();
+      if (peek() == close) {
+        next();
+        return;
+      }
+      do {
+        if (close == '}') {
+          readString();
+          expect(':');
+        }
+        skipValue();
+      } while (separator(close));
+    } else {
+      readLiteral();
+    }
+  }
+
+  private String readString() throws IOException {
+    expect('"');
+    StringBuilder sb = new StringBuilder();
+    while (true) {
+      int c = in.read();
+      if (c == -1) {
+        throw new IOException("Unterminated string in JSON.");
+      }
+      if (c == '"') {
+        return sb.toString();
+      }
+      if (c == '\\') {
+        int escaped = in.read();
+        switch (escaped) {
+          case 'b':
+            sb.append('\b');
+            break;
+          case 'f':
+            sb.append('\f');
+            break;
+          case 'n':
+            sb.append('\n');
+            break;
+          case 'r':
+            sb.append('\r');
+            break;
+          case 't':
+            sb.append('\t');
+            break;
+          case 'u':
+            char[] hex = new char[4];
+            for (int i = 0; i < hex.length; i++) {
+              hex[i] = (char) in.read();
+            }
+            sb.append((char) Integer.parseInt(new String(hex), 16));
+            break;
+          case -1:
+            throw new IOException("Unterminated string in JSON.");
+          default:
+            sb.append((char) escaped);
+        }
+      } else {
+        sb.append((char) c);
+      }
+    }
+  }
+
+  private double readNumber() throws IOException {
+    String literal = readLiteral();
+    try {
+      return Double.parseDouble(literal);
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid number in JSON: " + literal, e);
+    }
+  }
+
+  private String readLiteral() throws IOException {
+    peek();
+    StringBuilder sb = new StringBuilder();
+    while (peeked != -1 && (Character.isLetterOrDigit(peeked) || peeked == '-' || peeked == '+'
+        || peeked == '.')) {
+      sb.append((char) peeked);
+      peeked = in.read();
+    }
+    if (sb.length() == 0) {
+      throw unexpected(peeked);
+    }
+    return sb.toString();
+  }
+
+  private void expect(char expected) throws IOException {
+    int c = next();
+    if (c != expected) {
+      throw unexpected(c);
+    }
+  }
+
+  /**
+   * Returns the next non-whitespace character without consuming it.
+   */
+  private int peek() throws IOException {
+    if (peeked == -2 || Character.isWhitespace(peeked)) {
+      do {
+        peeked = in.read();
+      } while (peeked != -1 && Character.isWhitespace(peeked));
+    }
+    return peeked;
+  }
+
+  private int next() throws IOException {
+    int c = peek();
+    peeked = -2;
+    return c;
+  }
+
+  private static IOException unexpected(int c) {
+    return new IOException(c == -1 ? "Unexpected end of JSON." : "Unexpected character in JSON: " + (char) c);
+  }
+
+  private static void writeString(String value, Writer out) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < 0x20) {
+        out.write(String.format("\\u%04x", (int) c));
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+}
@@ -0,0 +1,347 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import model.BloomFilter;
+import model.Moon;
+import model.Planet;
+import model.SolarSystem;
+
+/**
+ * The NameFilters class keeps Bloom filters of the names in the universe, so
+ * lookups of names that do not exist are answered without reaching the solar
+ * systems: one filter of all solar system names, and one filter per solar
+ * system of its planet and moon names.
+ *
+ * <p>The filters are kept up to date by the controller as bodies are counted.
+ * Names cannot be taken out of a Bloom filter, so removals are only counted,
+ * and a filter is rebuilt from the names that are left once more than half of
+ * its names were removed. The body filters of the solar systems of a lazily
+ * indexed catalog are persisted next to it in a sidecar file, and rebuilt while
+ * the catalog is indexed whenever its size or modification time changes, so
+ * the catalog is read once either way.
+ */
+final class NameFilters {
+  static final String SIDECAR_SUFFIX = ".bloom";
+  private static final int MAGIC = 0x53534246;
+  private static final int EXPECTED_SYSTEMS = 1024;
+  private static final int EXPECTED_BODIES = 16;
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+
+  private final Map<String, BloomFilter> bodies;
+  private final Map<String, Integer> removedBodies;
+  private BloomFilter systems;
+  private long removedSystems;
+  private long lookups;
+  private long negatives;
+  private long falsePositives;
+
+  /**
+   * Constructs empty filters.
+   */
+  NameFilters() {
+    this.bodies = new HashMap<>();
+    this.removedBodies = new HashMap<>();
+    this.systems = new BloomFilter(EXPECTED_SYSTEMS, FALSE_POSITIVE_RATE);
+  }
+
+  /**
+   * Adds a solar system whose bodies are counted next, replacing any filter of
+   * its bodies.
+   *
+   * @param name the name of the solar system
+   */
+  void addSystem(String name) {
+    systems.add(name);
+    bodies.put(name, newBodyFilter());
+    removedBodies.remove(name);
+  }
+
+  /**
+   * Adds the name of a solar system whose bodies are not known.
+   *
+   * @param name the name of the solar system
+   */
+  void addSystemName(String name) {
+    systems.add(name);
+  }
+
+  /**
+   * Removes a solar system and the filter of its bodies.
+   *
+   * @param name the name of the solar system
+   */
+  void removeSystem(String name) {
+    removedSystems++;
+    forgetBodies(name);
+  }
+
+  /**
+   * Drops the filter of the bodies of a solar system whose bodies are no longer
+   * known, so lookups of its bodies are no longer ruled out.
+   *
+   * @param name the name of the solar system
+   */
+  void forgetBodies(String name) {
+    bodies.remove(name);
+    removedBodies.remove(name);
+  }
+
+  /**
+   * Adds a planet or moon of a solar system.
+   *
+   * @param system the name of the solar system
+   *
+   * @param kind   `planet` or `moon`
+   *
+   * @param name   the name of the body
+   */
+  void addBody(String system, String kind, String name) {
+    BloomFilter filter = bodies.get(system);
+    if (filter != null) {
+      filter.add(key(kind, name));
+    }
+  }
+
+  /**
+   * Counts a planet or moon removed from a solar system.
+   *
+   * @param system the name of the solar system
+   */
+  void removeBody(String system) {
+    if (bodies.containsKey(system)) {
+      removedBodies.merge(system, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Checks whether a solar system of a name may exist.
+   *
+   * @param name the name of the solar system
+   *
+   * @return `false` if it certainly does not exist
+   */
+  boolean mightContainSystem(String name) {
+    return check(systems.mightContain(name));
+  }
+
+  /**
+   * Returns whether so many solar systems were removed that the filter of their
+   * names should be rebuilt.
+   *
+   * @return `true` if more than half of the names were removed
+   */
+  boolean isSystemFilterStale() {
+    return removedSystems > systems.size() / 2;
+  }
+
+  /**
+   * Rebuilds the filter of solar system names.
+   *
+   * @param names the names of all solar systems
+   */
+  void rebuildSystems(Iterable<String> names) {
+    systems = new BloomFilter(EXPECTED_SYSTEMS, FALSE_POSITIVE_RATE);
+    for (String name : names) {
+      systems.add(name);
+    }
+    removedSystems = 0;
+  }
+
+  /**
+   * Checks whether a solar system may have a planet or moon of a name, first
+   * rebuilding the filter of its bodies if more than half of them were removed.
+   *
+   * @param solarSystem the solar system
+   *
+   * @param kind        `planet` or `moon`
+   *
+   * @param name        the name of the body
+   *
+   * @return `false` if the solar system certainly has no such body
+   */
+  boolean mightContainBody(SolarSystem solarSystem, String kind, String name) {
+    if (solarSystem.getStar() == null) {
+      return true;
+    }
+    String system = solarSystem.getStar().getName();
+    BloomFilter filter = bodies.get(system);
+    if (filter != null && removedBodies.getOrDefault(system, 0) > filter.size() / 2) {
+      addSystem(system);
+      for (Planet planet : solarSystem.getPlanets()) {
+        addBody(system, "planet", planet.getName());
+        for (Moon moon : planet.getMoons()) {
+          addBody(system, "moon", moon.getName());
+        }
+      }
+    }
+    return mightContainBody(system, kind, name);
+  }
+
+  /**
+   * Checks whether a solar system that may not be parsed yet may have a planet
+   * or moon of a name.
+   *
+   * @param system the name of the solar system
+   *
+   * @param kind   `planet` or `moon`
+   *
+   * @param name   the name of the body
+   *
+   * @return `false` if the solar system certainly has no such body
+   */
+  boolean mightContainBody(String system, String kind, String name) {
+    BloomFilter filter = bodies.get(system);
+    return filter == null || check(filter.mightContain(key(kind, name)));
+  }
+
+  /**
+   * Counts a lookup that passed a filter but found nothing.
+   */
+  void recordFalsePositive() {
+    falsePositives++;
+  }
+
+  /**
+   * Opens the index of a lazily indexed catalog together with the body filters
+   * of its solar systems. The filters are read from the sidecar file if it is up
+   * to date; otherwise they are built from the body names the index scan passes
+   * by, and the sidecar file is written. Solar systems that are already parsed
+   * keep their filters.
+   *
+   * @param filePath the path to the catalog file
+   *
+   * @param parsed   tells whether a solar system is already parsed
+   *
+   * @return the index of the catalog
+   *
+   * @throws IOException if the catalog cannot be read
+   */
+  CatalogIndex openCatalog(String filePath, Predicate<String> parsed) throws IOException {
+    Path sidecar = Paths.get(filePath + SIDECAR_SUFFIX);
+    String stamp = CatalogIndex.stamp(Paths.get(filePath));
+    Map<String, BloomFilter> filters = readSidecar(sidecar, stamp);
+    CatalogIndex index;
+    if (filters == null) {
+      Map<String, BloomFilter> built = new LinkedHashMap<>();
+      index = CatalogIndex.open(filePath, (star, kind, name) ->
+          built.computeIfAbsent(star, system -> newBodyFilter()).add(key(kind, name)));
+      for (String name : index.names()) {
+        built.computeIfAbsent(name, system -> newBodyFilter());
+      }
+      writeSidecar(sidecar, stamp, built);
+      filters = built;
+    } else {
+      index = CatalogIndex.open(filePath);
+    }
+    for (String name : index.names()) {
+      systems.add(name);
+      BloomFilter filter = filters.get(name);
+      if (!parsed.test(name) && filter != null) {
+        bodies.put(name, filter);
+        removedBodies.remove(name);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Retrieves the sizes of the filters, their false-positive rates estimated
+   * from the bits that are set, and the lookups answered by them.
+   *
+   * @return the statistics by name
+   */
+  Map<String, Number> getStatistics() {
+    long bodyBytes = 0;
+    double worst = 0;
+    for (BloomFilter filter : bodies.values()) {
+      bodyBytes += filter.estimateBytes();
+      worst = Math.max(worst, filter.getFalsePositiveRate());
+    }
+    Map<String, Number> statistics = new LinkedHashMap<>();
+    statistics.put("systemNames", systems.size());
+    statistics.put("systemFilterBytes", systems.estimateBytes());
+    statistics.put("systemFalsePositiveRate", systems.getFalsePositiveRate());
+    statistics.put("bodyFilters", bodies.size());
+    statistics.put("bodyFilterBytes", bodyBytes);
+    statistics.put("worstBodyFalsePositiveRate", worst);
+    statistics.put("lookups", lookups);
+    statistics.put("definiteNegatives", negatives);
+    statistics.put("falsePositives", falsePositives);
+    statistics.put("observedFalsePositiveRate",
+        negatives + falsePositives == 0 ? 0.0 : (double) falsePositives / (negatives + falsePositives));
+    return statistics;
+  }
+
+  /**
+   * Estimates the heap used by the filters and the names of removed bodies.
+   *
+   * @return the estimated size in bytes
+   */
+  long estimateBytes() {
+    long bytes = 64 + systems.estimateBytes();
+    for (BloomFilter filter : bodies.values()) {
+      bytes += 40 + filter.estimateBytes();
+    }
+    return bytes + 40L * removedBodies.size();
+  }
+
+  private boolean check(boolean mightContain) {
+    lookups++;
+    if (!mightContain) {
+      negatives++;
+    }
+    return mightContain;
+  }
+
+  private static String key(String kind, String name) {
+    return kind.charAt(0) + name;
+  }
+
+  private static BloomFilter newBodyFilter() {
+    return new BloomFilter(EXPECTED_BODIES, FALSE_POSITIVE_RATE);
+  }
+
+  private static Map<String, BloomFilter> readSidecar(Path sidecar, String stamp) {
+    if (!Files.exists(sidecar)) {
+      return null;
+    }
+    Map<String, BloomFilter> filters = new HashMap<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+      if (in.readInt() != MAGIC || !stamp.equals(in.readUTF())) {
+        return null;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        filters.put(in.readUTF(), BloomFilter.readFrom(in));
+      }
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+    return filters;
+  }
+
+  private static void writeSidecar(Path sidecar, String stamp, Map<String, BloomFilter> filters) {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sidecar)))) {
+      out.writeInt(MAGIC);
+      out.writeUTF(stamp);
+      out.writeInt(filters.size());
+      for (Map.Entry<String, BloomFilter> entry : filters.entrySet()) {
+        out.writeUTF(entry.getKey());
+        entry.getValue().writeTo(out);
+      }
+    } catch (IOException e) {
+      // the sidecar is only a cache, the filters are rebuilt on the next start
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The PageFile class divides a file into pages of {@value #PAGE_SIZE} bytes and
+ * reads and writes them through a buffer pool of memory-mapped regions. Each
+ * region holds {@value #PAGES_PER_REGION} consecutive pages; at most a fixed
+ * number of regions are mapped at a time, and the least recently used region
+ * is forced to disk and dropped when another one is needed, so the memory used
+ * does not grow with the file.
+ *
+ * <p>Page 0 is the header: the magic `SSPF`, the format version, the number of
+ * pages, the first free page, {@value #SLOTS} int slots for the root pages of
+ * trees and {@value #SLOTS} long slots for counters. Freed pages are linked
+ * through their first int and reused before the file grows.
+ */
+final class PageFile implements AutoCloseable {
+  static final int PAGE_SIZE = 4096;
+  static final int PAGES_PER_REGION = 64;
+  static final int SLOTS = 4;
+  private static final int MAGIC = 0x53535046;
+  private static final int VERSION = 1;
+  private static final int PAGE_COUNT = 8;
+  private static final int FREE_PAGE = 12;
+  private static final int ROOTS = 16;
+  private static final int COUNTERS = ROOTS + SLOTS * Integer.BYTES;
+
+  private final FileChannel channel;
+  private final int poolRegions;
+  private final LinkedHashMap<Integer, MappedByteBuffer> pool;
+  private final ByteBuffer header;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Opens a page file, creating it if it does not exist.
+   *
+   * @param path      the file
+   *
+   * @param poolBytes the largest number of bytes mapped at a time
+   *
+   * @throws IOException if the file cannot be opened or is not a page file
+   */
+  PageFile(Path path, long poolBytes) throws IOException {
+    this.poolRegions = (int) Math.max(2, Math.min(Integer.MAX_VALUE,
+        poolBytes / ((long) PAGE_SIZE * PAGES_PER_REGION)));
+    this.pool = new LinkedHashMap<>(16, 0.75f, true);
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      boolean created = channel.size() == 0;
+      this.header = page(0);
+      if (created) {
+        header.putInt(0, MAGIC).putInt(4, VERSION).putInt(PAGE_COUNT, 1);
+      } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IOException("Not a page file: " + path);
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a page. Writes to the buffer go straight to the mapped file.
+   * Callers should not keep the buffer, since a region dropped from the pool
+   * stays mapped for as long as a buffer of it is reachable.
+   *
+   * @param page the page number
+   *
+   * @return a little-endian buffer of the page's bytes
+   *
+   * @throws IOException if the page cannot be mapped
+   */
+  ByteBuffer page(int page) throws IOException {
+    int region = page / PAGES_PER_REGION;
+    MappedByteBuffer mapped = pool.get(region);
+    if (mapped != null) {
+      hits++;
+    } else {
+      misses++;
+      if (pool.size() >= poolRegions) {
+        Iterator<Map.Entry<Integer, MappedByteBuffer>> eldest = pool.entrySet().iterator();
+        Map.Entry<Integer, MappedByteBuffer> entry = eldest.next();
+        if (entry.getKey() == 0) {
+          entry = eldest.next();
+        }
+        entry.getValue().force();
+        eldest.remove();
+        evictions++;
+      }
+      mapped = channel.map(FileChannel.MapMode.READ_WRITE, (long) region * PAGES_PER_REGION * PAGE_SIZE,
+          (long) PAGES_PER_REGION * PAGE_SIZE);
+      pool.put(region, mapped);
+    }
+    return mapped.slice(page % PAGES_PER_REGION * PAGE_SIZE, PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Reads a copy of a page from the file without going through the buffer pool,
+   * so it may be called on any thread.
+   *
+   * @param page the page number
+   *
+   * @return a little-endian buffer of the page's bytes
+   *
+   * @throws IOException if the page cannot be read
+   */
+  ByteBuffer read(int page) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    long position = (long) page * PAGE_SIZE;
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        break;
+      }
+    }
+    return buffer.clear();
+  }
+
+  /**
+   * Allocates a page, reusing a freed page if there is one.
+   *
+   * @return the page number
+   *
+   * @throws IOException if the page cannot be mapped
+   */
+  int allocate() throws IOException {
+    int page = header.getInt(FREE_PAGE);
+    if (page != 0) {
+      header.putInt(FREE_PAGE, page(page).getInt(0));
+    } else {
+      page = header.getInt(PAGE_COUNT);
+      header.putInt(PAGE_COUNT, page + 1);
+    }
+    return page;
+  }
+
+  /**
+   * Returns a page to the free list.
+   *
+   * @param page the page number
+   *
+   * @throws IOException if the page cannot be mapped
+   */
+  void free(int page) throws IOException {
+    page(page).putInt(0, header.getInt(FREE_PAGE));
+    header.putInt(FREE_PAGE, page);
+  }
+
+  /**
+   * Returns the root page stored in a slot of the header.
+   *
+   * @param slot the slot from 0 to {@value #SLOTS} - 1
+   *
+   * @return the page number, or 0 if none was stored
+   */
+  int getRoot(int slot) {
+    return header.getInt(ROOTS + slot * Integer.BYTES);
+  }
+
+  /**
+   * Stores a root page in a slot of the header.
+   *
+   * @param slot the slot from 0 to {@value #SLOTS} - 1
+   *
+   * @param page the page number
+   */
+  void setRoot(int slot, int page) {
+    header.putInt(ROOTS + slot * Integer.BYTES, page);
+  }
+
+  /**
+   * Returns a counter stored in the header.
+   *
+   * @param slot the slot from 0 to {@value #SLOTS} - 1
+   *
+   * @return the counter
+   */
+  long getCounter(int slot) {
+    return header.getLong(COUNTERS + slot * Long.BYTES);
+  }
+
+  /**
+   * Stores a counter in the header.
+   *
+   * @param slot  the slot from 0 to {@value #SLOTS} - 1
+   *
+   * @param value the counter
+   */
+  void setCounter(int slot, long value) {
+    header.putLong(COUNTERS + slot * Long.BYTES, value);
+  }
+
+  /**
+   * Returns the pool's hit, miss and eviction counters, the number of mapped
+   * regions and the number of pages in the file.
+   *
+   * @return the statistics by name
+   */
+  Map<String, Long> getStatistics() {
+    Map<String, Long> statistics = new LinkedHashMap<>();
+    statistics.put("poolHits", hits);
+    statistics.put("poolMisses", misses);
+    statistics.put("poolEvictions", evictions);
+    statistics.put("mappedRegions", (long) pool.size());
+    statistics.put("pages", (long) header.getInt(PAGE_COUNT));
+    return statistics;
+  }
+
+  /**
+   * Writes all mapped pages to the disk.
+   */
+  void flush() {
+    for (MappedByteBuffer mapped : pool.values()) {
+      mapped.force();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    pool.clear();
+    channel.close();
+  }
+}
@@ -0,0 +1,322 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.IntStream;
+import model.SolarSystem;
+
+/**
+ * The SegmentedCatalog class saves solar systems to a directory with one
+ * segment file per solar system in the catalog text format, and a manifest
+ * that names the segment of every solar system.
+ *
+ * <p>A save skips the solar systems that still have the modification count
+ * they were saved or loaded with through this catalog. The dirty flag of the
+ * model is neither read nor cleared, so this catalog cannot hide changes from
+ * other writers, such as the eviction of a bounded registry. The other solar
+ * systems are written out and their text is hashed, and a segment is only
+ * rewritten if the hash differs from the one recorded for the name of its
+ * solar system, or from the hash of the segment file if none was recorded
+ * yet. Solar systems that a bounded or disk-backed registry
+ * dropped and parsed again are new objects, and solar systems loaded from
+ * elsewhere are unknown to the catalog, but their segments are not rewritten
+ * unless they changed. Changed segments are written to new files
+ * in parallel, and the manifest is then replaced by an atomic rename, so a
+ * save that fails half way leaves the previous catalog intact. Segments the
+ * new manifest no longer names are deleted afterwards.
+ */
+final class SegmentedCatalog {
+  static final String MANIFEST = "manifest";
+  private static final String HEADER = "segments 1";
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private final Path directory;
+  private final Map<String, String> segments;
+  private final Map<SolarSystem, Long> saved;
+  private final Map<String, Long> hashes;
+  private long generation;
+
+  /**
+   * A solar system that is not known to be unchanged, with its text and the
+   * segment it is saved in.
+   */
+  private static final class Pending {
+    private final String name;
+    private final SolarSystem solarSystem;
+    private byte[] bytes;
+    private long hash;
+    private String segment;
+    private boolean unchanged;
+
+    private Pending(String name, SolarSystem solarSystem) {
+      this.name = name;
+      this.solarSystem = solarSystem;
+    }
+  }
+
+  private SegmentedCatalog(Path directory, Map<String, String> segments, long generation) {
+    this.directory = directory;
+    this.segments = segments;
+    this.saved = new WeakHashMap<>();
+    this.hashes = new HashMap<>();
+    this.generation = generation;
+  }
+
+  /**
+   * Returns whether a path names a segmented catalog: an existing directory, or
+   * a path ending in a separator.
+   *
+   * @param filePath the path
+   *
+   * @return `true` if solar systems are saved to the path as segments
+   */
+  static boolean isSegmented(String filePath) {
+    return filePath.endsWith("/") || filePath.endsWith(File.separator)
+        || Files.isDirectory(Paths.get(filePath));
+  }
+
+  /**
+   * Opens a segmented catalog, creating its directory if it does not exist and
+   * reading its manifest if it has one.
+   *
+   * @param filePath the directory
+   *
+   * @return the catalog
+   *
+   * @throws IOException if the directory cannot be created or the manifest
+   *                     cannot be read
+   */
+  static SegmentedCatalog open(String filePath) throws IOException {
+    Path directory = Paths.get(filePath);
+    Files.createDirectories(directory);
+    Map<String, String> segments = new LinkedHashMap<>();
+    long generation = 0;
+    Path manifest = directory.resolve(MANIFEST);
+    if (Files.exists(manifest)) {
+      try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+        if (!HEADER.equals(reader.readLine())) {
+          throw new IOException("Not a segmented catalog: " + filePath);
+        }
+        generation = Long.parseLong(reader.readLine());
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] parts = line.split(":", 2);
+          segments.put(parts[1], parts[0]);
+        }
+      } catch (RuntimeException e) {
+        throw new IOException("Corrupt manifest of segmented catalog: " + filePath, e);
+      }
+    }
+    return new SegmentedCatalog(directory, segments, generation);
+  }
+
+  /**
+   * Returns whether the catalog is kept in a directory.
+   *
+   * @param filePath the directory
+   *
+   * @return `true` if the paths name the same directory
+   */
+  boolean isAt(String filePath) {
+    return directory.toAbsolutePath().normalize().equals(Paths.get(filePath).toAbsolutePath().normalize());
+  }
+
+  /**
+   * Returns the number of segments named by the manifest.
+   *
+   * @return the number of solar systems in the catalog
+   */
+  int size() {
+    return segments.size();
+  }
+
+  /**
+   * Reads all segments in parallel.
+   *
+   * @return the text of every solar system by name, in manifest order
+   *
+   * @throws IOException if a segment cannot be read
+   */
+  Map<String, String> read() throws IOException {
+    List<String> names = new ArrayList<>(segments.keySet());
+    String[] texts = new String[names.size()];
+    try {
+      IntStream.range(0, texts.length).parallel().forEach(i -> {
+        try {
+          texts[i] = Files.readString(directory.resolve(segments.get(names.get(i))), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    Map<String, String> read = new LinkedHashMap<>();
+    for (int i = 0; i < texts.length; i++) {
+      read.put(names.get(i), texts[i]);
+    }
+    return read;
+  }
+
+  /**
+   * Records solar systems that were just parsed from this catalog, so they are
+   * not rewritten until they change.
+   *
+   * @param solarSystems the parsed solar systems
+   */
+  void loaded(Collection<SolarSystem> solarSystems) {
+    for (SolarSystem solarSystem : solarSystems) {
+      saved.put(solarSystem, solarSystem.getModificationCount());
+      hashes.put(solarSystem.getName(), CatalogIndex.hash(solarSystem.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+  }
+
+  /**
+   * Saves solar systems, rewriting only the segments of those that changed, and
+   * records the modification counts they were saved at. Solar systems without a
+   * star are left out, as in the text format.
+   *
+   * @param solarSystems all solar systems by name
+   *
+   * @return the number of segments written
+   *
+   * @throws IOException if a segment or the manifest cannot be written
+   */
+  int save(Map<String, SolarSystem> solarSystems) throws IOException {
+    generation++;
+    Map<String, String> next = new LinkedHashMap<>();
+    Map<String, Long> nextHashes = new HashMap<>();
+    List<Pending> pending = new ArrayList<>();
+    for (Map.Entry<String, SolarSystem> entry : solarSystems.entrySet()) {
+      SolarSystem solarSystem = entry.getValue();
+      if (solarSystem.getStar() == null) {
+        continue;
+      }
+      String segment = segments.get(entry.getKey());
+      Long modifications = saved.get(solarSystem);
+      if (segment == null || modifications == null || modifications != solarSystem.getModificationCount()) {
+        pending.add(new Pending(entry.getKey(), solarSystem));
+      } else {
+        nextHashes.put(entry.getKey(), hashes.get(entry.getKey()));
+      }
+      next.put(entry.getKey(), segment);
+    }
+    pending.parallelStream().forEach(item -> {
+      item.bytes = item.solarSystem.toString().getBytes(StandardCharsets.UTF_8);
+      item.hash = CatalogIndex.hash(item.bytes);
+      item.segment = segments.get(item.name);
+      Long hash = item.segment == null ? null : hashes.get(item.name);
+      item.unchanged = item.segment != null
+          && (hash != null ? hash == item.hash : hashSegment(item.segment) == item.hash);
+    });
+    List<Pending> changed = new ArrayList<>();
+    for (Pending item : pending) {
+      if (item.unchanged) {
+        item.bytes = null;
+      } else {
+        item.segment = generation + "-" + changed.size() + SEGMENT_SUFFIX;
+        changed.add(item);
+      }
+      next.put(item.name, item.segment);
+      nextHashes.put(item.name, item.hash);
+    }
+    try {
+      changed.parallelStream().forEach(item -> write(directory.resolve(item.segment), item.bytes));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    writeManifest(next);
+    segments.clear();
+    segments.putAll(next);
+    hashes.clear();
+    hashes.putAll(nextHashes);
+    deleteUnnamedSegments();
+    for (Pending item : pending) {
+      saved.put(item.solarSystem, item.solarSystem.getModificationCount());
+    }
+    return changed.size();
+  }
+
+  /**
+   * Writes the manifest to a temporary file, forces it to the disk and renames
+   * it over the previous manifest in one step.
+   */
+  private void writeManifest(Map<String, String> next) throws IOException {
+    Path temporary = directory.resolve(MANIFEST + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      writer.write(Long.toString(generation));
+      writer.newLine();
+      for (Map.Entry<String, String> entry : next.entrySet()) {
+        writer.write(entry.getValue() + ":" + entry.getKey());
+        writer.newLine();
+      }
+    }
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Deletes the segments of earlier saves, including those left by a save that
+   * failed before its manifest was written.
+   */
+  private void deleteUnnamedSegments() throws IOException {
+    Set<String> named = new HashSet<>(segments.values());
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        if (!named.contains(file.getFileName().toString())) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Hashes a segment file of an earlier save, returning 0 if it cannot be read.
+   */
+  private long hashSegment(String segment) {
+    try {
+      return CatalogIndex.hash(Files.readAllBytes(directory.resolve(segment)));
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static void write(Path segment, byte[] bytes) {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,357 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+import model.MemoryEstimator;
+import model.SolarSystem;
+
+/**
+ * The SolarSystemCache class is a memory-bounded map of solar systems. It keeps
+ * the solar systems that fit in the memory budget resident and evicts the
+ * others to one catalog text file per system in a store directory, from where
+ * they are read back transparently on access.
+ *
+ * <p>The cache remembers the modification count each file was written or
+ * read at, and an evicted solar system is only written if its count moved on
+ * since. The dirty flag of the model is not used, since other writers, such
+ * as a segmented save, clear it without updating the files of the cache.
+ */
+final class SolarSystemCache extends AbstractMap<String, SolarSystem> {
+
+  /**
+   * The order in which resident solar systems are evicted.
+   */
+  enum EvictionPolicy {
+    /** Evicts the least recently accessed solar system first. */
+    LRU,
+    /** Evicts the earliest added or loaded solar system first. */
+    FIFO
+  }
+
+  private final long memoryBudget;
+  private final Path storeDirectory;
+  private final LinkedHashMap<String, SolarSystem> resident;
+  private final Map<String, Long> estimates;
+  private final Map<String, Long> stored;
+  private final Set<String> evicted;
+  private String lastAccessed;
+  private long residentBytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long writeBacks;
+
+  /**
+   * Constructs a new cache.
+   *
+   * @param memoryBudget   the estimated number of bytes resident systems may use
+   *
+   * @param policy         the eviction policy
+   *
+   * @param storeDirectory the directory evicted systems are written to
+   *
+   * @throws IOException if the store directory cannot be created
+   */
+  SolarSystemCache(long memoryBudget, EvictionPolicy policy, Path storeDirectory) throws IOException {
+    if (memoryBudget <= 0) {
+      throw new IllegalArgumentException("Memory budget must be positive.");
+    }
+    this.memoryBudget = memoryBudget;
+    this.storeDirectory = Files.createDirectories(storeDirectory);
+    this.resident = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+    this.estimates = new HashMap<>();
+    this.stored = new HashMap<>();
+    this.evicted = new HashSet<>();
+  }
+
+  @Override
+  public SolarSystem get(Object key) {
+    refreshLastAccessed();
+    SolarSystem solarSystem = resident.get(key);
+    if (solarSystem != null) {
+      hits++;
+      evictIfNeeded((String) key);
+    } else if (evicted.contains(key)) {
+      misses++;
+      String name = (String) key;
+      solarSystem = read(name);
+      stored.put(name, solarSystem.getModificationCount());
+      evicted.remove(name);
+      admit(name, solarSystem);
+    } else {
+      return null;
+    }
+    lastAccessed = (String) key;
+    return solarSystem;
+  }
+
+  /**
+   * Adds or replaces a solar system. An evicted solar system that is replaced
+   * is not read back from the store.
+   *
+   * @param key         the name of the solar system
+   *
+   * @param solarSystem the solar system
+   *
+   * @return the previous solar system if it was resident, null otherwise
+   */
+  @Override
+  public SolarSystem put(String key, SolarSystem solarSystem) {
+    refreshLastAccessed();
+    SolarSystem previous = discard(key);
+    admit(key, solarSystem);
+    lastAccessed = key;
+    return previous;
+  }
+
+  @Override
+  public SolarSystem remove(Object key) {
+    SolarSystem previous = evicted.contains(key) ? read((String) key) : null;
+    SolarSystem discarded = discard(key);
+    return previous != null ? previous : discarded;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return resident.containsKey(key) || evicted.contains(key);
+  }
+
+  @Override
+  public int size() {
+    return resident.size() + evicted.size();
+  }
+
+  /**
+   * Returns a view of all entries. An iterator walks the resident solar systems
+   * and then the evicted ones, which it reads from the store one at a time as
+   * they are reached, without making them resident again, so only one evicted
+   * solar system is on the heap at a time.
+   *
+   * @return the entries of all resident and evicted solar systems
+   */
+  @Override
+  public Set<Map.Entry<String, SolarSystem>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Map.Entry<String, SolarSystem>> iterator() {
+        return entryIterator();
+      }
+
+      @Override
+      public int size() {
+        return SolarSystemCache.this.size();
+      }
+    };
+  }
+
+  /**
+   * Returns the names of all resident and evicted solar systems, without
+   * reading any of them.
+   *
+   * @return the names
+   */
+  @Override
+  public Set<String> keySet() {
+    Set<String> names = new LinkedHashSet<>(resident.keySet());
+    names.addAll(evicted);
+    return Collections.unmodifiableSet(names);
+  }
+
+  /**
+   * Returns the resident solar systems, without reading the evicted ones.
+   *
+   * @return an unmodifiable view of the resident solar systems by name
+   */
+  Map<String, SolarSystem> residents() {
+    return Collections.unmodifiableMap(resident);
+  }
+
+  /**
+   * Returns a reader of every solar system, without reading any of them. A
+   * resident solar system is returned as it is, and an evicted one is parsed
+   * from its file, which the reader may do on any thread as long as the file
+   * is not rewritten or deleted.
+   *
+   * @return the readers by name
+   */
+  Map<String, Supplier<SolarSystem>> readers() {
+    Map<String, Supplier<SolarSystem>> readers = new LinkedHashMap<>();
+    for (Map.Entry<String, SolarSystem> entry : resident.entrySet()) {
+      SolarSystem solarSystem = entry.getValue();
+      readers.put(entry.getKey(), () -> solarSystem);
+    }
+    for (String name : evicted) {
+      Path file = file(name);
+      readers.put(name, () -> read(name, file));
+    }
+    return readers;
+  }
+
+  /**
+   * Returns the hit, miss, eviction and write-back counters, together with the
+   * number of resident systems and their estimated size.
+   *
+   * @return the statistics by name
+   */
+  Map<String, Long> getStatistics() {
+    refreshLastAccessed();
+    Map<String, Long> statistics = new LinkedHashMap<>();
+    statistics.put("hits", hits);
+    statistics.put("misses", misses);
+    statistics.put("evictions", evictions);
+    statistics.put("writeBacks", writeBacks);
+    statistics.put("resident", (long) resident.size());
+    statistics.put("evicted", (long) evicted.size());
+    statistics.put("residentBytes", residentBytes);
+    statistics.put("memoryBudget", memoryBudget);
+    return statistics;
+  }
+
+  /**
+   * Iterates over a copy of the resident entries and of the evicted names, so
+   * accesses during the iteration do not disturb it.
+   */
+  private Iterator<Map.Entry<String, SolarSystem>> entryIterator() {
+    List<Map.Entry<String, SolarSystem>> residentEntries = new ArrayList<>(resident.size());
+    for (Map.Entry<String, SolarSystem> entry : resident.entrySet()) {
+      residentEntries.add(new SimpleImmutableEntry<>(entry));
+    }
+    List<String> evictedNames = new ArrayList<>(evicted);
+    return new Iterator<>() {
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        return index < residentEntries.size() + evictedNames.size();
+      }
+
+      @Override
+      public Map.Entry<String, SolarSystem> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int position = index++;
+        if (position < residentEntries.size()) {
+          return residentEntries.get(position);
+        }
+        String name = evictedNames.get(position - residentEntries.size());
+        SolarSystem solarSystem = evicted.contains(name) ? read(name) : resident.get(name);
+        return new SimpleImmutableEntry<>(name, solarSystem);
+      }
+    };
+  }
+
+  /**
+   * Drops a solar system and its file from the cache without reading it.
+   *
+   * @return the solar system if it was resident, null otherwise
+   */
+  private SolarSystem discard(Object key) {
+    SolarSystem previous = resident.remove(key);
+    if (previous != null) {
+      residentBytes -= estimates.remove(key);
+    }
+    evicted.remove(key);
+    if (stored.remove(key) != null) {
+      try {
+        Files.deleteIfExists(file((String) key));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return previous;
+  }
+
+  private void admit(String name, SolarSystem solarSystem) {
+    long bytes = MemoryEstimator.estimate(solarSystem);
+    resident.put(name, solarSystem);
+    estimates.put(name, bytes);
+    residentBytes += bytes;
+    evictIfNeeded(name);
+  }
+
+  /**
+   * Re-estimates the most recently accessed solar system, since the caller may
+   * have added or removed bodies since it was handed out.
+   */
+  private void refreshLastAccessed() {
+    if (lastAccessed == null || !resident.containsKey(lastAccessed)) {
+      return;
+    }
+    long bytes = MemoryEstimator.estimate(resident.get(lastAccessed));
+    residentBytes += bytes - estimates.put(lastAccessed, bytes);
+    lastAccessed = null;
+  }
+
+  private void evictIfNeeded(String keep) {
+    Iterator<Map.Entry<String, SolarSystem>> iterator = resident.entrySet().iterator();
+    while (residentBytes > memoryBudget && iterator.hasNext()) {
+      Map.Entry<String, SolarSystem> entry = iterator.next();
+      if (entry.getKey().equals(keep)) {
+        continue;
+      }
+      write(entry.getKey(), entry.getValue());
+      iterator.remove();
+      residentBytes -= estimates.remove(entry.getKey());
+      evicted.add(entry.getKey());
+      evictions++;
+    }
+  }
+
+  /**
+   * Writes an evicted solar system to the store, unless its file was written
+   * or read at its current modification count.
+   */
+  private void write(String name, SolarSystem solarSystem) {
+    long modifications = solarSystem.getModificationCount();
+    Long written = stored.get(name);
+    if (written != null && written == modifications) {
+      return;
+    }
+    String content = solarSystem.getStar() == null ? "" : solarSystem.toString();
+    try {
+      Files.write(file(name), content.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    stored.put(name, modifications);
+    writeBacks++;
+  }
+
+  private SolarSystem read(String name) {
+    return read(name, file(name));
+  }
+
+  private static SolarSystem read(String name, Path file) {
+    SolarSystem[] solarSystem = new SolarSystem[1];
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      CatalogParser.parse(reader, parsed -> solarSystem[0] = parsed);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return solarSystem[0] != null ? solarSystem[0] : new SolarSystem(name, null);
+  }
+
+  private Path file(String name) {
+    return storeDirectory.resolve(URLEncoder.encode(name, StandardCharsets.UTF_8) + ".txt");
+  }
+}
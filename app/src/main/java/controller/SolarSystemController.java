@@ -1,20 +1,59 @@
 package controller;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import model.AlignmentSearch;
+import model.BodyLocationIndex;
+import model.BodyStatistics;
+import model.EphemerisCache;
+import model.MemoryEstimator;
 import model.Moon;
+import model.NBodySimulation;
+import model.NGramIndex;
+import model.NameDictionary;
+import model.OffHeapBodyStore;
+import model.OrbitConflictDetector;
+import model.OrbitIntervalIndex;
 import model.Planet;
+import model.PrefixIndex;
+import model.QuantileSketch;
 import model.SolarSystem;
+import model.SolarSystemHistory;
+import model.SolarSystemVersion;
+import model.TopK;
+import model.UniverseSnapshot;
+import model.VersionStore;
 import model.Star;
 import view.Menu;
 
@@ -23,8 +62,31 @@ import view.Menu;
  * systems, and display information.
  */
 public class SolarSystemController {
-  private SolarSystem currentSolarSystem;
+  private static final double SECONDS_PER_DAY = 86400;
+  private static final double EPHEMERIS_TOLERANCE = 1000;
+  private static final long EPHEMERIS_MEMORY = 16 << 20;
+  private static final double DISTRIBUTION_ACCURACY = 0.01;
+  private static final String PLANET_RADIUS = "planet radius";
+  private static final String PLANET_ORBIT_RADIUS = "planet orbit radius";
+  private static final String MOON_RADIUS = "moon radius";
+  private static final String MOON_ORBIT_RADIUS = "moon orbit radius";
+  private static final int SUGGESTIONS = 3;
+
+  private String currentSolarSystemName;
   private Map<String, SolarSystem> solarSystems;
+  private CatalogIndex lazyCatalog;
+  private CatalogWatcher catalogWatcher;
+  private SegmentedCatalog segmentedCatalog;
+  private Map<String, SolarSystemHistory> histories;
+  private VersionStore versions;
+  private Map<Object, OrbitIntervalIndex> orbitIndices;
+  private EphemerisCache ephemerides;
+  private Map<String, QuantileSketch> distributions;
+  private BodyStatistics universeStatistics;
+  private Map<String, PrefixIndex> nameIndices;
+  private Map<String, NGramIndex> spellingIndices;
+  private BodyLocationIndex bodyLocations;
+  private NameFilters nameFilters;
   private Scanner scanner;
   private Menu menuInstance;
 
@@ -35,6 +97,22 @@ public class SolarSystemController {
   public SolarSystemController() {
     this.menuInstance = new Menu(this);
     this.solarSystems = new HashMap<>();
+    this.histories = new HashMap<>();
+    this.versions = new VersionStore();
+    this.ephemerides = new EphemerisCache(EPHEMERIS_TOLERANCE, EPHEMERIS_MEMORY);
+    this.universeStatistics = new BodyStatistics();
+    this.bodyLocations = new BodyLocationIndex();
+    this.nameFilters = new NameFilters();
+    this.nameIndices = new LinkedHashMap<>();
+    this.spellingIndices = new HashMap<>();
+    for (String kind : List.of("star", "planet", "moon")) {
+      nameIndices.put(kind, new PrefixIndex());
+      spellingIndices.put(kind, new NGramIndex());
+    }
+    this.distributions = new LinkedHashMap<>();
+    for (String quantity : List.of(PLANET_RADIUS, PLANET_ORBIT_RADIUS, MOON_RADIUS, MOON_ORBIT_RADIUS)) {
+      distributions.put(quantity, new QuantileSketch(DISTRIBUTION_ACCURACY));
+    }
     this.scanner = new Scanner(System.in, StandardCharsets.UTF_8.name());
 
   }
@@ -78,8 +156,61 @@ public class SolarSystemController {
       case "10":
         menuInstance.displayAllSolarSystems();
         break;
+      case "11":
+        menuInstance.displayMemoryFootprint();
+        break;
+      case "12":
+        menuInstance.undo();
+        break;
+      case "13":
+        menuInstance.redo();
+        break;
+      case "14":
+        menuInstance.saveSolarSystems();
+        break;
+      case "15":
+        menuInstance.importSolarSystems();
+        break;
+      case "16":
+        menuInstance.findOrbitConflicts();
+        break;
+      case "17":
+        menuInstance.simulate();
+        break;
+      case "18":
+        menuInstance.recordSimulation();
+        break;
+      case "19":
+        menuInstance.displayRecordedTrajectory();
+        break;
+      case "20":
+        menuInstance.findAlignments();
+        break;
+      case "21":
+        menuInstance.displayBodyPosition();
+        break;
+      case "22":
+        menuInstance.rankBodies();
+        break;
+      case "23":
+        menuInstance.displayStatistics();
+        break;
+      case "24":
+        menuInstance.findNamesByPrefix();
+        break;
+      case "25":
+        menuInstance.locateBody();
+        break;
+      case "26":
+        menuInstance.storeBodiesOffHeap();
+        break;
+      case "27":
+        menuInstance.findPlanetsByOrbit();
+        break;
       case "q":
         menuInstance.exitingProgram();
+        stopWatchingSolarSystemFile();
+        closeDiskStore();
         scanner.close();
         return false;
       default:
@@ -96,6 +227,7 @@ public class SolarSystemController {
     while (continueRunning) {
       menuInstance.displayMenu();
       String choice = menuInstance.getUserChoice();
+      applySolarSystemFileChanges();
       continueRunning = handleUserChoice(choice);
     }
 
@@ -128,11 +260,15 @@ public class SolarSystemController {
    * @param starRadius The radius of the central star.
    */
   public void createSolarSystem(String starName, double starRadius) {
-    if (starRadius <= 20000) {
+    if (!isValidName(starName)) {
+      menuInstance.displayInvalidBodyName();
+      return;
+    }
+    if (!isValidStarRadius(starRadius)) {
       menuInstance.invalidStarRadius();
       return;
     }
-    if (solarSystems.containsKey(starName)) {
+    if (hasSolarSystem(starName)) {
       menuInstance.displayStarNameExists();
       return;
     }
@@ -140,6 +276,7 @@ public class SolarSystemController {
       Star star = new Star(starName, starRadius);
       SolarSystem solarSystem = new SolarSystem(star);
       solarSystems.put(starName, solarSystem);
+      countBodies(solarSystem, 1);
       menuInstance.displaySolarSystemCreated(starName);
     } catch (Exception e) {
       menuInstance.errorDisplay(e.getMessage());
@@ -154,7 +291,23 @@ public class SolarSystemController {
    * @return The `SolarSystem` object if found, `null` if not.
    */
   public SolarSystem getSolarSystem(String name) {
-    return this.solarSystems.get(name);
+    SolarSystem solarSystem = this.solarSystems.get(name);
+    if (solarSystem == null) {
+      solarSystem = loadLazySolarSystem(name);
+    }
+    return solarSystem;
+  }
+
+  /**
+   * Looks up the current solar system by name on every call, since a bounded or
+   * disk-backed registry may have written out and dropped the object that was
+   * selected.
+   *
+   * @return The current solar system, or `null` if none is selected or it no
+   *         longer exists.
+   */
+  private SolarSystem getCurrentSolarSystem() {
+    return currentSolarSystemName == null ? null : getSolarSystem(currentSolarSystemName);
   }
 
   /**
@@ -167,7 +320,7 @@ public class SolarSystemController {
   public boolean selectSolarSystem(String name) {
     SolarSystem newCurrentSolarSystem = getSolarSystem(name);
     if (newCurrentSolarSystem != null) {
-      this.currentSolarSystem = newCurrentSolarSystem;
+      this.currentSolarSystemName = name;
       return true;
     } else {
       return false;
@@ -198,6 +351,11 @@ public class SolarSystemController {
         return;
       }
 
+      if (!isValidName(planetName)) {
+        menuInstance.displayInvalidBodyName();
+        return;
+      }
+
       SolarSystem solarSystem = getSolarSystem(solarSystemName);
       if (solarSystem == null) {
         menuInstance.displaySolarSystemNotFound();
@@ -208,19 +366,14 @@ public class SolarSystemController {
       double orbitRadius = Double.parseDouble(orbitRadiusStr);
 
       Star parentStar = solarSystem.getStar();
-      double minRadius = 1000.00;
-      double maxRadius = parentStar.getRadius() / 10;
 
-      if (radius <= minRadius || radius >= maxRadius) {
-        menuInstance.displayInvalidPlanetRadius(maxRadius);
+      if (!isValidPlanetRadius(parentStar, radius)) {
+        menuInstance.displayInvalidPlanetRadius(parentStar.getRadius() / 10);
         return;
       }
 
-      double minOrbitRadius = parentStar.getRadius() * 10;
-      double maxOrbitRadius = parentStar.getRadius() * 20;
-
-      if (orbitRadius < minOrbitRadius || orbitRadius > maxOrbitRadius) {
-        menuInstance.displayInvalidOrbitRadius(minOrbitRadius, maxOrbitRadius);
+      if (!isValidPlanetOrbitRadius(parentStar, orbitRadius)) {
+        menuInstance.displayInvalidOrbitRadius(parentStar.getRadius() * 10, parentStar.getRadius() * 20);
         return;
       }
 
@@ -229,8 +382,18 @@ public class SolarSystemController {
         return;
       }
 
+      String conflict = findOrbitConflict(solarSystem, radius, orbitRadius);
+      if (conflict != null) {
+        menuInstance.displayOrbitConflict(conflict);
+        return;
+      }
+
       Planet planet = new Planet(planetName, radius, orbitRadius, parentStar);
+      SolarSystemHistory history = history(solarSystemName, solarSystem);
       solarSystem.addPlanet(planet);
+      indexOrbit(solarSystem, planetName, radius, orbitRadius);
+      countPlanet(planet, 1);
+      record(solarSystemName, history, history.current().withPlanetAdded(planet));
       menuInstance.displayPlanetAddedSuccessfully();
 
     } catch (NumberFormatException nfe) {
@@ -260,31 +423,30 @@ public class SolarSystemController {
    */
   public void addMoon(String solarSystemName, String planetName, String moonName, double radius, double orbitRadius) {
     try {
+      if (!isValidName(moonName)) {
+        menuInstance.displayInvalidBodyName();
+        return;
+      }
+
       SolarSystem solarSystem = getSolarSystem(solarSystemName);
       if (solarSystem == null) {
         menuInstance.displaySolarSystemNotFound();
         return;
       }
 
-      Planet parentPlanet = solarSystem.getPlanets().stream()
-          .filter(planet -> planet.getName().equals(planetName))
-          .findFirst()
-          .orElse(null);
+      Planet parentPlanet = resolvePlanet(solarSystem, planetName);
 
       if (parentPlanet == null) {
-        menuInstance.displayPlanetNotFound();
+        menuInstance.displayPlanetNotFound(suggestAmong(planetName, planetNames(solarSystem)));
         return;
       }
 
-      double minRadius = 10;
-      double maxRadius = parentPlanet.getRadius() / 17;
-
-      if (radius <= minRadius || radius >= maxRadius) {
-        menuInstance.displayInvalidMoonRadius(minRadius, maxRadius);
+      if (!isValidMoonRadius(parentPlanet, radius)) {
+        menuInstance.displayInvalidMoonRadius(10, parentPlanet.getRadius() / 17);
         return;
       }
 
-      if (orbitRadius < parentPlanet.getRadius() * 5) {
+      if (!isValidMoonOrbitRadius(parentPlanet, orbitRadius)) {
         menuInstance.displayInvalidMoonOrbitRadius();
         return;
       }
@@ -294,8 +456,18 @@ public class SolarSystemController {
         return;
       }
 
+      String conflict = findOrbitConflict(parentPlanet, radius, orbitRadius);
+      if (conflict != null) {
+        menuInstance.displayOrbitConflict(conflict);
+        return;
+      }
+
       Moon moon = new Moon(moonName, radius, orbitRadius, parentPlanet);
+      SolarSystemHistory history = history(solarSystemName, solarSystem);
       parentPlanet.addMoon(moon);
+      indexOrbit(parentPlanet, moonName, radius, orbitRadius);
+      countMoon(parentPlanet, moon, 1);
+      record(solarSystemName, history, history.current().withMoonAdded(planetName, moon));
       menuInstance.displayMoonAddedSuccessfully();
 
     } catch (Exception e) {
@@ -320,17 +492,18 @@ public class SolarSystemController {
         return;
       }
 
-      Planet planetToRemove = solarSystem.getPlanets().stream()
-          .filter(planet -> planet.getName().equals(planetName))
-          .findFirst()
-          .orElse(null);
+      Planet planetToRemove = resolvePlanet(solarSystem, planetName);
 
       if (planetToRemove == null) {
-        menuInstance.displayPlanetNotFound();
+        menuInstance.displayPlanetNotFound(suggestAmong(planetName, planetNames(solarSystem)));
         return;
       }
 
+      SolarSystemHistory history = history(solarSystemName, solarSystem);
       solarSystem.removePlanet(planetToRemove);
+      unindexOrbit(solarSystem, planetName, planetToRemove.getRadius(), planetToRemove.getOrbitRadius());
+      countPlanet(planetToRemove, -1);
+      record(solarSystemName, history, history.current().withPlanetRemoved(planetName));
       menuInstance.displayPlanetRemovedSuccessfully();
     } catch (Exception e) {
       menuInstance.displayErrorRemovingPlanet(e.getMessage());
@@ -356,23 +529,25 @@ public class SolarSystemController {
         return;
       }
 
-      Planet planet = solarSystem.getPlanetByName(planetName);
+      Planet planet = resolvePlanet(solarSystem, planetName);
       if (planet == null) {
-        menuInstance.displayPlanetNotFound();
+        menuInstance.displayPlanetNotFound(suggestAmong(planetName, planetNames(solarSystem)));
         return;
       }
 
-      Moon moonToRemove = planet.getMoons().stream()
-          .filter(moon -> moon.getName().equals(moonName))
-          .findFirst()
-          .orElse(null);
+      Moon moonToRemove = resolveMoon(planet, moonName);
 
       if (moonToRemove == null) {
-        menuInstance.displayMoonNotFound();
+        menuInstance.displayMoonNotFound(suggestAmong(moonName,
+            planet.getMoons().stream().map(Moon::getName).collect(Collectors.toList())));
         return;
       }
 
+      SolarSystemHistory history = history(solarSystemName, solarSystem);
       planet.removeMoon(moonName);
+      unindexOrbit(planet, moonName, moonToRemove.getRadius(), moonToRemove.getOrbitRadius());
+      countMoon(planet, moonToRemove, -1);
+      record(solarSystemName, history, history.current().withMoonRemoved(planetName, moonName));
       menuInstance.displayMoonRemovedSuccessfully();
     } catch (Exception e) {
       menuInstance.displayErrorRemovingMoon(e.getMessage());
@@ -385,12 +560,17 @@ public class SolarSystemController {
    * Displays a message to inform the user.
    */
   public void removeStar() {
+    SolarSystem currentSolarSystem = getCurrentSolarSystem();
     if (currentSolarSystem == null) {
       menuInstance.displayNoSolarSystemSelected();
       return;
     }
-    currentSolarSystem.getPlanets().clear();
+    SolarSystemHistory history = history(currentSolarSystemName, currentSolarSystem);
+    countBodies(currentSolarSystem, -1);
+    currentSolarSystem.clearPlanets();
     currentSolarSystem.setStar(null);
+    forgetOrbits(currentSolarSystem);
+    record(currentSolarSystemName, history, history.current().withStarRemoved());
     menuInstance.displayStarRemovedSuccessfully();
   }
 
@@ -401,6 +581,7 @@ public class SolarSystemController {
    * @return A sorted list of planets.
    */
   public List<Planet> getPlanetsOrderedBySize() {
+    SolarSystem currentSolarSystem = getCurrentSolarSystem();
     if (currentSolarSystem == null) {
       menuInstance.displayNoSolarSystemSelected();
       return Collections.emptyList();
@@ -419,6 +600,7 @@ public class SolarSystemController {
    * @return A sorted list of planets.
    */
   public List<Planet> getPlanetsOrderedByOrbitRadius() {
+    SolarSystem currentSolarSystem = getCurrentSolarSystem();
     if (currentSolarSystem == null) {
       menuInstance.displayNoSolarSystemSelected();
       return Collections.emptyList();
@@ -431,153 +613,1942 @@ public class SolarSystemController {
   }
 
   /**
-   * Checks if a planet name is unique within a given solar system.
+   * Lists the star, planet or moon names of all solar systems that start with a
+   * prefix, for completing names typed at the menu. Star names still waiting in
+   * a lazily indexed file are included.
    *
-   * @param solarSystem The solar system to check within.
+   * @param kind   One of `star`, `planet` and `moon`.
    *
-   * @param name        The name of the planet to check for uniqueness.
+   * @param prefix The typed start of the name.
    *
-   * @return `true` if the name is unique, `false` otherwise.
+   * @param limit  The largest number of names to list.
+   *
+   * @return At most `limit` names in sorted order, or an empty list if the kind
+   *         is unknown.
    */
-  private boolean isPlanetNameUnique(SolarSystem solarSystem, String name) {
-    if (solarSystem == null) {
-      menuInstance.displayInvalidSolarSystem();
-      return false;
+  public List<String> completeName(String kind, String prefix, int limit) {
+    PrefixIndex index = nameIndices.get(kind);
+    if (index == null) {
+      return Collections.emptyList();
     }
-    return solarSystem.getPlanets().stream().noneMatch(planet -> planet.getName().equals(name));
+    List<String> names = index.startingWith(prefix, limit);
+    if (kind.equals("star") && lazyCatalog != null) {
+      Set<String> merged = new TreeSet<>(names);
+      for (String name : lazyCatalog.names()) {
+        if (name.startsWith(prefix)) {
+          merged.add(name);
+        }
+      }
+      names = merged.stream().limit(limit).collect(Collectors.toList());
+    }
+    return names;
   }
 
   /**
-   * Checks if a moon name is unique within a given parent planet.
+   * Suggests the star, planet or moon names of all solar systems that are
+   * closest to a misspelt name, for messages about names that were not found.
    *
-   * @param parentPlanet The parent planet to check within.
+   * @param kind  One of `star`, `planet` and `moon`.
    *
-   * @param name         The name of the moon to check for uniqueness.
+   * @param name  The name that was not found.
    *
-   * @return `true` if the name is unique, `false` otherwise.
+   * @param limit The largest number of names to suggest.
+   *
+   * @return At most `limit` names, the closest first, or an empty list if the
+   *         kind is unknown.
    */
-  private boolean isMoonNameUnique(Planet parentPlanet, String name) {
-    if (parentPlanet == null) {
-      menuInstance.displayInvalidParentPlanet();
-      return false;
+  public List<String> suggestNames(String kind, String name, int limit) {
+    NGramIndex index = spellingIndices.get(kind);
+    return index == null ? Collections.emptyList() : index.closest(name, limit);
+  }
+
+  /**
+   * Finds the star, planet and moon names of all solar systems that start with
+   * a prefix and displays them.
+   *
+   * @param prefix The start of the names.
+   *
+   * @param limit  The largest number of names to list of each kind.
+   *
+   * @return The names of each kind in sorted order.
+   */
+  public Map<String, List<String>> findNamesByPrefix(String prefix, int limit) {
+    Map<String, List<String>> names = new LinkedHashMap<>();
+    for (String kind : nameIndices.keySet()) {
+      names.put(kind, completeName(kind, prefix, limit));
     }
-    return parentPlanet.getMoons().stream().noneMatch(moon -> moon.getName().equals(name));
+    menuInstance.displayNamesByPrefix(prefix, names);
+    return names;
   }
 
   /**
-   * Sorts the planets and moons within a specified solar system based on the
-   * provided comparators for planets and moons.
+   * Finds the solar systems and planets that planets and moons of a name belong
+   * to and displays them. The locations are kept up to date on every change,
+   * so this takes constant time however many solar systems there are. Of a
+   * lazily indexed file, only the solar systems whose Bloom filters may hold
+   * the name are parsed.
    *
-   * @param solarSystemName  The name of the target solar system.
+   * @param name The planet or moon name.
    *
-   * @param planetComparator Comparator for sorting planets.
+   * @return The locations of planets of that name followed by those of moons.
+   */
+  public List<BodyLocationIndex.Location> locateBody(String name) {
+    loadLazySolarSystemsWithBody(name);
+    List<BodyLocationIndex.Location> planets = bodyLocations.findPlanet(name);
+    List<BodyLocationIndex.Location> moons = bodyLocations.findMoon(name);
+    menuInstance.displayBodyLocations(name, planets, moons);
+    List<BodyLocationIndex.Location> locations = new ArrayList<>(planets);
+    locations.addAll(moons);
+    return locations;
+  }
+
+  /**
+   * Copies the bodies of all solar systems into an off-heap store, writes it to
+   * a file and maps the file back, then displays how much heap the object model
+   * and the store take.
    *
-   * @param moonComparator   Comparator for sorting moons.
+   * @param filePath The file to write the store to.
+   *
+   * @return The mapped store, or `null` if the file could not be written.
    */
-  public void sortSolarSystem(String solarSystemName, Comparator<Planet> planetComparator,
-      Comparator<Moon> moonComparator) {
+  public OffHeapBodyStore storeBodiesOffHeap(String filePath) {
+    loadAllLazySolarSystems();
+    long start = System.nanoTime();
+    OffHeapBodyStore store = OffHeapBodyStore.of(solarSystems.values());
+    Path path = Paths.get(filePath);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      store.writeTo(channel);
+    } catch (IOException e) {
+      menuInstance.displayErrorSavingSolarSystems(e.getMessage());
+      return null;
+    }
+    OffHeapBodyStore mapped;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      mapped = OffHeapBodyStore.map(channel);
+    } catch (IOException e) {
+      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+      return null;
+    }
+    menuInstance.displayOffHeapStore(filePath, mapped.size(), MemoryEstimator.estimate(solarSystems.values()),
+        store.getOffHeapBytes(), store.estimateHeapBytes(), System.nanoTime() - start);
+    return mapped;
+  }
+
+  /**
+   * Retrieves the running totals of a solar system's planets and moons and
+   * displays them. The totals are kept up to date by the solar system, so no
+   * body is visited.
+   *
+   * @param solarSystemName The name of the solar system.
+   *
+   * @return The statistics, or `null` if the solar system was not found.
+   */
+  public BodyStatistics getSolarSystemStatistics(String solarSystemName) {
     SolarSystem solarSystem = getSolarSystem(solarSystemName);
     if (solarSystem == null) {
-      menuInstance.displayInvalidSolarSystem();
+      menuInstance.displaySolarSystemNotFound();
+      return null;
+    }
+    menuInstance.displayStatistics(solarSystemName, solarSystem.getStatistics());
+    return solarSystem.getStatistics();
+  }
+
+  /**
+   * Retrieves the running totals of the planets and moons of all solar systems
+   * and displays them. The totals are updated whenever the controller adds or
+   * removes a body, so no solar system is visited.
+   *
+   * @return The statistics.
+   */
+  public BodyStatistics getUniverseStatistics() {
+    loadAllLazySolarSystems();
+    menuInstance.displayStatistics("All " + solarSystems.size() + " solar systems", universeStatistics);
+    return universeStatistics;
+  }
+
+  /**
+   * Finds the largest planets of all solar systems without sorting them all.
+   *
+   * @param count         The number of planets to find.
+   *
+   * @param byOrbitRadius Whether to rank by orbit radius instead of radius.
+   *
+   * @return At most `count` planets, from the largest to the smallest.
+   */
+  public List<Planet> getLargestPlanets(int count, boolean byOrbitRadius) {
+    loadAllLazySolarSystems();
+    List<Planet> planets = TopK.largest(solarSystems.values(), SolarSystem::getPlanets,
+        Comparator.comparingDouble(byOrbitRadius ? Planet::getOrbitRadius : Planet::getRadius), count);
+    menuInstance.displayLargestPlanets(planets, byOrbitRadius);
+    return planets;
+  }
+
+  /**
+   * Finds the largest moons of all solar systems without sorting them all.
+   *
+   * @param count         The number of moons to find.
+   *
+   * @param byOrbitRadius Whether to rank by orbit radius instead of radius.
+   *
+   * @return At most `count` moons, from the largest to the smallest.
+   */
+  public List<Moon> getLargestMoons(int count, boolean byOrbitRadius) {
+    loadAllLazySolarSystems();
+    List<Moon> moons = TopK.largest(solarSystems.values(),
+        solarSystem -> solarSystem.getPlanets().stream()
+            .flatMap(planet -> planet.getMoons().stream())
+            .collect(Collectors.toList()),
+        Comparator.comparingDouble(byOrbitRadius ? Moon::getOrbitRadius : Moon::getRadius), count);
+    menuInstance.displayLargestMoons(moons, byOrbitRadius);
+    return moons;
+  }
+
+  /**
+   * Estimates a percentile of the radii or orbit radii of all planets or moons.
+   * The estimate comes from a sketch that is updated whenever a body is added or
+   * removed, so no body is visited.
+   *
+   * @param quantity   One of `planet radius`, `planet orbit radius`,
+   *                   `moon radius` and `moon orbit radius`.
+   *
+   * @param percentile The percentile from 0 to 100.
+   *
+   * @return The percentile within the sketch's relative accuracy, or NaN if
+   *         there are no such bodies or the quantity is unknown.
+   */
+  public double getPercentile(String quantity, double percentile) {
+    QuantileSketch sketch = distribution(quantity);
+    if (sketch == null) {
+      return Double.NaN;
+    }
+    double value = sketch.quantile(percentile / 100);
+    menuInstance.displayPercentile(quantity, percentile, value, sketch.getRelativeAccuracy());
+    return value;
+  }
+
+  /**
+   * Estimates a histogram of the radii or orbit radii of all planets or moons,
+   * with equally wide bins between the smallest and the largest value.
+   *
+   * @param quantity One of `planet radius`, `planet orbit radius`,
+   *                 `moon radius` and `moon orbit radius`.
+   *
+   * @param bins     The number of bins.
+   *
+   * @return The approximate number of bodies in each bin, or an empty array if
+   *         the quantity is unknown.
+   */
+  public long[] getHistogram(String quantity, int bins) {
+    QuantileSketch sketch = distribution(quantity);
+    if (sketch == null) {
+      return new long[0];
+    }
+    double lower = sketch.quantile(0);
+    double upper = sketch.quantile(1);
+    long[] histogram = sketch.histogram(lower, upper, bins);
+    menuInstance.displayHistogram(quantity, lower, upper, histogram);
+    return histogram;
+  }
+
+  /**
+   * Returns the sketch of a quantity over all solar systems, parsing the solar
+   * systems of a lazily indexed file first so they are counted.
+   *
+   * @param quantity The name of the quantity.
+   *
+   * @return The sketch, or `null` if the quantity is unknown.
+   */
+  private QuantileSketch distribution(String quantity) {
+    QuantileSketch sketch = distributions.get(quantity);
+    if (sketch == null) {
+      menuInstance.displayError("Unknown quantity: " + quantity);
+      return null;
+    }
+    loadAllLazySolarSystems();
+    return sketch;
+  }
+
+  /**
+   * Adds the star and bodies of a solar system to the name indices, universe
+   * totals and distribution sketches, or removes them.
+   *
+   * @param solarSystem The solar system.
+   *
+   * @param sign        1 to add the bodies, -1 to remove them.
+   */
+  private void countBodies(SolarSystem solarSystem, int sign) {
+    if (solarSystem.getStar() == null) {
       return;
     }
-    solarSystem.sortPlanetsAndMoons(planetComparator, moonComparator);
-    menuInstance.displaySolarSystemSorted();
+    countName("star", solarSystem.getStar().getName(), sign);
+    if (sign > 0) {
+      nameFilters.addSystem(solarSystem.getStar().getName());
+    } else {
+      nameFilters.removeSystem(solarSystem.getStar().getName());
+    }
+    for (Planet planet : solarSystem.getPlanets()) {
+      countPlanet(planet, sign);
+    }
   }
 
   /**
-   * Retrieves a list of all solar systems stored in the controller.
+   * Adds a planet and its moons to the name indices, universe totals and
+   * distribution sketches, or removes them.
    *
-   * @return A list of all solar systems.
+   * @param planet The planet.
+   *
+   * @param sign   1 to add the bodies, -1 to remove them.
    */
-  public List<SolarSystem> getAllSolarSystems() {
-    if (solarSystems.isEmpty()) {
-      menuInstance.displayNoSolarSystems();
-      return Collections.emptyList();
+  private void countPlanet(Planet planet, int sign) {
+    countName("planet", planet.getName(), sign);
+    if (sign > 0) {
+      universeStatistics.addPlanet(planet);
+      bodyLocations.addPlanet(planet.getParentStar().getNameId(), planet.getNameId());
+      nameFilters.addBody(planet.getParentStar().getName(), "planet", planet.getName());
+    } else {
+      universeStatistics.removePlanet(planet);
+      nameFilters.removeBody(planet.getParentStar().getName());
+      bodyLocations.removePlanet(planet.getParentStar().getNameId(), planet.getNameId());
+    }
+    count(PLANET_RADIUS, planet.getRadius(), sign);
+    count(PLANET_ORBIT_RADIUS, planet.getOrbitRadius(), sign);
+    for (Moon moon : planet.getMoons()) {
+      countMoon(planet, moon, sign);
     }
-    List<SolarSystem> allSolarSystems = new ArrayList<>(solarSystems.values());
-    menuInstance.displayAllSolarSystems(allSolarSystems);
-    return allSolarSystems;
   }
 
   /**
-   * Loads solar system data from a file and populates the controller with the
-   * data.
-   * Parses the data to recreate solar systems, planets, and moons.
+   * Adds a moon to the name indices, universe totals and distribution
+   * sketches, or removes it.
    *
-   * @param filePath The path to the file containing solar system data.
+   * @param planet The planet the moon orbits.
+   *
+   * @param moon   The moon.
+   *
+   * @param sign   1 to add the moon, -1 to remove it.
    */
-  public void loadSolarSystemFromFile(String filePath) {
-    try (BufferedReader reader = new BufferedReader(
-        new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
-      String line;
-      SolarSystem currentSolarSystem = null;
-      Planet currentPlanet = null;
-
-      while ((line = reader.readLine()) != null) {
-        int depth = countLeadingHyphens(line);
-        String[] parts = line.split(":");
-
-        if (depth == 0) {
-          String starName = parts[0];
-          double starRadius = Double.parseDouble(parts[1]);
-          currentSolarSystem = new SolarSystem(starName, new Star(starName, starRadius));
-          addSolarSystem(currentSolarSystem, false);
-        } else if (depth == 1 && currentSolarSystem != null) {
-          String planetName = parts[0].substring(1);
-          double radius = Double.parseDouble(parts[1]);
-          double orbitRadius = Double.parseDouble(parts[2]);
-          currentPlanet = new Planet(planetName, radius, orbitRadius, currentSolarSystem.getStar());
-          currentSolarSystem.addPlanet(currentPlanet);
-        } else if (depth == 2 && currentPlanet != null) {
-          String moonName = parts[0].substring(2);
-          double radius = Double.parseDouble(parts[1]);
-          double orbitRadius = Double.parseDouble(parts[2]);
-          Moon moon = new Moon(moonName, radius, orbitRadius, currentPlanet);
-          currentPlanet.addMoon(moon);
-        }
-      }
-      menuInstance.displaySolarSystemLoaded();
-    } catch (Exception e) {
-      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+  private void countMoon(Planet planet, Moon moon, int sign) {
+    countName("moon", moon.getName(), sign);
+    int solarSystemId = planet.getParentStar().getNameId();
+    if (sign > 0) {
+      universeStatistics.addMoon(moon);
+      bodyLocations.addMoon(solarSystemId, planet.getNameId(), moon.getNameId());
+      nameFilters.addBody(planet.getParentStar().getName(), "moon", moon.getName());
+    } else {
+      universeStatistics.removeMoon(moon);
+      nameFilters.removeBody(planet.getParentStar().getName());
+      bodyLocations.removeMoon(solarSystemId, planet.getNameId(), moon.getNameId());
+    }
+    count(MOON_RADIUS, moon.getRadius(), sign);
+    count(MOON_ORBIT_RADIUS, moon.getOrbitRadius(), sign);
+  }
+
+  private void countName(String kind, String name, int sign) {
+    if (sign > 0) {
+      nameIndices.get(kind).add(name);
+      spellingIndices.get(kind).add(name);
+    } else {
+      nameIndices.get(kind).remove(name);
+      spellingIndices.get(kind).remove(name);
+    }
+  }
+
+  /**
+   * Suggests names close to a name that was not found among some names, such
+   * as the planets of one solar system. Only those names are checked, so the
+   * suggestions do not depend on how common a name is in other solar systems.
+   */
+  private static List<String> suggestAmong(String name, Collection<String> present) {
+    return NGramIndex.closestAmong(name, present, SUGGESTIONS);
+  }
+
+  private static List<String> planetNames(SolarSystem solarSystem) {
+    return solarSystem.getPlanets().stream().map(Planet::getName).collect(Collectors.toList());
+  }
+
+  private void count(String quantity, double value, int sign) {
+    if (sign > 0) {
+      distributions.get(quantity).add(value);
+    } else {
+      distributions.get(quantity).remove(value);
     }
   }
 
   /**
-   * Counts the number of leading hyphens ('-') in a string.
+   * Checks if a name can be written to the catalog text format, where lines
+   * starting with '-' are planets and moons and ':' separates the fields.
+   *
+   * @param name The name of a star, planet or moon.
    *
-   * @param str The input string.
-   * @return The count of leading hyphens.
+   * @return `true` if the name is not blank, does not start with '-' and contains
+   *         no ':' or line break, `false` otherwise.
    */
-  private int countLeadingHyphens(String str) {
-    int count = 0;
-    for (char c : str.toCharArray()) {
-      if (c == '-') {
-        count++;
-      } else {
-        break;
-      }
+  private static boolean isValidName(String name) {
+    return name != null && !name.trim().isEmpty() && !name.startsWith("-")
+        && name.indexOf(':') < 0 && name.indexOf('\n') < 0 && name.indexOf('\r') < 0;
+  }
+
+  /**
+   * Checks if a star radius is valid for a new solar system.
+   *
+   * @param radius The radius of the star.
+   *
+   * @return `true` if the radius is larger than 20000 km, `false` otherwise.
+   */
+  private static boolean isValidStarRadius(double radius) {
+    return radius > 20000;
+  }
+
+  /**
+   * Checks if a planet radius is valid for the given parent star.
+   *
+   * @param parentStar The parent star.
+   *
+   * @param radius     The radius of the planet.
+   *
+   * @return `true` if the radius is between 1000 km and a tenth of the star's
+   *         radius, `false` otherwise.
+   */
+  private static boolean isValidPlanetRadius(Star parentStar, double radius) {
+    return radius > 1000.00 && radius < parentStar.getRadius() / 10;
+  }
+
+  /**
+   * Checks if a planet orbit radius is valid for the given parent star.
+   *
+   * @param parentStar  The parent star.
+   *
+   * @param orbitRadius The orbit radius of the planet.
+   *
+   * @return `true` if the orbit radius is between 10 and 20 times the star's
+   *         radius, `false` otherwise.
+   */
+  private static boolean isValidPlanetOrbitRadius(Star parentStar, double orbitRadius) {
+    return orbitRadius >= parentStar.getRadius() * 10 && orbitRadius <= parentStar.getRadius() * 20;
+  }
+
+  /**
+   * Checks if a moon radius is valid for the given parent planet.
+   *
+   * @param parentPlanet The parent planet.
+   *
+   * @param radius       The radius of the moon.
+   *
+   * @return `true` if the radius is between 10 km and a seventeenth of the
+   *         planet's radius, `false` otherwise.
+   */
+  private static boolean isValidMoonRadius(Planet parentPlanet, double radius) {
+    return radius > 10 && radius < parentPlanet.getRadius() / 17;
+  }
+
+  /**
+   * Checks if a moon orbit radius is valid for the given parent planet.
+   *
+   * @param parentPlanet The parent planet.
+   *
+   * @param orbitRadius  The orbit radius of the moon.
+   *
+   * @return `true` if the orbit radius is at least 5 times the planet's radius,
+   *         `false` otherwise.
+   */
+  private static boolean isValidMoonOrbitRadius(Planet parentPlanet, double orbitRadius) {
+    return orbitRadius >= parentPlanet.getRadius() * 5;
+  }
+
+  /**
+   * Checks if a planet name is unique within a given solar system. A name the
+   * Bloom filter of the solar system's bodies rules out is accepted without
+   * looking at the planets.
+   *
+   * @param solarSystem The solar system to check within.
+   *
+   * @param name        The name of the planet to check for uniqueness.
+   *
+   * @return `true` if the name is unique, `false` otherwise.
+   */
+  private boolean isPlanetNameUnique(SolarSystem solarSystem, String name) {
+    if (solarSystem == null) {
+      menuInstance.displayInvalidSolarSystem();
+      return false;
+    }
+    if (!nameFilters.mightContainBody(solarSystem, "planet", name)) {
+      return true;
+    }
+    boolean unique = resolvePlanet(solarSystem, name) == null;
+    if (unique) {
+      nameFilters.recordFalsePositive();
     }
-    return count;
+    return unique;
   }
 
   /**
-   * Adds a solar system to the controller's list of solar systems, performing
-   * checks for null solar systems and name uniqueness.
+   * Checks if a moon name is unique within a given parent planet. A name the
+   * Bloom filter of the solar system's bodies rules out is accepted without
+   * looking at the moons.
    *
-   * @param solarSystem The solar system to add.
+   * @param parentPlanet The parent planet to check within.
+   *
+   * @param name         The name of the moon to check for uniqueness.
+   *
+   * @return `true` if the name is unique, `false` otherwise.
    */
-  public void addSolarSystem(SolarSystem solarSystem, boolean showMessage) {
-    try {
-      if (solarSystem == null) {
-        menuInstance.displayNullSolarSystemError();
-        return;
-      }
-      if (solarSystems.containsKey(solarSystem.getName())) {
-        menuInstance.displayDuplicateSolarSystemError();
-        return;
+  private boolean isMoonNameUnique(Planet parentPlanet, String name) {
+    if (parentPlanet == null) {
+      menuInstance.displayInvalidParentPlanet();
+      return false;
+    }
+    Star star = parentPlanet.getParentStar();
+    if (star != null && !nameFilters.mightContainBody(star.getName(), "moon", name)) {
+      return true;
+    }
+    boolean unique = resolveMoon(parentPlanet, name) == null;
+    if (unique && star != null && hasNoMoon(getSolarSystem(star.getName()), name)) {
+      nameFilters.recordFalsePositive();
+    }
+    return unique;
+  }
+
+  /**
+   * Checks that no planet of a solar system has a moon of a name. The body
+   * filters hold the moons of a whole solar system, so a filter only erred if
+   * this holds.
+   */
+  private static boolean hasNoMoon(SolarSystem solarSystem, String name) {
+    return solarSystem == null
+        || solarSystem.getPlanets().stream().allMatch(planet -> resolveMoon(planet, name) == null);
+  }
+
+  /**
+   * Finds a planet of a solar system by name. The name is resolved once to its
+   * id in the name dictionary, and a name no body ever had is rejected without
+   * looking at the planets.
+   *
+   * @param solarSystem The solar system.
+   *
+   * @param name        The planet name.
+   *
+   * @return The planet, or `null` if the solar system has no planet of that
+   *         name.
+   */
+  private static Planet resolvePlanet(SolarSystem solarSystem, String name) {
+    int nameId = NameDictionary.find(name);
+    return nameId < 0 ? null : solarSystem.getPlanet(nameId);
+  }
+
+  /**
+   * Finds a moon of a planet by name, resolving the name to its id once.
+   *
+   * @param planet The planet.
+   *
+   * @param name   The moon name.
+   *
+   * @return The moon, or `null` if the planet has no moon of that name.
+   */
+  private static Moon resolveMoon(Planet planet, String name) {
+    int nameId = NameDictionary.find(name);
+    return nameId < 0 ? null : planet.getMoon(nameId);
+  }
+
+  /**
+   * Rejects new planets and moons whose orbital band, the orbit radius plus and
+   * minus the body's radius, overlaps the band of a sibling. Each parent keeps
+   * an interval index of its children's bands, built on first use and updated on
+   * every add and remove, so each check takes logarithmic time.
+   */
+  public void enableOrbitSpacingCheck() {
+    if (orbitIndices == null) {
+      orbitIndices = new WeakHashMap<>();
+    }
+  }
+
+  /**
+   * Finds a planet whose orbital band overlaps the band of a new planet.
+   *
+   * @param solarSystem The solar system of the new planet.
+   *
+   * @param radius      The radius of the new planet.
+   *
+   * @param orbitRadius The orbit radius of the new planet.
+   *
+   * @return The name of an overlapping planet, or `null` if there is none or the
+   *         check is disabled.
+   */
+  private String findOrbitConflict(SolarSystem solarSystem, double radius, double orbitRadius) {
+    if (orbitIndices == null) {
+      return null;
+    }
+    return orbitIndices.computeIfAbsent(solarSystem, key -> OrbitIntervalIndex.of(solarSystem))
+        .findOverlap(radius, orbitRadius);
+  }
+
+  /**
+   * Finds a moon whose orbital band overlaps the band of a new moon.
+   *
+   * @param parentPlanet The parent planet of the new moon.
+   *
+   * @param radius       The radius of the new moon.
+   *
+   * @param orbitRadius  The orbit radius of the new moon.
+   *
+   * @return The name of an overlapping moon, or `null` if there is none or the
+   *         check is disabled.
+   */
+  private String findOrbitConflict(Planet parentPlanet, double radius, double orbitRadius) {
+    if (orbitIndices == null) {
+      return null;
+    }
+    return orbitIndices.computeIfAbsent(parentPlanet, key -> OrbitIntervalIndex.of(parentPlanet))
+        .findOverlap(radius, orbitRadius);
+  }
+
+  /**
+   * Adds the band of a new body to the interval index of its parent, if the
+   * parent has one.
+   *
+   * @param parent      The solar system or planet the body was added to.
+   *
+   * @param name        The name of the body.
+   *
+   * @param radius      The radius of the body.
+   *
+   * @param orbitRadius The orbit radius of the body.
+   */
+  private void indexOrbit(Object parent, String name, double radius, double orbitRadius) {
+    OrbitIntervalIndex index = orbitIndices == null ? null : orbitIndices.get(parent);
+    if (index != null) {
+      index.add(name, radius, orbitRadius);
+    }
+  }
+
+  /**
+   * Removes the band of a removed body from the interval index of its parent, if
+   * the parent has one.
+   *
+   * @param parent      The solar system or planet the body was removed from.
+   *
+   * @param name        The name of the body.
+   *
+   * @param radius      The radius of the body.
+   *
+   * @param orbitRadius The orbit radius of the body.
+   */
+  private void unindexOrbit(Object parent, String name, double radius, double orbitRadius) {
+    OrbitIntervalIndex index = orbitIndices == null ? null : orbitIndices.get(parent);
+    if (index != null) {
+      index.remove(name, radius, orbitRadius);
+    }
+  }
+
+  /**
+   * Drops the interval index of a solar system whose planets were replaced, so
+   * it is rebuilt on the next check.
+   *
+   * @param solarSystem The solar system.
+   */
+  private void forgetOrbits(SolarSystem solarSystem) {
+    if (orbitIndices != null) {
+      orbitIndices.remove(solarSystem);
+    }
+  }
+
+  /**
+   * Finds all pairs of planets around the same star and moons around the same
+   * planet whose orbital bands overlap, and displays them.
+   *
+   * @param solarSystemName The name of the solar system to check, or `null` to
+   *                        check all solar systems in parallel.
+   *
+   * @return The conflicts found.
+   */
+  public List<OrbitConflictDetector.Conflict> findOrbitConflicts(String solarSystemName) {
+    List<OrbitConflictDetector.Conflict> conflicts;
+    if (solarSystemName == null) {
+      loadAllLazySolarSystems();
+      conflicts = OrbitConflictDetector.detect(solarSystems.values());
+    } else {
+      SolarSystem solarSystem = getSolarSystem(solarSystemName);
+      if (solarSystem == null) {
+        menuInstance.displaySolarSystemNotFound();
+        return Collections.emptyList();
+      }
+      conflicts = OrbitConflictDetector.detect(solarSystem);
+    }
+    menuInstance.displayOrbitConflicts(conflicts);
+    return conflicts;
+  }
+
+  /**
+   * Sorts the planets and moons within a specified solar system based on the
+   * provided comparators for planets and moons.
+   *
+   * @param solarSystemName  The name of the target solar system.
+   *
+   * @param planetComparator Comparator for sorting planets.
+   *
+   * @param moonComparator   Comparator for sorting moons.
+   */
+  public void sortSolarSystem(String solarSystemName, Comparator<Planet> planetComparator,
+      Comparator<Moon> moonComparator) {
+    SolarSystem solarSystem = getSolarSystem(solarSystemName);
+    if (solarSystem == null) {
+      menuInstance.displayInvalidSolarSystem();
+      return;
+    }
+    SolarSystemHistory history = history(solarSystemName, solarSystem);
+    solarSystem.sortPlanetsAndMoons(planetComparator, moonComparator);
+    record(solarSystemName, history, history.current().withOrderOf(solarSystem));
+    menuInstance.displaySolarSystemSorted();
+  }
+
+  /**
+   * Undoes the last change made to a solar system through the controller.
+   *
+   * @param solarSystemName The name of the target solar system.
+   */
+  public void undo(String solarSystemName) {
+    SolarSystem solarSystem = getSolarSystem(solarSystemName);
+    SolarSystemHistory history = histories.get(solarSystemName);
+    if (solarSystem == null || history == null || !history.canUndo()) {
+      menuInstance.displayNothingToUndo();
+      return;
+    }
+    SolarSystemVersion current = history.current();
+    SolarSystemVersion version = history.undo();
+    restore(solarSystem, current, version);
+    versions.commit(solarSystemName, version);
+    menuInstance.displayChangeUndone();
+  }
+
+  /**
+   * Redoes the last undone change of a solar system.
+   *
+   * @param solarSystemName The name of the target solar system.
+   */
+  public void redo(String solarSystemName) {
+    SolarSystem solarSystem = getSolarSystem(solarSystemName);
+    SolarSystemHistory history = histories.get(solarSystemName);
+    if (solarSystem == null || history == null || !history.canRedo()) {
+      menuInstance.displayNothingToRedo();
+      return;
+    }
+    SolarSystemVersion current = history.current();
+    SolarSystemVersion version = history.redo();
+    restore(solarSystem, current, version);
+    versions.commit(solarSystemName, version);
+    menuInstance.displayChangeRedone();
+  }
+
+  /**
+   * Changes a solar system from one version of its history to another. With the
+   * same star only the planets and moons that differ are rebuilt and moved in
+   * the indices; otherwise all bodies are recounted.
+   *
+   * @param solarSystem The solar system.
+   *
+   * @param current     The version the solar system matches now.
+   *
+   * @param version     The version to change to.
+   */
+  private void restore(SolarSystem solarSystem, SolarSystemVersion current, SolarSystemVersion version) {
+    if (current.getStar() != version.getStar()) {
+      countBodies(solarSystem, -1);
+      version.restore(solarSystem);
+      countBodies(solarSystem, 1);
+      forgetOrbits(solarSystem);
+      return;
+    }
+    version.applyTo(solarSystem, current, new SolarSystemVersion.Changes() {
+      @Override
+      public void planetAdded(Planet planet) {
+        countPlanet(planet, 1);
+        indexOrbit(solarSystem, planet.getName(), planet.getRadius(), planet.getOrbitRadius());
+      }
+
+      @Override
+      public void planetRemoved(Planet planet) {
+        countPlanet(planet, -1);
+        unindexOrbit(solarSystem, planet.getName(), planet.getRadius(), planet.getOrbitRadius());
+      }
+
+      @Override
+      public void moonAdded(Planet planet, Moon moon) {
+        countMoon(planet, moon, 1);
+        indexOrbit(planet, moon.getName(), moon.getRadius(), moon.getOrbitRadius());
+      }
+
+      @Override
+      public void moonRemoved(Planet planet, Moon moon) {
+        countMoon(planet, moon, -1);
+        unindexOrbit(planet, moon.getName(), moon.getRadius(), moon.getOrbitRadius());
+      }
+    });
+  }
+
+  /**
+   * Returns the undo history of a solar system, starting it with a snapshot of
+   * the solar system's current state if it has none yet. Must be called before
+   * the solar system is changed, since it also hands the current state to
+   * pinned snapshots that still read the solar system from where it is kept.
+   *
+   * @param solarSystemName The name of the solar system.
+   *
+   * @param solarSystem     The solar system.
+   *
+   * @return The history of the solar system.
+   */
+  private SolarSystemHistory history(String solarSystemName, SolarSystem solarSystem) {
+    SolarSystemHistory history = histories.computeIfAbsent(solarSystemName,
+        name -> new SolarSystemHistory(SolarSystemVersion.of(solarSystem)));
+    versions.resolve(solarSystemName, history::current);
+    return history;
+  }
+
+  /**
+   * Records a new version of a solar system after it was changed, both for undo
+   * and for readers that pin snapshots.
+   *
+   * @param solarSystemName The name of the changed solar system.
+   *
+   * @param history         The history of the solar system.
+   *
+   * @param version         The version after the change.
+   */
+  private void record(String solarSystemName, SolarSystemHistory history, SolarSystemVersion version) {
+    if (version != history.current()) {
+      history.record(version);
+      versions.commit(solarSystemName, version);
+    }
+  }
+
+  /**
+   * Simulates the gravitational motion of a solar system, or of all solar
+   * systems together, starting from circular orbits. The solar systems
+   * themselves are not changed.
+   *
+   * @param solarSystemName The name of the solar system to simulate, or `null`
+   *                        to simulate all solar systems.
+   *
+   * @param steps           The number of time steps.
+   *
+   * @param timeStep        The length of a time step in seconds.
+   *
+   * @return The simulation after the last step, or `null` if the solar system
+   *         was not found.
+   */
+  public NBodySimulation simulate(String solarSystemName, int steps, double timeStep) {
+    List<SolarSystem> simulated = simulatedSolarSystems(solarSystemName);
+    if (simulated == null) {
+      return null;
+    }
+    NBodySimulation simulation = new NBodySimulation(simulated);
+    double initialEnergy = simulation.getEnergy();
+    long start = System.nanoTime();
+    simulation.step(steps, timeStep);
+    long elapsed = System.nanoTime() - start;
+    menuInstance.displaySimulation(simulation, steps, elapsed, initialEnergy);
+    return simulation;
+  }
+
+  /**
+   * Simulates a solar system, or all solar systems together, and streams the
+   * positions and velocities of all bodies after every step to a binary file
+   * that can be queried with `displayTrajectory`. The first sample is the
+   * starting state.
+   *
+   * @param solarSystemName The name of the solar system to simulate, or `null`
+   *                        to simulate all solar systems.
+   *
+   * @param steps           The number of time steps.
+   *
+   * @param timeStep        The length of a time step in seconds.
+   *
+   * @param filePath        The path to the file to write.
+   */
+  public void recordSimulation(String solarSystemName, int steps, double timeStep, String filePath) {
+    List<SolarSystem> simulated = simulatedSolarSystems(solarSystemName);
+    if (simulated == null) {
+      return;
+    }
+    NBodySimulation simulation = new NBodySimulation(simulated);
+    long start = System.nanoTime();
+    try (TrajectoryWriter writer = new TrajectoryWriter(Paths.get(filePath), simulation, timeStep)) {
+      writer.append();
+      for (int step = 0; step < steps; step++) {
+        simulation.step(1, timeStep);
+        writer.append();
+      }
+    } catch (Exception e) {
+      menuInstance.displayErrorSavingSolarSystems(e.getMessage());
+      return;
+    }
+    menuInstance.displayTrajectoryRecorded(filePath, simulation.getBodyCount(), steps + 1,
+        System.nanoTime() - start);
+  }
+
+  /**
+   * Displays the recorded positions of one body between two points in time.
+   * Only the parts of the file that hold the body's positions in that range are
+   * read.
+   *
+   * @param filePath The path to a file written by `recordSimulation`.
+   *
+   * @param bodyPath The path of the body, such as `Sun/Earth/Moon`.
+   *
+   * @param fromTime The start of the range in simulated seconds, inclusive.
+   *
+   * @param toTime   The end of the range in simulated seconds, inclusive.
+   */
+  public void displayTrajectory(String filePath, String bodyPath, double fromTime, double toTime) {
+    try (TrajectoryReader reader = new TrajectoryReader(Paths.get(filePath))) {
+      int body = reader.indexOf(bodyPath);
+      if (body < 0) {
+        menuInstance.displayError("No body \"" + bodyPath + "\" in the file.");
+        return;
+      }
+      long from = reader.sampleAt(fromTime);
+      long to = reader.sampleAfter(toTime);
+      double[] times = new double[(int) Math.max(0, to - from)];
+      for (int i = 0; i < times.length; i++) {
+        times[i] = reader.getTime(from + i);
+      }
+      menuInstance.displayTrajectory(bodyPath, times, reader.read(body, 0, from, to),
+          reader.read(body, 1, from, to), reader.read(body, 2, from, to));
+    } catch (Exception e) {
+      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+    }
+  }
+
+  /**
+   * Finds when planets of a solar system line up, with their angles computed
+   * analytically from the periods that follow from their orbit radii. Time 0 is
+   * the starting layout of the gravity simulation.
+   *
+   * @param solarSystemName  The name of the solar system.
+   *
+   * @param planetNames      The names of the planets that must line up.
+   *
+   * @param toleranceDegrees The largest angle between the planets.
+   *
+   * @param horizonDays      How many days ahead to search.
+   *
+   * @param oppositeSides    Whether planets on opposite sides of the star count
+   *                         as lined up.
+   *
+   * @return The alignment windows, or an empty list if the input is invalid.
+   */
+  public List<AlignmentSearch.Window> findAlignments(String solarSystemName, List<String> planetNames,
+      double toleranceDegrees, double horizonDays, boolean oppositeSides) {
+    SolarSystem solarSystem = getSolarSystem(solarSystemName);
+    if (solarSystem == null || solarSystem.getStar() == null) {
+      menuInstance.displaySolarSystemNotFound();
+      return Collections.emptyList();
+    }
+    try {
+      List<AlignmentSearch.Window> windows = new AlignmentSearch(solarSystem)
+          .search(planetNames, toleranceDegrees, horizonDays * SECONDS_PER_DAY, oppositeSides);
+      menuInstance.displayAlignments(Collections.singletonMap(planetNames, windows));
+      return windows;
+    } catch (IllegalArgumentException e) {
+      menuInstance.displayError(e.getMessage());
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Finds when any combination of the given number of planets of a solar system
+   * lines up, searching the combinations in parallel.
+   *
+   * @param solarSystemName  The name of the solar system.
+   *
+   * @param setSize          The number of planets that must line up.
+   *
+   * @param toleranceDegrees The largest angle between the planets.
+   *
+   * @param horizonDays      How many days ahead to search.
+   *
+   * @param oppositeSides    Whether planets on opposite sides of the star count
+   *                         as lined up.
+   *
+   * @return The alignment windows of each combination that lines up.
+   */
+  public Map<List<String>, List<AlignmentSearch.Window>> findAllAlignments(String solarSystemName, int setSize,
+      double toleranceDegrees, double horizonDays, boolean oppositeSides) {
+    SolarSystem solarSystem = getSolarSystem(solarSystemName);
+    if (solarSystem == null || solarSystem.getStar() == null) {
+      menuInstance.displaySolarSystemNotFound();
+      return Collections.emptyMap();
+    }
+    try {
+      Map<List<String>, List<AlignmentSearch.Window>> alignments = new AlignmentSearch(solarSystem)
+          .searchAll(setSize, toleranceDegrees, horizonDays * SECONDS_PER_DAY, oppositeSides);
+      menuInstance.displayAlignments(alignments);
+      return alignments;
+    } catch (IllegalArgumentException e) {
+      menuInstance.displayError(e.getMessage());
+      return Collections.emptyMap();
+    }
+  }
+
+  /**
+   * Bounds the memory of the ephemeris cache that answers position queries.
+   *
+   * @param memoryBudget The largest estimated size of the cached positions in
+   *                     bytes.
+   */
+  public void setEphemerisMemory(long memoryBudget) {
+    ephemerides = new EphemerisCache(EPHEMERIS_TOLERANCE, memoryBudget);
+  }
+
+  /**
+   * Displays where a planet or moon is at a given time relative to its star, on
+   * the circular orbits of the gravity simulation's starting layout. Positions
+   * are interpolated from cached positions within 1 km of the exact position.
+   *
+   * @param solarSystemName The name of the solar system.
+   *
+   * @param planetName      The name of the planet.
+   *
+   * @param moonName        The name of the moon, or `null` for the planet.
+   *
+   * @param timeDays        The time in days after the starting layout.
+   *
+   * @return The x, y and z coordinates in m, or `null` if the body was not
+   *         found.
+   */
+  public double[] getBodyPosition(String solarSystemName, String planetName, String moonName, double timeDays) {
+    SolarSystem solarSystem = getSolarSystem(solarSystemName);
+    if (solarSystem == null || solarSystem.getStar() == null) {
+      menuInstance.displaySolarSystemNotFound();
+      return null;
+    }
+    try {
+      EphemerisCache.Handle body = ephemerides.handle(solarSystem, planetName, moonName);
+      double[] position = ephemerides.position(body, timeDays * SECONDS_PER_DAY);
+      menuInstance.displayBodyPosition(position, body.getErrorBound());
+      return position;
+    } catch (IllegalArgumentException e) {
+      menuInstance.displayError(e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Returns the counters of the ephemeris cache.
+   *
+   * @return The counters by name.
+   */
+  public Map<String, Long> getEphemerisStatistics() {
+    return ephemerides.getStatistics();
+  }
+
+  /**
+   * Returns the solar systems to simulate.
+   *
+   * @param solarSystemName The name of a solar system, or `null` for all solar
+   *                        systems.
+   *
+   * @return The solar systems, or `null` if the solar system was not found.
+   */
+  private List<SolarSystem> simulatedSolarSystems(String solarSystemName) {
+    if (solarSystemName == null) {
+      loadAllLazySolarSystems();
+      return new ArrayList<>(solarSystems.values());
+    }
+    SolarSystem solarSystem = getSolarSystem(solarSystemName);
+    if (solarSystem == null) {
+      menuInstance.displaySolarSystemNotFound();
+      return null;
+    }
+    return Collections.singletonList(solarSystem);
+  }
+
+  /**
+   * Pins a point-in-time view of all solar systems. The view can be read at
+   * leisure, on any thread, while solar systems keep changing, and must be
+   * closed afterwards. Pinning copies no solar system: those with an undo
+   * history share its current version, and the others are read from where
+   * they are kept when the view is read, until they are first changed. Solar
+   * systems that are evicted, on disk or still waiting in a lazily indexed file
+   * are not read while pinning. An outside edit of the lazily indexed file does
+   * reach snapshots pinned before it for solar systems that were not parsed
+   * yet, since their previous text is gone.
+   *
+   * @return The snapshot.
+   */
+  public UniverseSnapshot pinSnapshot() {
+    Map<String, Supplier<SolarSystem>> readers = readers();
+    Set<String> names = new LinkedHashSet<>(readers.keySet());
+    CatalogIndex index = lazyCatalog;
+    if (index != null) {
+      names.addAll(index.names());
+    }
+    return versions.pin(names, name -> captureVersion(name, readers.get(name), index));
+  }
+
+  /**
+   * Returns a reader of every solar system in the registry that does not read
+   * any of them yet.
+   *
+   * @return The readers by name.
+   */
+  private Map<String, Supplier<SolarSystem>> readers() {
+    if (solarSystems instanceof SolarSystemCache) {
+      return ((SolarSystemCache) solarSystems).readers();
+    }
+    if (solarSystems instanceof DiskSolarSystemStore) {
+      return ((DiskSolarSystemStore) solarSystems).readers();
+    }
+    Map<String, Supplier<SolarSystem>> readers = new LinkedHashMap<>();
+    for (Map.Entry<String, SolarSystem> entry : solarSystems.entrySet()) {
+      SolarSystem solarSystem = entry.getValue();
+      readers.put(entry.getKey(), () -> solarSystem);
+    }
+    return readers;
+  }
+
+  /**
+   * Returns the source of the current version of a solar system for a
+   * snapshot, in constant time.
+   *
+   * @param name   The name of the solar system.
+   *
+   * @param reader The reader of the solar system in the registry, or `null`.
+   *
+   * @param index  The lazily indexed file, or `null`.
+   *
+   * @return The source, or `null` if the solar system does not exist.
+   */
+  private Supplier<SolarSystemVersion> captureVersion(String name, Supplier<SolarSystem> reader,
+      CatalogIndex index) {
+    SolarSystemHistory history = histories.get(name);
+    if (history != null) {
+      SolarSystemVersion current = history.current();
+      return () -> current;
+    }
+    if (reader != null) {
+      return () -> SolarSystemVersion.of(reader.get());
+    }
+    if (index == null || !index.contains(name)) {
+      return null;
+    }
+    return () -> {
+      try {
+        SolarSystem[] parsed = new SolarSystem[1];
+        CatalogParser.parse(new BufferedReader(new StringReader(index.readBlock(name))),
+            block -> parsed[0] = block);
+        return parsed[0] == null ? null : SolarSystemVersion.of(parsed[0]);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+  }
+
+  /**
+   * Retrieves a list of all solar systems stored in the controller.
+   *
+   * @return A list of all solar systems.
+   */
+  public List<SolarSystem> getAllSolarSystems() {
+    loadAllLazySolarSystems();
+    if (solarSystems.isEmpty()) {
+      menuInstance.displayNoSolarSystems();
+      return Collections.emptyList();
+    }
+    List<SolarSystem> allSolarSystems = new ArrayList<>(solarSystems.values());
+    menuInstance.displayAllSolarSystems(allSolarSystems);
+    return allSolarSystems;
+  }
+
+  /**
+   * Bounds the memory used by the solar systems held in the controller. The most
+   * recently used systems stay resident, and the others are evicted to files in
+   * the store directory and read back transparently when accessed.
+   *
+   * @param memoryBudget   The estimated number of bytes resident systems may use.
+   *
+   * @param evictionPolicy Either `lru` or `fifo`.
+   *
+   * @param storeDirectory The directory evicted systems are written to.
+   */
+  public void enableBoundedMemory(long memoryBudget, String evictionPolicy, String storeDirectory) {
+    try {
+      SolarSystemCache cache = new SolarSystemCache(memoryBudget,
+          SolarSystemCache.EvictionPolicy.valueOf(evictionPolicy.toUpperCase(Locale.ROOT)),
+          Paths.get(storeDirectory));
+      cache.putAll(solarSystems);
+      solarSystems = cache;
+    } catch (Exception e) {
+      menuInstance.displayError(e.getMessage());
+    }
+  }
+
+  /**
+   * Retrieves the hit, miss, eviction and write-back counters of the bounded
+   * memory mode.
+   *
+   * @return The statistics by name, or an empty map if the mode is not enabled.
+   */
+  public Map<String, Long> getCacheStatistics() {
+    if (solarSystems instanceof SolarSystemCache) {
+      return ((SolarSystemCache) solarSystems).getStatistics();
+    }
+    if (solarSystems instanceof DiskSolarSystemStore) {
+      return ((DiskSolarSystemStore) solarSystems).getStatistics();
+    }
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Retrieves the sizes and estimated false-positive rates of the Bloom filters
+   * of solar system, planet and moon names, and how many lookups they answered.
+   *
+   * @return The statistics by name.
+   */
+  public Map<String, Number> getNameFilterStatistics() {
+    return nameFilters.getStatistics();
+  }
+
+  /**
+   * Keeps the solar systems in a B+tree file on disk instead of in memory. Only a
+   * few recently used systems stay resident, and pages of the file are read
+   * through a buffer pool of bounded size. Solar systems already in the file are
+   * kept and added to the name indices and totals.
+   *
+   * @param filePath  The store file, which is created if it does not exist.
+   *
+   * @param poolBytes The largest number of bytes of the file mapped at a time.
+   *
+   * @return `true` if the file already held solar systems.
+   */
+  public boolean enableDiskStore(String filePath, long poolBytes) {
+    try {
+      DiskSolarSystemStore store = new DiskSolarSystemStore(Paths.get(filePath), poolBytes);
+      boolean stored = !store.isEmpty();
+      for (Map.Entry<String, SolarSystem> entry : store.entrySet()) {
+        nameFilters.addSystemName(entry.getKey());
+        countBodies(entry.getValue(), 1);
+      }
+      store.putAll(solarSystems);
+      solarSystems = store;
+      if (stored) {
+        menuInstance.displaySolarSystemLoaded();
+      }
+      return stored;
+    } catch (Exception e) {
+      menuInstance.displayError(e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Writes back the resident solar systems and closes the disk store, if it is
+   * enabled.
+   */
+  public void closeDiskStore() {
+    if (!(solarSystems instanceof DiskSolarSystemStore)) {
+      return;
+    }
+    try {
+      ((DiskSolarSystemStore) solarSystems).close();
+    } catch (Exception e) {
+      menuInstance.displayError(e.getMessage());
+    }
+  }
+
+  /**
+   * Finds the planets of a solar system whose orbit radius lies in a range and
+   * displays them from the innermost outwards. With the disk store the planets
+   * come from its orbit index without reading the solar system.
+   *
+   * @param solarSystemName The name of the solar system.
+   *
+   * @param minOrbitRadius  The smallest orbit radius in km, inclusive.
+   *
+   * @param maxOrbitRadius  The largest orbit radius in km, inclusive.
+   *
+   * @return The names of the planets, or `null` if the solar system was not
+   *         found.
+   */
+  public List<String> findPlanetsByOrbit(String solarSystemName, double minOrbitRadius, double maxOrbitRadius) {
+    List<String> planets;
+    if (solarSystems instanceof DiskSolarSystemStore && solarSystems.containsKey(solarSystemName)) {
+      planets = ((DiskSolarSystemStore) solarSystems).findPlanetsByOrbit(solarSystemName, minOrbitRadius,
+          maxOrbitRadius);
+    } else {
+      SolarSystem solarSystem = getSolarSystem(solarSystemName);
+      if (solarSystem == null) {
+        menuInstance.displaySolarSystemNotFound();
+        return null;
+      }
+      planets = solarSystem.getPlanets().stream()
+          .filter(planet -> planet.getOrbitRadius() >= minOrbitRadius && planet.getOrbitRadius() <= maxOrbitRadius)
+          .sorted(Comparator.comparingDouble(Planet::getOrbitRadius))
+          .map(Planet::getName)
+          .collect(Collectors.toList());
+    }
+    menuInstance.displayPlanetsByOrbit(solarSystemName, planets);
+    return planets;
+  }
+
+  /**
+   * Estimates the heap retained by each solar system, ordered from the largest
+   * to the smallest system. Solar systems that are evicted or kept on disk
+   * retain no heap and are listed with 0 bytes without being read.
+   *
+   * @return A map from solar system name to its estimated size in bytes.
+   */
+  public Map<String, Long> getMemoryFootprint() {
+    Map<String, SolarSystem> residents = residentSolarSystems();
+    Map<String, Long> sizes = new HashMap<>();
+    for (String name : solarSystems.keySet()) {
+      sizes.put(name, MemoryEstimator.estimate(residents.get(name)));
+    }
+    Map<String, Long> footprint = new LinkedHashMap<>();
+    sizes.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+        .forEach(entry -> footprint.put(entry.getKey(), entry.getValue()));
+    return footprint;
+  }
+
+  /**
+   * Estimates the heap retained by the solar systems in memory together with
+   * the name indices, body locations, name filters, distribution sketches,
+   * undo histories and versions kept for them. Versions share most of their
+   * planets and moons, which are counted once.
+   *
+   * @return The estimated size in bytes.
+   */
+  public long getUniverseMemoryFootprint() {
+    long bytes = MemoryEstimator.estimate(residentSolarSystems().values());
+    for (PrefixIndex index : nameIndices.values()) {
+      bytes += index.estimateBytes();
+    }
+    for (NGramIndex index : spellingIndices.values()) {
+      bytes += index.estimateBytes();
+    }
+    bytes += bodyLocations.estimateBytes() + nameFilters.estimateBytes();
+    for (QuantileSketch sketch : distributions.values()) {
+      bytes += sketch.estimateBytes();
+    }
+    Map<Object, Boolean> seen = new IdentityHashMap<>();
+    for (SolarSystemHistory history : histories.values()) {
+      bytes += history.estimateBytes(seen);
+    }
+    return bytes + versions.estimateBytes(seen);
+  }
+
+  /**
+   * Returns the solar systems that are in memory, without reading those that
+   * are evicted or kept on disk.
+   *
+   * @return The resident solar systems by name.
+   */
+  private Map<String, SolarSystem> residentSolarSystems() {
+    if (solarSystems instanceof SolarSystemCache) {
+      return ((SolarSystemCache) solarSystems).residents();
+    }
+    if (solarSystems instanceof DiskSolarSystemStore) {
+      return ((DiskSolarSystemStore) solarSystems).residents();
+    }
+    return solarSystems;
+  }
+
+  /**
+   * Loads solar system data from a file and populates the controller with the
+   * data.
+   * Parses the data to recreate solar systems, planets, and moons. Gzip and
+   * block-compressed files are detected and decompressed transparently, and a
+   * directory is read as a segmented catalog.
+   *
+   * @param filePath The path to the file containing solar system data.
+   */
+  public void loadSolarSystemFromFile(String filePath) {
+    if (SegmentedCatalog.isSegmented(filePath)) {
+      loadSolarSystemsFromSegments(filePath);
+      return;
+    }
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(CatalogCodec.open(filePath), StandardCharsets.UTF_8), 1 << 16)) {
+      parseSolarSystems(reader, false);
+      menuInstance.displaySolarSystemLoaded();
+    } catch (Exception e) {
+      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+    }
+  }
+
+  /**
+   * Indexes the star blocks of a file without parsing them. The planets and moons
+   * of a star are only parsed the first time its solar system is accessed. The
+   * Bloom filters of the names of each star's bodies are read from a sidecar
+   * file, or built in the same pass that indexes the blocks.
+   * Compressed files and segmented catalogs cannot be indexed and are loaded
+   * completely instead.
+   *
+   * @param filePath The path to the file containing solar system data.
+   */
+  public void loadSolarSystemFromFileLazily(String filePath) {
+    try {
+      if (CatalogCodec.isCompressed(filePath) || SegmentedCatalog.isSegmented(filePath)) {
+        loadSolarSystemFromFile(filePath);
+        return;
+      }
+      lazyCatalog = nameFilters.openCatalog(filePath, solarSystems::containsKey);
+      menuInstance.displaySolarSystemLoaded();
+    } catch (Exception e) {
+      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+    }
+  }
+
+  /**
+   * Reads the segments of a segmented catalog in parallel and parses them. The
+   * parsed solar systems are clean, so saving back to the same directory only
+   * rewrites those that change afterwards.
+   *
+   * @param directory The directory of the segmented catalog.
+   */
+  private void loadSolarSystemsFromSegments(String directory) {
+    try {
+      SegmentedCatalog catalog = SegmentedCatalog.open(directory);
+      Map<String, String> texts = catalog.read();
+      List<SolarSystem> parsed = new ArrayList<>();
+      for (Map.Entry<String, String> entry : texts.entrySet()) {
+        if (hasSolarSystem(entry.getKey())) {
+          continue;
+        }
+        parseSolarSystems(new BufferedReader(new StringReader(entry.getValue())), false);
+        SolarSystem solarSystem = solarSystems.get(entry.getKey());
+        if (solarSystem != null) {
+          parsed.add(solarSystem);
+        }
+      }
+      catalog.loaded(parsed);
+      segmentedCatalog = catalog;
+      menuInstance.displaySolarSystemLoaded();
+    } catch (Exception e) {
+      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+    }
+  }
+
+  /**
+   * Saves all solar systems to a segmented catalog, rewriting in parallel only
+   * the segments of solar systems that changed since they were last loaded
+   * from or saved to the same directory, and then swapping in the new manifest.
+   *
+   * @param directory The directory of the segmented catalog.
+   */
+  private void saveSolarSystemsToSegments(String directory) {
+    try {
+      loadAllLazySolarSystems();
+      if (segmentedCatalog == null || !segmentedCatalog.isAt(directory)) {
+        segmentedCatalog = SegmentedCatalog.open(directory);
+      }
+      int written = segmentedCatalog.save(solarSystems);
+      menuInstance.displaySegmentsSaved(directory, written, segmentedCatalog.size());
+    } catch (Exception e) {
+      menuInstance.displayErrorSavingSolarSystems(e.getMessage());
+    }
+  }
+
+  /**
+   * Saves all solar systems to a file. Files ending in `.json` or `.csv` are
+   * written as JSON or CSV, and any other file in the text format read by
+   * `loadSolarSystemFromFile`. Files ending in `.gz` are written with gzip and
+   * files ending in `.ssz` with the block-compressed format, for example
+   * `catalog.json.gz`. A directory, or a path ending in a separator, is saved
+   * as a segmented catalog with one file per solar system. Bodies are written
+   * straight from the model. Lazily indexed solar systems are parsed before
+   * anything is written, since the file may be the catalog they are read from,
+   * and the file is written next to the target and then renamed over it, so a
+   * failed save leaves the previous file intact.
+   *
+   * @param filePath The path to the file to write.
+   */
+  public void saveSolarSystemsToFile(String filePath) {
+    if (SegmentedCatalog.isSegmented(filePath)) {
+      saveSolarSystemsToSegments(filePath);
+      return;
+    }
+    Path temporary = null;
+    try {
+      loadAllLazySolarSystems();
+      Path target = Paths.get(filePath).toAbsolutePath();
+      temporary = target.resolveSibling(".tmp-" + target.getFileName());
+      try (Writer writer = new BufferedWriter(
+          new OutputStreamWriter(CatalogCodec.create(temporary.toString()), StandardCharsets.UTF_8), 1 << 16)) {
+        String format = catalogFormat(filePath);
+        if (format.equals(".json")) {
+          JsonCatalog.write(solarSystems.values(), writer);
+        } else if (format.equals(".csv")) {
+          CsvCatalog.write(solarSystems.values(), writer);
+        } else {
+          for (SolarSystem solarSystem : solarSystems.values()) {
+            if (solarSystem.getStar() != null) {
+              writer.write(solarSystem.toString());
+            }
+          }
+        }
+      }
+      Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      menuInstance.displaySolarSystemsSaved(filePath);
+    } catch (Exception e) {
+      deleteQuietly(temporary);
+      menuInstance.displayErrorSavingSolarSystems(e.getMessage());
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // a stray temporary file is harmless
+    }
+  }
+
+  /**
+   * Imports solar systems from a JSON or CSV file, as written by
+   * `saveSolarSystemsToFile`, and adds them to the controller. The file is read
+   * one body at a time, and every body goes through the same checks as when it
+   * is created, added or loaded through the menu. Bodies that fail a check are
+   * skipped together with their planets and moons. Compressed files are
+   * decompressed transparently.
+   *
+   * @param filePath The path to the `.json` or `.csv` file, optionally ending in
+   *                 `.gz` or `.ssz`.
+   */
+  public void importSolarSystemsFromFile(String filePath) {
+    String format = catalogFormat(filePath);
+    if (!format.equals(".json") && !format.equals(".csv")) {
+      menuInstance.displayErrorLoadingSolarSystem("Only .json and .csv files can be imported.");
+      return;
+    }
+    ImportSink sink = new ImportSink();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(CatalogCodec.open(filePath), StandardCharsets.UTF_8), 1 << 16)) {
+      if (format.equals(".json")) {
+        JsonCatalog.read(reader, sink);
+      } else {
+        CsvCatalog.read(reader, sink);
+      }
+      menuInstance.displaySolarSystemsImported(sink.imported, sink.rejected);
+    } catch (Exception e) {
+      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the extension of a catalog file that names its format, ignoring a
+   * trailing compression extension.
+   *
+   * @param filePath The path to the file.
+   *
+   * @return The lower-case format extension, such as `.json`, or an empty
+   *         string if there is none.
+   */
+  private static String catalogFormat(String filePath) {
+    String name = Paths.get(filePath).getFileName().toString().toLowerCase(Locale.ROOT);
+    if (name.endsWith(".gz")) {
+      name = name.substring(0, name.length() - ".gz".length());
+    } else if (name.endsWith(".ssz")) {
+      name = name.substring(0, name.length() - ".ssz".length());
+    }
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? "" : name.substring(dot);
+  }
+
+  /**
+   * Adds imported bodies to the controller with the validation rules of
+   * `createSolarSystem`, `addPlanet` and `addMoon`. Planets and moons may be
+   * added to solar systems that already exist, in which case they are recorded
+   * for undo. Children of a rejected body are rejected as well. A rejected body
+   * only has to be remembered when it shares its name with a body that exists,
+   * which its children would otherwise join, so the rejections kept are bounded
+   * by the bodies in the controller however many rows are rejected.
+   */
+  private final class ImportSink implements CatalogSink {
+    private final Set<String> created = new HashSet<>();
+    private final Set<String> rejectedStars = new HashSet<>();
+    private final Set<Long> rejectedPlanets = new HashSet<>();
+    private String lastStarName;
+    private Planet lastPlanet;
+    private int imported;
+    private int rejected;
+
+    @Override
+    public void star(String name, double radius) {
+      if (isValidName(name) && hasSolarSystem(name)) {
+        rejectedStars.add(name);
+        rejected++;
+        return;
+      }
+      if (!isValidName(name) || !isValidStarRadius(radius)) {
+        rejected++;
+        return;
+      }
+      addSolarSystem(new SolarSystem(name, new Star(name, radius)), false);
+      created.add(name);
+      imported++;
+    }
+
+    @Override
+    public void planet(String starName, String name, double radius, double orbitRadius) {
+      SolarSystem solarSystem = rejectedStars.contains(starName) ? null : getSolarSystem(starName);
+      if (solarSystem == null || solarSystem.getStar() == null || !isValidName(name)
+          || !isValidPlanetRadius(solarSystem.getStar(), radius)
+          || !isValidPlanetOrbitRadius(solarSystem.getStar(), orbitRadius)
+          || !isPlanetNameUnique(solarSystem, name)
+          || findOrbitConflict(solarSystem, radius, orbitRadius) != null) {
+        Planet namesake = solarSystem == null ? null : resolvePlanet(solarSystem, name);
+        if (namesake != null) {
+          rejectedPlanets.add(key(namesake.getParentStar().getNameId(), namesake.getNameId()));
+        }
+        rejected++;
+        return;
+      }
+      Planet planet = new Planet(name, radius, orbitRadius, solarSystem.getStar());
+      if (created.contains(starName)) {
+        solarSystem.addPlanet(planet);
+      } else {
+        SolarSystemHistory history = history(starName, solarSystem);
+        solarSystem.addPlanet(planet);
+        record(starName, history, history.current().withPlanetAdded(planet));
+      }
+      indexOrbit(solarSystem, name, radius, orbitRadius);
+      countPlanet(planet, 1);
+      lastStarName = starName;
+      lastPlanet = planet;
+      imported++;
+    }
+
+    @Override
+    public void moon(String starName, String planetName, String name, double radius, double orbitRadius) {
+      Planet parentPlanet = rejectedStars.contains(starName) ? null : findPlanet(starName, planetName);
+      if (parentPlanet != null
+          && rejectedPlanets.contains(key(parentPlanet.getParentStar().getNameId(), parentPlanet.getNameId()))) {
+        parentPlanet = null;
+      }
+      if (parentPlanet == null || !isValidName(name) || !isValidMoonRadius(parentPlanet, radius)
+          || !isValidMoonOrbitRadius(parentPlanet, orbitRadius) || !isMoonNameUnique(parentPlanet, name)
+          || findOrbitConflict(parentPlanet, radius, orbitRadius) != null) {
+        rejected++;
+        return;
+      }
+      Moon moon = new Moon(name, radius, orbitRadius, parentPlanet);
+      if (created.contains(starName)) {
+        parentPlanet.addMoon(moon);
+      } else {
+        SolarSystem solarSystem = getSolarSystem(starName);
+        SolarSystemHistory history = history(starName, solarSystem);
+        parentPlanet.addMoon(moon);
+        record(starName, history, history.current().withMoonAdded(planetName, moon));
+      }
+      indexOrbit(parentPlanet, name, radius, orbitRadius);
+      countMoon(parentPlanet, moon, 1);
+      imported++;
+    }
+
+    /**
+     * Finds a planet by name, checking the last added planet first since moons
+     * usually follow their planet.
+     */
+    private Planet findPlanet(String starName, String planetName) {
+      if (lastPlanet != null && starName.equals(lastStarName)
+          && NameDictionary.matches(lastPlanet.getNameId(), planetName)) {
+        return lastPlanet;
+      }
+      SolarSystem solarSystem = getSolarSystem(starName);
+      if (solarSystem == null) {
+        return null;
+      }
+      return resolvePlanet(solarSystem, planetName);
+    }
+
+    private long key(int starId, int planetId) {
+      return (long) starId << 32 | planetId & 0xFFFFFFFFL;
+    }
+  }
+
+  /**
+   * Watches a previously loaded file for changes. Whenever the file is modified,
+   * only the star blocks whose content hash changed are parsed again, and the
+   * added, changed and removed solar systems are applied before the next menu
+   * choice is handled. Changes in the file replace edits made to the same solar
+   * system in the program.
+   *
+   * @param filePath The path to the file containing solar system data.
+   */
+  public void watchSolarSystemFile(String filePath) {
+    try {
+      stopWatchingSolarSystemFile();
+      if (CatalogCodec.isCompressed(filePath)) {
+        menuInstance.displayError("Compressed solar system files cannot be watched.");
+        return;
+      }
+      CatalogIndex index = lazyCatalog != null ? lazyCatalog : CatalogIndex.open(filePath);
+      catalogWatcher = new CatalogWatcher(filePath, index);
+    } catch (Exception e) {
+      menuInstance.displayError(e.getMessage());
+    }
+  }
+
+  /**
+   * Stops watching the solar system file, if it is watched.
+   */
+  public void stopWatchingSolarSystemFile() {
+    if (catalogWatcher == null) {
+      return;
+    }
+    try {
+      catalogWatcher.close();
+    } catch (IOException e) {
+      menuInstance.displayError(e.getMessage());
+    }
+    catalogWatcher = null;
+  }
+
+  /**
+   * Applies all changes detected in the watched file since the last call and
+   * reports errors the watcher met while indexing it. Only the blocks of added
+   * and changed stars are parsed, and in lazy mode only those of solar systems
+   * that were already parsed. A block that equals the text of a solar system
+   * with an undo history was written by the program itself, so that solar
+   * system is kept with its history.
+   */
+  public void applySolarSystemFileChanges() {
+    if (catalogWatcher == null) {
+      return;
+    }
+    String error;
+    while ((error = catalogWatcher.pollError()) != null) {
+      menuInstance.displayError(error);
+    }
+    CatalogWatcher.Diff diff;
+    CatalogIndex latest = null;
+    Set<String> added = new LinkedHashSet<>();
+    Set<String> changed = new LinkedHashSet<>();
+    Set<String> removed = new LinkedHashSet<>();
+    while ((diff = catalogWatcher.poll()) != null) {
+      latest = diff.index;
+      added.addAll(diff.added);
+      changed.addAll(diff.changed);
+      removed.addAll(diff.removed);
+    }
+    if (latest == null) {
+      return;
+    }
+    Set<String> names = new LinkedHashSet<>(removed);
+    names.addAll(changed);
+    names.addAll(added);
+    boolean lazy = lazyCatalog != null;
+    if (lazy) {
+      lazyCatalog = latest;
+    }
+    try {
+      Set<String> saved = new LinkedHashSet<>();
+      for (String name : names) {
+        SolarSystem live = histories.containsKey(name) ? solarSystems.get(name) : null;
+        if (live != null && latest.contains(name) && latest.readBlock(name).equals(live.toString())) {
+          saved.add(name);
+        }
+      }
+      if (saved.size() == names.size()) {
+        return;
+      }
+      names.removeAll(saved);
+      added.removeAll(saved);
+      changed.removeAll(saved);
+      for (String name : names) {
+        boolean resident = solarSystems.containsKey(name);
+        histories.remove(name);
+        boolean tracked = versions.isTracked(name);
+        if (tracked && resident) {
+          versions.resolve(name, () -> SolarSystemVersion.of(solarSystems.get(name)));
+        }
+        SolarSystem previous = solarSystems.remove(name);
+        if (previous != null) {
+          countBodies(previous, -1);
+        }
+        SolarSystem replacement = null;
+        if (lazy && !resident) {
+          nameFilters.forgetBodies(name);
+          if (latest.contains(name)) {
+            nameFilters.addSystemName(name);
+          }
+        }
+        if (latest.contains(name) && (!lazy || resident || tracked)) {
+          parseSolarSystems(new BufferedReader(new StringReader(latest.readBlock(name))), lazy);
+          replacement = solarSystems.get(name);
+        }
+        if (tracked) {
+          versions.commit(name, replacement == null ? null : SolarSystemVersion.of(replacement));
+        }
+      }
+      menuInstance.displaySolarSystemFileChanged(added.size(), changed.size(), removed.size());
+    } catch (Exception e) {
+      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+    }
+  }
+
+  /**
+   * Parses solar systems, planets and moons from the hyphen-depth text format and
+   * adds them to the controller. The parser hands over each solar system at its
+   * star line, so it is only added once its planets and moons are parsed and
+   * they are counted with it.
+   *
+   * @param reader  The reader to parse from.
+   *
+   * @param indexed Whether the text comes from the lazily indexed file, whose
+   *                names are not duplicates until they are parsed.
+   */
+  private void parseSolarSystems(BufferedReader reader, boolean indexed) throws IOException {
+    SolarSystem[] pending = new SolarSystem[1];
+    try {
+      CatalogParser.parse(reader, solarSystem -> {
+        if (pending[0] != null) {
+          addSolarSystem(pending[0], false, indexed);
+        }
+        pending[0] = solarSystem;
+      });
+    } finally {
+      if (pending[0] != null) {
+        addSolarSystem(pending[0], false, indexed);
+      }
+    }
+  }
+
+  /**
+   * Parses the solar system with the given name from the lazily indexed file, if
+   * it has not been parsed yet.
+   *
+   * @param name The name of the solar system.
+   *
+   * @return The parsed `SolarSystem`, or `null` if it is not in the file.
+   */
+  private SolarSystem loadLazySolarSystem(String name) {
+    if (lazyCatalog == null || name == null || !lazyCatalog.contains(name)) {
+      return null;
+    }
+    try {
+      String block = lazyCatalog.readBlock(name);
+      parseSolarSystems(new BufferedReader(new StringReader(block)), true);
+    } catch (Exception e) {
+      menuInstance.displayErrorLoadingSolarSystem(e.getMessage());
+    }
+    return solarSystems.get(name);
+  }
+
+  /**
+   * Parses every solar system of the lazily indexed file that has not been parsed
+   * yet.
+   */
+  private void loadAllLazySolarSystems() {
+    if (lazyCatalog == null) {
+      return;
+    }
+    for (String name : lazyCatalog.names()) {
+      if (!solarSystems.containsKey(name)) {
+        loadLazySolarSystem(name);
+      }
+    }
+  }
+
+  /**
+   * Parses the solar systems of the lazily indexed file that have not been
+   * parsed yet and whose Bloom filters may hold a planet or moon of a name.
+   *
+   * @param name The planet or moon name.
+   */
+  private void loadLazySolarSystemsWithBody(String name) {
+    if (lazyCatalog == null) {
+      return;
+    }
+    for (String system : lazyCatalog.names()) {
+      if ((nameFilters.mightContainBody(system, "planet", name) || nameFilters.mightContainBody(system, "moon", name))
+          && !solarSystems.containsKey(system)) {
+        SolarSystem solarSystem = loadLazySolarSystem(system);
+        if (solarSystem != null && resolvePlanet(solarSystem, name) == null && hasNoMoon(solarSystem, name)) {
+          nameFilters.recordFalsePositive();
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether a solar system with the given name exists, either parsed or
+   * still waiting in the lazily indexed file. Names the Bloom filter of solar
+   * system names rules out are rejected without looking them up, which spares a
+   * read of the disk store.
+   *
+   * @param name The name of the solar system.
+   *
+   * @return `true` if the solar system exists, `false` otherwise.
+   */
+  private boolean hasSolarSystem(String name) {
+    if (!mightHaveSolarSystem(name)) {
+      return false;
+    }
+    boolean found = solarSystems.containsKey(name) || (lazyCatalog != null && lazyCatalog.contains(name));
+    if (!found) {
+      nameFilters.recordFalsePositive();
+    }
+    return found;
+  }
+
+  /**
+   * Checks the Bloom filter of solar system names, first rebuilding it if more
+   * than half of its names were removed.
+   *
+   * @param name The name of the solar system.
+   *
+   * @return `false` if no solar system of that name exists.
+   */
+  private boolean mightHaveSolarSystem(String name) {
+    if (nameFilters.isSystemFilterStale()) {
+      Set<String> names = new HashSet<>(solarSystems.keySet());
+      if (lazyCatalog != null) {
+        names.addAll(lazyCatalog.names());
+      }
+      nameFilters.rebuildSystems(names);
+    }
+    return nameFilters.mightContainSystem(name);
+  }
+
+  /**
+   * Adds a solar system to the controller's list of solar systems, performing
+   * checks for null solar systems and name uniqueness. A name that is still
+   * waiting in the lazily indexed file is taken as well.
+   *
+   * @param solarSystem The solar system to add.
+   */
+  public void addSolarSystem(SolarSystem solarSystem, boolean showMessage) {
+    addSolarSystem(solarSystem, showMessage, false);
+  }
+
+  private void addSolarSystem(SolarSystem solarSystem, boolean showMessage, boolean indexed) {
+    try {
+      if (solarSystem == null) {
+        menuInstance.displayNullSolarSystemError();
+        return;
+      }
+      String name = solarSystem.getName();
+      if (mightHaveSolarSystem(name)) {
+        boolean lazy = lazyCatalog != null && lazyCatalog.contains(name);
+        if (solarSystems.containsKey(name) || (lazy && !indexed)) {
+          menuInstance.displayDuplicateSolarSystemError();
+          return;
+        }
+        if (!lazy) {
+          nameFilters.recordFalsePositive();
+        }
+      }
+      if (indexed) {
+        versions.resolve(name, () -> SolarSystemVersion.of(solarSystem));
       }
-      solarSystems.put(solarSystem.getName(), solarSystem);
+      solarSystems.put(name, solarSystem);
+      countBodies(solarSystem, 1);
       if (showMessage) {
         menuInstance.displaySolarSystemAddedSuccess();
       }
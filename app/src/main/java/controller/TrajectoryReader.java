@@ -0,0 +1,198 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The TrajectoryReader class reads files written by {@link TrajectoryWriter}.
+ * Chunks are memory-mapped the first time they are read, so a query only
+ * touches the pages of the body, coordinates and samples it asks for, and
+ * files larger than the heap or than a single mapping can be read.
+ */
+final class TrajectoryReader implements AutoCloseable {
+  private final FileChannel channel;
+  private final int bodyCount;
+  private final int samplesPerChunk;
+  private final long sampleCount;
+  private final double startTime;
+  private final double interval;
+  private final long dataOffset;
+  private final String[] names;
+  private final Map<String, Integer> bodies;
+  private final MappedByteBuffer[] chunks;
+
+  /**
+   * Opens a trajectory file and reads its header.
+   *
+   * @param path the file to read
+   *
+   * @throws IOException if the file cannot be read or is not a trajectory file
+   */
+  TrajectoryReader(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 48))
+          .order(ByteOrder.LITTLE_ENDIAN);
+      if (header.limit() < 48 || header.getInt() != TrajectoryWriter.MAGIC
+          || header.getInt() != TrajectoryWriter.VERSION) {
+        throw new IOException("Not a trajectory file: " + path);
+      }
+      bodyCount = header.getInt();
+      samplesPerChunk = header.getInt();
+      sampleCount = header.getLong();
+      startTime = header.getDouble();
+      interval = header.getDouble();
+      dataOffset = header.getLong();
+      ByteBuffer nameBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 48, dataOffset - 48)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      names = new String[bodyCount];
+      bodies = new HashMap<>();
+      for (int body = 0; body < bodyCount; body++) {
+        byte[] name = new byte[nameBuffer.getInt()];
+        nameBuffer.get(name);
+        names[body] = new String(name, StandardCharsets.UTF_8);
+        bodies.putIfAbsent(names[body], body);
+      }
+      chunks = new MappedByteBuffer[(int) ((sampleCount + samplesPerChunk - 1) / samplesPerChunk)];
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of bodies in the file.
+   *
+   * @return the number of bodies
+   */
+  int getBodyCount() {
+    return bodyCount;
+  }
+
+  /**
+   * Returns the number of samples in the file.
+   *
+   * @return the number of samples
+   */
+  long getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * Returns the path of a body.
+   *
+   * @param body the index of the body
+   *
+   * @return the body's path
+   */
+  String getName(int body) {
+    return names[body];
+  }
+
+  /**
+   * Returns the index of a body.
+   *
+   * @param name the path of the body, such as `Sun/Earth/Moon`
+   *
+   * @return the index, or -1 if there is no such body
+   */
+  int indexOf(String name) {
+    return bodies.getOrDefault(name, -1);
+  }
+
+  /**
+   * Returns the simulated time of a sample.
+   *
+   * @param sample the index of the sample
+   *
+   * @return the time in seconds
+   */
+  double getTime(long sample) {
+    return startTime + sample * interval;
+  }
+
+  /**
+   * Returns the index of the first sample at or after a time.
+   *
+   * @param time the time in seconds
+   *
+   * @return the sample index, clamped to the samples in the file
+   */
+  long sampleAt(double time) {
+    if (interval <= 0) {
+      return 0;
+    }
+    return Math.max(0, Math.min(sampleCount, (long) Math.ceil((time - startTime) / interval - 1e-9)));
+  }
+
+  /**
+   * Returns the index of the first sample after a time.
+   *
+   * @param time the time in seconds
+   *
+   * @return the sample index, clamped to the samples in the file
+   */
+  long sampleAfter(double time) {
+    if (interval <= 0) {
+      return sampleCount;
+    }
+    return Math.max(0, Math.min(sampleCount, (long) Math.floor((time - startTime) / interval + 1e-9) + 1));
+  }
+
+  /**
+   * Reads one coordinate of a body over a range of samples.
+   *
+   * @param body   the index of the body
+   *
+   * @param column 0 to 2 for the position, 3 to 5 for the velocity
+   *
+   * @param from   the first sample, inclusive
+   *
+   * @param to     the last sample, exclusive
+   *
+   * @return the values of the coordinate
+   *
+   * @throws IOException if the file cannot be read
+   */
+  double[] read(int body, int column, long from, long to) throws IOException {
+    from = Math.max(0, from);
+    to = Math.min(sampleCount, to);
+    double[] values = new double[(int) Math.max(0, to - from)];
+    long sample = from;
+    while (sample < to) {
+      int chunk = (int) (sample / samplesPerChunk);
+      long chunkStart = (long) chunk * samplesPerChunk;
+      int chunkSamples = (int) Math.min(samplesPerChunk, sampleCount - chunkStart);
+      int first = (int) (sample - chunkStart);
+      int count = (int) Math.min(chunkSamples - first, to - sample);
+      DoubleBuffer columnBuffer = chunk(chunk, chunkSamples).asDoubleBuffer();
+      columnBuffer.position((body * TrajectoryWriter.COLUMNS + column) * chunkSamples + first);
+      columnBuffer.get(values, (int) (sample - from), count);
+      sample += count;
+    }
+    return values;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private ByteBuffer chunk(int chunk, int chunkSamples) throws IOException {
+    if (chunks[chunk] == null) {
+      long fullChunkBytes = (long) bodyCount * TrajectoryWriter.COLUMNS * samplesPerChunk * Double.BYTES;
+      long length = (long) bodyCount * TrajectoryWriter.COLUMNS * chunkSamples * Double.BYTES;
+      chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + chunk * fullChunkBytes, length);
+    }
+    return chunks[chunk].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
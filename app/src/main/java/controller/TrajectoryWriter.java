@@ -0,0 +1,138 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import model.NBodySimulation;
+
+/**
+ * The TrajectoryWriter class streams the positions and velocities of all bodies
+ * of a simulation into a binary file, one sample per call to {@link #append()}.
+ *
+ * <p>The file starts with a header: the magic `SSTS`, the format version, the
+ * number of bodies, the number of samples per chunk, the number of samples,
+ * the time of the first sample, the time between samples, the offset of the
+ * first chunk and the length-prefixed UTF-8 path of every body. Chunks follow,
+ * each holding a run of samples in columns: for every body, its x, y and z
+ * position and x, y and z velocity, each as consecutive little-endian doubles
+ * for all samples of the chunk. A reader can therefore locate any body,
+ * coordinate and sample by arithmetic. Every chunk holds the same number of
+ * samples except the last, which holds the rest.
+ *
+ * <p>A chunk is collected in a reused direct buffer of at most
+ * {@value #MAX_CHUNK_BYTES} bytes and written to the file channel in one call
+ * once it is full.
+ */
+final class TrajectoryWriter implements AutoCloseable {
+  static final int MAGIC = 0x53545353;
+  static final int VERSION = 1;
+  static final int COLUMNS = 6;
+  static final int STEP_COUNT_OFFSET = 16;
+  private static final int MAX_CHUNK_BYTES = 16 << 20;
+
+  private final NBodySimulation simulation;
+  private final FileChannel channel;
+  private final ByteBuffer chunk;
+  private final int bodyCount;
+  private final int samplesPerChunk;
+  private int samplesInChunk;
+  private long sampleCount;
+
+  /**
+   * Creates a trajectory file for a simulation.
+   *
+   * @param path       the file to create
+   *
+   * @param simulation the simulation to record
+   *
+   * @param interval   the simulated time between two samples in seconds
+   *
+   * @throws IOException if the file cannot be written
+   */
+  TrajectoryWriter(Path path, NBodySimulation simulation, double interval) throws IOException {
+    this.simulation = simulation;
+    this.bodyCount = simulation.getBodyCount();
+    long bytesPerSample = (long) bodyCount * COLUMNS * Double.BYTES;
+    this.samplesPerChunk = (int) Math.max(1, Math.min(4096, MAX_CHUNK_BYTES / Math.max(1, bytesPerSample)));
+    this.chunk = ByteBuffer.allocateDirect((int) (bytesPerSample * samplesPerChunk))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    writeHeader(interval);
+  }
+
+  /**
+   * Appends the current state of every body as the next sample.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  void append() throws IOException {
+    long stride = (long) samplesPerChunk * Double.BYTES;
+    int offset = samplesInChunk * Double.BYTES;
+    for (int body = 0; body < bodyCount; body++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        chunk.putDouble((int) ((body * COLUMNS + column) * stride + offset), simulation.getState(body, column));
+      }
+    }
+    samplesInChunk++;
+    sampleCount++;
+    if (samplesInChunk == samplesPerChunk) {
+      chunk.clear();
+      writeFully(chunk);
+      samplesInChunk = 0;
+    }
+  }
+
+  /**
+   * Writes the last partial chunk, packing its columns to the number of samples
+   * it holds, and records the number of samples in the header.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (samplesInChunk > 0) {
+        int stride = samplesPerChunk * Double.BYTES;
+        for (int column = 0; column < bodyCount * COLUMNS; column++) {
+          chunk.limit(column * stride + samplesInChunk * Double.BYTES).position(column * stride);
+          writeFully(chunk);
+        }
+      }
+      ByteBuffer count = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      count.putLong(0, sampleCount);
+      channel.write(count, STEP_COUNT_OFFSET);
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void writeHeader(double interval) throws IOException {
+    int namesLength = 0;
+    byte[][] names = new byte[bodyCount][];
+    for (int body = 0; body < bodyCount; body++) {
+      names[body] = simulation.getName(body).getBytes(StandardCharsets.UTF_8);
+      namesLength += Integer.BYTES + names[body].length;
+    }
+    int fixedLength = 48;
+    long dataOffset = (fixedLength + namesLength + 7) & ~7L;
+    ByteBuffer header = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putInt(bodyCount).putInt(samplesPerChunk).putLong(0)
+        .putDouble(simulation.getTime()).putDouble(interval).putLong(dataOffset);
+    for (byte[] name : names) {
+      header.putInt(name.length).put(name);
+    }
+    header.clear();
+    writeFully(header);
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
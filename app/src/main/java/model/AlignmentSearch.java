@@ -0,0 +1,408 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The AlignmentSearch class finds the time windows in which planets of a star
+ * line up. Each planet moves on a circular orbit with the period that follows
+ * from its orbit radius and the star's mass, starting from the same phases as
+ * {@link NBodySimulation}, so its angle is known in closed form at any time.
+ *
+ * <p>Planets are aligned when their angles fit into an arc of the given
+ * tolerance. In conjunction mode they must be on the same side of the star; in
+ * alignment mode a planet on the opposite side also counts, which is the same
+ * as comparing doubled angles against a doubled tolerance.
+ *
+ * <p>The search never steps through time. The windows in which each planet is
+ * within the tolerance of the first planet are computed exactly from the
+ * relative angular speed, and intersected. Within such a candidate window the
+ * angles do not wrap around, so the spread of the planets is the maximum minus
+ * the minimum of linear functions of time, which is convex: its minimum is found
+ * by golden-section search and the edges where it crosses the tolerance by
+ * bisection. The horizon is split into ranges that are searched in parallel.
+ */
+public final class AlignmentSearch {
+  private static final double TWO_PI = 2 * Math.PI;
+  private static final int RANGES_PER_THREAD = 4;
+  private static final int ITERATIONS = 100;
+
+  /**
+   * A time window in which planets are aligned.
+   */
+  public static final class Window {
+    private final double start;
+    private final double end;
+    private final double closestTime;
+    private final double closestSpread;
+
+    private Window(double start, double end, double closestTime, double closestSpread) {
+      this.start = start;
+      this.end = end;
+      this.closestTime = closestTime;
+      this.closestSpread = closestSpread;
+    }
+
+    /**
+     * Returns when the window opens.
+     *
+     * @return the start in seconds after time 0
+     */
+    public double getStart() {
+      return start;
+    }
+
+    /**
+     * Returns when the window closes.
+     *
+     * @return the end in seconds after time 0
+     */
+    public double getEnd() {
+      return end;
+    }
+
+    /**
+     * Returns when the planets are closest to each other within the window.
+     *
+     * @return the time in seconds after time 0
+     */
+    public double getClosestTime() {
+      return closestTime;
+    }
+
+    /**
+     * Returns the smallest spread of the planets within the window.
+     *
+     * @return the spread in degrees
+     */
+    public double getClosestSpread() {
+      return closestSpread;
+    }
+
+    @Override
+    public String toString() {
+      return "from " + start + " s to " + end + " s, closest " + closestSpread + " degrees at " + closestTime + " s";
+    }
+  }
+
+  private final double[] phase;
+  private final double[] angularSpeed;
+  private final Map<String, Integer> planets;
+
+  /**
+   * Prepares a search over the planets of a solar system with the default star
+   * density.
+   *
+   * @param solarSystem the solar system
+   */
+  public AlignmentSearch(SolarSystem solarSystem) {
+    this(solarSystem, NBodySimulation.DEFAULT_STAR_DENSITY);
+  }
+
+  /**
+   * Prepares a search over the planets of a solar system.
+   *
+   * @param solarSystem the solar system
+   *
+   * @param starDensity the density of the star in kg/m^3, from which its mass
+   *                    and the orbital periods follow
+   */
+  public AlignmentSearch(SolarSystem solarSystem, double starDensity) {
+    List<Planet> planetList = solarSystem.getPlanets();
+    double gm = NBodySimulation.G * NBodySimulation.mass(solarSystem.getStar().getRadius(), starDensity);
+    phase = new double[planetList.size()];
+    angularSpeed = new double[planetList.size()];
+    planets = new LinkedHashMap<>();
+    for (int i = 0; i < planetList.size(); i++) {
+      double orbitRadius = planetList.get(i).getOrbitRadius() * NBodySimulation.KM;
+      phase[i] = i * NBodySimulation.GOLDEN_ANGLE;
+      angularSpeed[i] = Math.sqrt(gm / (orbitRadius * orbitRadius * orbitRadius));
+      planets.put(planetList.get(i).getName(), i);
+    }
+  }
+
+  /**
+   * Returns the orbital period of a planet.
+   *
+   * @param planetName the name of the planet
+   *
+   * @return the period in seconds
+   *
+   * @throws IllegalArgumentException if there is no such planet
+   */
+  public double getPeriod(String planetName) {
+    return TWO_PI / angularSpeed[indexOf(planetName)];
+  }
+
+  /**
+   * Finds the windows in which the given planets are aligned.
+   *
+   * @param planetNames      the names of at least two planets
+   *
+   * @param toleranceDegrees the largest spread of the planets, below 90 degrees
+   *
+   * @param horizon          the end of the searched time span in seconds
+   *
+   * @param oppositeSides    whether planets on opposite sides of the star
+   *                         count as aligned
+   *
+   * @return the windows in time order
+   *
+   * @throws IllegalArgumentException if a planet does not exist, fewer than two
+   *                                  planets are given or the tolerance is out
+   *                                  of range
+   */
+  public List<Window> search(List<String> planetNames, double toleranceDegrees, double horizon,
+      boolean oppositeSides) {
+    if (planetNames.size() < 2) {
+      throw new IllegalArgumentException("At least two planets are needed.");
+    }
+    if (!(toleranceDegrees > 0 && toleranceDegrees < 90)) {
+      throw new IllegalArgumentException("The tolerance must be between 0 and 90 degrees.");
+    }
+    int[] bodies = planetNames.stream().mapToInt(this::indexOf).toArray();
+    double scale = oppositeSides ? 2 : 1;
+    double tolerance = Math.toRadians(toleranceDegrees) * scale;
+    int ranges = RANGES_PER_THREAD * Runtime.getRuntime().availableProcessors();
+    List<Window> windows = IntStream.range(0, ranges).parallel()
+        .mapToObj(range -> searchRange(bodies, scale, tolerance, horizon * range / ranges,
+            horizon * (range + 1) / ranges))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+    return mergeAdjacent(windows);
+  }
+
+  /**
+   * Finds the alignment windows of every combination of the given number of
+   * planets, searching the combinations in parallel.
+   *
+   * @param setSize          the number of planets per combination
+   *
+   * @param toleranceDegrees the largest spread of the planets, below 90 degrees
+   *
+   * @param horizon          the end of the searched time span in seconds
+   *
+   * @param oppositeSides    whether planets on opposite sides of the star
+   *                         count as aligned
+   *
+   * @return the windows of every combination that aligns at least once
+   */
+  public Map<List<String>, List<Window>> searchAll(int setSize, double toleranceDegrees, double horizon,
+      boolean oppositeSides) {
+    List<String> names = new ArrayList<>(planets.keySet());
+    List<List<String>> combinations = new ArrayList<>();
+    combine(names, setSize, 0, new ArrayList<>(), combinations);
+    Map<List<String>, List<Window>> result = new LinkedHashMap<>();
+    combinations.parallelStream()
+        .map(combination -> Map.entry(combination, search(combination, toleranceDegrees, horizon, oppositeSides)))
+        .collect(Collectors.toList())
+        .forEach(entry -> {
+          if (!entry.getValue().isEmpty()) {
+            result.put(entry.getKey(), entry.getValue());
+          }
+        });
+    return result;
+  }
+
+  private int indexOf(String planetName) {
+    Integer index = planets.get(planetName);
+    if (index == null) {
+      throw new IllegalArgumentException("No planet named " + planetName + ".");
+    }
+    return index;
+  }
+
+  private static void combine(List<String> names, int size, int from, List<String> current,
+      List<List<String>> combinations) {
+    if (current.size() == size) {
+      combinations.add(List.copyOf(current));
+      return;
+    }
+    for (int i = from; i <= names.size() - (size - current.size()); i++) {
+      current.add(names.get(i));
+      combine(names, size, i + 1, current, combinations);
+      current.remove(current.size() - 1);
+    }
+  }
+
+  /**
+   * Searches one time range: intersects the windows in which every planet is
+   * within the tolerance of the first one, then refines each candidate.
+   */
+  private List<Window> searchRange(int[] bodies, double scale, double tolerance, double from, double to) {
+    List<double[]> candidates = Collections.singletonList(new double[] {from, to});
+    for (int k = 1; k < bodies.length && !candidates.isEmpty(); k++) {
+      candidates = intersect(candidates, pairWindows(bodies[0], bodies[k], scale, tolerance, from, to));
+    }
+    List<Window> windows = new ArrayList<>();
+    for (double[] candidate : candidates) {
+      Window window = refine(bodies, scale, tolerance, candidate[0], candidate[1]);
+      if (window != null) {
+        windows.add(window);
+      }
+    }
+    return windows;
+  }
+
+  /**
+   * Returns the windows in which the angle between two planets is within the
+   * tolerance. The relative angle changes linearly, so the windows are found
+   * directly from its speed.
+   */
+  private List<double[]> pairWindows(int first, int second, double scale, double tolerance, double from,
+      double to) {
+    double relativePhase = scale * (phase[second] - phase[first]);
+    double relativeSpeed = scale * (angularSpeed[second] - angularSpeed[first]);
+    List<double[]> windows = new ArrayList<>();
+    if (relativeSpeed == 0) {
+      if (Math.abs(wrap(relativePhase)) <= tolerance) {
+        windows.add(new double[] {from, to});
+      }
+      return windows;
+    }
+    double angleFrom = relativePhase + relativeSpeed * from;
+    double angleTo = relativePhase + relativeSpeed * to;
+    long firstTurn = (long) Math.floor((Math.min(angleFrom, angleTo) - tolerance) / TWO_PI);
+    long lastTurn = (long) Math.ceil((Math.max(angleFrom, angleTo) + tolerance) / TWO_PI);
+    for (long turn = firstTurn; turn <= lastTurn; turn++) {
+      double a = (turn * TWO_PI - tolerance - relativePhase) / relativeSpeed;
+      double b = (turn * TWO_PI + tolerance - relativePhase) / relativeSpeed;
+      double start = Math.max(from, Math.min(a, b));
+      double end = Math.min(to, Math.max(a, b));
+      if (start <= end) {
+        windows.add(new double[] {start, end});
+      }
+    }
+    if (relativeSpeed < 0) {
+      Collections.reverse(windows);
+    }
+    return windows;
+  }
+
+  private static List<double[]> intersect(List<double[]> first, List<double[]> second) {
+    List<double[]> result = new ArrayList<>();
+    int i = 0;
+    int j = 0;
+    while (i < first.size() && j < second.size()) {
+      double start = Math.max(first.get(i)[0], second.get(j)[0]);
+      double end = Math.min(first.get(i)[1], second.get(j)[1]);
+      if (start <= end) {
+        result.add(new double[] {start, end});
+      }
+      if (first.get(i)[1] < second.get(j)[1]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the part of a candidate window in which the spread is within the
+   * tolerance, if any.
+   */
+  private Window refine(int[] bodies, double scale, double tolerance, double from, double to) {
+    double middle = (from + to) / 2;
+    double[] offset = new double[bodies.length];
+    double[] speed = new double[bodies.length];
+    for (int k = 1; k < bodies.length; k++) {
+      offset[k] = wrap(scale * (phase[bodies[k]] - phase[bodies[0]]
+          + (angularSpeed[bodies[k]] - angularSpeed[bodies[0]]) * middle));
+      speed[k] = scale * (angularSpeed[bodies[k]] - angularSpeed[bodies[0]]);
+    }
+    double low = from;
+    double high = to;
+    double ratio = (Math.sqrt(5) - 1) / 2;
+    for (int i = 0; i < ITERATIONS && high - low > 0; i++) {
+      double left = high - ratio * (high - low);
+      double right = low + ratio * (high - low);
+      if (spread(offset, speed, left - middle) <= spread(offset, speed, right - middle)) {
+        high = right;
+      } else {
+        low = left;
+      }
+    }
+    double closest = (low + high) / 2;
+    double closestSpread = spread(offset, speed, closest - middle);
+    if (closestSpread > tolerance) {
+      return null;
+    }
+    double start = edge(offset, speed, tolerance, from - middle, closest - middle) + middle;
+    double end = edge(offset, speed, tolerance, to - middle, closest - middle) + middle;
+    return new Window(start, end, closest, Math.toDegrees(closestSpread / scale));
+  }
+
+  /**
+   * Bisects between a time that may be outside the tolerance and one inside it
+   * for the time where the spread reaches the tolerance.
+   */
+  private static double edge(double[] offset, double[] speed, double tolerance, double outside, double inside) {
+    if (spread(offset, speed, outside) <= tolerance) {
+      return outside;
+    }
+    for (int i = 0; i < ITERATIONS && outside != inside; i++) {
+      double middle = (outside + inside) / 2;
+      if (middle == outside || middle == inside) {
+        break;
+      }
+      if (spread(offset, speed, middle) <= tolerance) {
+        inside = middle;
+      } else {
+        outside = middle;
+      }
+    }
+    return inside;
+  }
+
+  /**
+   * Returns the spread of the angles relative to the first planet at a time
+   * relative to the middle of the candidate window.
+   */
+  private static double spread(double[] offset, double[] speed, double time) {
+    double min = 0;
+    double max = 0;
+    for (int k = 1; k < offset.length; k++) {
+      double angle = offset[k] + speed[k] * time;
+      min = Math.min(min, angle);
+      max = Math.max(max, angle);
+    }
+    return max - min;
+  }
+
+  /**
+   * Joins windows that were split at the boundary of two time ranges.
+   */
+  private static List<Window> mergeAdjacent(List<Window> windows) {
+    List<Window> merged = new ArrayList<>();
+    windows.sort(Comparator.comparingDouble(Window::getStart));
+    for (Window window : windows) {
+      Window last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && window.start <= last.end) {
+        boolean closer = window.closestSpread < last.closestSpread;
+        merged.set(merged.size() - 1, new Window(last.start, Math.max(last.end, window.end),
+            closer ? window.closestTime : last.closestTime,
+            closer ? window.closestSpread : last.closestSpread));
+      } else {
+        merged.add(window);
+      }
+    }
+    return merged;
+  }
+
+  private static double wrap(double angle) {
+    double wrapped = angle % TWO_PI;
+    if (wrapped > Math.PI) {
+      wrapped -= TWO_PI;
+    } else if (wrapped < -Math.PI) {
+      wrapped += TWO_PI;
+    }
+    return wrapped;
+  }
+}
@@ -0,0 +1,253 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BloomFilter class answers whether a name may have been added, without
+ * storing the names. A name that was added is always reported, and a name that
+ * was not is reported only with a small false-positive rate, so a negative
+ * answer is definite.
+ *
+ * <p>The filter grows as names are added. It starts as one bit array sized for
+ * an expected number of names; once that many were added, a new array for
+ * twice as many names with half the false-positive rate is appended and takes
+ * the new names. A name is looked up in every array, so the rates add up to at
+ * most twice the rate of the first array. Each name is hashed once into a 64
+ * bit FNV-1a hash, and the bits of an array are found by double hashing.
+ *
+ * <p>Names cannot be removed; a filter whose names were removed still reports
+ * them and is rebuilt by its owner from the names that are left.
+ */
+public final class BloomFilter {
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final double LN2 = Math.log(2);
+
+  private final List<Segment> segments;
+  private long size;
+
+  /**
+   * One bit array, sized for a number of names at a false-positive rate.
+   */
+  private static final class Segment {
+    private final long[] bits;
+    private final int hashes;
+    private final int capacity;
+    private final double falsePositiveRate;
+    private int size;
+
+    private Segment(int capacity, double falsePositiveRate) {
+      long bitCount = Math.max(64, (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2)));
+      this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (bitCount + 63) / 64)];
+      this.hashes = Math.max(1, (int) Math.round((double) bits.length * 64 / capacity * LN2));
+      this.capacity = capacity;
+      this.falsePositiveRate = falsePositiveRate;
+    }
+
+    private Segment(long[] bits, int hashes, int capacity, double falsePositiveRate, int size) {
+      this.bits = bits;
+      this.hashes = hashes;
+      this.capacity = capacity;
+      this.falsePositiveRate = falsePositiveRate;
+      this.size = size;
+    }
+
+    private void add(long hash) {
+      long bitCount = (long) bits.length * 64;
+      long first = hash >>> 32;
+      long step = (hash & 0xffffffffL) | 1;
+      for (int i = 0; i < hashes; i++) {
+        long bit = (first + i * step) % bitCount;
+        bits[(int) (bit >>> 6)] |= 1L << bit;
+      }
+      size++;
+    }
+
+    private boolean mightContain(long hash) {
+      long bitCount = (long) bits.length * 64;
+      long first = hash >>> 32;
+      long step = (hash & 0xffffffffL) | 1;
+      for (int i = 0; i < hashes; i++) {
+        long bit = (first + i * step) % bitCount;
+        if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Estimates the false-positive rate from the share of bits that are set.
+     */
+    private double currentFalsePositiveRate() {
+      long set = 0;
+      for (long word : bits) {
+        set += Long.bitCount(word);
+      }
+      return Math.pow((double) set / ((long) bits.length * 64), hashes);
+    }
+  }
+
+  /**
+   * Constructs an empty filter.
+   *
+   * @param expectedNames     the number of names the first bit array is sized
+   *                          for
+   *
+   * @param falsePositiveRate the false-positive rate of the first bit array
+   */
+  public BloomFilter(int expectedNames, double falsePositiveRate) {
+    if (expectedNames <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("Invalid size or false-positive rate of a Bloom filter.");
+    }
+    this.segments = new ArrayList<>();
+    segments.add(new Segment(expectedNames, falsePositiveRate));
+  }
+
+  private BloomFilter(List<Segment> segments, long size) {
+    this.segments = segments;
+    this.size = size;
+  }
+
+  /**
+   * Adds a name.
+   *
+   * @param name the name
+   */
+  public void add(String name) {
+    Segment last = segments.get(segments.size() - 1);
+    if (last.size >= last.capacity) {
+      last = new Segment((int) Math.min(Integer.MAX_VALUE / 2, 2L * last.capacity), last.falsePositiveRate / 2);
+      segments.add(last);
+    }
+    last.add(hash(name));
+    size++;
+  }
+
+  /**
+   * Checks whether a name may have been added.
+   *
+   * @param name the name
+   *
+   * @return `false` if the name was certainly not added
+   */
+  public boolean mightContain(String name) {
+    long hash = hash(name);
+    for (Segment segment : segments) {
+      if (segment.mightContain(hash)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of names added, counting a name added twice twice.
+   *
+   * @return the number of names
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Estimates the current false-positive rate from the bits that are set.
+   *
+   * @return the probability that a name that was not added is reported
+   */
+  public double getFalsePositiveRate() {
+    double negative = 1;
+    for (Segment segment : segments) {
+      negative *= 1 - segment.currentFalsePositiveRate();
+    }
+    return 1 - negative;
+  }
+
+  /**
+   * Estimates the heap used by the filter.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateBytes() {
+    long bytes = 40;
+    for (Segment segment : segments) {
+      bytes += 40 + 16 + 8L * segment.bits.length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Writes the filter.
+   *
+   * @param out the output
+   *
+   * @throws IOException if the output fails
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeLong(size);
+    out.writeInt(segments.size());
+    for (Segment segment : segments) {
+      out.writeInt(segment.capacity);
+      out.writeDouble(segment.falsePositiveRate);
+      out.writeInt(segment.hashes);
+      out.writeInt(segment.size);
+      out.writeInt(segment.bits.length);
+      for (long word : segment.bits) {
+        out.writeLong(word);
+      }
+    }
+  }
+
+  /**
+   * Reads a filter written by {@link #writeTo(DataOutput)}.
+   *
+   * @param in the input
+   *
+   * @return the filter
+   *
+   * @throws IOException if the input fails or does not hold a filter
+   */
+  public static BloomFilter readFrom(DataInput in) throws IOException {
+    long size = in.readLong();
+    int segmentCount = in.readInt();
+    if (size < 0 || segmentCount <= 0 || segmentCount > 64) {
+      throw new IOException("Not a Bloom filter.");
+    }
+    List<Segment> segments = new ArrayList<>();
+    for (int i = 0; i < segmentCount; i++) {
+      int capacity = in.readInt();
+      double falsePositiveRate = in.readDouble();
+      int hashes = in.readInt();
+      int segmentSize = in.readInt();
+      int words = in.readInt();
+      if (capacity <= 0 || hashes <= 0 || words <= 0) {
+        throw new IOException("Not a Bloom filter.");
+      }
+      long[] bits = new long[words];
+      for (int j = 0; j < words; j++) {
+        bits[j] = in.readLong();
+      }
+      segments.add(new Segment(bits, hashes, capacity, falsePositiveRate, segmentSize));
+    }
+    return new BloomFilter(segments, size);
+  }
+
+  /**
+   * Hashes the characters of a name with FNV-1a and mixes the result, so both
+   * halves of the hash depend on every character.
+   */
+  private static long hash(String name) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < name.length(); i++) {
+      hash = (hash ^ name.charAt(i)) * FNV_PRIME;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,247 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The BodyLocationIndex class maps the names of planets and moons to the solar
+ * systems and planets they belong to, so a body can be found by name without
+ * visiting every solar system. Names need not be unique: every location of a
+ * name is kept, and a location added twice is listed twice until it was
+ * removed as often.
+ *
+ * <p>Bodies are identified by the ids of their names in the
+ * {@link NameDictionary}, which are dense, so the locations of a name are found
+ * by indexing an array with its id. A planet is located by the id of its
+ * star's name, and a moon by the star's and its planet's ids packed into one
+ * long, so a name that occurs once costs a one-element primitive array and no
+ * further objects.
+ */
+public final class BodyLocationIndex {
+  private int[][] planetSystems;
+  private int[] planetCounts;
+  private long[][] moonPlanets;
+  private int[] moonCounts;
+
+  /**
+   * The location of a planet or moon.
+   */
+  public static final class Location {
+    private final String solarSystem;
+    private final String planet;
+
+    private Location(String solarSystem, String planet) {
+      this.solarSystem = solarSystem;
+      this.planet = planet;
+    }
+
+    /**
+     * Returns the name of the central star of the solar system.
+     *
+     * @return the solar system name
+     */
+    public String getSolarSystem() {
+      return solarSystem;
+    }
+
+    /**
+     * Returns the name of the planet a moon orbits.
+     *
+     * @return the planet name, or null for the location of a planet
+     */
+    public String getPlanet() {
+      return planet;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Location)) {
+        return false;
+      }
+      Location location = (Location) other;
+      return solarSystem.equals(location.solarSystem) && Objects.equals(planet, location.planet);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(solarSystem, planet);
+    }
+
+    @Override
+    public String toString() {
+      return planet == null ? solarSystem : solarSystem + " > " + planet;
+    }
+  }
+
+  /**
+   * Constructs an empty index.
+   */
+  public BodyLocationIndex() {
+    this.planetSystems = new int[0][];
+    this.planetCounts = new int[0];
+    this.moonPlanets = new long[0][];
+    this.moonCounts = new int[0];
+  }
+
+  /**
+   * Records that a solar system has a planet.
+   *
+   * @param solarSystemId the name id of the central star
+   *
+   * @param planetId      the name id of the planet
+   */
+  public void addPlanet(int solarSystemId, int planetId) {
+    if (planetId >= planetSystems.length) {
+      int length = Math.max(planetId + 1, NameDictionary.size());
+      planetSystems = Arrays.copyOf(planetSystems, length);
+      planetCounts = Arrays.copyOf(planetCounts, length);
+    }
+    int[] systems = planetSystems[planetId];
+    int count = planetCounts[planetId];
+    if (systems == null || count == systems.length) {
+      systems = systems == null ? new int[1] : Arrays.copyOf(systems, count * 2);
+      planetSystems[planetId] = systems;
+    }
+    systems[count] = solarSystemId;
+    planetCounts[planetId] = count + 1;
+  }
+
+  /**
+   * Forgets one record of a planet in a solar system.
+   *
+   * @param solarSystemId the name id of the central star
+   *
+   * @param planetId      the name id of the planet
+   */
+  public void removePlanet(int solarSystemId, int planetId) {
+    if (planetId >= planetSystems.length || planetSystems[planetId] == null) {
+      return;
+    }
+    int[] systems = planetSystems[planetId];
+    int count = planetCounts[planetId];
+    for (int i = 0; i < count; i++) {
+      if (systems[i] == solarSystemId) {
+        System.arraycopy(systems, i + 1, systems, i, count - i - 1);
+        planetCounts[planetId] = --count;
+        break;
+      }
+    }
+    if (count == 0) {
+      planetSystems[planetId] = null;
+    }
+  }
+
+  /**
+   * Records that a planet of a solar system has a moon.
+   *
+   * @param solarSystemId the name id of the central star
+   *
+   * @param planetId      the name id of the planet
+   *
+   * @param moonId        the name id of the moon
+   */
+  public void addMoon(int solarSystemId, int planetId, int moonId) {
+    if (moonId >= moonPlanets.length) {
+      int length = Math.max(moonId + 1, NameDictionary.size());
+      moonPlanets = Arrays.copyOf(moonPlanets, length);
+      moonCounts = Arrays.copyOf(moonCounts, length);
+    }
+    long[] planets = moonPlanets[moonId];
+    int count = moonCounts[moonId];
+    if (planets == null || count == planets.length) {
+      planets = planets == null ? new long[1] : Arrays.copyOf(planets, count * 2);
+      moonPlanets[moonId] = planets;
+    }
+    planets[count] = pack(solarSystemId, planetId);
+    moonCounts[moonId] = count + 1;
+  }
+
+  /**
+   * Forgets one record of a moon of a planet.
+   *
+   * @param solarSystemId the name id of the central star
+   *
+   * @param planetId      the name id of the planet
+   *
+   * @param moonId        the name id of the moon
+   */
+  public void removeMoon(int solarSystemId, int planetId, int moonId) {
+    if (moonId >= moonPlanets.length || moonPlanets[moonId] == null) {
+      return;
+    }
+    long[] planets = moonPlanets[moonId];
+    int count = moonCounts[moonId];
+    long location = pack(solarSystemId, planetId);
+    for (int i = 0; i < count; i++) {
+      if (planets[i] == location) {
+        System.arraycopy(planets, i + 1, planets, i, count - i - 1);
+        moonCounts[moonId] = --count;
+        break;
+      }
+    }
+    if (count == 0) {
+      moonPlanets[moonId] = null;
+    }
+  }
+
+  /**
+   * Returns the solar systems that have a planet of a name.
+   *
+   * @param planet the planet name
+   *
+   * @return the locations in the order they were added, empty if there are none
+   */
+  public List<Location> findPlanet(String planet) {
+    List<Location> locations = new ArrayList<>();
+    int planetId = NameDictionary.find(planet);
+    if (planetId >= 0 && planetId < planetSystems.length) {
+      for (int i = 0; i < planetCounts[planetId]; i++) {
+        locations.add(new Location(NameDictionary.name(planetSystems[planetId][i]), null));
+      }
+    }
+    return locations;
+  }
+
+  /**
+   * Returns the planets that have a moon of a name.
+   *
+   * @param moon the moon name
+   *
+   * @return the locations in the order they were added, empty if there are none
+   */
+  public List<Location> findMoon(String moon) {
+    List<Location> locations = new ArrayList<>();
+    int moonId = NameDictionary.find(moon);
+    if (moonId >= 0 && moonId < moonPlanets.length) {
+      for (int i = 0; i < moonCounts[moonId]; i++) {
+        long location = moonPlanets[moonId][i];
+        locations.add(new Location(NameDictionary.name((int) (location >>> 32)),
+            NameDictionary.name((int) location)));
+      }
+    }
+    return locations;
+  }
+
+  /**
+   * Estimates the heap used by the index.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateBytes() {
+    long bytes = 32 + 16 + 4L * planetSystems.length + 16 + 4L * planetCounts.length
+        + 16 + 4L * moonPlanets.length + 16 + 4L * moonCounts.length;
+    for (int[] systems : planetSystems) {
+      bytes += systems == null ? 0 : 16 + 4L * systems.length;
+    }
+    for (long[] planets : moonPlanets) {
+      bytes += planets == null ? 0 : 16 + 8L * planets.length;
+    }
+    return bytes;
+  }
+
+  private static long pack(int solarSystemId, int planetId) {
+    return (long) solarSystemId << 32 | planetId & 0xffffffffL;
+  }
+}
@@ -0,0 +1,341 @@
+package model;
+
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * The BodyStatistics class keeps running totals of a group of planets and
+ * moons: their numbers, the sums of their radii and the smallest and largest
+ * orbit radius. The totals are updated as bodies are added and removed instead
+ * of being computed by walking the bodies.
+ *
+ * <p>Counts and sums change in constant time. The statistics of a planet or
+ * solar system keep only the smallest and largest orbit, and find them again
+ * by walking the bodies of their group when a body holding one is removed.
+ * The statistics of all solar systems cannot walk their bodies without
+ * reading every system, so they keep the orbit radii in a sorted multiset
+ * instead, at a cost of O(log n) per change. Every orbit radius is thus held
+ * in one multiset, not once per level.
+ */
+public final class BodyStatistics {
+  private final Consumer<BodyStatistics> bodies;
+  private long planetCount;
+  private long moonCount;
+  private double planetRadiusSum;
+  private double moonRadiusSum;
+  private double minPlanetOrbit = Double.NaN;
+  private double maxPlanetOrbit = Double.NaN;
+  private double minMoonOrbit = Double.NaN;
+  private double maxMoonOrbit = Double.NaN;
+  private boolean stale;
+  private TreeMap<Double, Integer> planetOrbits;
+  private TreeMap<Double, Integer> moonOrbits;
+
+  /**
+   * Constructs statistics that keep every orbit radius in sorted multisets,
+   * for a group whose bodies cannot be walked cheaply, such as all solar
+   * systems.
+   */
+  public BodyStatistics() {
+    this.bodies = null;
+  }
+
+  /**
+   * Constructs statistics that keep only the extreme orbits, and find them
+   * again with a walker that includes the orbits of every body of the group.
+   */
+  BodyStatistics(Consumer<BodyStatistics> bodies) {
+    this.bodies = bodies;
+  }
+
+  /**
+   * Counts a planet, without its moons.
+   *
+   * @param planet the planet to count
+   */
+  public void addPlanet(Planet planet) {
+    planetCount++;
+    planetRadiusSum += planet.getRadius();
+    if (bodies == null) {
+      planetOrbits = increment(planetOrbits, planet.getOrbitRadius());
+    } else {
+      includePlanetOrbit(planet.getOrbitRadius());
+    }
+  }
+
+  /**
+   * Stops counting a planet, without its moons.
+   *
+   * @param planet the planet to stop counting
+   */
+  public void removePlanet(Planet planet) {
+    planetCount--;
+    planetRadiusSum = planetCount == 0 ? 0 : planetRadiusSum - planet.getRadius();
+    if (bodies == null) {
+      decrement(planetOrbits, planet.getOrbitRadius());
+    } else if (planetCount == 0) {
+      minPlanetOrbit = Double.NaN;
+      maxPlanetOrbit = Double.NaN;
+    } else if (planet.getOrbitRadius() <= minPlanetOrbit || planet.getOrbitRadius() >= maxPlanetOrbit) {
+      stale = true;
+    }
+  }
+
+  /**
+   * Counts a moon.
+   *
+   * @param moon the moon to count
+   */
+  public void addMoon(Moon moon) {
+    moonCount++;
+    moonRadiusSum += moon.getRadius();
+    if (bodies == null) {
+      moonOrbits = increment(moonOrbits, moon.getOrbitRadius());
+    } else {
+      includeMoonOrbit(moon.getOrbitRadius());
+    }
+  }
+
+  /**
+   * Stops counting a moon.
+   *
+   * @param moon the moon to stop counting
+   */
+  public void removeMoon(Moon moon) {
+    moonCount--;
+    moonRadiusSum = moonCount == 0 ? 0 : moonRadiusSum - moon.getRadius();
+    if (bodies == null) {
+      decrement(moonOrbits, moon.getOrbitRadius());
+    } else {
+      removeMoonOrbits(moon.getOrbitRadius(), moon.getOrbitRadius());
+    }
+  }
+
+  /**
+   * Counts the moons of another set of statistics, in statistics that keep
+   * only the extreme orbits.
+   */
+  void addMoons(BodyStatistics other) {
+    moonCount += other.moonCount;
+    moonRadiusSum += other.moonRadiusSum;
+    if (other.moonCount > 0) {
+      includeMoonOrbit(other.getMinMoonOrbitRadius());
+      includeMoonOrbit(other.getMaxMoonOrbitRadius());
+    }
+  }
+
+  /**
+   * Stops counting the moons of another set of statistics, in statistics that
+   * keep only the extreme orbits.
+   */
+  void removeMoons(BodyStatistics other) {
+    moonCount -= other.moonCount;
+    moonRadiusSum = moonCount == 0 ? 0 : moonRadiusSum - other.moonRadiusSum;
+    if (other.moonCount > 0) {
+      removeMoonOrbits(other.getMinMoonOrbitRadius(), other.getMaxMoonOrbitRadius());
+    }
+  }
+
+  /**
+   * Includes the orbit of a planet in the extremes, while they are found again
+   * or a planet is added.
+   */
+  void includePlanetOrbit(double orbit) {
+    minPlanetOrbit = Double.isNaN(minPlanetOrbit) ? orbit : Math.min(minPlanetOrbit, orbit);
+    maxPlanetOrbit = Double.isNaN(maxPlanetOrbit) ? orbit : Math.max(maxPlanetOrbit, orbit);
+  }
+
+  /**
+   * Includes the orbit of a moon in the extremes, while they are found again or
+   * a moon is added.
+   */
+  void includeMoonOrbit(double orbit) {
+    minMoonOrbit = Double.isNaN(minMoonOrbit) ? orbit : Math.min(minMoonOrbit, orbit);
+    maxMoonOrbit = Double.isNaN(maxMoonOrbit) ? orbit : Math.max(maxMoonOrbit, orbit);
+  }
+
+  /**
+   * Stops counting all bodies.
+   */
+  void clear() {
+    planetCount = 0;
+    moonCount = 0;
+    planetRadiusSum = 0;
+    moonRadiusSum = 0;
+    minPlanetOrbit = Double.NaN;
+    maxPlanetOrbit = Double.NaN;
+    minMoonOrbit = Double.NaN;
+    maxMoonOrbit = Double.NaN;
+    stale = false;
+    planetOrbits = null;
+    moonOrbits = null;
+  }
+
+  /**
+   * Returns the number of planets.
+   *
+   * @return the number of planets
+   */
+  public long getPlanetCount() {
+    return planetCount;
+  }
+
+  /**
+   * Returns the number of moons.
+   *
+   * @return the number of moons
+   */
+  public long getMoonCount() {
+    return moonCount;
+  }
+
+  /**
+   * Returns the sum of the planets' radii.
+   *
+   * @return the total radius in km
+   */
+  public double getPlanetRadiusSum() {
+    return planetRadiusSum;
+  }
+
+  /**
+   * Returns the sum of the moons' radii.
+   *
+   * @return the total radius in km
+   */
+  public double getMoonRadiusSum() {
+    return moonRadiusSum;
+  }
+
+  /**
+   * Returns the mean radius of the planets.
+   *
+   * @return the mean radius in km, or NaN if there are no planets
+   */
+  public double getMeanPlanetRadius() {
+    return planetCount == 0 ? Double.NaN : planetRadiusSum / planetCount;
+  }
+
+  /**
+   * Returns the mean radius of the moons.
+   *
+   * @return the mean radius in km, or NaN if there are no moons
+   */
+  public double getMeanMoonRadius() {
+    return moonCount == 0 ? Double.NaN : moonRadiusSum / moonCount;
+  }
+
+  /**
+   * Returns the smallest orbit radius of the planets.
+   *
+   * @return the orbit radius in km, or NaN if there are no planets
+   */
+  public double getMinPlanetOrbitRadius() {
+    if (bodies != null) {
+      refresh();
+      return minPlanetOrbit;
+    }
+    return planetOrbits == null || planetOrbits.isEmpty() ? Double.NaN : planetOrbits.firstKey();
+  }
+
+  /**
+   * Returns the largest orbit radius of the planets.
+   *
+   * @return the orbit radius in km, or NaN if there are no planets
+   */
+  public double getMaxPlanetOrbitRadius() {
+    if (bodies != null) {
+      refresh();
+      return maxPlanetOrbit;
+    }
+    return planetOrbits == null || planetOrbits.isEmpty() ? Double.NaN : planetOrbits.lastKey();
+  }
+
+  /**
+   * Returns the smallest orbit radius of the moons.
+   *
+   * @return the orbit radius in km, or NaN if there are no moons
+   */
+  public double getMinMoonOrbitRadius() {
+    if (bodies != null) {
+      refresh();
+      return minMoonOrbit;
+    }
+    return moonOrbits == null || moonOrbits.isEmpty() ? Double.NaN : moonOrbits.firstKey();
+  }
+
+  /**
+   * Returns the largest orbit radius of the moons.
+   *
+   * @return the orbit radius in km, or NaN if there are no moons
+   */
+  public double getMaxMoonOrbitRadius() {
+    if (bodies != null) {
+      refresh();
+      return maxMoonOrbit;
+    }
+    return moonOrbits == null || moonOrbits.isEmpty() ? Double.NaN : moonOrbits.lastKey();
+  }
+
+  /**
+   * Returns the number of distinct orbit radii kept for the minimum and maximum.
+   *
+   * @return the number of entries in the sorted multisets
+   */
+  int getDistinctOrbitCount() {
+    return (planetOrbits == null ? 0 : planetOrbits.size()) + (moonOrbits == null ? 0 : moonOrbits.size());
+  }
+
+  /**
+   * Returns whether the statistics keep only the extreme orbits and walk the
+   * bodies of their group to find them again.
+   *
+   * @return `true` without sorted multisets, `false` with them
+   */
+  boolean walksBodies() {
+    return bodies != null;
+  }
+
+  /**
+   * Marks the extremes for finding again if moons between the given orbits
+   * held one of them.
+   */
+  private void removeMoonOrbits(double min, double max) {
+    if (moonCount == 0) {
+      minMoonOrbit = Double.NaN;
+      maxMoonOrbit = Double.NaN;
+    } else if (min <= minMoonOrbit || max >= maxMoonOrbit) {
+      stale = true;
+    }
+  }
+
+  /**
+   * Finds the extreme orbits again by walking the bodies, after a body holding
+   * one of them was removed.
+   */
+  private void refresh() {
+    if (!stale) {
+      return;
+    }
+    stale = false;
+    minPlanetOrbit = Double.NaN;
+    maxPlanetOrbit = Double.NaN;
+    minMoonOrbit = Double.NaN;
+    maxMoonOrbit = Double.NaN;
+    bodies.accept(this);
+  }
+
+  private static TreeMap<Double, Integer> increment(TreeMap<Double, Integer> orbits, double orbit) {
+    if (orbits == null) {
+      orbits = new TreeMap<>();
+    }
+    orbits.merge(orbit, 1, Integer::sum);
+    return orbits;
+  }
+
+  private static void decrement(TreeMap<Double, Integer> orbits, double orbit) {
+    if (orbits != null) {
+      orbits.computeIfPresent(orbit, (key, count) -> count == 1 ? null : count - 1);
+    }
+  }
+}
@@ -0,0 +1,333 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The EphemerisCache class answers where a planet or moon is at a given time,
+ * relative to its star. Bodies move on circular orbits with the periods and
+ * starting phases used by {@link AlignmentSearch} and {@link NBodySimulation}.
+ *
+ * <p>Instead of evaluating the orbits for every query, the cache keeps the
+ * positions and velocities of each body at evenly spaced time nodes, in
+ * segments of {@value #SEGMENT_INTERVALS} intervals, and interpolates between
+ * two nodes with a cubic Hermite polynomial. For a circular orbit of radius r
+ * and angular speed w, the fourth derivative of each coordinate is at most
+ * r w^4, so the interpolation error with node spacing h is at most
+ * sqrt(2) h^4 r w^4 / 384; a moon adds the bound of its planet. The spacing of
+ * each body is chosen so that this bound stays within the requested tolerance.
+ *
+ * <p>Segments are computed when first needed and evicted in least recently used
+ * order once their estimated size exceeds the memory budget. A body whose orbit
+ * or position in its list changed gets a new handle, so the segments of the old
+ * handle are never used again and age out.
+ */
+public final class EphemerisCache {
+  private static final int SEGMENT_INTERVALS = 64;
+  private static final int VALUES_PER_NODE = 4;
+  private static final long SEGMENT_BYTES = 16 + (SEGMENT_INTERVALS + 1) * VALUES_PER_NODE * Double.BYTES
+      + 40 + 48;
+  private static final double SQRT_2 = Math.sqrt(2);
+
+  private final double tolerance;
+  private final long memoryBudget;
+  private final Map<String, Handle> bodies;
+  private final LinkedHashMap<Segment, double[]> segments;
+  private long queries;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long totalQueryNanos;
+  private long maxQueryNanos;
+
+  /**
+   * A resolved planet or moon. Callers that query the same body many times can
+   * keep the handle to skip looking the body up by name.
+   */
+  public static final class Handle {
+    private final double[] orbit;
+    private final double spacing;
+    private final double errorBound;
+
+    private Handle(double[] orbit, double tolerance) {
+      this.orbit = orbit;
+      double derivative = 0;
+      for (int i = 0; i < orbit.length; i += 3) {
+        derivative += orbit[i] * Math.pow(orbit[i + 1], 4);
+      }
+      double spacing = Math.pow(384 * tolerance / (SQRT_2 * derivative), 0.25);
+      for (int i = 0; i < orbit.length; i += 3) {
+        spacing = Math.min(spacing, Math.PI / 2 / orbit[i + 1]);
+      }
+      this.spacing = spacing;
+      this.errorBound = SQRT_2 * Math.pow(spacing, 4) * derivative / 384;
+    }
+
+    /**
+     * Returns the guaranteed interpolation error of the body.
+     *
+     * @return the largest distance between an interpolated and the exact
+     *         position in m
+     */
+    public double getErrorBound() {
+      return errorBound;
+    }
+  }
+
+  /**
+   * Identifies the nodes of one body in one span of time.
+   */
+  private static final class Segment {
+    private final Handle body;
+    private final long index;
+
+    private Segment(Handle body, long index) {
+      this.body = body;
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Segment)) {
+        return false;
+      }
+      Segment segment = (Segment) other;
+      return index == segment.index && body == segment.body;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(body) + Long.hashCode(index);
+    }
+  }
+
+  /**
+   * Constructs an empty ephemeris cache.
+   *
+   * @param tolerance    the largest allowed distance between an interpolated
+   *                     and the exact position in m
+   *
+   * @param memoryBudget the largest estimated size of the cached segments in
+   *                     bytes
+   */
+  public EphemerisCache(double tolerance, long memoryBudget) {
+    this.tolerance = tolerance;
+    this.memoryBudget = memoryBudget;
+    this.bodies = new HashMap<>();
+    this.segments = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Returns the position of a planet or moon relative to its star.
+   *
+   * @param solarSystem the solar system of the body
+   *
+   * @param planetName  the name of the planet
+   *
+   * @param moonName    the name of the moon, or null for the planet itself
+   *
+   * @param time        the time in seconds after the starting layout
+   *
+   * @return the x, y and z coordinates in m, within the tolerance of the exact
+   *         position
+   *
+   * @throws IllegalArgumentException if there is no such planet or moon
+   */
+  public synchronized double[] position(SolarSystem solarSystem, String planetName, String moonName,
+      double time) {
+    return position(handle(solarSystem, planetName, moonName), time);
+  }
+
+  /**
+   * Returns the position of a resolved planet or moon relative to its star. The
+   * handle must be resolved again after the body's solar system changed.
+   *
+   * @param body the handle of the body
+   *
+   * @param time the time in seconds after the starting layout
+   *
+   * @return the x, y and z coordinates in m, within the tolerance of the exact
+   *         position
+   */
+  public synchronized double[] position(Handle body, double time) {
+    long start = System.nanoTime();
+    double nodes = time / body.spacing;
+    long node = (long) Math.floor(nodes);
+    long segmentIndex = Math.floorDiv(node, SEGMENT_INTERVALS);
+    Segment key = new Segment(body, segmentIndex);
+    double[] values = segments.get(key);
+    if (values != null) {
+      hits++;
+    } else {
+      misses++;
+      values = fill(body, segmentIndex);
+      segments.put(key, values);
+      evictIfNeeded();
+    }
+    int offset = (int) (node - segmentIndex * SEGMENT_INTERVALS) * VALUES_PER_NODE;
+    double s = nodes - node;
+    double h00 = (2 * s - 3) * s * s + 1;
+    double h10 = ((s - 2) * s + 1) * s * body.spacing;
+    double h01 = (3 - 2 * s) * s * s;
+    double h11 = (s - 1) * s * s * body.spacing;
+    double[] position = new double[3];
+    for (int axis = 0; axis < 2; axis++) {
+      position[axis] = h00 * values[offset + axis] + h10 * values[offset + 2 + axis]
+          + h01 * values[offset + VALUES_PER_NODE + axis] + h11 * values[offset + VALUES_PER_NODE + 2 + axis];
+    }
+    long elapsed = System.nanoTime() - start;
+    queries++;
+    totalQueryNanos += elapsed;
+    maxQueryNanos = Math.max(maxQueryNanos, elapsed);
+    return position;
+  }
+
+  /**
+   * Returns the exact position of a planet or moon relative to its star.
+   *
+   * @param solarSystem the solar system of the body
+   *
+   * @param planetName  the name of the planet
+   *
+   * @param moonName    the name of the moon, or null for the planet itself
+   *
+   * @param time        the time in seconds after the starting layout
+   *
+   * @return the x, y and z coordinates in m
+   *
+   * @throws IllegalArgumentException if there is no such planet or moon
+   */
+  public static double[] exactPosition(SolarSystem solarSystem, String planetName, String moonName, double time) {
+    double[] state = new double[VALUES_PER_NODE];
+    evaluate(orbit(solarSystem, planetName, moonName), time, state, 0);
+    return new double[] {state[0], state[1], 0};
+  }
+
+  /**
+   * Resolves a planet or moon by name.
+   *
+   * @param solarSystem the solar system of the body
+   *
+   * @param planetName  the name of the planet
+   *
+   * @param moonName    the name of the moon, or null for the planet itself
+   *
+   * @return the handle of the body
+   *
+   * @throws IllegalArgumentException if there is no such planet or moon
+   */
+  public synchronized Handle handle(SolarSystem solarSystem, String planetName, String moonName) {
+    String path = path(solarSystem, planetName, moonName);
+    double[] orbit = orbit(solarSystem, planetName, moonName);
+    Handle body = bodies.get(path);
+    if (body == null || !Arrays.equals(body.orbit, orbit)) {
+      body = new Handle(orbit, tolerance);
+      bodies.put(path, body);
+    }
+    return body;
+  }
+
+  /**
+   * Returns the counters of the cache: queries, hits, misses, evictions, the
+   * number and estimated bytes of resident segments, the memory budget, and the
+   * mean and largest query latency in nanoseconds.
+   *
+   * @return the counters by name, in a stable order
+   */
+  public synchronized Map<String, Long> getStatistics() {
+    Map<String, Long> statistics = new LinkedHashMap<>();
+    statistics.put("queries", queries);
+    statistics.put("hits", hits);
+    statistics.put("misses", misses);
+    statistics.put("evictions", evictions);
+    statistics.put("segments", (long) segments.size());
+    statistics.put("residentBytes", segments.size() * SEGMENT_BYTES);
+    statistics.put("memoryBudget", memoryBudget);
+    statistics.put("meanQueryNanos", queries == 0 ? 0 : totalQueryNanos / queries);
+    statistics.put("maxQueryNanos", maxQueryNanos);
+    return statistics;
+  }
+
+  private static String path(SolarSystem solarSystem, String planetName, String moonName) {
+    String path = solarSystem.getStar().getName() + "/" + planetName;
+    return moonName == null ? path : path + "/" + moonName;
+  }
+
+  /**
+   * Describes the orbit of a body as triples of radius in m, angular speed and
+   * starting phase: one triple for a planet, and the planet's followed by the
+   * moon's for a moon.
+   */
+  private static double[] orbit(SolarSystem solarSystem, String planetName, String moonName) {
+    Star star = solarSystem.getStar();
+    if (star == null) {
+      throw new IllegalArgumentException("The solar system has no star.");
+    }
+    int planetId = NameDictionary.find(planetName);
+    int moonId = moonName == null ? -1 : NameDictionary.find(moonName);
+    List<Planet> planets = solarSystem.getPlanets();
+    for (int i = 0; i < planets.size(); i++) {
+      Planet planet = planets.get(i);
+      if (planet.getNameId() != planetId) {
+        continue;
+      }
+      double planetOrbit = planet.getOrbitRadius() * NBodySimulation.KM;
+      double starMass = NBodySimulation.mass(star.getRadius(), NBodySimulation.DEFAULT_STAR_DENSITY);
+      double[] planetTriple = {planetOrbit, angularSpeed(starMass, planetOrbit), i * NBodySimulation.GOLDEN_ANGLE};
+      if (moonName == null) {
+        return planetTriple;
+      }
+      List<Moon> moons = planet.getMoons();
+      for (int j = 0; j < moons.size(); j++) {
+        if (moons.get(j).getNameId() == moonId) {
+          double moonOrbit = moons.get(j).getOrbitRadius() * NBodySimulation.KM;
+          double planetMass = NBodySimulation.mass(planet.getRadius(), NBodySimulation.DEFAULT_PLANET_DENSITY);
+          return new double[] {planetTriple[0], planetTriple[1], planetTriple[2],
+              moonOrbit, angularSpeed(planetMass, moonOrbit), j * NBodySimulation.GOLDEN_ANGLE};
+        }
+      }
+      throw new IllegalArgumentException("No moon named " + moonName + " around " + planetName + ".");
+    }
+    throw new IllegalArgumentException("No planet named " + planetName + ".");
+  }
+
+  private static double angularSpeed(double parentMass, double orbitRadius) {
+    return Math.sqrt(NBodySimulation.G * parentMass / (orbitRadius * orbitRadius * orbitRadius));
+  }
+
+  /**
+   * Writes the x and y position and velocity of an orbit at a time.
+   */
+  private static void evaluate(double[] orbit, double time, double[] values, int offset) {
+    for (int i = 0; i < orbit.length; i += 3) {
+      double radius = orbit[i];
+      double speed = orbit[i + 1];
+      double angle = orbit[i + 2] + speed * time;
+      double cos = Math.cos(angle);
+      double sin = Math.sin(angle);
+      values[offset] += radius * cos;
+      values[offset + 1] += radius * sin;
+      values[offset + 2] -= radius * speed * sin;
+      values[offset + 3] += radius * speed * cos;
+    }
+  }
+
+  private static double[] fill(Handle body, long segmentIndex) {
+    double[] values = new double[(SEGMENT_INTERVALS + 1) * VALUES_PER_NODE];
+    long firstNode = segmentIndex * SEGMENT_INTERVALS;
+    for (int node = 0; node <= SEGMENT_INTERVALS; node++) {
+      evaluate(body.orbit, (firstNode + node) * body.spacing, values, node * VALUES_PER_NODE);
+    }
+    return values;
+  }
+
+  private void evictIfNeeded() {
+    while (segments.size() > 1 && segments.size() * SEGMENT_BYTES > memoryBudget) {
+      segments.remove(segments.keySet().iterator().next());
+      evictions++;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package model;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The MemoryEstimator class estimates the retained heap size of solar systems
+ * from the model structure. The estimate follows the layout of a 64-bit HotSpot
+ * JVM with compressed object pointers: 12 byte object headers, 4 byte
+ * references and 8 byte object alignment.
+ *
+ * <p>Stars, planets and moons keep only the ids of their names, whose bytes
+ * are shared by all systems in the {@link NameDictionary} and are not counted
+ * here.
+ */
+public final class MemoryEstimator {
+  private static final int HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+  private static final int ALIGNMENT = 8;
+  private static final int DEFAULT_LIST_CAPACITY = 10;
+
+  private MemoryEstimator() {
+  }
+
+  /**
+   * Estimates the number of bytes retained by a solar system, including its
+   * star, planets, moons, name and lists.
+   *
+   * @param solarSystem the solar system to measure
+   *
+   * @return the estimated retained size in bytes, or 0 if the system is null
+   */
+  public static long estimate(SolarSystem solarSystem) {
+    if (solarSystem == null) {
+      return 0;
+    }
+    Map<Object, Boolean> seen = new IdentityHashMap<>();
+    long bytes = align(HEADER + 4 * REFERENCE + Long.BYTES + 1);
+    bytes += statistics(solarSystem.getStatistics());
+    bytes += string(solarSystem.getName(), seen);
+    bytes += star(solarSystem.getStar(), seen);
+    bytes += list(solarSystem.getPlanets().size());
+    for (Planet planet : solarSystem.getPlanets()) {
+      bytes += planet(planet, seen);
+    }
+    return bytes;
+  }
+
+  /**
+   * Estimates the number of bytes retained by a collection of solar systems.
+   *
+   * @param solarSystems the solar systems to measure
+   *
+   * @return the estimated retained size in bytes
+   */
+  public static long estimate(Collection<SolarSystem> solarSystems) {
+    long bytes = 0;
+    for (SolarSystem solarSystem : solarSystems) {
+      bytes += estimate(solarSystem);
+    }
+    return bytes;
+  }
+
+  private static long planet(Planet planet, Map<Object, Boolean> seen) {
+    long bytes = align(HEADER + 4 * REFERENCE + Integer.BYTES + 2 * Double.BYTES + Long.BYTES + 1);
+    bytes += statistics(planet.getStatistics());
+    bytes += star(planet.getParentStar(), seen);
+    int moonCount = planet.getMoonCount();
+    bytes += moonCount * align(HEADER + REFERENCE + Integer.BYTES + 2 * Double.BYTES);
+    return bytes + list(moonCount);
+  }
+
+  private static long statistics(BodyStatistics statistics) {
+    long bytes = align(HEADER + 2 * Long.BYTES + 6 * Double.BYTES + 3 * REFERENCE + 1);
+    if (statistics.walksBodies()) {
+      return bytes + align(HEADER + REFERENCE);
+    }
+    int maps = (statistics.getPlanetCount() > 0 ? 1 : 0) + (statistics.getMoonCount() > 0 ? 1 : 0);
+    bytes += maps * align(HEADER + 7 * REFERENCE + 2 * Integer.BYTES);
+    return bytes + statistics.getDistinctOrbitCount()
+        * (align(HEADER + 5 * REFERENCE + 1) + align(HEADER + Double.BYTES));
+  }
+
+  private static long star(Star star, Map<Object, Boolean> seen) {
+    if (star == null || seen.put(star, Boolean.TRUE) != null) {
+      return 0;
+    }
+    return align(HEADER + Integer.BYTES + Double.BYTES);
+  }
+
+  private static long string(String value, Map<Object, Boolean> seen) {
+    if (value == null || seen.put(value, Boolean.TRUE) != null) {
+      return 0;
+    }
+    int bytesPerChar = value.chars().allMatch(c -> c < 256) ? 1 : 2;
+    return align(HEADER + REFERENCE + 2 * Integer.BYTES)
+        + align(ARRAY_HEADER + (long) value.length() * bytesPerChar);
+  }
+
+  private static long list(int size) {
+    long bytes = align(HEADER + 2 * Integer.BYTES + REFERENCE);
+    if (size > 0) {
+      bytes += align(ARRAY_HEADER + (long) Math.max(size, DEFAULT_LIST_CAPACITY) * REFERENCE);
+    }
+    return bytes;
+  }
+
+  private static long align(long bytes) {
+    return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+}
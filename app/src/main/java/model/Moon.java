@@ -4,10 +4,10 @@ package model;
  * The Moon class represents a moon orbiting a planet.
  */
 public class Moon {
-  private String name;
-  private double radius;
-  private double orbitRadius;
-  private Planet parentPlanet;
+  private final int nameId;
+  private final double radius;
+  private final double orbitRadius;
+  private final Planet parentPlanet;
 
   /**
    * Constructs a new Moon object with the specified name, radius, orbit radius,
@@ -30,6 +30,25 @@ public class Moon {
     if (name == null) {
       throw new IllegalArgumentException("Name cannot be null.");
     }
+    validate(radius, orbitRadius, parentPlanet);
+    this.nameId = NameDictionary.id(name);
+    this.radius = radius;
+    this.orbitRadius = orbitRadius;
+    this.parentPlanet = parentPlanet;
+  }
+
+  /**
+   * Constructs a moon whose name is already in the name dictionary.
+   */
+  Moon(int nameId, double radius, double orbitRadius, Planet parentPlanet) {
+    validate(radius, orbitRadius, parentPlanet);
+    this.nameId = nameId;
+    this.radius = radius;
+    this.orbitRadius = orbitRadius;
+    this.parentPlanet = parentPlanet;
+  }
+
+  private static void validate(double radius, double orbitRadius, Planet parentPlanet) {
     if (radius < 10 || radius > parentPlanet.getRadius() * 17) {
       throw new IllegalArgumentException(
           "Moon radius must be larger than 10km and 17x less than the planet radius.\n");
@@ -37,19 +56,24 @@ public class Moon {
     if (orbitRadius < parentPlanet.getRadius() * 5) {
       throw new IllegalArgumentException("Moon's orbit radius must be 5x the planet radius.\n");
     }
-    this.name = name;
-    this.radius = radius;
-    this.orbitRadius = orbitRadius;
-    this.parentPlanet = new Planet(parentPlanet);
   }
 
   /**
-   * Returns the name of the moon.
+   * Returns the name of the moon, decoded from the name dictionary.
    *
    * @return the moon's name
    */
   public String getName() {
-    return name;
+    return NameDictionary.name(nameId);
+  }
+
+  /**
+   * Returns the id of the moon's name in the name dictionary.
+   *
+   * @return the name id
+   */
+  public int getNameId() {
+    return nameId;
   }
 
   /**
@@ -71,16 +95,27 @@ public class Moon {
   }
 
   /**
-   * Returns the parent planet of the moon.
+   * Returns the name of the planet the moon orbits. Only the name is handed
+   * out, so the moons of the planet can only be changed through the
+   * controller.
+   *
+   * @return the name of the parent planet
+   */
+  public String getParentPlanetName() {
+    return parentPlanet.getName();
+  }
+
+  /**
+   * Returns the name of the central star of the moon's solar system.
    *
-   * @return the parent planet
+   * @return the name of the star
    */
-  public Planet getParentPlanet() {
-    return new Planet(parentPlanet);
+  public String getParentStarName() {
+    return parentPlanet.getParentStar().getName();
   }
 
   @Override
   public String toString() {
-    return name + ":" + radius + ":" + orbitRadius;
+    return getName() + ":" + radius + ":" + orbitRadius;
   }
 }
@@ -0,0 +1,551 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The NBodySimulation class integrates the motion of the stars, planets and
+ * moons of solar systems under their mutual gravity. Masses are derived from
+ * the radii with a density per kind of body. Every star starts at rest, offset
+ * from the other stars, every planet starts at its orbit radius around its star
+ * and every moon at its orbit radius around its planet, each on a circular
+ * velocity; the star then takes the opposite of its system's momentum.
+ *
+ * <p>Forces come from a Barnes-Hut octree, which treats a distant cell as a
+ * single mass at its center of mass, so a step takes O(n log n) time. The
+ * bodies are split into ranges whose forces are computed in parallel with
+ * fork/join. Positions are advanced with the kick-drift-kick leapfrog scheme,
+ * which is symplectic and keeps the energy error bounded over long runs. The
+ * bodies and the tree live in primitive arrays that are reused between steps.
+ *
+ * <p>All quantities are SI units: radii and orbit radii in km are converted to
+ * m, and time steps are in seconds.
+ */
+public final class NBodySimulation {
+  /** The density of the Sun in kg/m^3. */
+  public static final double DEFAULT_STAR_DENSITY = 1408;
+  /** The density of the Earth in kg/m^3. */
+  public static final double DEFAULT_PLANET_DENSITY = 5514;
+  /** The density of the Moon in kg/m^3. */
+  public static final double DEFAULT_MOON_DENSITY = 3344;
+
+  static final double G = 6.674e-11;
+  static final double KM = 1000;
+  static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+
+  private static final double THETA = 0.5;
+  private static final double SOFTENING = 1000;
+  private static final double SYSTEM_SPACING = 1e15;
+  private static final int MAX_DEPTH = 64;
+  private static final int BODIES_PER_TASK = 512;
+  private static final int EMPTY = -1;
+  private static final int INTERNAL = -2;
+
+  private final int bodyCount;
+  private final String[] names;
+  private final double[] mass;
+  private final double[] x;
+  private final double[] y;
+  private final double[] z;
+  private final double[] vx;
+  private final double[] vy;
+  private final double[] vz;
+  private final double[] ax;
+  private final double[] ay;
+  private final double[] az;
+  private final double[] potential;
+  private final int[] nextBody;
+
+  private int nodeCount;
+  private int[] children;
+  private int[] nodeBody;
+  private double[] nodeMass;
+  private double[] comX;
+  private double[] comY;
+  private double[] comZ;
+  private double[] centerX;
+  private double[] centerY;
+  private double[] centerZ;
+  private double[] halfSize;
+
+  private double time;
+
+  /**
+   * Sets up a simulation of solar systems with the default densities.
+   *
+   * @param solarSystems the solar systems to simulate together
+   */
+  public NBodySimulation(Collection<SolarSystem> solarSystems) {
+    this(solarSystems, DEFAULT_STAR_DENSITY, DEFAULT_PLANET_DENSITY, DEFAULT_MOON_DENSITY);
+  }
+
+  /**
+   * Sets up a simulation of solar systems. The stars are placed on a cubic grid
+   * far enough apart that the solar systems barely disturb each other.
+   *
+   * @param solarSystems  the solar systems to simulate together
+   *
+   * @param starDensity   the density of stars in kg/m^3
+   *
+   * @param planetDensity the density of planets in kg/m^3
+   *
+   * @param moonDensity   the density of moons in kg/m^3
+   */
+  public NBodySimulation(Collection<SolarSystem> solarSystems, double starDensity, double planetDensity,
+      double moonDensity) {
+    int count = 0;
+    int systems = 0;
+    for (SolarSystem solarSystem : solarSystems) {
+      if (solarSystem.getStar() == null) {
+        continue;
+      }
+      systems++;
+      count++;
+      for (Planet planet : solarSystem.getPlanets()) {
+        count += 1 + planet.getMoons().size();
+      }
+    }
+    bodyCount = count;
+    names = new String[count];
+    mass = new double[count];
+    x = new double[count];
+    y = new double[count];
+    z = new double[count];
+    vx = new double[count];
+    vy = new double[count];
+    vz = new double[count];
+    ax = new double[count];
+    ay = new double[count];
+    az = new double[count];
+    potential = new double[count];
+    nextBody = new int[count];
+    allocateTree(2 * count + 64);
+
+    int side = Math.max(1, (int) Math.ceil(Math.cbrt(systems)));
+    int system = 0;
+    int body = 0;
+    for (SolarSystem solarSystem : solarSystems) {
+      Star star = solarSystem.getStar();
+      if (star == null) {
+        continue;
+      }
+      int starBody = body++;
+      names[starBody] = star.getName();
+      mass[starBody] = mass(star.getRadius(), starDensity);
+      x[starBody] = (system % side) * SYSTEM_SPACING;
+      y[starBody] = (system / side % side) * SYSTEM_SPACING;
+      z[starBody] = (system / side / side) * SYSTEM_SPACING;
+      system++;
+      double momentumX = 0;
+      double momentumY = 0;
+      int planetIndex = 0;
+      for (Planet planet : solarSystem.getPlanets()) {
+        int planetBody = body++;
+        names[planetBody] = star.getName() + "/" + planet.getName();
+        mass[planetBody] = mass(planet.getRadius(), planetDensity);
+        placeInOrbit(planetBody, starBody, planet.getOrbitRadius() * KM, planetIndex++);
+        momentumX += mass[planetBody] * vx[planetBody];
+        momentumY += mass[planetBody] * vy[planetBody];
+        int moonIndex = 0;
+        for (Moon moon : planet.getMoons()) {
+          int moonBody = body++;
+          names[moonBody] = names[planetBody] + "/" + moon.getName();
+          mass[moonBody] = mass(moon.getRadius(), moonDensity);
+          placeInOrbit(moonBody, planetBody, moon.getOrbitRadius() * KM, moonIndex++);
+          momentumX += mass[moonBody] * vx[moonBody];
+          momentumY += mass[moonBody] * vy[moonBody];
+        }
+      }
+      vx[starBody] = -momentumX / mass[starBody];
+      vy[starBody] = -momentumY / mass[starBody];
+    }
+    computeForces();
+  }
+
+  /**
+   * Returns the number of simulated bodies.
+   *
+   * @return the number of stars, planets and moons
+   */
+  public int getBodyCount() {
+    return bodyCount;
+  }
+
+  /**
+   * Returns the simulated time.
+   *
+   * @return the time since the start in seconds
+   */
+  public double getTime() {
+    return time;
+  }
+
+  /**
+   * Returns the path of a body: the star's name, followed by the planet's and
+   * the moon's names separated by `/`, such as `Sun/Earth/Moon`.
+   *
+   * @param body the index of the body
+   *
+   * @return the body's path
+   */
+  public String getName(int body) {
+    return names[body];
+  }
+
+  /**
+   * Returns the mass of a body.
+   *
+   * @param body the index of the body
+   *
+   * @return the body's mass in kg
+   */
+  public double getMass(int body) {
+    return mass[body];
+  }
+
+  /**
+   * Returns the position of a body.
+   *
+   * @param body the index of the body
+   *
+   * @return the x, y and z coordinates in m
+   */
+  public double[] getPosition(int body) {
+    return new double[] {x[body], y[body], z[body]};
+  }
+
+  /**
+   * Returns the velocity of a body.
+   *
+   * @param body the index of the body
+   *
+   * @return the x, y and z components in m/s
+   */
+  public double[] getVelocity(int body) {
+    return new double[] {vx[body], vy[body], vz[body]};
+  }
+
+  /**
+   * Returns one coordinate of the state of a body without allocating.
+   *
+   * @param body   the index of the body
+   *
+   * @param column 0 to 2 for the x, y and z position in m, 3 to 5 for the x, y
+   *               and z velocity in m/s
+   *
+   * @return the coordinate
+   */
+  public double getState(int body, int column) {
+    switch (column) {
+      case 0:
+        return x[body];
+      case 1:
+        return y[body];
+      case 2:
+        return z[body];
+      case 3:
+        return vx[body];
+      case 4:
+        return vy[body];
+      case 5:
+        return vz[body];
+      default:
+        throw new IndexOutOfBoundsException("Column " + column + " out of range.");
+    }
+  }
+
+  /**
+   * Advances the simulation with the leapfrog scheme.
+   *
+   * @param steps    the number of steps
+   *
+   * @param timeStep the length of a step in seconds
+   */
+  public void step(int steps, double timeStep) {
+    double halfStep = timeStep / 2;
+    for (int s = 0; s < steps; s++) {
+      for (int i = 0; i < bodyCount; i++) {
+        vx[i] += ax[i] * halfStep;
+        vy[i] += ay[i] * halfStep;
+        vz[i] += az[i] * halfStep;
+        x[i] += vx[i] * timeStep;
+        y[i] += vy[i] * timeStep;
+        z[i] += vz[i] * timeStep;
+      }
+      computeForces();
+      for (int i = 0; i < bodyCount; i++) {
+        vx[i] += ax[i] * halfStep;
+        vy[i] += ay[i] * halfStep;
+        vz[i] += az[i] * halfStep;
+      }
+      time += timeStep;
+    }
+  }
+
+  /**
+   * Returns the total energy of the bodies, with the potential energy taken
+   * from the last force computation. The relative change of the energy over a
+   * run shows how accurate the time step and the tree approximation are.
+   *
+   * @return the kinetic plus potential energy in J
+   */
+  public double getEnergy() {
+    double energy = 0;
+    for (int i = 0; i < bodyCount; i++) {
+      energy += mass[i] * (0.5 * (vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i]) + 0.5 * potential[i]);
+    }
+    return energy;
+  }
+
+  static double mass(double radiusKm, double density) {
+    double radius = radiusKm * KM;
+    return density * 4 / 3 * Math.PI * radius * radius * radius;
+  }
+
+  /**
+   * Places a body on a circular orbit around its parent, at a golden-angle
+   * phase so siblings are spread around the parent.
+   */
+  private void placeInOrbit(int body, int parent, double orbitRadius, int index) {
+    double angle = index * GOLDEN_ANGLE;
+    double cos = Math.cos(angle);
+    double sin = Math.sin(angle);
+    double speed = Math.sqrt(G * mass[parent] / orbitRadius);
+    x[body] = x[parent] + orbitRadius * cos;
+    y[body] = y[parent] + orbitRadius * sin;
+    z[body] = z[parent];
+    vx[body] = vx[parent] - speed * sin;
+    vy[body] = vy[parent] + speed * cos;
+    vz[body] = vz[parent];
+  }
+
+  private void computeForces() {
+    buildTree();
+    if (bodyCount > 0) {
+      ForkJoinPool.commonPool().invoke(new ForceTask(0, bodyCount));
+    }
+  }
+
+  /**
+   * Computes the accelerations of a range of bodies, splitting the range until
+   * it is small enough.
+   */
+  private final class ForceTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final int from;
+    private final int to;
+
+    private ForceTask(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= BODIES_PER_TASK) {
+        for (int i = from; i < to; i++) {
+          ax[i] = 0;
+          ay[i] = 0;
+          az[i] = 0;
+          potential[i] = 0;
+          accumulate(i, 0);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new ForceTask(from, middle), new ForceTask(middle, to));
+    }
+  }
+
+  /**
+   * Adds the pull of a tree node on a body, opening the node if it is too close
+   * or contains the body.
+   */
+  private void accumulate(int i, int node) {
+    int body = nodeBody[node];
+    if (body >= 0) {
+      for (int j = body; j >= 0; j = nextBody[j]) {
+        if (j != i) {
+          pull(i, mass[j], x[j], y[j], z[j]);
+        }
+      }
+      return;
+    }
+    if (body == EMPTY) {
+      return;
+    }
+    double size = 2 * halfSize[node];
+    double dx = comX[node] - x[i];
+    double dy = comY[node] - y[i];
+    double dz = comZ[node] - z[i];
+    double distanceSquared = dx * dx + dy * dy + dz * dz;
+    boolean contains = Math.abs(x[i] - centerX[node]) <= halfSize[node]
+        && Math.abs(y[i] - centerY[node]) <= halfSize[node]
+        && Math.abs(z[i] - centerZ[node]) <= halfSize[node];
+    if (!contains && size * size < THETA * THETA * distanceSquared) {
+      pull(i, nodeMass[node], comX[node], comY[node], comZ[node]);
+      return;
+    }
+    int first = node * 8;
+    for (int octant = 0; octant < 8; octant++) {
+      int child = children[first + octant];
+      if (child >= 0) {
+        accumulate(i, child);
+      }
+    }
+  }
+
+  private void pull(int i, double otherMass, double otherX, double otherY, double otherZ) {
+    double dx = otherX - x[i];
+    double dy = otherY - y[i];
+    double dz = otherZ - z[i];
+    double distanceSquared = dx * dx + dy * dy + dz * dz + SOFTENING * SOFTENING;
+    double inverseDistance = 1 / Math.sqrt(distanceSquared);
+    double strength = G * otherMass * inverseDistance;
+    double acceleration = strength * inverseDistance * inverseDistance;
+    ax[i] += acceleration * dx;
+    ay[i] += acceleration * dy;
+    az[i] += acceleration * dz;
+    potential[i] -= strength;
+  }
+
+  /**
+   * Rebuilds the octree over the current positions. Nodes are taken from the
+   * preallocated arrays, which only grow if a step needs more nodes than any
+   * step before.
+   */
+  private void buildTree() {
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double minZ = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double maxZ = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < bodyCount; i++) {
+      minX = Math.min(minX, x[i]);
+      minY = Math.min(minY, y[i]);
+      minZ = Math.min(minZ, z[i]);
+      maxX = Math.max(maxX, x[i]);
+      maxY = Math.max(maxY, y[i]);
+      maxZ = Math.max(maxZ, z[i]);
+    }
+    nodeCount = 0;
+    int root = newNode((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2,
+        Math.max(Math.max(maxX - minX, maxY - minY), Math.max(maxZ - minZ, 1)) / 2 * 1.0001);
+    for (int i = 0; i < bodyCount; i++) {
+      insert(root, i);
+    }
+    for (int node = 0; node < nodeCount; node++) {
+      if (nodeMass[node] > 0) {
+        comX[node] /= nodeMass[node];
+        comY[node] /= nodeMass[node];
+        comZ[node] /= nodeMass[node];
+      }
+    }
+  }
+
+  /**
+   * Inserts a body below a node, adding its mass to every node on the way. A
+   * leaf that receives a second body is split, unless the bodies coincide or
+   * the tree is at its maximum depth, in which case the leaf keeps a list.
+   */
+  private void insert(int root, int i) {
+    int node = root;
+    for (int depth = 0;; depth++) {
+      addMass(node, mass[i], x[i], y[i], z[i]);
+      int body = nodeBody[node];
+      if (body == EMPTY) {
+        nodeBody[node] = i;
+        nextBody[i] = EMPTY;
+        return;
+      }
+      if (body >= 0) {
+        if (depth >= MAX_DEPTH || (x[body] == x[i] && y[body] == y[i] && z[body] == z[i])) {
+          nextBody[i] = body;
+          nodeBody[node] = i;
+          return;
+        }
+        nodeBody[node] = INTERNAL;
+        int child = child(node, octant(node, body));
+        nodeBody[child] = body;
+        for (int j = body; j >= 0; j = nextBody[j]) {
+          addMass(child, mass[j], x[j], y[j], z[j]);
+        }
+      }
+      node = child(node, octant(node, i));
+    }
+  }
+
+  private void addMass(int node, double bodyMass, double bodyX, double bodyY, double bodyZ) {
+    nodeMass[node] += bodyMass;
+    comX[node] += bodyMass * bodyX;
+    comY[node] += bodyMass * bodyY;
+    comZ[node] += bodyMass * bodyZ;
+  }
+
+  private int octant(int node, int i) {
+    return (x[i] >= centerX[node] ? 1 : 0) | (y[i] >= centerY[node] ? 2 : 0) | (z[i] >= centerZ[node] ? 4 : 0);
+  }
+
+  /**
+   * Returns the child of a node in an octant, creating it if needed.
+   */
+  private int child(int node, int octant) {
+    int existing = children[node * 8 + octant];
+    if (existing >= 0) {
+      return existing;
+    }
+    double quarter = halfSize[node] / 2;
+    int child = newNode(centerX[node] + ((octant & 1) != 0 ? quarter : -quarter),
+        centerY[node] + ((octant & 2) != 0 ? quarter : -quarter),
+        centerZ[node] + ((octant & 4) != 0 ? quarter : -quarter), quarter);
+    children[node * 8 + octant] = child;
+    return child;
+  }
+
+  private int newNode(double cx, double cy, double cz, double half) {
+    if (nodeCount == nodeMass.length) {
+      allocateTree(2 * nodeCount);
+    }
+    int node = nodeCount++;
+    Arrays.fill(children, node * 8, node * 8 + 8, EMPTY);
+    nodeBody[node] = EMPTY;
+    nodeMass[node] = 0;
+    comX[node] = 0;
+    comY[node] = 0;
+    comZ[node] = 0;
+    centerX[node] = cx;
+    centerY[node] = cy;
+    centerZ[node] = cz;
+    halfSize[node] = half;
+    return node;
+  }
+
+  private void allocateTree(int capacity) {
+    if (children == null) {
+      children = new int[capacity * 8];
+      nodeBody = new int[capacity];
+      nodeMass = new double[capacity];
+      comX = new double[capacity];
+      comY = new double[capacity];
+      comZ = new double[capacity];
+      centerX = new double[capacity];
+      centerY = new double[capacity];
+      centerZ = new double[capacity];
+      halfSize = new double[capacity];
+      return;
+    }
+    children = Arrays.copyOf(children, capacity * 8);
+    nodeBody = Arrays.copyOf(nodeBody, capacity);
+    nodeMass = Arrays.copyOf(nodeMass, capacity);
+    comX = Arrays.copyOf(comX, capacity);
+    comY = Arrays.copyOf(comY, capacity);
+    comZ = Arrays.copyOf(comZ, capacity);
+    centerX = Arrays.copyOf(centerX, capacity);
+    centerY = Arrays.copyOf(centerY, capacity);
+    centerZ = Arrays.copyOf(centerZ, capacity);
+    halfSize = Arrays.copyOf(halfSize, capacity);
+  }
+}
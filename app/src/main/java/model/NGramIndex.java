@@ -0,0 +1,450 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The NGramIndex class finds the names closest to a misspelt name. Every name is
+ * lower-cased, padded with two spaces in front and one behind, and split into
+ * its overlapping three-character grams; each gram and the position it starts
+ * at keep the list of names they occur in.
+ *
+ * <p>Edits are insertions, deletions, substitutions and swaps of adjacent
+ * characters. A single edit destroys at most four grams and moves the others by
+ * at most one position, so a name within edit distance k of a query keeps at
+ * least g - 4k of the query's g grams, each within k positions of where the
+ * query has it, and must therefore appear in the lists of one of the 4k + 1
+ * query grams whose lists are shortest. Only those lists are read, so common
+ * grams such as "oon" are never scanned when the query also contains rarer
+ * ones.
+ *
+ * <p>Every name also has a profile of one long, holding its length and a bit for
+ * each letter or digit it contains. An edit changes the length by at most one
+ * and at most two bits, so most names from the lists are rejected by comparing
+ * profiles, which sit in one array, before their strings are touched. Only the
+ * rest are checked with a banded edit distance.
+ *
+ * <p>Names are identified by their ids in the {@link NameDictionary}, which index
+ * the counts and profiles, so the index keeps no strings of its own and decodes
+ * only the names that pass the profile check. Names are counted, so a name
+ * added several times stays until it was removed as often. Removed names are
+ * left in the gram lists and skipped, and the lists are rebuilt once more than
+ * half of the names in them are removed.
+ *
+ * <p>A query of fewer than four characters has at most four grams, which a
+ * single edit can all destroy, so "ab" and "ba" share none. Names of up to
+ * four characters are therefore also listed by their length, and such a query
+ * reads the lists of the lengths within one edit of its own.
+ */
+public final class NGramIndex {
+  private static final int MAX_CANDIDATES = 50000;
+  private static final int MIN_REBUILD = 1024;
+  private static final long LENGTH_MASK = 0xff;
+  private static final int SHORT_LENGTH = 4;
+
+  private final BitSet indexed;
+  private int indexedCount;
+  private int[] counts;
+  private long[] profiles;
+  private int removed;
+  private final Map<Long, Postings> postings;
+  private final Postings[] shortNames;
+
+  /**
+   * The identifiers of the names a gram occurs in at a position.
+   */
+  private static final class Postings {
+    private int[] ids = new int[4];
+    private int size;
+
+    private void add(int id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+  }
+
+  /**
+   * A name and its edit distance from a query.
+   */
+  private static final class Match {
+    private final String name;
+    private final int distance;
+
+    private Match(String name, int distance) {
+      this.name = name;
+      this.distance = distance;
+    }
+  }
+
+  /**
+   * The closest names found so far, at most a limit of them.
+   */
+  private static final class Matches {
+    private static final Comparator<Match> CLOSER = Comparator.<Match>comparingInt(match -> match.distance)
+        .thenComparing(match -> match.name);
+
+    private final PriorityQueue<Match> best = new PriorityQueue<>(CLOSER.reversed());
+    private final int limit;
+    private int bound;
+
+    private Matches(int limit, int bound) {
+      this.limit = limit;
+      this.bound = bound;
+    }
+
+    private void offer(String name, int distance) {
+      if (distance > bound) {
+        return;
+      }
+      Match match = new Match(name, distance);
+      if (best.size() < limit) {
+        best.add(match);
+      } else if (CLOSER.compare(match, best.peek()) < 0) {
+        best.poll();
+        best.add(match);
+      }
+      if (best.size() == limit) {
+        bound = best.peek().distance;
+      }
+    }
+
+    private List<String> names() {
+      List<Match> matches = new ArrayList<>(best);
+      matches.sort(CLOSER);
+      List<String> names = new ArrayList<>(matches.size());
+      for (Match match : matches) {
+        names.add(match.name);
+      }
+      return names;
+    }
+  }
+
+  /**
+   * Constructs an empty index.
+   */
+  public NGramIndex() {
+    this.indexed = new BitSet();
+    this.counts = new int[16];
+    this.profiles = new long[16];
+    this.postings = new HashMap<>();
+    this.shortNames = new Postings[SHORT_LENGTH + 1];
+  }
+
+  /**
+   * Counts a name once more.
+   *
+   * @param name the name to add
+   */
+  public void add(String name) {
+    add(NameDictionary.id(name), name);
+  }
+
+  private void add(int id, String name) {
+    if (id >= counts.length) {
+      int length = Math.max(id + 1, Math.max(counts.length * 2, NameDictionary.size()));
+      counts = Arrays.copyOf(counts, length);
+      profiles = Arrays.copyOf(profiles, length);
+    }
+    if (!indexed.get(id)) {
+      indexed.set(id);
+      indexedCount++;
+      String normalized = normalize(name);
+      long[] grams = grams(normalized);
+      for (int position = 0; position < grams.length; position++) {
+        postings.computeIfAbsent(key(grams[position], position), key -> new Postings()).add(id);
+      }
+      if (normalized.length() <= SHORT_LENGTH) {
+        if (shortNames[normalized.length()] == null) {
+          shortNames[normalized.length()] = new Postings();
+        }
+        shortNames[normalized.length()].add(id);
+      }
+    } else if (counts[id] == 0) {
+      removed--;
+    }
+    if (counts[id]++ == 0) {
+      profiles[id] = profile(normalize(name));
+    }
+  }
+
+  /**
+   * Counts a name once less. Names that were not added are ignored.
+   *
+   * @param name the name to remove
+   */
+  public void remove(String name) {
+    int id = NameDictionary.find(name);
+    if (id < 0 || id >= counts.length || counts[id] == 0) {
+      return;
+    }
+    if (--counts[id] == 0) {
+      profiles[id] = LENGTH_MASK;
+      removed++;
+      if (removed > MIN_REBUILD && removed > indexedCount / 2) {
+        rebuild();
+      }
+    }
+  }
+
+  /**
+   * Finds the names closest to a name by edit distance, ignoring case. Names one
+   * edit away are close to names shorter than eight characters, and names two
+   * edits away to longer ones.
+   *
+   * @param name  the misspelt name
+   *
+   * @param limit the largest number of names to return
+   *
+   * @return at most limit names, the closest first, never the name itself
+   */
+  public List<String> closest(String name, int limit) {
+    String query = normalize(name);
+    if (limit <= 0 || query.length() >= LENGTH_MASK) {
+      return new ArrayList<>();
+    }
+    int queryId = NameDictionary.find(name);
+    int maxDistance = maxDistance(query);
+    long queryProfile = profile(query);
+    long[] grams = grams(query);
+    Postings[][] lists = new Postings[grams.length][];
+    int[] sizes = new int[grams.length];
+    Integer[] order = new Integer[grams.length];
+    for (int i = 0; i < grams.length; i++) {
+      List<Postings> shifted = new ArrayList<>();
+      for (int position = Math.max(0, i - maxDistance); position <= i + maxDistance; position++) {
+        Postings list = postings.get(key(grams[i], position));
+        if (list != null) {
+          shifted.add(list);
+          sizes[i] += list.size;
+        }
+      }
+      lists[i] = shifted.toArray(new Postings[0]);
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingInt(i -> sizes[i]));
+    int listsToRead = Math.min(grams.length, 4 * maxDistance + 1);
+    List<Postings> toRead = new ArrayList<>();
+    for (int i = 0; i < listsToRead; i++) {
+      toRead.addAll(Arrays.asList(lists[order[i]]));
+    }
+    if (grams.length <= 4 * maxDistance) {
+      int longest = Math.min(SHORT_LENGTH, query.length() + maxDistance);
+      for (int length = Math.max(0, query.length() - maxDistance); length <= longest; length++) {
+        if (shortNames[length] != null) {
+          toRead.add(shortNames[length]);
+        }
+      }
+    }
+    int[] candidates = new int[64];
+    int gathered = 0;
+    for (int i = 0; i < toRead.size() && gathered < MAX_CANDIDATES; i++) {
+      Postings list = toRead.get(i);
+      for (int j = 0; j < list.size && gathered < MAX_CANDIDATES; j++) {
+          int id = list.ids[j];
+        if (isClose(profiles[id], queryProfile, maxDistance)) {
+          if (gathered == candidates.length) {
+            candidates = Arrays.copyOf(candidates, gathered * 2);
+          }
+          candidates[gathered++] = id;
+        }
+      }
+    }
+    Arrays.sort(candidates, 0, gathered);
+    Matches best = new Matches(limit, maxDistance);
+    for (int c = 0; c < gathered; c++) {
+      int id = candidates[c];
+      if (c > 0 && candidates[c - 1] == id || id == queryId
+          || !isClose(profiles[id], queryProfile, best.bound)) {
+        continue;
+      }
+      String candidate = NameDictionary.name(id);
+      best.offer(candidate, distance(query, normalize(candidate), best.bound));
+    }
+    return best.names();
+  }
+
+  /**
+   * Finds the names closest to a name by edit distance among a few given names,
+   * such as the planets of one solar system, by the same rules as
+   * {@link #closest}. Every given name is checked, so no index is needed.
+   *
+   * @param name  the misspelt name
+   *
+   * @param names the names to choose from
+   *
+   * @param limit the largest number of names to return
+   *
+   * @return at most limit names, the closest first, never the name itself
+   */
+  public static List<String> closestAmong(String name, Collection<String> names, int limit) {
+    String query = normalize(name);
+    if (limit <= 0 || query.length() >= LENGTH_MASK) {
+      return new ArrayList<>();
+    }
+    long queryProfile = profile(query);
+    Matches best = new Matches(limit, maxDistance(query));
+    for (String candidate : names) {
+      String normalized = normalize(candidate);
+      if (!candidate.equals(name) && normalized.length() < LENGTH_MASK
+          && isClose(profile(normalized), queryProfile, best.bound)) {
+        best.offer(candidate, distance(query, normalized, best.bound));
+      }
+    }
+    return best.names();
+  }
+
+  /**
+   * Estimates the heap used by the index.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateBytes() {
+    long bytes = 48 + 40 + indexed.size() / 8 + 16 + 4L * counts.length + 16 + 8L * profiles.length;
+    for (Postings list : postings.values()) {
+      bytes += 32 + 8 + 16 + 24 + 16 + 4L * list.ids.length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Drops removed names and rebuilds the gram lists.
+   */
+  private void rebuild() {
+    int[] liveCounts = counts;
+    indexed.clear();
+    indexedCount = 0;
+    postings.clear();
+    Arrays.fill(shortNames, null);
+    counts = new int[liveCounts.length];
+    profiles = new long[liveCounts.length];
+    removed = 0;
+    for (int id = 0; id < liveCounts.length; id++) {
+      if (liveCounts[id] > 0) {
+        add(id, NameDictionary.name(id));
+        counts[id] = liveCounts[id];
+      }
+    }
+  }
+
+  private static int maxDistance(String query) {
+    return query.length() < 8 ? 1 : 2;
+  }
+
+  private static String normalize(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the profile of a lower-cased name: its length in the lowest eight
+   * bits, and above them a bit for each letter, each digit and, folded into the
+   * remaining twenty bits, every other character it contains.
+   */
+  private static long profile(String name) {
+    long letters = 0;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      int bit;
+      if (c >= 'a' && c <= 'z') {
+        bit = c - 'a';
+      } else if (c >= '0' && c <= '9') {
+        bit = 26 + c - '0';
+      } else {
+        bit = 36 + c % 20;
+      }
+      letters |= 1L << bit;
+    }
+    return letters << 8 | Math.min(name.length(), LENGTH_MASK - 1);
+  }
+
+  /**
+   * Checks whether two profiles allow their names to be within an edit distance
+   * of each other. A profile of a removed name is never close.
+   */
+  private static boolean isClose(long profile, long queryProfile, int distance) {
+    long length = profile & LENGTH_MASK;
+    return length != LENGTH_MASK && Math.abs(length - (queryProfile & LENGTH_MASK)) <= distance
+        && Long.bitCount((profile ^ queryProfile) >>> 8) <= 2 * distance;
+  }
+
+  /**
+   * Returns the grams of a lower-cased name in order, each packed into a long.
+   */
+  private static long[] grams(String name) {
+    String padded = "  " + name + " ";
+    long[] grams = new long[padded.length() - 2];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+    }
+    return grams;
+  }
+
+  /**
+   * Packs a gram and the position it starts at into the key of its list. The
+   * packed bits are multiplied by an odd constant, which keeps keys distinct
+   * but spreads them over the hash table.
+   */
+  private static long key(long gram, int position) {
+    return (gram << 16 | Math.min(position, 0xffff)) * 0x9e3779b97f4a7c15L;
+  }
+
+  /**
+   * Computes the edit distance of two names, counting insertions, deletions,
+   * substitutions and swaps of adjacent characters, and giving up as soon as it
+   * must exceed a bound. Only the cells within the bound of the diagonal are
+   * filled.
+   *
+   * @return the distance, or bound + 1 if it is larger than the bound
+   */
+  private static int distance(String first, String second, int bound) {
+    int[] beforePrevious = new int[second.length() + 1];
+    int[] previous = new int[second.length() + 1];
+    int[] current = new int[second.length() + 1];
+    int outside = bound + 1;
+    for (int j = 0; j <= second.length(); j++) {
+      previous[j] = j <= bound ? j : outside;
+    }
+    for (int i = 1; i <= first.length(); i++) {
+      int from = Math.max(1, i - bound);
+      int to = Math.min(second.length(), i + bound);
+      current[0] = i <= bound ? i : outside;
+      if (from > 1) {
+        current[from - 1] = outside;
+      }
+      int rowMinimum = current[0];
+      for (int j = from; j <= to; j++) {
+        char a = first.charAt(i - 1);
+        char b = second.charAt(j - 1);
+        int substitution = previous[j - 1] + (a == b ? 0 : 1);
+        int deletion = previous[j] + 1;
+        int insertion = current[j - 1] + 1;
+        int cell = Math.min(substitution, Math.min(deletion, insertion));
+        if (i > 1 && j > 1 && a == second.charAt(j - 2) && first.charAt(i - 2) == b) {
+          cell = Math.min(cell, beforePrevious[j - 2] + 1);
+        }
+        current[j] = Math.min(outside, cell);
+        rowMinimum = Math.min(rowMinimum, current[j]);
+      }
+      if (to < second.length()) {
+        current[to + 1] = outside;
+      }
+      if (rowMinimum > bound) {
+        return outside;
+      }
+      int[] swap = beforePrevious;
+      beforePrevious = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[second.length()];
+  }
+}
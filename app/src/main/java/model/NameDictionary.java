@@ -0,0 +1,248 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The NameDictionary class gives every distinct name of a star, planet or moon
+ * a dense integer id, starting at 0 in the order the names are first seen.
+ * Bodies resolve their names once when they are created, so finding a planet
+ * or moon by name only hashes the searched name and then compares ints instead
+ * of strings.
+ *
+ * <p>Bodies keep only the id, and the dictionary keeps each distinct name once,
+ * as UTF-8 bytes appended to a shared arena, which for the ASCII names of most
+ * catalogs is one byte per character and no object per name. Names are decoded
+ * into a new String only when they are asked for, for example to display a
+ * body; callers that only compare names use the ids, `matches` or `bytes`
+ * instead. The ids are kept in an open addressing table of ints that holds
+ * each id at the slot its name hashes to, so a name costs its bytes, an offset
+ * and a table slot.
+ *
+ * <p>Only adding a name takes a lock. The arrays and the number of names are
+ * published together through a volatile field, and an added name is written to
+ * the arrays before the new count is published. Arrays that are full are copied
+ * into larger ones, so a reader holding the previous table still sees all names
+ * it counts. A reader may meet a slot of a name added after its table was
+ * published; linear probing never moves older names past such a slot, so the
+ * slot ends the search as if it were empty.
+ *
+ * <p>Ids are never freed or reused, which keeps every id held by a body,
+ * version or index valid for the life of the program. The dictionary therefore
+ * grows with the number of distinct names ever used, not with the number of
+ * bodies that exist: a session that creates and removes bodies under ever new
+ * names keeps all of those names until it ends.
+ */
+public final class NameDictionary {
+  private static final Object LOCK = new Object();
+  private static volatile Table table = new Table(new byte[1024], new int[64], new int[128], 0);
+
+  private NameDictionary() {
+  }
+
+  /**
+   * The arrays of the dictionary and the number of names they hold. The arrays
+   * may hold names added later, past the count.
+   */
+  private static final class Table {
+    private final byte[] arena;
+    private final int[] ends;
+    private final int[] slots;
+    private final int size;
+
+    private Table(byte[] arena, int[] ends, int[] slots, int size) {
+      this.arena = arena;
+      this.ends = ends;
+      this.slots = slots;
+      this.size = size;
+    }
+
+    private int start(int id) {
+      return id == 0 ? 0 : ends[id - 1];
+    }
+
+    /**
+     * Returns the slot holding a name, or the slot where the search for it
+     * ended.
+     */
+    private int slot(byte[] bytes) {
+      int mask = slots.length - 1;
+      int slot = hash(bytes, 0, bytes.length) & mask;
+      int entry;
+      while ((entry = slots[slot]) != 0 && entry <= size) {
+        int id = entry - 1;
+        if (Arrays.equals(arena, start(id), ends[id], bytes, 0, bytes.length)) {
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private int find(byte[] bytes) {
+      int entry = slots[slot(bytes)];
+      return entry == 0 || entry > size ? -1 : entry - 1;
+    }
+  }
+
+  /**
+   * Returns the id of a name, giving the name the next id if it has none yet.
+   *
+   * @param name the name
+   *
+   * @return the id of the name
+   */
+  public static int id(String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    int id = table.find(bytes);
+    if (id >= 0) {
+      return id;
+    }
+    synchronized (LOCK) {
+      Table current = table;
+      id = current.find(bytes);
+      if (id >= 0) {
+        return id;
+      }
+      int size = current.size;
+      int start = current.start(size);
+      byte[] arena = current.arena;
+      if (start + bytes.length > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(start + bytes.length, arena.length * 2));
+      }
+      System.arraycopy(bytes, 0, arena, start, bytes.length);
+      int[] ends = size == current.ends.length ? Arrays.copyOf(current.ends, size * 2) : current.ends;
+      ends[size] = start + bytes.length;
+      int[] slots = current.slots;
+      if ((size + 1) * 2 > slots.length) {
+        slots = rehash(arena, ends, size + 1, slots.length * 2);
+      } else {
+        slots[current.slot(bytes)] = size + 1;
+      }
+      table = new Table(arena, ends, slots, size + 1);
+      return size;
+    }
+  }
+
+  /**
+   * Returns the id of a name without adding it.
+   *
+   * @param name the name
+   *
+   * @return the id of the name, or -1 if no body was ever given the name
+   */
+  public static int find(String name) {
+    return name == null ? -1 : table.find(name.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes the name of an id.
+   *
+   * @param id the id
+   *
+   * @return a new String holding the name
+   *
+   * @throws IndexOutOfBoundsException if no name has the id
+   */
+  public static String name(int id) {
+    Table current = table;
+    check(current, id);
+    int start = current.start(id);
+    return new String(current.arena, start, current.ends[id] - start, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Copies the UTF-8 bytes of the name of an id, without decoding it.
+   *
+   * @param id the id
+   *
+   * @return the encoded name
+   *
+   * @throws IndexOutOfBoundsException if no name has the id
+   */
+  public static byte[] bytes(int id) {
+    Table current = table;
+    check(current, id);
+    return Arrays.copyOfRange(current.arena, current.start(id), current.ends[id]);
+  }
+
+  /**
+   * Returns whether an id is the id of a name, comparing the name with the
+   * stored bytes instead of decoding them. ASCII names are compared without
+   * allocating.
+   *
+   * @param id   the id
+   *
+   * @param name the name
+   *
+   * @return `true` if the id names the name, `false` otherwise
+   */
+  public static boolean matches(int id, String name) {
+    Table current = table;
+    if (name == null || id < 0 || id >= current.size) {
+      return false;
+    }
+    int start = current.start(id);
+    int length = current.ends[id] - start;
+    if (length != name.length()) {
+      return length >= name.length() && find(name) == id;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = name.charAt(i);
+      if (c >= 0x80) {
+        return find(name) == id;
+      }
+      if (current.arena[start + i] != c) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of distinct names.
+   *
+   * @return the number of ids given out
+   */
+  public static int size() {
+    return table.size;
+  }
+
+  /**
+   * Estimates the heap used by the dictionary.
+   *
+   * @return the estimated size in bytes
+   */
+  public static long estimateBytes() {
+    Table current = table;
+    return current.arena.length + 4L * current.ends.length + 4L * current.slots.length;
+  }
+
+  private static void check(Table current, int id) {
+    if (id < 0 || id >= current.size) {
+      throw new IndexOutOfBoundsException("No name has the id " + id + ".");
+    }
+  }
+
+  private static int[] rehash(byte[] arena, int[] ends, int size, int length) {
+    int[] slots = new int[length];
+    int mask = length - 1;
+    for (int id = 0; id < size; id++) {
+      int start = id == 0 ? 0 : ends[id - 1];
+      int slot = hash(arena, start, ends[id]) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = id + 1;
+    }
+    return slots;
+  }
+
+  private static int hash(byte[] bytes, int from, int to) {
+    int hash = 0;
+    for (int i = from; i < to; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    return hash * 0x9e3779b9 ^ hash >>> 16;
+  }
+}
@@ -0,0 +1,460 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The OffHeapBodyStore class keeps stars, planets and moons as fixed-size
+ * records in direct buffers outside the Java heap, so a universe of hundreds of
+ * millions of bodies costs neither an object header per body nor garbage
+ * collection work. The store is an alternative to the object model for bodies
+ * that are only read; it is built from solar systems or mapped from a file.
+ *
+ * <p>Every record is {@value #RECORD_BYTES} little-endian bytes: the radius and
+ * the orbit radius as doubles, the offset of the name as a long, the index of
+ * the parent record as an int, -1 for a star, and the length of the name as an
+ * int whose top two bits hold the kind of body. Names are stored once per
+ * distinct name as UTF-8 bytes in a separate area. Records and names are split
+ * into chunks of at most {@value #RECORDS_PER_CHUNK} records and
+ * {@value #NAME_CHUNK_BYTES} bytes, since a buffer holds at most 2 GB; a name
+ * never crosses two chunks.
+ *
+ * <p>Records are read through {@link Body} views. A view is a flyweight that
+ * holds only a record index, so one view can walk the whole store without
+ * creating an object per body.
+ *
+ * <p>A store is written to a file as a header of {@value #HEADER_BYTES} bytes,
+ * holding the magic `SSBS`, the format version, the number of records, the
+ * length of the name area and the two chunk sizes, followed by the records and
+ * the name area. A mapped store reads its chunks straight from the file pages
+ * and cannot be changed.
+ */
+public final class OffHeapBodyStore {
+  /** The kind of a star record. */
+  public static final int STAR = 0;
+  /** The kind of a planet record. */
+  public static final int PLANET = 1;
+  /** The kind of a moon record. */
+  public static final int MOON = 2;
+
+  static final int RECORD_BYTES = 32;
+  static final int RECORDS_PER_CHUNK = 1 << 19;
+  static final int NAME_CHUNK_BYTES = 1 << 24;
+  static final int HEADER_BYTES = 32;
+  private static final int MAGIC = 0x53534253;
+  private static final int VERSION = 1;
+  private static final int MIN_RECORDS = 256;
+  private static final int MIN_NAME_BYTES = 4096;
+  private static final int RADIUS = 0;
+  private static final int ORBIT_RADIUS = 8;
+  private static final int NAME_OFFSET = 16;
+  private static final int PARENT = 24;
+  private static final int NAME_LENGTH = 28;
+  private static final int KIND_SHIFT = 30;
+  private static final int LENGTH_MASK = (1 << KIND_SHIFT) - 1;
+
+  private ByteBuffer[] records;
+  private ByteBuffer[] names;
+  private int size;
+  private long nameBytes;
+  private long[] nameOffsets;
+  private int[] nameLengths;
+  private final boolean readOnly;
+
+  /**
+   * A view of one record. Moving a view to another record changes what all of
+   * its getters return.
+   */
+  public final class Body {
+    private int record;
+
+    private Body(int record) {
+      this.record = record;
+    }
+
+    /**
+     * Moves the view to another record.
+     *
+     * @param record the index of the record
+     *
+     * @return this view
+     *
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public Body moveTo(int record) {
+      if (record < 0 || record >= size) {
+        throw new IndexOutOfBoundsException("No body has the index " + record + ".");
+      }
+      this.record = record;
+      return this;
+    }
+
+    /**
+     * Returns the index of the record the view shows.
+     *
+     * @return the record index
+     */
+    public int getIndex() {
+      return record;
+    }
+
+    /**
+     * Returns the kind of the body.
+     *
+     * @return {@link #STAR}, {@link #PLANET} or {@link #MOON}
+     */
+    public int getKind() {
+      return chunk(record).getInt(offset(record) + NAME_LENGTH) >>> KIND_SHIFT;
+    }
+
+    /**
+     * Returns the name of the body, decoded from the name area.
+     *
+     * @return the body's name
+     */
+    public String getName() {
+      ByteBuffer chunk = chunk(record);
+      int offset = offset(record);
+      long nameOffset = chunk.getLong(offset + NAME_OFFSET);
+      byte[] bytes = new byte[chunk.getInt(offset + NAME_LENGTH) & LENGTH_MASK];
+      names[(int) (nameOffset / NAME_CHUNK_BYTES)].get((int) (nameOffset % NAME_CHUNK_BYTES), bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the radius of the body.
+     *
+     * @return the radius in km
+     */
+    public double getRadius() {
+      return chunk(record).getDouble(offset(record) + RADIUS);
+    }
+
+    /**
+     * Returns the orbit radius of the body.
+     *
+     * @return the orbit radius in km, 0 for a star
+     */
+    public double getOrbitRadius() {
+      return chunk(record).getDouble(offset(record) + ORBIT_RADIUS);
+    }
+
+    /**
+     * Returns the index of the record of the star a planet orbits or the planet
+     * a moon orbits.
+     *
+     * @return the parent's record index, or -1 for a star
+     */
+    public int getParent() {
+      return chunk(record).getInt(offset(record) + PARENT);
+    }
+
+    /**
+     * Returns the body in the catalog text format, with one dash in front of a
+     * planet and two in front of a moon.
+     *
+     * @return A string representation of the body.
+     */
+    @Override
+    public String toString() {
+      int kind = getKind();
+      return kind == STAR ? getName() + ":" + getRadius()
+          : "-".repeat(kind) + getName() + ":" + getRadius() + ":" + getOrbitRadius();
+    }
+  }
+
+  /**
+   * Constructs an empty store.
+   */
+  public OffHeapBodyStore() {
+    this.records = new ByteBuffer[0];
+    this.names = new ByteBuffer[0];
+    this.nameOffsets = new long[0];
+    this.nameLengths = new int[0];
+    this.readOnly = false;
+  }
+
+  private OffHeapBodyStore(ByteBuffer[] records, ByteBuffer[] names, int size, long nameBytes) {
+    this.records = records;
+    this.names = names;
+    this.size = size;
+    this.nameBytes = nameBytes;
+    this.nameOffsets = new long[0];
+    this.nameLengths = new int[0];
+    this.readOnly = true;
+  }
+
+  /**
+   * Builds a store of solar systems. Every star is followed by its planets, and
+   * every planet by its moons.
+   *
+   * @param solarSystems the solar systems to store
+   *
+   * @return the store
+   */
+  public static OffHeapBodyStore of(Collection<SolarSystem> solarSystems) {
+    OffHeapBodyStore store = new OffHeapBodyStore();
+    for (SolarSystem solarSystem : solarSystems) {
+      Star star = solarSystem.getStar();
+      if (star == null) {
+        continue;
+      }
+      int starRecord = store.add(STAR, -1, star.getNameId(), star.getRadius(), 0);
+      for (Planet planet : solarSystem.getPlanets()) {
+        int planetRecord = store.add(PLANET, starRecord, planet.getNameId(), planet.getRadius(),
+            planet.getOrbitRadius());
+        for (Moon moon : planet.getMoons()) {
+          store.add(MOON, planetRecord, moon.getNameId(), moon.getRadius(), moon.getOrbitRadius());
+        }
+      }
+    }
+    return store;
+  }
+
+  /**
+   * Maps a store written by {@link #writeTo(FileChannel)}. The store reads the
+   * file's pages on demand and stays valid after the channel is closed.
+   *
+   * @param channel a channel of the file, open for reading
+   *
+   * @return the read-only store
+   *
+   * @throws IOException if the file cannot be read or is not a body store
+   */
+  public static OffHeapBodyStore map(FileChannel channel) throws IOException {
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_BYTES))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    if (header.limit() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+      throw new IOException("Not a body store file.");
+    }
+    long size = header.getLong();
+    long nameBytes = header.getLong();
+    if (header.getInt() != RECORDS_PER_CHUNK || header.getInt() != NAME_CHUNK_BYTES || size < 0
+        || size > Integer.MAX_VALUE || nameBytes < 0
+        || HEADER_BYTES + size * RECORD_BYTES + nameBytes > channel.size()) {
+      throw new IOException("The body store file is damaged.");
+    }
+    ByteBuffer[] records = new ByteBuffer[chunks(size, RECORDS_PER_CHUNK)];
+    for (int i = 0; i < records.length; i++) {
+      long first = (long) i * RECORDS_PER_CHUNK;
+      long length = Math.min(RECORDS_PER_CHUNK, size - first) * RECORD_BYTES;
+      records[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * RECORD_BYTES, length)
+          .order(ByteOrder.LITTLE_ENDIAN);
+    }
+    long nameStart = HEADER_BYTES + size * RECORD_BYTES;
+    ByteBuffer[] names = new ByteBuffer[chunks(nameBytes, NAME_CHUNK_BYTES)];
+    for (int i = 0; i < names.length; i++) {
+      long first = (long) i * NAME_CHUNK_BYTES;
+      names[i] = channel.map(FileChannel.MapMode.READ_ONLY, nameStart + first,
+          Math.min(NAME_CHUNK_BYTES, nameBytes - first));
+    }
+    return new OffHeapBodyStore(records, names, (int) size, nameBytes);
+  }
+
+  /**
+   * Writes the store to a file, starting at the current position of the
+   * channel.
+   *
+   * @param channel a channel of the file, open for writing
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public void writeTo(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(nameBytes)
+        .putInt(RECORDS_PER_CHUNK).putInt(NAME_CHUNK_BYTES).flip();
+    write(channel, header);
+    for (int i = 0; i < chunks(size, RECORDS_PER_CHUNK); i++) {
+      long length = Math.min(RECORDS_PER_CHUNK, size - (long) i * RECORDS_PER_CHUNK) * RECORD_BYTES;
+      write(channel, records[i].duplicate().position(0).limit((int) length));
+    }
+    for (int i = 0; i < chunks(nameBytes, NAME_CHUNK_BYTES); i++) {
+      long length = Math.min(NAME_CHUNK_BYTES, nameBytes - (long) i * NAME_CHUNK_BYTES);
+      ByteBuffer chunk = names[i].duplicate().position(0);
+      if (chunk.capacity() < length) {
+        write(channel, chunk);
+        write(channel, ByteBuffer.allocate((int) (length - chunk.capacity())));
+      } else {
+        write(channel, chunk.limit((int) length));
+      }
+    }
+  }
+
+  /**
+   * Appends a record.
+   *
+   * @param kind        {@link #STAR}, {@link #PLANET} or {@link #MOON}
+   *
+   * @param parent      the index of the parent's record, or -1 for a star
+   *
+   * @param nameId      the id of the body's name in the {@link NameDictionary}
+   *
+   * @param radius      the radius in km
+   *
+   * @param orbitRadius the orbit radius in km
+   *
+   * @return the index of the new record
+   *
+   * @throws IllegalStateException if the store was mapped from a file or is full
+   */
+  public int add(int kind, int parent, int nameId, double radius, double orbitRadius) {
+    if (readOnly) {
+      throw new IllegalStateException("A mapped body store cannot be changed.");
+    }
+    if (kind < STAR || kind > MOON || parent < -1 || parent >= size || (kind == STAR) != (parent == -1)) {
+      throw new IllegalArgumentException("Invalid kind or parent of a body.");
+    }
+    if (size == Integer.MAX_VALUE) {
+      throw new IllegalStateException("The body store is full.");
+    }
+    long nameOffset = nameOffset(nameId);
+    int nameLength = nameLengths[nameId];
+    ByteBuffer chunk = ensureRecord(size);
+    int offset = offset(size);
+    chunk.putDouble(offset + RADIUS, radius);
+    chunk.putDouble(offset + ORBIT_RADIUS, orbitRadius);
+    chunk.putLong(offset + NAME_OFFSET, nameOffset);
+    chunk.putInt(offset + PARENT, parent);
+    chunk.putInt(offset + NAME_LENGTH, kind << KIND_SHIFT | nameLength);
+    return size++;
+  }
+
+  /**
+   * Returns a view of a record.
+   *
+   * @param record the index of the record
+   *
+   * @return a new view, which can be moved to other records
+   *
+   * @throws IndexOutOfBoundsException if there is no such record
+   */
+  public Body get(int record) {
+    return new Body(0).moveTo(record);
+  }
+
+  /**
+   * Returns the number of records.
+   *
+   * @return the number of bodies
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of bytes held outside the heap, or in the mapped file for
+   * a mapped store.
+   *
+   * @return the capacity of all record and name chunks in bytes
+   */
+  public long getOffHeapBytes() {
+    long bytes = 0;
+    for (ByteBuffer chunk : records) {
+      bytes += chunk.capacity();
+    }
+    for (ByteBuffer chunk : names) {
+      bytes += chunk.capacity();
+    }
+    return bytes;
+  }
+
+  /**
+   * Estimates the heap used by the store: the chunk arrays, a buffer object per
+   * chunk and the name offsets kept while the store is built.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateHeapBytes() {
+    return 64 + 4L * (records.length + names.length) + 64L * (records.length + names.length)
+        + 12L * nameOffsets.length;
+  }
+
+  private ByteBuffer chunk(int record) {
+    return records[record / RECORDS_PER_CHUNK];
+  }
+
+  private static int offset(int record) {
+    return record % RECORDS_PER_CHUNK * RECORD_BYTES;
+  }
+
+  private static int chunks(long length, int chunkLength) {
+    return (int) ((length + chunkLength - 1) / chunkLength);
+  }
+
+  /**
+   * Returns the chunk of a record, allocating or growing it first. Only the last
+   * chunk is smaller than {@value #RECORDS_PER_CHUNK} records, and it doubles as
+   * it fills, so a small store takes little memory.
+   */
+  private ByteBuffer ensureRecord(int record) {
+    int chunk = record / RECORDS_PER_CHUNK;
+    if (chunk == records.length) {
+      records = Arrays.copyOf(records, chunk + 1);
+    }
+    int needed = offset(record) + RECORD_BYTES;
+    if (records[chunk] == null || records[chunk].capacity() < needed) {
+      int capacity = records[chunk] == null ? MIN_RECORDS * RECORD_BYTES : records[chunk].capacity() * 2;
+      records[chunk] = grow(records[chunk], Math.min(RECORDS_PER_CHUNK * RECORD_BYTES, capacity));
+    }
+    return records[chunk];
+  }
+
+  /**
+   * Returns the offset of a name in the name area, appending its bytes and
+   * remembering their length the first time the name is stored.
+   */
+  private long nameOffset(int nameId) {
+    if (nameId >= nameOffsets.length) {
+      int length = Math.max(nameId + 1, NameDictionary.size());
+      int oldLength = nameOffsets.length;
+      nameOffsets = Arrays.copyOf(nameOffsets, length);
+      nameLengths = Arrays.copyOf(nameLengths, length);
+      Arrays.fill(nameOffsets, oldLength, length, -1);
+    }
+    if (nameOffsets[nameId] >= 0) {
+      return nameOffsets[nameId];
+    }
+    byte[] bytes = NameDictionary.bytes(nameId);
+    if (bytes.length > LENGTH_MASK || bytes.length > NAME_CHUNK_BYTES) {
+      throw new IllegalArgumentException("Name is too long for the body store.");
+    }
+    int chunk = (int) (nameBytes / NAME_CHUNK_BYTES);
+    int position = (int) (nameBytes % NAME_CHUNK_BYTES);
+    if (position + bytes.length > NAME_CHUNK_BYTES) {
+      chunk++;
+      position = 0;
+    }
+    if (chunk == names.length) {
+      names = Arrays.copyOf(names, chunk + 1);
+    }
+    if (names[chunk] == null || names[chunk].capacity() < position + bytes.length) {
+      int capacity = names[chunk] == null ? MIN_NAME_BYTES : names[chunk].capacity() * 2;
+      names[chunk] = grow(names[chunk], Math.min(NAME_CHUNK_BYTES, Math.max(capacity, position + bytes.length)));
+    }
+    names[chunk].put(position, bytes);
+    long offset = (long) chunk * NAME_CHUNK_BYTES + position;
+    nameBytes = offset + bytes.length;
+    nameOffsets[nameId] = offset;
+    nameLengths[nameId] = bytes.length;
+    return offset;
+  }
+
+  private static ByteBuffer grow(ByteBuffer chunk, int capacity) {
+    ByteBuffer grown = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    if (chunk != null) {
+      grown.put(0, chunk, 0, chunk.capacity());
+    }
+    return grown;
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * The OrbitConflictDetector class finds bodies whose orbital bands overlap. The
+ * band of a body is its orbit radius plus and minus its own radius. Planets are
+ * compared with the other planets of their star, and moons with the other moons
+ * of their planet.
+ *
+ * <p>Bands are sorted by their inner edge and swept once, keeping the bands that
+ * are still open in a queue ordered by their outer edge, so a parent with n
+ * children takes O(n log n + k) time for k conflicts.
+ */
+public final class OrbitConflictDetector {
+
+  /**
+   * A pair of bodies around the same parent whose orbital bands overlap.
+   */
+  public static final class Conflict {
+    private final String solarSystemName;
+    private final String parentName;
+    private final String firstName;
+    private final String secondName;
+    private final double overlap;
+
+    private Conflict(String solarSystemName, String parentName, String firstName, String secondName,
+        double overlap) {
+      this.solarSystemName = solarSystemName;
+      this.parentName = parentName;
+      this.firstName = firstName;
+      this.secondName = secondName;
+      this.overlap = overlap;
+    }
+
+    /**
+     * Returns the name of the solar system of the bodies.
+     *
+     * @return the name of the solar system's star
+     */
+    public String getSolarSystemName() {
+      return solarSystemName;
+    }
+
+    /**
+     * Returns the name of the body both bodies orbit.
+     *
+     * @return the name of the star or planet
+     */
+    public String getParentName() {
+      return parentName;
+    }
+
+    /**
+     * Returns the name of the body with the inner band.
+     *
+     * @return the first body's name
+     */
+    public String getFirstName() {
+      return firstName;
+    }
+
+    /**
+     * Returns the name of the body with the outer band.
+     *
+     * @return the second body's name
+     */
+    public String getSecondName() {
+      return secondName;
+    }
+
+    /**
+     * Returns how far the bands overlap.
+     *
+     * @return the overlap in km
+     */
+    public double getOverlap() {
+      return overlap;
+    }
+
+    @Override
+    public String toString() {
+      return parentName + ": " + firstName + " and " + secondName + " overlap by " + overlap + " km";
+    }
+  }
+
+  private static final class Band {
+    private final int nameId;
+    private final double inner;
+    private final double outer;
+
+    private Band(int nameId, double radius, double orbitRadius) {
+      this.nameId = nameId;
+      this.inner = orbitRadius - radius;
+      this.outer = orbitRadius + radius;
+    }
+  }
+
+  private OrbitConflictDetector() {
+  }
+
+  /**
+   * Finds the conflicts of one solar system.
+   *
+   * @param solarSystem the solar system
+   *
+   * @return the overlapping pairs of planets and of moons
+   */
+  public static List<Conflict> detect(SolarSystem solarSystem) {
+    List<Conflict> conflicts = new ArrayList<>();
+    Star star = solarSystem.getStar();
+    if (star == null) {
+      return conflicts;
+    }
+    List<Planet> planets = solarSystem.getPlanets();
+    Band[] planetBands = new Band[planets.size()];
+    for (int i = 0; i < planetBands.length; i++) {
+      Planet planet = planets.get(i);
+      planetBands[i] = new Band(planet.getNameId(), planet.getRadius(), planet.getOrbitRadius());
+    }
+    sweep(star.getNameId(), star.getNameId(), planetBands, conflicts);
+    for (Planet planet : planets) {
+      List<Moon> moons = planet.getMoons();
+      Band[] moonBands = new Band[moons.size()];
+      for (int i = 0; i < moonBands.length; i++) {
+        Moon moon = moons.get(i);
+        moonBands[i] = new Band(moon.getNameId(), moon.getRadius(), moon.getOrbitRadius());
+      }
+      sweep(star.getNameId(), planet.getNameId(), moonBands, conflicts);
+    }
+    return conflicts;
+  }
+
+  /**
+   * Finds the conflicts of many solar systems, checking the solar systems in
+   * parallel.
+   *
+   * @param solarSystems the solar systems
+   *
+   * @return the overlapping pairs, grouped by solar system in iteration order
+   */
+  public static List<Conflict> detect(Collection<SolarSystem> solarSystems) {
+    return new ArrayList<>(solarSystems).parallelStream()
+        .flatMap(solarSystem -> detect(solarSystem).stream())
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Sweeps the bands of the children of one parent. Names are kept as ids and
+   * only decoded for the bodies of a conflict.
+   */
+  private static void sweep(int solarSystemId, int parentId, Band[] bands, List<Conflict> conflicts) {
+    if (bands.length < 2) {
+      return;
+    }
+    Arrays.sort(bands, Comparator.comparingDouble(band -> band.inner));
+    PriorityQueue<Band> open = new PriorityQueue<>(Comparator.comparingDouble(band -> band.outer));
+    for (Band band : bands) {
+      while (!open.isEmpty() && open.peek().outer <= band.inner) {
+        open.poll();
+      }
+      for (Band other : open) {
+        conflicts.add(new Conflict(NameDictionary.name(solarSystemId), NameDictionary.name(parentId),
+            NameDictionary.name(other.nameId), NameDictionary.name(band.nameId),
+            Math.min(other.outer, band.outer) - band.inner));
+      }
+      open.add(band);
+    }
+  }
+}
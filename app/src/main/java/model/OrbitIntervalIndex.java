@@ -0,0 +1,185 @@
+package model;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The OrbitIntervalIndex class keeps the orbital bands of the bodies around one
+ * parent in an interval tree, so a new body can be checked against all of them
+ * in O(log n) expected time. The tree is a treap ordered by the inner edge of
+ * the bands, where every node also stores the largest outer edge below it.
+ */
+public final class OrbitIntervalIndex {
+  private Node root;
+
+  private static final class Node {
+    private final int nameId;
+    private final double inner;
+    private final double outer;
+    private final int priority;
+    private double maxOuter;
+    private Node left;
+    private Node right;
+
+    private Node(int nameId, double inner, double outer) {
+      this.nameId = nameId;
+      this.inner = inner;
+      this.outer = outer;
+      this.priority = ThreadLocalRandom.current().nextInt();
+      this.maxOuter = outer;
+    }
+
+    private Node update() {
+      maxOuter = outer;
+      if (left != null) {
+        maxOuter = Math.max(maxOuter, left.maxOuter);
+      }
+      if (right != null) {
+        maxOuter = Math.max(maxOuter, right.maxOuter);
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Builds the index of the planets of a solar system.
+   *
+   * @param solarSystem the solar system
+   *
+   * @return the index
+   */
+  public static OrbitIntervalIndex of(SolarSystem solarSystem) {
+    OrbitIntervalIndex index = new OrbitIntervalIndex();
+    for (Planet planet : solarSystem.getPlanets()) {
+      index.add(planet.getNameId(), planet.getRadius(), planet.getOrbitRadius());
+    }
+    return index;
+  }
+
+  /**
+   * Builds the index of the moons of a planet.
+   *
+   * @param planet the planet
+   *
+   * @return the index
+   */
+  public static OrbitIntervalIndex of(Planet planet) {
+    OrbitIntervalIndex index = new OrbitIntervalIndex();
+    for (Moon moon : planet.getMoons()) {
+      index.add(moon.getNameId(), moon.getRadius(), moon.getOrbitRadius());
+    }
+    return index;
+  }
+
+  /**
+   * Adds the band of a body.
+   *
+   * @param name        the name of the body
+   *
+   * @param radius      the radius of the body
+   *
+   * @param orbitRadius the orbit radius of the body
+   */
+  public void add(String name, double radius, double orbitRadius) {
+    add(NameDictionary.id(name), radius, orbitRadius);
+  }
+
+  private void add(int nameId, double radius, double orbitRadius) {
+    Node node = new Node(nameId, orbitRadius - radius, orbitRadius + radius);
+    Node[] parts = split(root, node.inner, node.nameId);
+    root = merge(merge(parts[0], node), parts[1]);
+  }
+
+  /**
+   * Removes the band of a body.
+   *
+   * @param name        the name of the body
+   *
+   * @param radius      the radius of the body
+   *
+   * @param orbitRadius the orbit radius of the body
+   */
+  public void remove(String name, double radius, double orbitRadius) {
+    root = remove(root, orbitRadius - radius, NameDictionary.find(name));
+  }
+
+  /**
+   * Finds a body whose band overlaps the band of the given body. Bands that only
+   * touch do not overlap.
+   *
+   * @param radius      the radius of the body
+   *
+   * @param orbitRadius the orbit radius of the body
+   *
+   * @return the name of an overlapping body, or null if there is none
+   */
+  public String findOverlap(double radius, double orbitRadius) {
+    double inner = orbitRadius - radius;
+    double outer = orbitRadius + radius;
+    Node node = root;
+    while (node != null) {
+      if (node.inner < outer && node.outer > inner) {
+        return NameDictionary.name(node.nameId);
+      }
+      // If the left subtree reaches past the new band's inner edge but has no
+      // overlap, all its bands start beyond the outer edge, and so do those on
+      // the right.
+      node = node.left != null && node.left.maxOuter > inner ? node.left : node.right;
+    }
+    return null;
+  }
+
+  private static int compare(Node node, double inner, int nameId) {
+    int result = Double.compare(node.inner, inner);
+    return result != 0 ? result : Integer.compare(node.nameId, nameId);
+  }
+
+  /**
+   * Splits a tree into the nodes before and from the given key.
+   */
+  private static Node[] split(Node node, double inner, int nameId) {
+    if (node == null) {
+      return new Node[2];
+    }
+    if (compare(node, inner, nameId) < 0) {
+      Node[] parts = split(node.right, inner, nameId);
+      node.right = parts[0];
+      parts[0] = node.update();
+      return parts;
+    }
+    Node[] parts = split(node.left, inner, nameId);
+    node.left = parts[1];
+    parts[1] = node.update();
+    return parts;
+  }
+
+  private static Node merge(Node left, Node right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      return left.update();
+    }
+    right.left = merge(left, right.left);
+    return right.update();
+  }
+
+  private static Node remove(Node node, double inner, int nameId) {
+    if (node == null) {
+      return null;
+    }
+    int result = compare(node, inner, nameId);
+    if (result == 0) {
+      return merge(node.left, node.right);
+    }
+    if (result < 0) {
+      node.right = remove(node.right, inner, nameId);
+    } else {
+      node.left = remove(node.left, inner, nameId);
+    }
+    return node.update();
+  }
+}
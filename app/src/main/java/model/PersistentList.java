@@ -0,0 +1,232 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToLongFunction;
+
+/**
+ * The PersistentList class is an immutable list backed by an implicit treap.
+ * Every modification returns a new list that shares all untouched nodes with
+ * the original, so a modification costs O(log n) time and memory.
+ *
+ * @param <T> the type of the elements
+ */
+public final class PersistentList<T> implements Iterable<T> {
+  private static final PersistentList<Object> EMPTY = new PersistentList<>(null);
+
+  private final Node<T> root;
+
+  private static final class Node<T> {
+    private final T value;
+    private final int priority;
+    private final int size;
+    private final Node<T> left;
+    private final Node<T> right;
+
+    private Node(T value, int priority, Node<T> left, Node<T> right) {
+      this.value = value;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      this.size = 1 + size(left) + size(right);
+    }
+
+    private Node<T> with(Node<T> left, Node<T> right) {
+      return new Node<>(value, priority, left, right);
+    }
+  }
+
+  private PersistentList(Node<T> root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns the empty list.
+   *
+   * @param <T> the type of the elements
+   *
+   * @return the empty list
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> PersistentList<T> empty() {
+    return (PersistentList<T>) EMPTY;
+  }
+
+  /**
+   * Returns the number of elements in the list.
+   *
+   * @return the size of the list
+   */
+  public int size() {
+    return size(root);
+  }
+
+  /**
+   * Returns the element at the given position.
+   *
+   * @param index the position of the element
+   *
+   * @return the element
+   *
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  public T get(int index) {
+    checkIndex(index);
+    Node<T> node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index == leftSize) {
+        return node.value;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /**
+   * Returns a list with the element appended.
+   *
+   * @param value the element to append
+   *
+   * @return the new list
+   */
+  public PersistentList<T> add(T value) {
+    Node<T> leaf = new Node<>(value, ThreadLocalRandom.current().nextInt(), null, null);
+    return new PersistentList<>(merge(root, leaf));
+  }
+
+  /**
+   * Returns a list with the element at the given position replaced.
+   *
+   * @param index the position of the element
+   *
+   * @param value the new element
+   *
+   * @return the new list
+   *
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  public PersistentList<T> set(int index, T value) {
+    checkIndex(index);
+    return new PersistentList<>(set(root, index, value));
+  }
+
+  /**
+   * Returns a list without the element at the given position.
+   *
+   * @param index the position of the element
+   *
+   * @return the new list
+   *
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  public PersistentList<T> remove(int index) {
+    checkIndex(index);
+    return new PersistentList<>(remove(root, index));
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<T>() {
+      private final Deque<Node<T>> stack = new ArrayDeque<>();
+      private Node<T> next = root;
+
+      @Override
+      public boolean hasNext() {
+        return next != null || !stack.isEmpty();
+      }
+
+      @Override
+      public T next() {
+        while (next != null) {
+          stack.push(next);
+          next = next.left;
+        }
+        if (stack.isEmpty()) {
+          throw new NoSuchElementException();
+        }
+        Node<T> node = stack.pop();
+        next = node.right;
+        return node.value;
+      }
+    };
+  }
+
+  /**
+   * Estimates the heap used by the nodes of the list and their values that are
+   * not in `seen` yet, and adds them to it. Lists that share nodes are thus
+   * counted once.
+   *
+   * @param seen   the objects already counted
+   *
+   * @param values estimates a value that was not counted yet
+   *
+   * @return the estimated size in bytes
+   */
+  long estimateBytes(Map<Object, Boolean> seen, ToLongFunction<T> values) {
+    return seen.put(this, Boolean.TRUE) != null ? 0 : 16 + estimateBytes(root, seen, values);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of range for size " + size());
+    }
+  }
+
+  private static <T> long estimateBytes(Node<T> node, Map<Object, Boolean> seen, ToLongFunction<T> values) {
+    if (node == null || seen.put(node, Boolean.TRUE) != null) {
+      return 0;
+    }
+    long bytes = 32;
+    if (node.value != null && seen.put(node.value, Boolean.TRUE) == null) {
+      bytes += values.applyAsLong(node.value);
+    }
+    return bytes + estimateBytes(node.left, seen, values) + estimateBytes(node.right, seen, values);
+  }
+
+  private static int size(Node<?> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.priority > right.priority) {
+      return left.with(left.left, merge(left.right, right));
+    }
+    return right.with(merge(left, right.left), right.right);
+  }
+
+  private static <T> Node<T> set(Node<T> node, int index, T value) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return node.with(set(node.left, index, value), node.right);
+    }
+    if (index == leftSize) {
+      return new Node<>(value, node.priority, node.left, node.right);
+    }
+    return node.with(node.left, set(node.right, index - leftSize - 1, value));
+  }
+
+  private static <T> Node<T> remove(Node<T> node, int index) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return node.with(remove(node.left, index), node.right);
+    }
+    if (index == leftSize) {
+      return merge(node.left, node.right);
+    }
+    return node.with(node.left, remove(node.right, index - leftSize - 1));
+  }
+}
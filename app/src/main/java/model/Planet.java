@@ -10,11 +10,15 @@ import java.util.List;
  * solar system.
  */
 public class Planet {
-  private String name;
+  private final int nameId;
   private double radius;
   private double orbitRadius;
-  private Star parentStar;
+  private final Star parentStar;
   private List<Moon> moons;
+  private BodyStatistics statistics;
+  private BodyStatistics owner;
+  private long modifications;
+  private boolean dirty = true;
 
   /**
    * Constructs a new Planet object with the specified name, radius, orbit radius,
@@ -36,41 +40,62 @@ public class Planet {
     if (name == null) {
       throw new IllegalArgumentException("Name cannot be null.");
     }
-    if (radius < 1000 || radius > parentStar.getRadius() * 10) {
-      throw new IllegalArgumentException(
-          "Planet radius must be larger than 1000km and less than 10 times the star's radius.\n");
-    }
-    if (orbitRadius < parentStar.getRadius() * 10) {
-      throw new IllegalArgumentException(
-          "Planet's orbit radius must be larger than 10 times the star's radius.\n");
-    }
-    this.name = name;
+    validate(radius, orbitRadius, parentStar);
+    this.nameId = NameDictionary.id(name);
     this.radius = radius;
     this.orbitRadius = orbitRadius;
-    this.parentStar = new Star(parentStar);
+    this.parentStar = parentStar;
     this.moons = new ArrayList<>();
+    this.statistics = new BodyStatistics(this::includeOrbits);
+  }
+
+  /**
+   * Constructs a planet whose name is already in the name dictionary.
+   */
+  Planet(int nameId, double radius, double orbitRadius, Star parentStar) {
+    validate(radius, orbitRadius, parentStar);
+    this.nameId = nameId;
+    this.radius = radius;
+    this.orbitRadius = orbitRadius;
+    this.parentStar = parentStar;
+    this.moons = new ArrayList<>();
+    this.statistics = new BodyStatistics(this::includeOrbits);
   }
 
   /**
    * Creates a new Planet object that is a copy of the specified Planet object.
+   * The immutable parent star is shared with the original.
    *
    * @param planet the Planet object to copy
    */
   public Planet(Planet planet) {
-    this.name = planet.name;
+    this.nameId = planet.nameId;
     this.radius = planet.radius;
     this.orbitRadius = planet.orbitRadius;
-    this.parentStar = new Star(planet.parentStar);
+    this.parentStar = planet.parentStar;
     this.moons = new ArrayList<>(planet.moons);
+    this.statistics = new BodyStatistics(this::includeOrbits);
+    for (Moon moon : moons) {
+      statistics.addMoon(moon);
+    }
   }
 
   /**
-   * Returns the name of the planet.
+   * Returns the name of the planet, decoded from the name dictionary.
    *
    * @return the planet's name
    */
   public String getName() {
-    return name;
+    return NameDictionary.name(nameId);
+  }
+
+  /**
+   * Returns the id of the planet's name in the name dictionary.
+   *
+   * @return the name id
+   */
+  public int getNameId() {
+    return nameId;
   }
 
   /**
@@ -109,6 +134,38 @@ public class Planet {
     return new ArrayList<>(moons);
   }
 
+  private void includeOrbits(BodyStatistics moonStatistics) {
+    for (Moon moon : moons) {
+      moonStatistics.includeMoonOrbit(moon.getOrbitRadius());
+    }
+  }
+
+  /**
+   * Returns the number of moons orbiting the planet, without copying them.
+   *
+   * @return the number of moons
+   */
+  int getMoonCount() {
+    return moons.size();
+  }
+
+  /**
+   * Returns the running totals of the planet's moons.
+   *
+   * @return the statistics, updated as moons are added and removed
+   */
+  public BodyStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Sets the statistics of the solar system the planet belongs to, which are
+   * updated together with the planet's own.
+   */
+  void setOwner(BodyStatistics owner) {
+    this.owner = owner;
+  }
+
   /**
    * Adds a moon to the planet's list of moons.
    *
@@ -121,13 +178,16 @@ public class Planet {
     if (moon == null) {
       throw new IllegalArgumentException("Cannot add null Moon.");
     }
-    for (Moon existingMoon : moons) {
-      if (existingMoon.getName().equals(moon.getName())) {
-        throw new IllegalArgumentException(
-            "Moon name must be unique within a planet.\n");
-      }
+    if (getMoon(moon.getNameId()) != null) {
+      throw new IllegalArgumentException(
+          "Moon name must be unique within a planet.\n");
     }
     moons.add(moon);
+    statistics.addMoon(moon);
+    if (owner != null) {
+      owner.addMoon(moon);
+    }
+    modified();
   }
 
   /**
@@ -139,7 +199,9 @@ public class Planet {
     if (moon == null) {
       throw new IllegalArgumentException("Cannot remove null Moon.");
     }
-    moons.remove(moon);
+    if (moons.remove(moon)) {
+      uncount(moon);
+    }
   }
 
   /**
@@ -152,19 +214,54 @@ public class Planet {
       throw new IllegalArgumentException("Cannot remove a moon with null name.");
     }
 
-    Moon moonToRemove = null;
+    int moonId = NameDictionary.find(moonName);
+    Moon moonToRemove = moonId < 0 ? null : getMoon(moonId);
+    if (moonToRemove == null) {
+      throw new IllegalArgumentException("Moon with given name not found.");
+    }
+
+    moons.remove(moonToRemove);
+    uncount(moonToRemove);
+  }
+
+  /**
+   * Retrieves a moon of the planet by the id of its name.
+   *
+   * @param nameId the id of the moon's name in the name dictionary
+   *
+   * @return the moon, or null if the planet has no moon of that name
+   */
+  public Moon getMoon(int nameId) {
     for (Moon moon : moons) {
-      if (moon.getName().equals(moonName)) {
-        moonToRemove = moon;
-        break;
+      if (moon.getNameId() == nameId) {
+        return moon;
       }
     }
+    return null;
+  }
 
-    if (moonToRemove == null) {
-      throw new IllegalArgumentException("Moon with given name not found.");
+  private static void validate(double radius, double orbitRadius, Star parentStar) {
+    if (radius < 1000 || radius > parentStar.getRadius() * 10) {
+      throw new IllegalArgumentException(
+          "Planet radius must be larger than 1000km and less than 10 times the star's radius.\n");
     }
+    if (orbitRadius < parentStar.getRadius() * 10) {
+      throw new IllegalArgumentException(
+          "Planet's orbit radius must be larger than 10 times the star's radius.\n");
+    }
+  }
 
-    moons.remove(moonToRemove);
+  private void uncount(Moon moon) {
+    statistics.removeMoon(moon);
+    if (owner != null) {
+      owner.removeMoon(moon);
+    }
+    modified();
+  }
+
+  private void modified() {
+    modifications++;
+    dirty = true;
   }
 
   /**
@@ -184,6 +281,45 @@ public class Planet {
    */
   public void sortMoons(Comparator<Moon> comparator) {
     Collections.sort(this.moons, comparator);
+    modified();
+  }
+
+  /**
+   * Puts the moons in the given order, which must hold the same moons.
+   */
+  void reorderMoons(List<Moon> order) {
+    if (!moons.equals(order)) {
+      moons.clear();
+      moons.addAll(order);
+      modified();
+    }
+  }
+
+  /**
+   * Returns the number of changes made to the planet's moons since it was
+   * created.
+   *
+   * @return the modification count, which only grows
+   */
+  public long getModificationCount() {
+    return modifications;
+  }
+
+  /**
+   * Returns whether the planet's moons changed since it was last marked clean.
+   * A new planet is dirty, since it was never saved.
+   *
+   * @return `true` if the planet has unsaved changes
+   */
+  public boolean isDirty() {
+    return dirty;
+  }
+
+  /**
+   * Marks the planet clean, after its solar system was saved.
+   */
+  void markClean() {
+    dirty = false;
   }
 
   /**
@@ -191,6 +327,6 @@ public class Planet {
    */
   @Override
   public String toString() {
-    return name + ":" + radius + ":" + orbitRadius;
+    return getName() + ":" + radius + ":" + orbitRadius;
   }
 }
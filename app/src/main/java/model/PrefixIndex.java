@@ -0,0 +1,404 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The PrefixIndex class counts names, such as the names of all planets, and
+ * lists the names that start with a prefix in sorted order. A name that was
+ * added several times is listed once until it was removed as often.
+ *
+ * <p>Most names live in a sorted, front-coded block: the UTF-8 names are sorted
+ * and split into runs of {@value #RUN_LENGTH}, the first name of a run is kept
+ * whole and every other name only as the length of the prefix it shares with
+ * its predecessor followed by the rest of its bytes. A lookup binary searches
+ * the first names of the runs and decodes at most one run, so tens of millions
+ * of names take about as many bytes as their distinct suffixes plus an int
+ * count each, without a String object per name.
+ *
+ * <p>Counts of names that are already in the block change in place. New names
+ * go into a small sorted map that is merged into a new block once it holds an
+ * eighth as many names as the block, so adding a name takes amortized
+ * logarithmic time.
+ */
+public final class PrefixIndex {
+  private static final int RUN_LENGTH = 16;
+  private static final int MIN_PENDING = 4096;
+
+  private byte[] block;
+  private int[] runOffsets;
+  private long[] runKeys;
+  private int[] counts;
+  private int size;
+  private long liveCount;
+  private final TreeMap<String, Integer> pending;
+
+  /**
+   * Constructs an empty index.
+   */
+  public PrefixIndex() {
+    this.block = new byte[0];
+    this.runOffsets = new int[0];
+    this.runKeys = new long[0];
+    this.counts = new int[0];
+    this.pending = new TreeMap<>(PrefixIndex::compareCodePoints);
+  }
+
+  /**
+   * Counts a name once more.
+   *
+   * @param name the name to add
+   */
+  public void add(String name) {
+    int position = find(name);
+    if (position >= 0) {
+      if (counts[position]++ == 0) {
+        liveCount++;
+      }
+      return;
+    }
+    if (pending.merge(name, 1, Integer::sum) == 1) {
+      liveCount++;
+    }
+    if (pending.size() > Math.max(MIN_PENDING, size / 8)) {
+      compact();
+    }
+  }
+
+  /**
+   * Counts a name once less. Names that were not added are ignored.
+   *
+   * @param name the name to remove
+   */
+  public void remove(String name) {
+    int position = find(name);
+    if (position >= 0) {
+      if (counts[position] > 0 && --counts[position] == 0) {
+        liveCount--;
+      }
+      return;
+    }
+    Integer count = pending.get(name);
+    if (count == null) {
+      return;
+    }
+    if (count == 1) {
+      pending.remove(name);
+      liveCount--;
+    } else {
+      pending.put(name, count - 1);
+    }
+  }
+
+  /**
+   * Checks whether a name is counted at least once.
+   *
+   * @param name the name to look up
+   *
+   * @return `true` if the name was added more often than removed
+   */
+  public boolean contains(String name) {
+    int position = find(name);
+    return position >= 0 ? counts[position] > 0 : pending.containsKey(name);
+  }
+
+  /**
+   * Returns the number of distinct names that are counted.
+   *
+   * @return the number of names
+   */
+  public long size() {
+    return liveCount;
+  }
+
+  /**
+   * Lists the names that start with a prefix, in code point order.
+   *
+   * @param prefix the prefix, or an empty string for all names
+   *
+   * @param limit  the largest number of names to list
+   *
+   * @return at most limit names
+   */
+  public List<String> startingWith(String prefix, int limit) {
+    List<String> names = new ArrayList<>();
+    if (limit <= 0) {
+      return names;
+    }
+    byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+    Iterator<Map.Entry<String, Integer>> pendingNames = pending.tailMap(prefix, true).entrySet().iterator();
+    String nextPending = nextPending(pendingNames, prefix);
+    int position = search(prefixBytes);
+    Cursor cursor = new Cursor(position < 0 ? -position - 1 : position);
+    String nextBlock = cursor.nextLive(prefixBytes);
+    while (names.size() < limit && (nextPending != null || nextBlock != null)) {
+      if (nextBlock == null || nextPending != null && compareCodePoints(nextPending, nextBlock) < 0) {
+        names.add(nextPending);
+        nextPending = nextPending(pendingNames, prefix);
+      } else {
+        names.add(nextBlock);
+        nextBlock = cursor.nextLive(prefixBytes);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Estimates the heap used by the index.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateBytes() {
+    long pendingBytes = 0;
+    for (String name : pending.keySet()) {
+      pendingBytes += 40 + 24 + 16 + name.length();
+    }
+    return block.length + 12L * runOffsets.length + 4L * counts.length + pendingBytes;
+  }
+
+  private static String nextPending(Iterator<Map.Entry<String, Integer>> names, String prefix) {
+    if (!names.hasNext()) {
+      return null;
+    }
+    String name = names.next().getKey();
+    return name.startsWith(prefix) ? name : null;
+  }
+
+  /**
+   * Merges the pending names into a new block, dropping names whose count fell
+   * to zero.
+   */
+  private void compact() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(block.length + pending.size() * 8);
+    int[] newCounts = new int[(int) liveCount];
+    int[] newRuns = new int[(newCounts.length + RUN_LENGTH - 1) / RUN_LENGTH];
+    long[] newKeys = new long[newRuns.length];
+    Iterator<Map.Entry<String, Integer>> pendingNames = pending.entrySet().iterator();
+    Map.Entry<String, Integer> nextPending = pendingNames.hasNext() ? pendingNames.next() : null;
+    byte[] pendingBytes = nextPending == null ? null : nextPending.getKey().getBytes(StandardCharsets.UTF_8);
+    Cursor cursor = new Cursor(0);
+    boolean hasBlockName = cursor.next();
+    byte[] previous = new byte[64];
+    int previousLength = 0;
+    int written = 0;
+    while (nextPending != null || hasBlockName) {
+      byte[] name;
+      int length;
+      int count;
+      if (!hasBlockName || nextPending != null
+          && Arrays.compareUnsigned(pendingBytes, 0, pendingBytes.length, cursor.name, 0, cursor.length) < 0) {
+        name = pendingBytes;
+        length = pendingBytes.length;
+        count = nextPending.getValue();
+        nextPending = pendingNames.hasNext() ? pendingNames.next() : null;
+        pendingBytes = nextPending == null ? null : nextPending.getKey().getBytes(StandardCharsets.UTF_8);
+      } else {
+        name = cursor.name;
+        length = cursor.length;
+        count = counts[cursor.position - 1];
+      }
+      if (count > 0) {
+        int shared = 0;
+        if (written % RUN_LENGTH == 0) {
+          newRuns[written / RUN_LENGTH] = out.size();
+          newKeys[written / RUN_LENGTH] = key(name, length);
+        } else {
+          shared = Arrays.mismatch(previous, 0, previousLength, name, 0, length);
+          shared = shared < 0 ? length : shared;
+          writeVarInt(out, shared);
+        }
+        writeVarInt(out, length - shared);
+        out.write(name, shared, length - shared);
+        newCounts[written++] = count;
+        if (previous.length < length) {
+          previous = Arrays.copyOf(previous, Math.max(length, previous.length * 2));
+        }
+        System.arraycopy(name, 0, previous, 0, length);
+        previousLength = length;
+      }
+      if (name == cursor.name) {
+        hasBlockName = cursor.next();
+      }
+    }
+    block = out.toByteArray();
+    runOffsets = newRuns;
+    runKeys = newKeys;
+    counts = newCounts;
+    size = written;
+    pending.clear();
+  }
+
+  /**
+   * Returns the position of a name in the block, or -1 if it is not there.
+   */
+  private int find(String name) {
+    return size == 0 ? -1 : Math.max(-1, search(name.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Finds bytes in the block. The runs are found by binary search over the
+   * first eight bytes of their first names, which are kept in one array so
+   * most steps touch a single cache line, and only ties compare whole names.
+   *
+   * @return the position of the bytes if they are in the block, and otherwise
+   *         -1 minus the position of the first larger name
+   */
+  private int search(byte[] bytes) {
+    long key = key(bytes, bytes.length);
+    int low = 0;
+    int high = runOffsets.length - 1;
+    int run = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int order = Long.compareUnsigned(runKeys[middle], key);
+      if (order == 0) {
+        order = compareRunHead(middle, bytes);
+      }
+      if (order < 0) {
+        run = middle;
+        low = middle + 1;
+      } else if (order > 0) {
+        high = middle - 1;
+      } else {
+        return middle * RUN_LENGTH;
+      }
+    }
+    if (run < 0) {
+      return -1;
+    }
+    Cursor cursor = new Cursor(run * RUN_LENGTH);
+    int end = Math.min(size, (run + 1) * RUN_LENGTH);
+    while (cursor.position < end) {
+      int position = cursor.position;
+      cursor.next();
+      int order = Arrays.compareUnsigned(cursor.name, 0, cursor.length, bytes, 0, bytes.length);
+      if (order >= 0) {
+        return order == 0 ? position : -position - 1;
+      }
+    }
+    return -end - 1;
+  }
+
+  private int compareRunHead(int run, byte[] bytes) {
+    int offset = runOffsets[run];
+    int length = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = block[offset++];
+      length |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+    return Arrays.compareUnsigned(block, offset, offset + length, bytes, 0, bytes.length);
+  }
+
+  /**
+   * Packs the first eight bytes of a name into a long whose unsigned order is
+   * the order of the names, padding shorter names with zeros.
+   */
+  private static long key(byte[] name, int length) {
+    long key = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      key = key << 8 | (i < length ? name[i] & 0xff : 0);
+    }
+    return key;
+  }
+
+  /**
+   * Decodes the names of the block one after another into a reused buffer,
+   * starting at a position.
+   */
+  private final class Cursor {
+    private int position;
+    private int offset;
+    private byte[] name;
+    private int length;
+
+    private Cursor(int position) {
+      this.position = position - position % RUN_LENGTH;
+      this.offset = this.position < size ? runOffsets[this.position / RUN_LENGTH] : block.length;
+      this.name = new byte[32];
+      while (this.position < position) {
+        next();
+      }
+    }
+
+    /**
+     * Decodes the next name.
+     *
+     * @return `false` after the last name
+     */
+    private boolean next() {
+      if (position >= size) {
+        return false;
+      }
+      int shared = position % RUN_LENGTH == 0 ? 0 : readVarInt();
+      int suffix = readVarInt();
+      if (name.length < shared + suffix) {
+        name = Arrays.copyOf(name, Math.max(shared + suffix, name.length * 2));
+      }
+      System.arraycopy(block, offset, name, shared, suffix);
+      offset += suffix;
+      length = shared + suffix;
+      position++;
+      return true;
+    }
+
+    /**
+     * Returns the next name with a positive count, or null once the names no
+     * longer start with the prefix.
+     */
+    private String nextLive(byte[] prefix) {
+      while (next() && length >= prefix.length
+          && Arrays.equals(name, 0, prefix.length, prefix, 0, prefix.length)) {
+        if (counts[position - 1] > 0) {
+          return new String(name, 0, length, StandardCharsets.UTF_8);
+        }
+      }
+      return null;
+    }
+
+    private int readVarInt() {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        int b = block[offset++];
+        value |= (b & 0x7f) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+    }
+  }
+
+  private static void writeVarInt(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7f) != 0) {
+      out.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /**
+   * Compares names by code point, which is the order of their UTF-8 bytes.
+   */
+  private static int compareCodePoints(String first, String second) {
+    int i = 0;
+    int j = 0;
+    while (i < first.length() && j < second.length()) {
+      int a = first.codePointAt(i);
+      int b = second.codePointAt(j);
+      if (a != b) {
+        return Integer.compare(a, b);
+      }
+      i += Character.charCount(a);
+      j += Character.charCount(b);
+    }
+    return Integer.compare(first.length() - i, second.length() - j);
+  }
+}
@@ -0,0 +1,208 @@
+package model;
+
+/**
+ * The QuantileSketch class approximates the distribution of a stream of
+ * positive values, such as the radii of all moons, in a few kilobytes.
+ *
+ * <p>Values are counted in buckets whose bounds grow geometrically by the factor
+ * (1 + a) / (1 - a) for the relative accuracy a. Every value in a bucket lies
+ * within a relative distance a of the bucket's representative value, so any
+ * percentile is answered within that relative error. Because a bucket only
+ * holds a count, values can be removed as well as added, and the sketch stays
+ * exact with respect to its buckets however often bodies come and go. Values
+ * that are zero or negative are counted together below all buckets.
+ */
+public final class QuantileSketch {
+  private static final int INITIAL_BUCKETS = 64;
+
+  private final double relativeAccuracy;
+  private final double gamma;
+  private final double logGamma;
+  private long[] counts;
+  private int firstIndex;
+  private long nonPositiveCount;
+  private long count;
+
+  /**
+   * Constructs an empty sketch.
+   *
+   * @param relativeAccuracy the largest relative error of a percentile, between
+   *                         0 and 1 exclusive
+   */
+  public QuantileSketch(double relativeAccuracy) {
+    if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+      throw new IllegalArgumentException("The relative accuracy must be between 0 and 1.");
+    }
+    this.relativeAccuracy = relativeAccuracy;
+    this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    this.logGamma = Math.log(gamma);
+    this.counts = new long[0];
+  }
+
+  /**
+   * Returns the relative accuracy of the sketch.
+   *
+   * @return the largest relative error of a percentile
+   */
+  public double getRelativeAccuracy() {
+    return relativeAccuracy;
+  }
+
+  /**
+   * Returns the number of values in the sketch.
+   *
+   * @return the number of values added and not removed
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Adds a value to the sketch.
+   *
+   * @param value the value to add
+   */
+  public void add(double value) {
+    if (value <= 0) {
+      nonPositiveCount++;
+    } else {
+      int index = index(value);
+      ensureBucket(index);
+      counts[index - firstIndex]++;
+    }
+    count++;
+  }
+
+  /**
+   * Removes a value that was added before.
+   *
+   * @param value the value to remove
+   *
+   * @throws IllegalArgumentException if no value of its bucket is in the sketch
+   */
+  public void remove(double value) {
+    if (value <= 0) {
+      if (nonPositiveCount == 0) {
+        throw new IllegalArgumentException("The value " + value + " is not in the sketch.");
+      }
+      nonPositiveCount--;
+    } else {
+      int index = index(value);
+      if (index < firstIndex || index >= firstIndex + counts.length || counts[index - firstIndex] == 0) {
+        throw new IllegalArgumentException("The value " + value + " is not in the sketch.");
+      }
+      counts[index - firstIndex]--;
+    }
+    count--;
+  }
+
+  /**
+   * Returns a value with the given fraction of all values at or below it.
+   *
+   * @param quantile the fraction, from 0 for the smallest to 1 for the largest
+   *                 value
+   *
+   * @return the value within the relative accuracy, 0 for a value that is not
+   *         positive, or NaN if the sketch is empty
+   */
+  public double quantile(double quantile) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    long rank = (long) Math.floor(Math.max(0, Math.min(1, quantile)) * (count - 1));
+    long seen = nonPositiveCount;
+    if (rank < seen) {
+      return 0;
+    }
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      seen += counts[bucket];
+      if (rank < seen) {
+        return value(firstIndex + bucket);
+      }
+    }
+    return value(firstIndex + counts.length - 1);
+  }
+
+  /**
+   * Counts the values in equally wide bins between two bounds. Each bucket of the
+   * sketch is counted in the bin of its representative value, and values outside
+   * the bounds are not counted.
+   *
+   * @param lower the lower bound of the first bin
+   *
+   * @param upper the upper bound of the last bin
+   *
+   * @param bins  the number of bins
+   *
+   * @return the approximate number of values in each bin
+   */
+  public long[] histogram(double lower, double upper, int bins) {
+    long[] histogram = new long[Math.max(0, bins)];
+    if (bins <= 0 || count == 0) {
+      return histogram;
+    }
+    double width = (upper - lower) / bins;
+    if (nonPositiveCount > 0) {
+      addToBin(histogram, 0, lower, upper, width, nonPositiveCount);
+    }
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      if (counts[bucket] > 0) {
+        addToBin(histogram, value(firstIndex + bucket), lower, upper, width, counts[bucket]);
+      }
+    }
+    return histogram;
+  }
+
+  private static void addToBin(long[] histogram, double value, double lower, double upper, double width,
+      long valueCount) {
+    if (value < lower || value > upper) {
+      return;
+    }
+    int bin = width > 0 ? (int) ((value - lower) / width) : 0;
+    histogram[Math.min(histogram.length - 1, bin)] += valueCount;
+  }
+
+  /**
+   * Estimates the heap used by the sketch.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateBytes() {
+    return 64 + 16 + 8L * counts.length;
+  }
+
+  /**
+   * Returns the index of the bucket covering (gamma^(index - 1), gamma^index].
+   */
+  private int index(double value) {
+    return (int) Math.ceil(Math.log(value) / logGamma);
+  }
+
+  /**
+   * Returns the value within the relative accuracy of every value in a bucket.
+   */
+  private double value(int index) {
+    return 2 * Math.pow(gamma, index) / (gamma + 1);
+  }
+
+  private void ensureBucket(int index) {
+    if (counts.length == 0) {
+      counts = new long[INITIAL_BUCKETS];
+      firstIndex = index - INITIAL_BUCKETS / 2;
+      return;
+    }
+    if (index >= firstIndex && index < firstIndex + counts.length) {
+      return;
+    }
+    int newFirst = Math.min(firstIndex, index);
+    int newEnd = Math.max(firstIndex + counts.length, index + 1);
+    int length = Math.max(newEnd - newFirst, counts.length * 2);
+    if (index < firstIndex) {
+      newFirst = newEnd - length;
+    }
+    long[] grown = new long[length];
+    System.arraycopy(counts, 0, grown, firstIndex - newFirst, counts.length);
+    counts = grown;
+    firstIndex = newFirst;
+  }
+}
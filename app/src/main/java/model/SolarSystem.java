@@ -8,11 +8,19 @@ import java.util.List;
 /**
  * The SolarSystem class represents a solar system that consists of a central
  * star and a collection of planets.
+ *
+ * <p>Every change through its methods or those of its planets counts as a
+ * modification and marks the solar system dirty until it is marked clean, so a
+ * save can skip solar systems that did not change since the last one. A new
+ * solar system is dirty, since it was never saved.
  */
 public class SolarSystem {
   private String name;
   private Star star;
   private List<Planet> planets;
+  private BodyStatistics statistics;
+  private long modifications;
+  private boolean dirty = true;
 
   /**
    * Constructs a new SolarSystem object with the specified name and central star.
@@ -25,6 +33,7 @@ public class SolarSystem {
     this.name = name;
     this.star = star;
     this.planets = new ArrayList<>();
+    this.statistics = new BodyStatistics(this::includeOrbits);
   }
 
   /**
@@ -35,6 +44,7 @@ public class SolarSystem {
   public SolarSystem(Star star) {
     this.star = star;
     this.planets = new ArrayList<>();
+    this.statistics = new BodyStatistics(this::includeOrbits);
   }
 
   /**
@@ -62,15 +72,27 @@ public class SolarSystem {
    */
   public void setStar(Star star) {
     this.star = star;
+    modified();
   }
 
   /**
-   * Returns the list of planets in the solar system.
+   * Returns the list of planets in the solar system. The list cannot be changed;
+   * planets are added and removed through the solar system so its statistics
+   * stay up to date.
    *
    * @return the list of planets
    */
   public List<Planet> getPlanets() {
-    return planets;
+    return Collections.unmodifiableList(planets);
+  }
+
+  /**
+   * Returns the running totals of the planets and moons of the solar system.
+   *
+   * @return the statistics, updated as bodies are added and removed
+   */
+  public BodyStatistics getStatistics() {
+    return statistics;
   }
 
   /**
@@ -83,6 +105,24 @@ public class SolarSystem {
       throw new IllegalArgumentException("Cannot remove a null planet or a planet that is not in the system.");
     }
     planets.remove(planet);
+    statistics.removePlanet(planet);
+    statistics.removeMoons(planet.getStatistics());
+    planet.setOwner(null);
+    modifications += planet.getModificationCount();
+    modified();
+  }
+
+  /**
+   * Removes all planets from the solar system.
+   */
+  public void clearPlanets() {
+    for (Planet planet : planets) {
+      planet.setOwner(null);
+      modifications += planet.getModificationCount();
+    }
+    planets.clear();
+    statistics.clear();
+    modified();
   }
 
   /**
@@ -97,12 +137,32 @@ public class SolarSystem {
     if (planet == null) {
       throw new IllegalArgumentException();
     }
-    for (Planet existingPlanet : planets) {
-      if (existingPlanet.getName().equals(planet.getName())) {
-        throw new IllegalArgumentException();
-      }
+    if (getPlanet(planet.getNameId()) != null) {
+      throw new IllegalArgumentException();
     }
+    appendPlanet(planet);
+  }
+
+  /**
+   * Adds a planet whose name is known to be unique within the solar system.
+   */
+  void appendPlanet(Planet planet) {
     planets.add(planet);
+    statistics.addPlanet(planet);
+    statistics.addMoons(planet.getStatistics());
+    planet.setOwner(statistics);
+    modified();
+  }
+
+  /**
+   * Puts the planets in the given order, which must hold the same planets.
+   */
+  void reorderPlanets(List<Planet> order) {
+    if (!planets.equals(order)) {
+      planets.clear();
+      planets.addAll(order);
+      modified();
+    }
   }
 
   /**
@@ -116,8 +176,22 @@ public class SolarSystem {
     if (name == null) {
       throw new IllegalArgumentException("Cannot search for null planet name.");
     }
+    int nameId = NameDictionary.find(name);
+    return nameId < 0 ? null : getPlanet(nameId);
+  }
+
+  /**
+   * Retrieves a planet from the solar system by the id of its name. Only ints
+   * are compared, so callers that look up the same name repeatedly resolve it
+   * once through the name dictionary.
+   *
+   * @param nameId the id of the planet's name in the name dictionary
+   *
+   * @return the planet, or null if the solar system has no planet of that name
+   */
+  public Planet getPlanet(int nameId) {
     for (Planet planet : planets) {
-      if (planet.getName().equals(name)) {
+      if (planet.getNameId() == nameId) {
         return planet;
       }
     }
@@ -138,6 +212,67 @@ public class SolarSystem {
     for (Planet planet : this.planets) {
       planet.sortMoons(moonComparator);
     }
+    modified();
+  }
+
+  /**
+   * Returns the number of changes made to the solar system and its planets
+   * since it was created.
+   *
+   * @return the modification count, which only grows
+   */
+  public long getModificationCount() {
+    long count = modifications;
+    for (Planet planet : planets) {
+      count += planet.getModificationCount();
+    }
+    return count;
+  }
+
+  /**
+   * Returns whether the solar system or one of its planets changed since it was
+   * last marked clean.
+   *
+   * @return `true` if the solar system has unsaved changes
+   */
+  public boolean isDirty() {
+    if (dirty) {
+      return true;
+    }
+    for (Planet planet : planets) {
+      if (planet.isDirty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Marks the solar system and its planets clean, after they were saved. The
+   * catalog writers of the program keep their own modification counts instead,
+   * so that one writer cannot hide changes from another.
+   */
+  public void markClean() {
+    dirty = false;
+    for (Planet planet : planets) {
+      planet.markClean();
+    }
+  }
+
+  private void includeOrbits(BodyStatistics bodyStatistics) {
+    for (Planet planet : planets) {
+      bodyStatistics.includePlanetOrbit(planet.getOrbitRadius());
+      BodyStatistics moons = planet.getStatistics();
+      if (moons.getMoonCount() > 0) {
+        bodyStatistics.includeMoonOrbit(moons.getMinMoonOrbitRadius());
+        bodyStatistics.includeMoonOrbit(moons.getMaxMoonOrbitRadius());
+      }
+    }
+  }
+
+  private void modified() {
+    modifications++;
+    dirty = true;
   }
 
   /**
@@ -0,0 +1,113 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SolarSystemHistory class keeps the versions of a solar system for undo and
+ * redo. Moving between versions only moves a cursor.
+ */
+public final class SolarSystemHistory {
+  private final List<SolarSystemVersion> versions;
+  private int cursor;
+
+  /**
+   * Constructs a new history starting at the given version.
+   *
+   * @param initial the initial version
+   */
+  public SolarSystemHistory(SolarSystemVersion initial) {
+    this.versions = new ArrayList<>();
+    this.versions.add(initial);
+    this.cursor = 0;
+  }
+
+  /**
+   * Estimates the heap used by the history. Versions share most of their
+   * planets and moons, with each other and with the version store, so objects
+   * already in `seen` are not counted again.
+   *
+   * @param seen the objects already counted, to which the counted ones are
+   *             added
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateBytes(Map<Object, Boolean> seen) {
+    long bytes = 24 + 24 + 16 + 4L * versions.size();
+    for (SolarSystemVersion version : versions) {
+      bytes += version.estimateBytes(seen);
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the current version.
+   *
+   * @return the current version
+   */
+  public SolarSystemVersion current() {
+    return versions.get(cursor);
+  }
+
+  /**
+   * Records a new version after the current one, discarding the versions that
+   * could have been redone.
+   *
+   * @param version the new version
+   */
+  public void record(SolarSystemVersion version) {
+    if (version == current()) {
+      return;
+    }
+    versions.subList(cursor + 1, versions.size()).clear();
+    versions.add(version);
+    cursor++;
+  }
+
+  /**
+   * Returns whether there is a version to undo to.
+   *
+   * @return `true` if undo is possible, `false` otherwise
+   */
+  public boolean canUndo() {
+    return cursor > 0;
+  }
+
+  /**
+   * Returns whether there is a version to redo to.
+   *
+   * @return `true` if redo is possible, `false` otherwise
+   */
+  public boolean canRedo() {
+    return cursor < versions.size() - 1;
+  }
+
+  /**
+   * Moves to the previous version.
+   *
+   * @return the previous version
+   *
+   * @throws IllegalStateException if there is nothing to undo
+   */
+  public SolarSystemVersion undo() {
+    if (!canUndo()) {
+      throw new IllegalStateException("Nothing to undo.");
+    }
+    return versions.get(--cursor);
+  }
+
+  /**
+   * Moves to the next version.
+   *
+   * @return the next version
+   *
+   * @throws IllegalStateException if there is nothing to redo
+   */
+  public SolarSystemVersion redo() {
+    if (!canRedo()) {
+      throw new IllegalStateException("Nothing to redo.");
+    }
+    return versions.get(++cursor);
+  }
+}
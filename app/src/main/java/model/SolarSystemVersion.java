@@ -0,0 +1,502 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SolarSystemVersion class is an immutable snapshot of a solar system. The
+ * planets and moons are kept in persistent lists, so a version derived from
+ * another one shares every planet and moon list that did not change. Planets
+ * and moons keep the ids of their names in the {@link NameDictionary}.
+ */
+public final class SolarSystemVersion {
+  private final Star star;
+  private final PersistentList<PlanetVersion> planets;
+
+  /**
+   * An immutable snapshot of a planet and its moons.
+   */
+  public static final class PlanetVersion {
+    private final int nameId;
+    private final double radius;
+    private final double orbitRadius;
+    private final PersistentList<MoonVersion> moons;
+
+    private PlanetVersion(int nameId, double radius, double orbitRadius, PersistentList<MoonVersion> moons) {
+      this.nameId = nameId;
+      this.radius = radius;
+      this.orbitRadius = orbitRadius;
+      this.moons = moons;
+    }
+
+    private static PlanetVersion of(Planet planet) {
+      PersistentList<MoonVersion> moons = PersistentList.empty();
+      for (Moon moon : planet.getMoons()) {
+        moons = moons.add(MoonVersion.of(moon));
+      }
+      return new PlanetVersion(planet.getNameId(), planet.getRadius(), planet.getOrbitRadius(), moons);
+    }
+
+    private PlanetVersion withMoons(PersistentList<MoonVersion> moons) {
+      return new PlanetVersion(nameId, radius, orbitRadius, moons);
+    }
+
+    /**
+     * Returns the name of the planet.
+     *
+     * @return the planet's name
+     */
+    public String getName() {
+      return NameDictionary.name(nameId);
+    }
+
+    /**
+     * Returns the radius of the planet.
+     *
+     * @return the planet's radius
+     */
+    public double getRadius() {
+      return radius;
+    }
+
+    /**
+     * Returns the orbit radius of the planet.
+     *
+     * @return the planet's orbit radius
+     */
+    public double getOrbitRadius() {
+      return orbitRadius;
+    }
+
+    /**
+     * Returns the moons of the planet.
+     *
+     * @return the moons
+     */
+    public PersistentList<MoonVersion> getMoons() {
+      return moons;
+    }
+
+    @Override
+    public String toString() {
+      return getName() + ":" + radius + ":" + orbitRadius;
+    }
+  }
+
+  /**
+   * Receives the planets and moons that applying a version adds to or removes
+   * from a live solar system.
+   */
+  public interface Changes {
+    /**
+     * Receives a planet, with its moons, after it was added.
+     *
+     * @param planet the added planet
+     */
+    void planetAdded(Planet planet);
+
+    /**
+     * Receives a planet, with its moons, before it is removed.
+     *
+     * @param planet the removed planet
+     */
+    void planetRemoved(Planet planet);
+
+    /**
+     * Receives a moon after it was added to a kept planet.
+     *
+     * @param planet the parent planet
+     *
+     * @param moon   the added moon
+     */
+    void moonAdded(Planet planet, Moon moon);
+
+    /**
+     * Receives a moon before it is removed from a kept planet.
+     *
+     * @param planet the parent planet
+     *
+     * @param moon   the removed moon
+     */
+    void moonRemoved(Planet planet, Moon moon);
+  }
+
+  /**
+   * An immutable snapshot of a moon, without a reference to a live planet.
+   */
+  public static final class MoonVersion {
+    private final int nameId;
+    private final double radius;
+    private final double orbitRadius;
+
+    private MoonVersion(int nameId, double radius, double orbitRadius) {
+      this.nameId = nameId;
+      this.radius = radius;
+      this.orbitRadius = orbitRadius;
+    }
+
+    private static MoonVersion of(Moon moon) {
+      return new MoonVersion(moon.getNameId(), moon.getRadius(), moon.getOrbitRadius());
+    }
+
+    /**
+     * Returns the name of the moon.
+     *
+     * @return the moon's name
+     */
+    public String getName() {
+      return NameDictionary.name(nameId);
+    }
+
+    /**
+     * Returns the radius of the moon.
+     *
+     * @return the moon's radius
+     */
+    public double getRadius() {
+      return radius;
+    }
+
+    /**
+     * Returns the orbit radius of the moon.
+     *
+     * @return the moon's orbit radius
+     */
+    public double getOrbitRadius() {
+      return orbitRadius;
+    }
+
+    @Override
+    public String toString() {
+      return getName() + ":" + radius + ":" + orbitRadius;
+    }
+  }
+
+  private SolarSystemVersion(Star star, PersistentList<PlanetVersion> planets) {
+    this.star = star;
+    this.planets = planets;
+  }
+
+  /**
+   * Takes a full snapshot of a solar system.
+   *
+   * @param solarSystem the solar system
+   *
+   * @return the snapshot
+   */
+  public static SolarSystemVersion of(SolarSystem solarSystem) {
+    PersistentList<PlanetVersion> planets = PersistentList.empty();
+    for (Planet planet : solarSystem.getPlanets()) {
+      planets = planets.add(PlanetVersion.of(planet));
+    }
+    return new SolarSystemVersion(solarSystem.getStar(), planets);
+  }
+
+  /**
+   * Returns the central star of the version.
+   *
+   * @return the star, or null if it was removed
+   */
+  public Star getStar() {
+    return star;
+  }
+
+  /**
+   * Returns the planets of the version.
+   *
+   * @return the planets
+   */
+  public PersistentList<PlanetVersion> getPlanets() {
+    return planets;
+  }
+
+  /**
+   * Returns a version with the planet appended.
+   *
+   * @param planet the added planet
+   *
+   * @return the new version
+   */
+  public SolarSystemVersion withPlanetAdded(Planet planet) {
+    return new SolarSystemVersion(star, planets.add(PlanetVersion.of(planet)));
+  }
+
+  /**
+   * Returns a version without the planet with the given name.
+   *
+   * @param planetName the name of the removed planet
+   *
+   * @return the new version, or this version if there is no such planet
+   */
+  public SolarSystemVersion withPlanetRemoved(String planetName) {
+    int index = indexOfPlanet(planetName);
+    return index < 0 ? this : new SolarSystemVersion(star, planets.remove(index));
+  }
+
+  /**
+   * Returns a version with the moon appended to the planet with the given name.
+   *
+   * @param planetName the name of the parent planet
+   *
+   * @param moon       the added moon
+   *
+   * @return the new version, or this version if there is no such planet
+   */
+  public SolarSystemVersion withMoonAdded(String planetName, Moon moon) {
+    int index = indexOfPlanet(planetName);
+    if (index < 0) {
+      return this;
+    }
+    PlanetVersion planet = planets.get(index);
+    return new SolarSystemVersion(star,
+        planets.set(index, planet.withMoons(planet.moons.add(MoonVersion.of(moon)))));
+  }
+
+  /**
+   * Returns a version without the moon with the given name.
+   *
+   * @param planetName the name of the parent planet
+   *
+   * @param moonName   the name of the removed moon
+   *
+   * @return the new version, or this version if there is no such moon
+   */
+  public SolarSystemVersion withMoonRemoved(String planetName, String moonName) {
+    int index = indexOfPlanet(planetName);
+    if (index < 0) {
+      return this;
+    }
+    PlanetVersion planet = planets.get(index);
+    int moonId = NameDictionary.find(moonName);
+    int moonIndex = 0;
+    for (MoonVersion moon : planet.moons) {
+      if (moon.nameId == moonId) {
+        return new SolarSystemVersion(star,
+            planets.set(index, planet.withMoons(planet.moons.remove(moonIndex))));
+      }
+      moonIndex++;
+    }
+    return this;
+  }
+
+  /**
+   * Returns a version without a star and planets.
+   *
+   * @return the new version
+   */
+  public SolarSystemVersion withStarRemoved() {
+    return new SolarSystemVersion(null, PersistentList.empty());
+  }
+
+  /**
+   * Returns a version with the planets and moons in the order of the given solar
+   * system, which must contain the same bodies as this version. Planets whose
+   * moons kept their order are shared with this version.
+   *
+   * @param solarSystem the reordered solar system
+   *
+   * @return the new version
+   */
+  public SolarSystemVersion withOrderOf(SolarSystem solarSystem) {
+    Map<Integer, PlanetVersion> byName = new HashMap<>();
+    for (PlanetVersion planet : planets) {
+      byName.put(planet.nameId, planet);
+    }
+    PersistentList<PlanetVersion> reordered = PersistentList.empty();
+    for (Planet planet : solarSystem.getPlanets()) {
+      PlanetVersion version = byName.get(planet.getNameId());
+      reordered = reordered.add(version == null ? PlanetVersion.of(planet) : reorderMoons(version, planet));
+    }
+    return new SolarSystemVersion(star, reordered);
+  }
+
+  /**
+   * Restores a live solar system to this version, replacing its star, planets
+   * and moons.
+   *
+   * @param solarSystem the solar system to restore
+   */
+  public void restore(SolarSystem solarSystem) {
+    solarSystem.setStar(star);
+    solarSystem.clearPlanets();
+    for (PlanetVersion version : planets) {
+      solarSystem.appendPlanet(toPlanet(version));
+    }
+  }
+
+  /**
+   * Changes a live solar system that matches another version with the same
+   * star into this version. Planets and moons whose versions are shared with
+   * the other version are kept and only compared by reference, so only the
+   * bodies that differ are built, added and removed, and reported to a
+   * listener; the order is taken over afterwards.
+   *
+   * @param solarSystem the solar system to change
+   *
+   * @param current     the version the solar system matches now
+   *
+   * @param changes     receives the added and removed bodies
+   *
+   * @throws IllegalArgumentException if the versions have different stars
+   */
+  public void applyTo(SolarSystem solarSystem, SolarSystemVersion current, Changes changes) {
+    if (star != current.star) {
+      throw new IllegalArgumentException("Versions with different stars cannot be applied.");
+    }
+    if (planets == current.planets) {
+      return;
+    }
+    Map<Integer, PlanetVersion> before = byName(current.planets);
+    Map<Integer, PlanetVersion> after = byName(planets);
+    Map<Integer, Planet> kept = new HashMap<>();
+    for (Planet planet : new ArrayList<>(solarSystem.getPlanets())) {
+      PlanetVersion from = before.get(planet.getNameId());
+      PlanetVersion to = after.get(planet.getNameId());
+      if (from == null || to == null || from.radius != to.radius || from.orbitRadius != to.orbitRadius) {
+        changes.planetRemoved(planet);
+        solarSystem.removePlanet(planet);
+      } else {
+        if (from != to) {
+          applyMoons(planet, from, to, changes);
+        }
+        kept.put(planet.getNameId(), planet);
+      }
+    }
+    List<Planet> order = new ArrayList<>(planets.size());
+    for (PlanetVersion version : planets) {
+      Planet planet = kept.get(version.nameId);
+      if (planet == null) {
+        planet = toPlanet(version);
+        solarSystem.appendPlanet(planet);
+        changes.planetAdded(planet);
+      }
+      order.add(planet);
+    }
+    solarSystem.reorderPlanets(order);
+  }
+
+  /**
+   * Returns the version in the catalog text format.
+   *
+   * @return A string representation of the version.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    if (star != null) {
+      sb.append(star.getName()).append(":").append(star.getRadius()).append("\n");
+    }
+    for (PlanetVersion planet : planets) {
+      sb.append("-").append(planet).append("\n");
+      for (MoonVersion moon : planet.moons) {
+        sb.append("--").append(moon).append("\n");
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Estimates the heap used by the version that is not in `seen` yet, and adds
+   * the counted objects to it. Planets, moons and list nodes that several
+   * versions share are counted once. The star belongs to the solar system and
+   * is not counted.
+   *
+   * @param seen the objects already counted
+   *
+   * @return the estimated size in bytes
+   */
+  long estimateBytes(Map<Object, Boolean> seen) {
+    if (seen.put(this, Boolean.TRUE) != null) {
+      return 0;
+    }
+    return 24 + planets.estimateBytes(seen, planet -> 40 + planet.moons.estimateBytes(seen, moon -> 32));
+  }
+
+  private Planet toPlanet(PlanetVersion version) {
+    Planet planet = new Planet(version.nameId, version.radius, version.orbitRadius, star);
+    for (MoonVersion moon : version.moons) {
+      planet.addMoon(new Moon(moon.nameId, moon.radius, moon.orbitRadius, planet));
+    }
+    return planet;
+  }
+
+  private static void applyMoons(Planet planet, PlanetVersion from, PlanetVersion to, Changes changes) {
+    if (from.moons == to.moons) {
+      return;
+    }
+    Map<Integer, MoonVersion> before = new HashMap<>();
+    for (MoonVersion moon : from.moons) {
+      before.put(moon.nameId, moon);
+    }
+    Map<Integer, MoonVersion> after = new HashMap<>();
+    for (MoonVersion moon : to.moons) {
+      after.put(moon.nameId, moon);
+    }
+    Map<Integer, Moon> kept = new HashMap<>();
+    for (Moon moon : planet.getMoons()) {
+      MoonVersion fromMoon = before.get(moon.getNameId());
+      MoonVersion toMoon = after.get(moon.getNameId());
+      if (fromMoon == null || toMoon == null || fromMoon.radius != toMoon.radius
+          || fromMoon.orbitRadius != toMoon.orbitRadius) {
+        changes.moonRemoved(planet, moon);
+        planet.removeMoon(moon);
+      } else {
+        kept.put(moon.getNameId(), moon);
+      }
+    }
+    List<Moon> order = new ArrayList<>(to.moons.size());
+    for (MoonVersion version : to.moons) {
+      Moon moon = kept.get(version.nameId);
+      if (moon == null) {
+        moon = new Moon(version.nameId, version.radius, version.orbitRadius, planet);
+        planet.addMoon(moon);
+        changes.moonAdded(planet, moon);
+      }
+      order.add(moon);
+    }
+    planet.reorderMoons(order);
+  }
+
+  private static Map<Integer, PlanetVersion> byName(PersistentList<PlanetVersion> planets) {
+    Map<Integer, PlanetVersion> byName = new HashMap<>();
+    for (PlanetVersion planet : planets) {
+      byName.put(planet.nameId, planet);
+    }
+    return byName;
+  }
+
+  private static PlanetVersion reorderMoons(PlanetVersion version, Planet planet) {
+    List<Moon> liveMoons = planet.getMoons();
+    boolean sameOrder = liveMoons.size() == version.moons.size();
+    for (int i = 0; sameOrder && i < liveMoons.size(); i++) {
+      sameOrder = liveMoons.get(i).getNameId() == version.moons.get(i).nameId;
+    }
+    if (sameOrder) {
+      return version;
+    }
+    Map<Integer, MoonVersion> byName = new HashMap<>();
+    for (MoonVersion moon : version.moons) {
+      byName.put(moon.nameId, moon);
+    }
+    PersistentList<MoonVersion> moons = PersistentList.empty();
+    for (Moon moon : liveMoons) {
+      MoonVersion moonVersion = byName.get(moon.getNameId());
+      moons = moons.add(moonVersion == null ? MoonVersion.of(moon) : moonVersion);
+    }
+    return version.withMoons(moons);
+  }
+
+  private int indexOfPlanet(String planetName) {
+    int planetId = NameDictionary.find(planetName);
+    int index = 0;
+    for (PlanetVersion planet : planets) {
+      if (planet.nameId == planetId) {
+        return index;
+      }
+      index++;
+    }
+    return -1;
+  }
+}
@@ -1,11 +1,13 @@
 package model;
 
 /**
- * The Star class represents a star in a solar system.
+ * The Star class represents a star in a solar system. Stars are immutable, so
+ * a single instance is shared by the solar system and all of its planets.
  */
-public class Star {
-  private String name;
-  private double radius;
+public final class Star {
+  private final int nameId;
+  private final double radius;
+
   /**
    * Constructs a new Star object with the specified name and radius.
    *
@@ -27,27 +29,37 @@ public class Star {
     if (radius < 0) {
       throw new IllegalArgumentException("Radius cannot be negative.");
     }
-    this.name = name;
+    this.nameId = NameDictionary.id(name);
     this.radius = radius;
   }
 
   /**
-   * Constructs a new Star object by copying another Star object.
+   * Constructs a new Star object by copying another Star object. Since stars are
+   * immutable, sharing the existing instance is preferred over copying it.
    *
    * @param star the star to copy
    */
   public Star(Star star) {
-    this.name = star.name;
+    this.nameId = star.nameId;
     this.radius = star.radius;
   }
 
   /**
-   * Returns the name of the star.
+   * Returns the name of the star, decoded from the name dictionary.
    *
    * @return the star's name
    */
   public String getName() {
-    return name;
+    return NameDictionary.name(nameId);
+  }
+
+  /**
+   * Returns the id of the star's name in the name dictionary.
+   *
+   * @return the name id
+   */
+  public int getNameId() {
+    return nameId;
   }
 
   /**
@@ -61,6 +73,6 @@ public class Star {
 
   @Override
   public String toString() {
-    return name + ":" + radius;
+    return getName() + ":" + radius;
   }
 }
@@ -0,0 +1,59 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * The TopK class finds the largest bodies across many solar systems without
+ * sorting all of them. Each solar system is scanned into a heap that never
+ * holds more than k bodies, with the smallest kept body on top, so a universe
+ * of n bodies takes O(n log k) time and O(k) memory per worker. Solar systems
+ * are scanned in parallel and the partial heaps are merged pairwise.
+ */
+public final class TopK {
+
+  private TopK() {
+  }
+
+  /**
+   * Returns the largest bodies of the given solar systems.
+   *
+   * @param <T>          the type of the bodies
+   *
+   * @param solarSystems the solar systems to search
+   *
+   * @param bodies       the bodies of a solar system to consider
+   *
+   * @param order        the order in which later bodies are larger
+   *
+   * @param count        the largest number of bodies to return
+   *
+   * @return at most count bodies, from the largest to the smallest
+   */
+  public static <T> List<T> largest(Collection<SolarSystem> solarSystems,
+      Function<SolarSystem, ? extends Collection<T>> bodies, Comparator<? super T> order, int count) {
+    if (count <= 0) {
+      return new ArrayList<>();
+    }
+    PriorityQueue<T> heap = new ArrayList<>(solarSystems).parallelStream()
+        .collect(() -> new PriorityQueue<T>(order),
+            (partial, solarSystem) -> bodies.apply(solarSystem).forEach(body -> offer(partial, body, order, count)),
+            (partial, other) -> other.forEach(body -> offer(partial, body, order, count)));
+    List<T> largest = new ArrayList<>(heap);
+    largest.sort(order.reversed());
+    return largest;
+  }
+
+  private static <T> void offer(PriorityQueue<T> heap, T body, Comparator<? super T> order, int count) {
+    if (heap.size() < count) {
+      heap.add(body);
+    } else if (order.compare(body, heap.peek()) > 0) {
+      heap.poll();
+      heap.add(body);
+    }
+  }
+}
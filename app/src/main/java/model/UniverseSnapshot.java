@@ -0,0 +1,81 @@
+package model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The UniverseSnapshot class is a point-in-time view of the solar systems. It
+ * can be iterated at leisure while solar systems keep changing, and must be
+ * closed so the versions it pins can be reclaimed. Every solar system is read
+ * from an immutable version, or built from where it is kept as long as no
+ * writer changed it since the pin, so a snapshot may be read on any thread.
+ */
+public final class UniverseSnapshot implements AutoCloseable {
+  private final VersionStore store;
+  private final long timestamp;
+  private final Set<String> names;
+  private volatile boolean closed;
+
+  UniverseSnapshot(VersionStore store, long timestamp, Collection<String> names) {
+    this.store = store;
+    this.timestamp = timestamp;
+    this.names = Collections.unmodifiableSet(new LinkedHashSet<>(names));
+  }
+
+  /**
+   * Returns the names of the solar systems that existed when the snapshot was
+   * taken.
+   *
+   * @return the solar system names, in the order they were given
+   */
+  public Set<String> getNames() {
+    return names;
+  }
+
+  /**
+   * Returns a solar system as it was when the snapshot was taken.
+   *
+   * @param name the name of the solar system
+   *
+   * @return the version of the solar system, or null if it did not exist
+   *
+   * @throws IllegalStateException if the snapshot is closed
+   */
+  public SolarSystemVersion getSolarSystem(String name) {
+    if (closed) {
+      throw new IllegalStateException("Snapshot is closed.");
+    }
+    if (!names.contains(name)) {
+      return null;
+    }
+    return store.read(name, timestamp);
+  }
+
+  /**
+   * Returns all solar systems as they were when the snapshot was taken.
+   *
+   * @return the versions of the solar systems by name
+   */
+  public Map<String, SolarSystemVersion> getSolarSystems() {
+    Map<String, SolarSystemVersion> solarSystems = new LinkedHashMap<>();
+    for (String name : names) {
+      SolarSystemVersion version = getSolarSystem(name);
+      if (version != null) {
+        solarSystems.put(name, version);
+      }
+    }
+    return solarSystems;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      store.release(timestamp);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The VersionStore class keeps committed versions of solar systems for
+ * snapshot-isolated reads. Every solar system a pinned reader can see has a
+ * chain of versions, newest first, stamped with the logical time of their
+ * commit. A reader pins a point in time and sees, for each solar system, the
+ * newest version committed at or before it. Versions that no pinned reader can
+ * see anymore are dropped when readers are released, and once no reader is
+ * left no chain is kept at all, so the store holds no copies of solar systems
+ * between reads.
+ *
+ * <p>Pinning does not copy solar systems. For every solar system that has no
+ * chain yet it records a source that builds the version from where the solar
+ * system is kept, such as the live object or a file, and a read of the
+ * snapshot builds a transient version from it under the store lock. Writers
+ * must call {@link #resolve(String, Supplier)} before they change a solar
+ * system or the place it is kept, which replaces such sources by the version
+ * they would build, so a snapshot can be read on any thread while the writer
+ * keeps committing. Solar systems that already have a chain are shared with
+ * the readers pinned earlier. Writers must commit every change of a solar
+ * system that has a chain, which {@link #isTracked(String)} tells.
+ */
+public final class VersionStore {
+  private final Map<String, Chain> chains;
+  private final TreeMap<Long, Integer> pins;
+  private long clock;
+
+  private static final class Chain {
+    private final long timestamp;
+    private SolarSystemVersion version;
+    private Supplier<SolarSystemVersion> source;
+    private Chain older;
+
+    private Chain(long timestamp, SolarSystemVersion version, Supplier<SolarSystemVersion> source, Chain older) {
+      this.timestamp = timestamp;
+      this.version = version;
+      this.source = source;
+      this.older = older;
+    }
+
+    private boolean isRemoved() {
+      return version == null && source == null;
+    }
+  }
+
+  /**
+   * Constructs a new, empty version store.
+   */
+  public VersionStore() {
+    this.chains = new HashMap<>();
+    this.pins = new TreeMap<>();
+  }
+
+  /**
+   * Returns whether the solar system has versions.
+   *
+   * @param name the name of the solar system
+   *
+   * @return `true` if the solar system has versions, `false` otherwise
+   */
+  public synchronized boolean isTracked(String name) {
+    return chains.containsKey(name);
+  }
+
+  /**
+   * Commits a new version of a solar system.
+   *
+   * @param name    the name of the solar system
+   *
+   * @param version the new version, or null if the solar system was removed
+   */
+  public synchronized void commit(String name, SolarSystemVersion version) {
+    clock++;
+    Chain chain = new Chain(clock, version, null, chains.get(name));
+    chains.put(name, chain);
+    if (prune(chain)) {
+      chains.remove(name);
+    }
+  }
+
+  /**
+   * Pins a snapshot of the given solar systems at the current point in time,
+   * recording the source of each one that has no chain yet. Recording takes
+   * constant time per solar system. Must be called on the writer's thread. The
+   * snapshot must be closed to let old versions be reclaimed.
+   *
+   * @param names   the names of the solar systems that exist now
+   *
+   * @param capture returns the source of the current version of a solar
+   *                system, or null if it does not exist; a source must be safe
+   *                to call on any thread until it is resolved
+   *
+   * @return the snapshot
+   */
+  public synchronized UniverseSnapshot pin(Collection<String> names,
+      Function<String, Supplier<SolarSystemVersion>> capture) {
+    clock++;
+    for (String name : names) {
+      Chain chain = chains.get(name);
+      if (chain == null || chain.isRemoved()) {
+        Supplier<SolarSystemVersion> source = capture.apply(name);
+        if (source != null) {
+          chains.put(name, new Chain(chain == null ? 0 : clock, null, source, chain));
+        }
+      }
+    }
+    pins.merge(clock, 1, Integer::sum);
+    return new UniverseSnapshot(this, clock, names);
+  }
+
+  /**
+   * Replaces the source pinned readers read a solar system from by its current
+   * version. Must be called before the solar system, or the place it is kept,
+   * is changed. A source is only ever the newest entry of a chain, since every
+   * change is resolved before it is committed, and the version is only built
+   * if the newest entry is a source.
+   *
+   * @param name    the name of the solar system
+   *
+   * @param current returns the current version of the solar system
+   */
+  public synchronized void resolve(String name, Supplier<SolarSystemVersion> current) {
+    Chain head = chains.get(name);
+    if (head != null && head.source != null) {
+      head.version = current.get();
+      head.source = null;
+    }
+  }
+
+  /**
+   * Estimates the heap used by the chains and pins. Versions share most of
+   * their planets and moons, with each other and with the undo histories, so
+   * objects already in `seen` are not counted again, and sources that were
+   * not resolved are counted without the version they would build.
+   *
+   * @param seen the objects already counted, to which the counted ones are
+   *             added
+   *
+   * @return the estimated size in bytes
+   */
+  public synchronized long estimateBytes(Map<Object, Boolean> seen) {
+    long bytes = 48 + 48 + 56L * pins.size();
+    for (Chain head : chains.values()) {
+      bytes += 32 + 8;
+      for (Chain chain = head; chain != null; chain = chain.older) {
+        bytes += 32;
+        if (chain.version != null) {
+          bytes += chain.version.estimateBytes(seen);
+        } else if (chain.source != null) {
+          bytes += 16;
+        }
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the version of a solar system that is visible at a point in time.
+   */
+  synchronized SolarSystemVersion read(String name, long timestamp) {
+    Chain chain = chains.get(name);
+    while (chain != null && chain.timestamp > timestamp) {
+      chain = chain.older;
+    }
+    if (chain == null) {
+      return null;
+    }
+    return chain.source != null ? chain.source.get() : chain.version;
+  }
+
+  /**
+   * Releases a pinned point in time and drops versions no reader can see.
+   */
+  synchronized void release(long timestamp) {
+    pins.computeIfPresent(timestamp, (key, count) -> count == 1 ? null : count - 1);
+    Iterator<Map.Entry<String, Chain>> iterator = chains.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Chain> entry = iterator.next();
+      if (prune(entry.getValue())) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Cuts a chain after the newest version that is visible to the oldest reader.
+   *
+   * @return `true` if nothing is left to see in the chain, or no reader is left
+   *         and the live solar system matches its newest version
+   */
+  private boolean prune(Chain head) {
+    if (pins.isEmpty()) {
+      return true;
+    }
+    long horizon = pins.firstKey();
+    Chain chain = head;
+    while (chain != null && chain.timestamp > horizon) {
+      chain = chain.older;
+    }
+    if (chain != null) {
+      chain.older = null;
+    }
+    return head.isRemoved() && head == chain;
+  }
+}
@@ -4,16 +4,28 @@ import controller.SolarSystemController;
 import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import model.AlignmentSearch;
+import model.BodyLocationIndex;
+import model.BodyStatistics;
 import model.Moon;
+import model.NBodySimulation;
+import model.NameDictionary;
+import model.OrbitConflictDetector;
 import model.Planet;
 import model.SolarSystem;
+import model.SolarSystemVersion;
+import model.UniverseSnapshot;
 
 /**
  * the menu class of the mvc pattern.
  */
 public class Menu {
+  private static final int COMPLETIONS = 10;
+  private static final int SUGGESTIONS = 3;
+
   private SolarSystemController solarSystemController;
   private Scanner scanner;
   private String currentSolarSystemName;
@@ -45,6 +57,23 @@ public class Menu {
     System.out.println("8. Sort current solar system by size");
     System.out.println("9. Sort current solar system by orbit radius");
     System.out.println("10. Display all solar systems");
+    System.out.println("11. Display memory footprint");
+    System.out.println("12. Undo last change to current solar system");
+    System.out.println("13. Redo last undone change to current solar system");
+    System.out.println("14. Save all solar systems to file");
+    System.out.println("15. Import solar systems from JSON or CSV file");
+    System.out.println("16. Find overlapping orbits");
+    System.out.println("17. Simulate gravity");
+    System.out.println("18. Record simulated positions to file");
+    System.out.println("19. Display recorded positions of a body");
+    System.out.println("20. Find planetary alignments in current solar system");
+    System.out.println("21. Display position of a planet or moon at a time");
+    System.out.println("22. Rank planets and moons of all solar systems");
+    System.out.println("23. Display body statistics");
+    System.out.println("24. Find star, planet and moon names by prefix");
+    System.out.println("25. Find the solar system of a planet or moon");
+    System.out.println("26. Store all bodies off the heap");
+    System.out.println("27. Find the planets in a range of orbit radii");
     System.out.println("q. Quit");
     System.out.print("please insert your choice here ==> ");
   }
@@ -92,7 +121,7 @@ public class Menu {
    * Invalid input.
    */
   public void invalidInput() {
-    System.out.println("Invalid input. Please enter a number from 1-10 or 'q' to quit.");
+    System.out.println("Invalid input. Please enter a number from 1-27 or 'q' to quit.");
 
   }
 
@@ -151,6 +180,14 @@ public class Menu {
     System.out.println("Planet name cannot be null or empty.");
   }
 
+  /**
+   * Prints an error message indicating that a name contains characters that
+   * the catalog text format uses as separators.
+   */
+  public void displayInvalidBodyName() {
+    System.out.println("A name cannot contain ':' or line breaks, or start with '-'.");
+  }
+
   /**
    * Prints an error message indicating that the specified solar system does not
    * exist.
@@ -222,6 +259,65 @@ public class Menu {
     System.out.println("Solar system has been successfully loaded from the file.");
   }
 
+  /**
+   * Prints a message indicating that the solar system file changed and how many
+   * solar systems were added, changed and removed.
+   *
+   * @param added   The number of added solar systems.
+   *
+   * @param changed The number of changed solar systems.
+   *
+   * @param removed The number of removed solar systems.
+   */
+  public void displaySolarSystemFileChanged(int added, int changed, int removed) {
+    System.out.println("The solar system file changed: " + added + " added, " + changed + " changed, "
+        + removed + " removed.");
+  }
+
+  /**
+   * Prints a message indicating that the solar systems have been saved.
+   *
+   * @param filePath The file the solar systems were saved to.
+   */
+  public void displaySolarSystemsSaved(String filePath) {
+    System.out.println("Solar systems have been saved to \"" + filePath + "\".");
+  }
+
+  /**
+   * Prints how many segments of a segmented catalog were rewritten by a save.
+   *
+   * @param directory The directory of the segmented catalog.
+   *
+   * @param written   The number of segments written.
+   *
+   * @param total     The number of segments in the catalog.
+   */
+  public void displaySegmentsSaved(String directory, int written, int total) {
+    System.out.println("Solar systems have been saved to \"" + directory + "\" (" + written + " of "
+        + total + " segments written).");
+  }
+
+  /**
+   * Prints how many bodies were imported from a file and how many were rejected
+   * by validation.
+   *
+   * @param imported The number of imported stars, planets and moons.
+   *
+   * @param rejected The number of rejected stars, planets and moons.
+   */
+  public void displaySolarSystemsImported(int imported, int rejected) {
+    System.out.println("Imported " + imported + " bodies, rejected " + rejected + ".");
+  }
+
+  /**
+   * Prints an error message when saving the solar systems to a file.
+   *
+   * @param errorMessage The error message.
+   */
+  public void displayErrorSavingSolarSystems(String errorMessage) {
+    System.out.println("An error occurred when saving the solar systems to the file: " + errorMessage);
+  }
+
   /**
    * Prints an error message when loading the solar system from a file.
    *
@@ -297,6 +393,18 @@ public class Menu {
     System.out.println("The planet you're trying to add a moon to does not exist in this solar system.");
   }
 
+  /**
+   * Prints an error message indicating that the planet does not exist in this
+   * solar system, followed by the closest planet names that do.
+   *
+   * @param suggestions The names of planets of the solar system with a similar
+   *                    name.
+   */
+  public void displayPlanetNotFound(List<String> suggestions) {
+    displayPlanetNotFound();
+    displaySuggestions(suggestions);
+  }
+
   /**
    * Prints an error message indicating that the provided moon radius is invalid.
    *
@@ -393,6 +501,23 @@ public class Menu {
     System.out.println("Moon not found for the given planet. Please check the moon name and try again.");
   }
 
+  /**
+   * Prints an error message indicating that the moon does not exist, followed by
+   * the closest moon names of the planet.
+   *
+   * @param suggestions The names of moons of the planet with a similar name.
+   */
+  public void displayMoonNotFound(List<String> suggestions) {
+    displayMoonNotFound();
+    displaySuggestions(suggestions);
+  }
+
+  private void displaySuggestions(List<String> suggestions) {
+    if (!suggestions.isEmpty()) {
+      System.out.println("Did you mean: " + String.join(", ", suggestions) + "?");
+    }
+  }
+
   /**
    * Prints a message indicating that a moon has been removed from a planet
    * successfully.
@@ -419,6 +544,34 @@ public class Menu {
     System.out.println("Star and its planets have been successfully removed from the current solar system.");
   }
 
+  /**
+   * Prints a message indicating that there is no change to undo.
+   */
+  public void displayNothingToUndo() {
+    System.out.println("There is no change to undo.");
+  }
+
+  /**
+   * Prints a message indicating that there is no change to redo.
+   */
+  public void displayNothingToRedo() {
+    System.out.println("There is no change to redo.");
+  }
+
+  /**
+   * Prints a message indicating that the last change has been undone.
+   */
+  public void displayChangeUndone() {
+    System.out.println("The last change has been undone.");
+  }
+
+  /**
+   * Prints a message indicating that the last undone change has been redone.
+   */
+  public void displayChangeRedone() {
+    System.out.println("The last undone change has been redone.");
+  }
+
   /**
    * Prints a list of planets ordered by size, displaying their names and radii.
    *
@@ -489,12 +642,711 @@ public class Menu {
   }
 
   /**
-   * Prompts the user to create a new solar system by providing the name and
-   * radius of the central star.
+   * Prints all solar systems from a pinned snapshot, so the listing is
+   * consistent even if solar systems change while it is printed.
    */
   public void displayAllSolarSystems() {
-    List<SolarSystem> allSolarSystems = this.solarSystemController.getAllSolarSystems();
-    displayAllSolarSystems(allSolarSystems);
+    try (UniverseSnapshot snapshot = this.solarSystemController.pinSnapshot()) {
+      Map<String, SolarSystemVersion> solarSystems = snapshot.getSolarSystems();
+      if (solarSystems.isEmpty()) {
+        System.out.println("No Solar Systems to display.");
+        return;
+      }
+      System.out.println("\n########### Displaying All Solar Systems ############");
+      for (SolarSystemVersion solarSystem : solarSystems.values()) {
+        System.out.print(solarSystem);
+      }
+      System.out.println("########### End of Solar Systems List  ################\n");
+    }
+  }
+
+  /**
+   * Prompts the user for a file name and saves all solar systems to it.
+   */
+  public void saveSolarSystems() {
+    System.out.print("Enter the file to save to (.json or .csv to export, .gz or .ssz to compress, "
+        + "a directory for segments) ==> ");
+    String filePath = scanner.nextLine();
+    if (filePath == null || filePath.trim().isEmpty()) {
+      System.out.println("File name cannot be empty.");
+      return;
+    }
+    solarSystemController.saveSolarSystemsToFile(filePath.trim());
+  }
+
+  /**
+   * Prompts the user for a JSON or CSV file and imports the solar systems in it.
+   */
+  public void importSolarSystems() {
+    System.out.print("Enter the .json or .csv file to import ==> ");
+    String filePath = scanner.nextLine();
+    if (filePath == null || filePath.trim().isEmpty()) {
+      System.out.println("File name cannot be empty.");
+      return;
+    }
+    solarSystemController.importSolarSystemsFromFile(filePath.trim());
+  }
+
+  /**
+   * Finds overlapping orbits in the currently selected solar system, or in all
+   * solar systems if the user asks for it.
+   */
+  public void findOrbitConflicts() {
+    System.out.print("Check the current solar system (c) or all solar systems (a)? ==> ");
+    String scope = scanner.nextLine();
+    if ("a".equalsIgnoreCase(scope.trim())) {
+      solarSystemController.findOrbitConflicts(null);
+    } else if (currentSolarSystemName != null) {
+      solarSystemController.findOrbitConflicts(currentSolarSystemName);
+    } else {
+      displayNoSolarSystemSelected();
+    }
+  }
+
+  /**
+   * Prompts the user for the number and length of time steps and simulates the
+   * currently selected solar system, or all solar systems if the user asks for
+   * it.
+   */
+  public void simulate() {
+    boolean all = promptAllSolarSystems();
+    if (!all && currentSolarSystemName == null) {
+      displayNoSolarSystemSelected();
+      return;
+    }
+    try {
+      System.out.print("Enter the number of steps ==> ");
+      int steps = Integer.parseInt(scanner.nextLine().trim());
+      System.out.print("Enter the length of a step in seconds ==> ");
+      double timeStep = Double.parseDouble(scanner.nextLine().trim());
+      if (steps <= 0 || timeStep <= 0) {
+        System.out.println("The number and length of steps must be positive.");
+        return;
+      }
+      solarSystemController.simulate(all ? null : currentSolarSystemName, steps, timeStep);
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid number. Please try again.");
+    }
+  }
+
+  /**
+   * Prompts the user for the number and length of time steps and a file, and
+   * records the simulated positions of the currently selected solar system, or
+   * of all solar systems if the user asks for it, to the file.
+   */
+  public void recordSimulation() {
+    boolean all = promptAllSolarSystems();
+    if (!all && currentSolarSystemName == null) {
+      displayNoSolarSystemSelected();
+      return;
+    }
+    try {
+      System.out.print("Enter the number of steps ==> ");
+      int steps = Integer.parseInt(scanner.nextLine().trim());
+      System.out.print("Enter the length of a step in seconds ==> ");
+      double timeStep = Double.parseDouble(scanner.nextLine().trim());
+      if (steps <= 0 || timeStep <= 0) {
+        System.out.println("The number and length of steps must be positive.");
+        return;
+      }
+      System.out.print("Enter the file to record to ==> ");
+      String filePath = scanner.nextLine();
+      if (filePath == null || filePath.trim().isEmpty()) {
+        System.out.println("File name cannot be empty.");
+        return;
+      }
+      solarSystemController.recordSimulation(all ? null : currentSolarSystemName, steps, timeStep,
+          filePath.trim());
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid number. Please try again.");
+    }
+  }
+
+  /**
+   * Prompts the user for a recorded file, a body and a time range, and prints the
+   * body's positions in that range.
+   */
+  public void displayRecordedTrajectory() {
+    System.out.print("Enter the recorded file ==> ");
+    String filePath = scanner.nextLine();
+    if (filePath == null || filePath.trim().isEmpty()) {
+      System.out.println("File name cannot be empty.");
+      return;
+    }
+    System.out.print("Enter the body as star/planet/moon ==> ");
+    String bodyPath = scanner.nextLine().trim();
+    try {
+      System.out.print("Enter the start time in seconds ==> ");
+      double fromTime = Double.parseDouble(scanner.nextLine().trim());
+      System.out.print("Enter the end time in seconds ==> ");
+      double toTime = Double.parseDouble(scanner.nextLine().trim());
+      solarSystemController.displayTrajectory(filePath.trim(), bodyPath, fromTime, toTime);
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid number. Please try again.");
+    }
+  }
+
+  /**
+   * Prints how many samples were recorded and how long it took.
+   *
+   * @param filePath     The file the samples were written to.
+   *
+   * @param bodies       The number of bodies per sample.
+   *
+   * @param samples      The number of samples.
+   *
+   * @param elapsedNanos The wall-clock time of simulating and writing.
+   */
+  public void displayTrajectoryRecorded(String filePath, int bodies, int samples, long elapsedNanos) {
+    System.out.println("Recorded " + samples + " samples of " + bodies + " bodies to \"" + filePath + "\" in "
+        + elapsedNanos / 1_000_000 + " ms.");
+  }
+
+  /**
+   * Prints the recorded positions of a body.
+   *
+   * @param bodyPath The path of the body.
+   *
+   * @param times    The time of each sample in seconds.
+   *
+   * @param x        The x coordinate of each sample in m.
+   *
+   * @param y        The y coordinate of each sample in m.
+   *
+   * @param z        The z coordinate of each sample in m.
+   */
+  public void displayTrajectory(String bodyPath, double[] times, double[] x, double[] y, double[] z) {
+    if (times.length == 0) {
+      System.out.println("No samples of " + bodyPath + " in that time range.");
+      return;
+    }
+    System.out.println("Positions of " + bodyPath + " (time s: x, y, z m):");
+    for (int i = 0; i < times.length; i++) {
+      System.out.println(times[i] + ": " + x[i] + ", " + y[i] + ", " + z[i]);
+    }
+  }
+
+  /**
+   * Prompts the user for the planets, tolerance and horizon and finds when the
+   * planets of the currently selected solar system line up.
+   */
+  public void findAlignments() {
+    if (currentSolarSystemName == null) {
+      displayNoSolarSystemSelected();
+      return;
+    }
+    System.out.print("Enter planet names separated by commas, or a number to try every group of that size ==> ");
+    String planets = scanner.nextLine().trim();
+    try {
+      System.out.print("Enter the tolerance in degrees ==> ");
+      double tolerance = Double.parseDouble(scanner.nextLine().trim());
+      System.out.print("Enter how many days ahead to search ==> ");
+      double horizonDays = Double.parseDouble(scanner.nextLine().trim());
+      System.out.print("Count planets on opposite sides of the star as aligned (y/n)? ==> ");
+      boolean oppositeSides = "y".equalsIgnoreCase(scanner.nextLine().trim());
+      if (planets.matches("\\d+")) {
+        solarSystemController.findAllAlignments(currentSolarSystemName, Integer.parseInt(planets), tolerance,
+            horizonDays, oppositeSides);
+      } else {
+        solarSystemController.findAlignments(currentSolarSystemName, List.of(planets.split("\\s*,\\s*")),
+            tolerance, horizonDays, oppositeSides);
+      }
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid number. Please try again.");
+    }
+  }
+
+  /**
+   * Prints the alignment windows of groups of planets, with times in days.
+   *
+   * @param alignments The windows of each group of planets.
+   */
+  public void displayAlignments(Map<List<String>, List<AlignmentSearch.Window>> alignments) {
+    boolean found = false;
+    for (Map.Entry<List<String>, List<AlignmentSearch.Window>> entry : alignments.entrySet()) {
+      for (AlignmentSearch.Window window : entry.getValue()) {
+        found = true;
+        System.out.printf("%s aligned from day %.3f to day %.3f, closest %.3f degrees on day %.3f%n",
+            String.join(", ", entry.getKey()), window.getStart() / 86400, window.getEnd() / 86400,
+            window.getClosestSpread(), window.getClosestTime() / 86400);
+      }
+    }
+    if (!found) {
+      System.out.println("No alignments found.");
+    }
+  }
+
+  /**
+   * Prompts the user for a planet or moon of the currently selected solar system
+   * and a time, and prints where the body is at that time.
+   */
+  public void displayBodyPosition() {
+    if (currentSolarSystemName == null) {
+      displayNoSolarSystemSelected();
+      return;
+    }
+    System.out.print("Enter the name of the planet ==> ");
+    String planetName = readName("planet").trim();
+    System.out.print("Enter the name of the moon, or nothing for the planet ==> ");
+    String moonName = readName("moon").trim();
+    try {
+      System.out.print("Enter the time in days ==> ");
+      double timeDays = Double.parseDouble(scanner.nextLine().trim());
+      solarSystemController.getBodyPosition(currentSolarSystemName, planetName,
+          moonName.isEmpty() ? null : moonName, timeDays);
+      displayEphemerisStatistics();
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid number. Please try again.");
+    }
+  }
+
+  /**
+   * Prints the position of a body relative to its star.
+   *
+   * @param position   The x, y and z coordinates in m.
+   *
+   * @param errorBound The largest possible distance from the exact position in m.
+   */
+  public void displayBodyPosition(double[] position, double errorBound) {
+    System.out.printf("Position: x %.1f m, y %.1f m, z %.1f m (within %.3f m)%n", position[0], position[1],
+        position[2], errorBound);
+  }
+
+  /**
+   * Prints the hit rate, latency and memory use of the ephemeris cache.
+   */
+  private void displayEphemerisStatistics() {
+    Map<String, Long> statistics = solarSystemController.getEphemerisStatistics();
+    long queries = statistics.get("queries");
+    if (queries == 0) {
+      return;
+    }
+    System.out.printf("Ephemeris cache: %d queries, %.1f%% hits, %d evictions, mean %d ns, max %d ns, "
+        + "%d of %d bytes%n", queries, 100.0 * statistics.get("hits") / queries, statistics.get("evictions"),
+        statistics.get("meanQueryNanos"), statistics.get("maxQueryNanos"), statistics.get("residentBytes"),
+        statistics.get("memoryBudget"));
+  }
+
+  /**
+   * Displays the body statistics of the current solar system or of all solar
+   * systems.
+   */
+  public void displayStatistics() {
+    if (promptAllSolarSystems()) {
+      solarSystemController.getUniverseStatistics();
+    } else if (currentSolarSystemName == null) {
+      displayNoSolarSystemSelected();
+    } else {
+      solarSystemController.getSolarSystemStatistics(currentSolarSystemName);
+    }
+  }
+
+  /**
+   * Prints the numbers of planets and moons, their mean radii and the range of
+   * their orbits.
+   *
+   * @param title      The name of what the statistics describe.
+   *
+   * @param statistics The statistics.
+   */
+  public void displayStatistics(String title, BodyStatistics statistics) {
+    System.out.println(title + ":");
+    System.out.printf("Planets: %d, total radius %.1f km, mean radius %.1f km, orbits %.1f - %.1f km%n",
+        statistics.getPlanetCount(), statistics.getPlanetRadiusSum(), statistics.getMeanPlanetRadius(),
+        statistics.getMinPlanetOrbitRadius(), statistics.getMaxPlanetOrbitRadius());
+    System.out.printf("Moons: %d, total radius %.1f km, mean radius %.1f km, orbits %.1f - %.1f km%n",
+        statistics.getMoonCount(), statistics.getMoonRadiusSum(), statistics.getMeanMoonRadius(),
+        statistics.getMinMoonOrbitRadius(), statistics.getMaxMoonOrbitRadius());
+  }
+
+  /**
+   * Prompts the user for planets or moons, radius or orbit radius, and whether
+   * to list the largest bodies, estimate a percentile or draw a histogram over
+   * all solar systems.
+   */
+  public void rankBodies() {
+    System.out.print("Planets (p) or moons (m)? ==> ");
+    boolean moons = "m".equalsIgnoreCase(scanner.nextLine().trim());
+    System.out.print("By radius (r) or orbit radius (o)? ==> ");
+    boolean byOrbitRadius = "o".equalsIgnoreCase(scanner.nextLine().trim());
+    System.out.print("Largest bodies (l), percentile (p) or histogram (h)? ==> ");
+    String query = scanner.nextLine().trim();
+    String quantity = (moons ? "moon" : "planet") + (byOrbitRadius ? " orbit radius" : " radius");
+    try {
+      if (query.equalsIgnoreCase("p")) {
+        System.out.print("Enter the percentile from 0 to 100 ==> ");
+        solarSystemController.getPercentile(quantity, Double.parseDouble(scanner.nextLine().trim()));
+      } else if (query.equalsIgnoreCase("h")) {
+        System.out.print("Enter the number of bins ==> ");
+        solarSystemController.getHistogram(quantity, Integer.parseInt(scanner.nextLine().trim()));
+      } else {
+        System.out.print("Enter how many bodies to list ==> ");
+        int count = Integer.parseInt(scanner.nextLine().trim());
+        if (moons) {
+          solarSystemController.getLargestMoons(count, byOrbitRadius);
+        } else {
+          solarSystemController.getLargestPlanets(count, byOrbitRadius);
+        }
+      }
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid number. Please try again.");
+    }
+  }
+
+  /**
+   * Prints the largest planets of all solar systems with their stars.
+   *
+   * @param planets       The planets, from the largest to the smallest.
+   *
+   * @param byOrbitRadius Whether the planets were ranked by orbit radius.
+   */
+  public void displayLargestPlanets(List<Planet> planets, boolean byOrbitRadius) {
+    System.out.println(byOrbitRadius ? "Planets with the largest orbits:" : "Largest planets:");
+    for (Planet planet : planets) {
+      System.out.println(planet.getName() + " (" + planet.getParentStar().getName() + ") - "
+          + (byOrbitRadius ? planet.getOrbitRadius() : planet.getRadius()));
+    }
+  }
+
+  /**
+   * Prints the largest moons of all solar systems with their planets and stars.
+   *
+   * @param moons         The moons, from the largest to the smallest.
+   *
+   * @param byOrbitRadius Whether the moons were ranked by orbit radius.
+   */
+  public void displayLargestMoons(List<Moon> moons, boolean byOrbitRadius) {
+    System.out.println(byOrbitRadius ? "Moons with the largest orbits:" : "Largest moons:");
+    for (Moon moon : moons) {
+      System.out.println(moon.getName() + " (" + moon.getParentPlanetName() + ", " + moon.getParentStarName() + ") - "
+          + (byOrbitRadius ? moon.getOrbitRadius() : moon.getRadius()));
+    }
+  }
+
+  /**
+   * Prints an estimated percentile.
+   *
+   * @param quantity         The name of the measured quantity.
+   *
+   * @param percentile       The percentile from 0 to 100.
+   *
+   * @param value            The estimated value, or NaN if there are no bodies.
+   *
+   * @param relativeAccuracy The largest relative error of the estimate.
+   */
+  public void displayPercentile(String quantity, double percentile, double value, double relativeAccuracy) {
+    if (Double.isNaN(value)) {
+      System.out.println("There are no bodies to measure.");
+      return;
+    }
+    System.out.printf("The %.1fth percentile of the %s is about %.1f km (within %.0f%%)%n", percentile, quantity,
+        value, relativeAccuracy * 100);
+  }
+
+  /**
+   * Prints an estimated histogram with one bar per bin.
+   *
+   * @param quantity  The name of the measured quantity.
+   *
+   * @param lower     The lower bound of the first bin.
+   *
+   * @param upper     The upper bound of the last bin.
+   *
+   * @param histogram The number of bodies in each bin.
+   */
+  public void displayHistogram(String quantity, double lower, double upper, long[] histogram) {
+    long largest = 0;
+    for (long binCount : histogram) {
+      largest = Math.max(largest, binCount);
+    }
+    if (largest == 0) {
+      System.out.println("There are no bodies to measure.");
+      return;
+    }
+    System.out.println("Histogram of the " + quantity + " in km:");
+    double width = (upper - lower) / histogram.length;
+    for (int bin = 0; bin < histogram.length; bin++) {
+      System.out.printf("%12.1f - %12.1f %8d %s%n", lower + bin * width, lower + (bin + 1) * width,
+          histogram[bin], "#".repeat((int) (40 * histogram[bin] / largest)));
+    }
+  }
+
+  /**
+   * Prompts the user for a prefix and lists the matching names of all kinds.
+   */
+  public void findNamesByPrefix() {
+    System.out.print("Enter the start of the name ==> ");
+    String prefix = scanner.nextLine().trim();
+    try {
+      System.out.print("Enter how many names to list of each kind ==> ");
+      solarSystemController.findNamesByPrefix(prefix, Integer.parseInt(scanner.nextLine().trim()));
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid number. Please try again.");
+    }
+  }
+
+  /**
+   * Prints the star, planet and moon names that start with a prefix.
+   *
+   * @param prefix The prefix.
+   *
+   * @param names  The names of each kind.
+   */
+  public void displayNamesByPrefix(String prefix, Map<String, List<String>> names) {
+    for (Map.Entry<String, List<String>> entry : names.entrySet()) {
+      System.out.println("Names of " + entry.getKey() + "s starting with \"" + prefix + "\": "
+          + (entry.getValue().isEmpty() ? "none" : String.join(", ", entry.getValue())));
+    }
+  }
+
+  /**
+   * Prompts for a planet or moon name and finds the solar systems and planets
+   * it belongs to.
+   */
+  public void locateBody() {
+    System.out.print("Enter the name of the planet or moon ==> ");
+    String name = scanner.nextLine().trim();
+    if (name.isEmpty()) {
+      System.out.println("The name cannot be empty.");
+      return;
+    }
+    solarSystemController.locateBody(name);
+  }
+
+  /**
+   * Prints the solar systems that have planets of a name and the planets that
+   * have moons of that name.
+   *
+   * @param name    The planet or moon name.
+   *
+   * @param planets The solar systems of the planets.
+   *
+   * @param moons   The solar systems and planets of the moons.
+   */
+  public void displayBodyLocations(String name, List<BodyLocationIndex.Location> planets,
+      List<BodyLocationIndex.Location> moons) {
+    if (planets.isEmpty() && moons.isEmpty()) {
+      System.out.println("No planet or moon is named \"" + name + "\".");
+      return;
+    }
+    for (BodyLocationIndex.Location location : planets) {
+      System.out.println("Planet " + name + " orbits " + location.getSolarSystem() + ".");
+    }
+    for (BodyLocationIndex.Location location : moons) {
+      System.out.println("Moon " + name + " orbits " + location.getPlanet() + " in the solar system of "
+          + location.getSolarSystem() + ".");
+    }
+  }
+
+  /**
+   * Prompts the user for a file and stores the bodies of all solar systems in it
+   * off the heap.
+   */
+  public void storeBodiesOffHeap() {
+    System.out.print("Enter the file to store the bodies in ==> ");
+    String filePath = scanner.nextLine();
+    if (filePath == null || filePath.trim().isEmpty()) {
+      System.out.println("File name cannot be empty.");
+      return;
+    }
+    solarSystemController.storeBodiesOffHeap(filePath.trim());
+  }
+
+  /**
+   * Prints the size of an off-heap body store next to the heap taken by the
+   * same bodies as objects.
+   *
+   * @param filePath     The file the store was written to.
+   *
+   * @param bodies       The number of bodies in the store.
+   *
+   * @param objectBytes  The estimated heap size of the solar systems.
+   *
+   * @param offHeapBytes The bytes of the store outside the heap.
+   *
+   * @param heapBytes    The estimated heap size of the store.
+   *
+   * @param elapsedNanos The time taken to build, write and map the store.
+   */
+  public void displayOffHeapStore(String filePath, int bodies, long objectBytes, long offHeapBytes,
+      long heapBytes, long elapsedNanos) {
+    System.out.println("Stored " + bodies + " bodies in \"" + filePath + "\" in " + elapsedNanos / 1_000_000
+        + " ms.");
+    System.out.println("Objects - " + objectBytes + " bytes on the heap");
+    System.out.println("Off-heap store - " + offHeapBytes + " bytes off the heap, " + heapBytes
+        + " bytes on the heap");
+  }
+
+  /**
+   * Prompts the user for a range of orbit radii and lists the planets of the
+   * current solar system whose orbits lie in it.
+   */
+  public void findPlanetsByOrbit() {
+    if (currentSolarSystemName == null) {
+      displayNoSolarSystemSelected();
+      return;
+    }
+    try {
+      System.out.print("Enter the smallest orbit radius ==> ");
+      double minOrbitRadius = Double.parseDouble(scanner.nextLine().trim());
+      System.out.print("Enter the largest orbit radius ==> ");
+      double maxOrbitRadius = Double.parseDouble(scanner.nextLine().trim());
+      solarSystemController.findPlanetsByOrbit(currentSolarSystemName, minOrbitRadius, maxOrbitRadius);
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid number. Please try again.");
+    }
+  }
+
+  /**
+   * Prints the planets found in a range of orbit radii.
+   *
+   * @param solarSystemName The name of the solar system.
+   *
+   * @param planets         The planet names from the innermost outwards.
+   */
+  public void displayPlanetsByOrbit(String solarSystemName, List<String> planets) {
+    if (planets.isEmpty()) {
+      System.out.println("No planet of " + solarSystemName + " orbits in that range.");
+      return;
+    }
+    System.out.println("Planets of " + solarSystemName + " in that range: " + String.join(", ", planets));
+  }
+
+  /**
+   * Reads the name of an existing star, planet or moon. A name ending in a tab
+   * or `*` is completed from the names of that kind in all solar systems: a
+   * single match is used as the name, and otherwise the matches are listed and
+   * the name is read again.
+   *
+   * @param kind One of `star`, `planet` and `moon`.
+   *
+   * @return The name.
+   */
+  private String readName(String kind) {
+    String name = scanner.nextLine();
+    while (name.endsWith("\t") || name.endsWith("*")) {
+      String prefix = name.substring(0, name.length() - 1).stripLeading();
+      List<String> completions = solarSystemController.completeName(kind, prefix, COMPLETIONS + 1);
+      if (completions.size() == 1) {
+        System.out.println(completions.get(0));
+        return completions.get(0);
+      }
+      if (completions.isEmpty()) {
+        System.out.println("No " + kind + " name starts with \"" + prefix + "\".");
+      } else {
+        System.out.println(String.join(", ", completions.subList(0, Math.min(COMPLETIONS, completions.size())))
+            + (completions.size() > COMPLETIONS ? ", ..." : ""));
+      }
+      System.out.print("Enter the name ==> ");
+      name = scanner.nextLine();
+    }
+    return name;
+  }
+
+  /**
+   * Asks whether to work on all solar systems or only on the current one.
+   *
+   * @return `true` if the user chose all solar systems.
+   */
+  private boolean promptAllSolarSystems() {
+    System.out.print("Use the current solar system (c) or all solar systems (a)? ==> ");
+    return "a".equalsIgnoreCase(scanner.nextLine().trim());
+  }
+
+  /**
+   * Prints how long a gravity simulation took and how well it conserved the
+   * total energy.
+   *
+   * @param simulation    The simulation after its last step.
+   *
+   * @param steps         The number of steps taken.
+   *
+   * @param elapsedNanos  The wall-clock time the steps took.
+   *
+   * @param initialEnergy The total energy before the first step.
+   */
+  public void displaySimulation(NBodySimulation simulation, int steps, long elapsedNanos, double initialEnergy) {
+    double drift = initialEnergy == 0 ? 0 : (simulation.getEnergy() - initialEnergy) / Math.abs(initialEnergy);
+    System.out.println("Simulated " + simulation.getBodyCount() + " bodies for " + simulation.getTime()
+        + " s in " + steps + " steps, " + elapsedNanos / 1_000_000 + " ms ("
+        + (double) elapsedNanos / 1_000_000 / steps + " ms per step).");
+    System.out.println("Relative energy drift: " + drift);
+  }
+
+  /**
+   * Prints pairs of bodies whose orbital bands overlap.
+   *
+   * @param conflicts The overlapping pairs.
+   */
+  public void displayOrbitConflicts(List<OrbitConflictDetector.Conflict> conflicts) {
+    if (conflicts.isEmpty()) {
+      System.out.println("No overlapping orbits found.");
+      return;
+    }
+    for (OrbitConflictDetector.Conflict conflict : conflicts) {
+      System.out.println(conflict);
+    }
+    System.out.println(conflicts.size() + " overlapping orbits found.");
+  }
+
+  /**
+   * Prints an error message when a new body's orbit overlaps a sibling's.
+   *
+   * @param name The name of the body whose orbit is overlapped.
+   */
+  public void displayOrbitConflict(String name) {
+    System.out.println("The orbit overlaps the orbit of " + name + ".");
+  }
+
+  /**
+   * Undoes the last change to the currently selected solar system.
+   */
+  public void undo() {
+    if (currentSolarSystemName != null) {
+      solarSystemController.undo(currentSolarSystemName);
+    } else {
+      displayNoSolarSystemSelected();
+    }
+  }
+
+  /**
+   * Redoes the last undone change to the currently selected solar system.
+   */
+  public void redo() {
+    if (currentSolarSystemName != null) {
+      solarSystemController.redo(currentSolarSystemName);
+    } else {
+      displayNoSolarSystemSelected();
+    }
+  }
+
+  /**
+   * Prints the estimated heap footprint of every solar system, largest first,
+   * followed by the total for the whole universe with its indices, sketches
+   * and undo histories, the cache counters when memory is bounded and the
+   * sizes and false-positive rates of the name filters.
+   */
+  public void displayMemoryFootprint() {
+    Map<String, Long> footprint = solarSystemController.getMemoryFootprint();
+    if (footprint.isEmpty()) {
+      displayNoSolarSystems();
+      return;
+    }
+    System.out.println("Estimated memory footprint per solar system:");
+    for (Map.Entry<String, Long> entry : footprint.entrySet()) {
+      System.out.println(entry.getKey() + " - " + entry.getValue() + " bytes");
+    }
+    System.out.println("Total - " + solarSystemController.getUniverseMemoryFootprint() + " bytes");
+    System.out.println("Names - " + NameDictionary.size() + " distinct, "
+        + NameDictionary.estimateBytes() + " bytes");
+    Map<String, Long> cacheStatistics = solarSystemController.getCacheStatistics();
+    for (Map.Entry<String, Long> entry : cacheStatistics.entrySet()) {
+      System.out.println("Cache " + entry.getKey() + " - " + entry.getValue());
+    }
+    for (Map.Entry<String, Number> entry : solarSystemController.getNameFilterStatistics().entrySet()) {
+      System.out.println("Name filter " + entry.getKey() + " - " + entry.getValue());
+    }
+    displayEphemerisStatistics();
   }
 
   /**
@@ -530,13 +1382,14 @@ public class Menu {
     boolean isSolarSystemSelected = false;
     while (!isSolarSystemSelected) {
       System.out.print("Enter the name of the central star of the solar system you want to select ==> ");
-      String name = scanner.nextLine();
+      String name = readName("star");
       isSolarSystemSelected = solarSystemController.selectSolarSystem(name);
       if (isSolarSystemSelected) {
         System.out.println("Solar system with central star name \" " + name + " \" is selected now.");
         this.currentSolarSystemName = name;
       } else {
         System.out.println("Solar system with central star name \"" + name + "\" not found. Try again.");
+        displaySuggestions(solarSystemController.suggestNames("star", name, SUGGESTIONS));
 
       }
     }
@@ -599,7 +1452,7 @@ public class Menu {
       String planetName;
       while (true) {
         System.out.print("Enter the name of the planet ==>");
-        planetName = scanner.nextLine();
+        planetName = readName("planet");
         solarSystemController.removePlanet(currentSolarSystemName, planetName);
         System.out.println(
             "Planet with name \"" + planetName + "\" has been removed from " + currentSolarSystemName + ".");
@@ -625,7 +1478,7 @@ public class Menu {
       double orbitRadius;
       while (true) {
         System.out.print("Enter the name of the planet the moon orbits ==> ");
-        planetName = scanner.nextLine();
+        planetName = readName("planet");
         System.out.print("Enter the name of the moon ==> ");
         moonName = scanner.nextLine();
         System.out.print("Enter the radius of the moon ==> ");
@@ -655,9 +1508,9 @@ public class Menu {
       String moonName;
       while (true) {
         System.out.print("Enter the name of the planet the moon orbits ==> ");
-        planetName = scanner.nextLine();
+        planetName = readName("planet");
         System.out.print("Enter the name of the moon ==> ");
-        moonName = scanner.nextLine();
+        moonName = readName("moon");
         solarSystemController.removeMoon(currentSolarSystemName, planetName, moonName);
         System.out.println("Moon " + moonName + " has been removed from planet " + planetName + ".");
         break;
@@ -0,0 +1,130 @@
+package controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BPlusTreeTest {
+  private static final long POOL_BYTES = 2L * PageFile.PAGE_SIZE * PageFile.PAGES_PER_REGION;
+
+  @TempDir
+  Path directory;
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static TreeMap<byte[], byte[]> newModel() {
+    return new TreeMap<>(Arrays::compareUnsigned);
+  }
+
+  private static void assertMatches(TreeMap<byte[], byte[]> expected, BPlusTree tree) throws IOException {
+    BPlusTree.Cursor cursor = tree.seek(new byte[0]);
+    for (Map.Entry<byte[], byte[]> entry : expected.entrySet()) {
+      assertTrue(cursor.next(), "missing key " + new String(entry.getKey(), StandardCharsets.UTF_8));
+      assertArrayEquals(entry.getKey(), cursor.key());
+      assertArrayEquals(entry.getValue(), cursor.value());
+    }
+    assertFalse(cursor.next());
+  }
+
+  @Test
+  public void randomInsertsAndDeletesMatchSortedMapAcrossSplits() throws IOException {
+    Random random = new Random(11);
+    TreeMap<byte[], byte[]> expected = newModel();
+    try (PageFile file = new PageFile(directory.resolve("tree.db"), POOL_BYTES)) {
+      BPlusTree tree = new BPlusTree(file, 0);
+      for (int i = 0; i < 20000; i++) {
+        byte[] key = bytes("key" + random.nextInt(8000));
+        if (random.nextInt(4) == 0) {
+          assertEquals(expected.remove(key) != null, tree.remove(key));
+        } else {
+          byte[] value = new byte[random.nextInt(120)];
+          random.nextBytes(value);
+          tree.put(key, value);
+          expected.put(key, value);
+        }
+      }
+      assertTrue(file.getStatistics().get("pages") > 2, "the tree never split");
+      assertMatches(expected, tree);
+      for (int i = 0; i < 8000; i++) {
+        byte[] key = bytes("key" + i);
+        byte[] value = expected.get(key);
+        if (value == null) {
+          assertNull(tree.get(key));
+        } else {
+          assertArrayEquals(value, tree.get(key));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void seekStartsAtTheFirstKeyNotBelowTheGivenKey() throws IOException {
+    try (PageFile file = new PageFile(directory.resolve("tree.db"), POOL_BYTES)) {
+      BPlusTree tree = new BPlusTree(file, 0);
+      TreeMap<byte[], byte[]> expected = newModel();
+      for (int i = 0; i < 5000; i += 2) {
+        byte[] key = bytes(String.format("%05d", i));
+        tree.put(key, key);
+        expected.put(key, key);
+      }
+      byte[] from = bytes("03001");
+      BPlusTree.Cursor cursor = tree.seek(from);
+      for (byte[] key : expected.tailMap(from).keySet()) {
+        assertTrue(cursor.next());
+        assertArrayEquals(key, cursor.key());
+      }
+      assertFalse(cursor.next());
+    }
+  }
+
+  @Test
+  public void entriesSurviveReopeningTheFile() throws IOException {
+    Path path = directory.resolve("tree.db");
+    TreeMap<byte[], byte[]> expected = newModel();
+    try (PageFile file = new PageFile(path, POOL_BYTES)) {
+      BPlusTree tree = new BPlusTree(file, 1);
+      for (int i = 0; i < 3000; i++) {
+        tree.put(bytes("star" + i), bytes("value" + i));
+        expected.put(bytes("star" + i), bytes("value" + i));
+      }
+    }
+    try (PageFile file = new PageFile(path, POOL_BYTES)) {
+      assertMatches(expected, new BPlusTree(file, 1));
+    }
+  }
+
+  @Test
+  public void entriesLargerThanAQuarterPageAreRejected() throws IOException {
+    try (PageFile file = new PageFile(directory.resolve("tree.db"), POOL_BYTES)) {
+      BPlusTree tree = new BPlusTree(file, 0);
+      assertThrows(IllegalArgumentException.class,
+          () -> tree.put(bytes("key"), new byte[BPlusTree.MAX_ENTRY_BYTES]));
+    }
+  }
+
+  @Test
+  public void freedPagesAreReused() throws IOException {
+    try (PageFile file = new PageFile(directory.resolve("pages.db"), POOL_BYTES)) {
+      int first = file.allocate();
+      int second = file.allocate();
+      file.free(first);
+      assertEquals(first, file.allocate());
+      assertEquals(second + 1, file.allocate());
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CatalogCodecTest {
+
+  @TempDir
+  Path directory;
+
+  /**
+   * Builds a catalog text of several megabytes, so the block-compressed format
+   * needs many blocks.
+   */
+  private static byte[] catalogText() {
+    Random random = new Random(3);
+    StringBuilder text = new StringBuilder();
+    for (int star = 0; text.length() < 5 << 20; star++) {
+      text.append("Star").append(star).append(':').append(20001 + random.nextInt(900000)).append('\n');
+      for (int planet = 0; planet < 8; planet++) {
+        text.append("-Planet").append(star).append('_').append(planet).append(':')
+            .append(random.nextDouble()).append(':').append(random.nextDouble()).append('\n');
+        text.append("--Moon").append(star).append('_').append(planet).append(":1.0:2.0\n");
+      }
+    }
+    return text.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private byte[] roundTrip(String fileName, byte[] text) throws IOException {
+    String filePath = directory.resolve(fileName).toString();
+    try (OutputStream out = CatalogCodec.create(filePath)) {
+      int offset = 0;
+      Random random = new Random(5);
+      while (offset < text.length) {
+        int length = Math.min(text.length - offset, 1 + random.nextInt(100000));
+        out.write(text, offset, length);
+        offset += length;
+      }
+    }
+    try (InputStream in = CatalogCodec.open(filePath)) {
+      return in.readAllBytes();
+    }
+  }
+
+  @Test
+  public void blockCompressedCatalogRoundTrips() throws IOException {
+    byte[] text = catalogText();
+    assertArrayEquals(text, roundTrip("catalog.ssz", text));
+    Path file = directory.resolve("catalog.ssz");
+    assertTrue(CatalogCodec.isCompressed(file.toString()));
+    byte[] magic = new byte[4];
+    try (InputStream in = Files.newInputStream(file)) {
+      assertEquals(4, in.read(magic));
+    }
+    assertEquals("SSZ1", new String(magic, StandardCharsets.US_ASCII));
+    assertTrue(Files.size(file) < text.length);
+  }
+
+  @Test
+  public void gzipAndPlainCatalogsRoundTrip() throws IOException {
+    byte[] text = catalogText();
+    assertArrayEquals(text, roundTrip("catalog.txt.gz", text));
+    assertTrue(CatalogCodec.isCompressed(directory.resolve("catalog.txt.gz").toString()));
+    assertArrayEquals(text, roundTrip("catalog.txt", text));
+    assertFalse(CatalogCodec.isCompressed(directory.resolve("catalog.txt").toString()));
+  }
+
+  @Test
+  public void textWithoutLineBreaksIsCutIntoBlocks() throws IOException {
+    byte[] text = new byte[5 << 20];
+    new Random(7).nextBytes(text);
+    for (int i = 0; i < text.length; i++) {
+      text[i] = (byte) ('a' + (text[i] & 0xf));
+    }
+    text[10] = '\n';
+    assertArrayEquals(text, roundTrip("long.ssz", text));
+  }
+
+  @Test
+  public void emptyAndSingleByteCatalogsRoundTrip() throws IOException {
+    assertArrayEquals(new byte[0], roundTrip("empty.ssz", new byte[0]));
+    assertArrayEquals(new byte[] {'x'}, roundTrip("one.ssz", new byte[] {'x'}));
+  }
+}
@@ -0,0 +1,119 @@
+package controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import model.Moon;
+import model.Planet;
+import model.SolarSystem;
+import model.Star;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SegmentedCatalogTest {
+
+  @TempDir
+  Path directory;
+
+  private static SolarSystem newSolarSystem(String name, int planets) {
+    Star star = new Star(name, 696340);
+    SolarSystem solarSystem = new SolarSystem(name, star);
+    for (int i = 0; i < planets; i++) {
+      Planet planet = new Planet(name + "Planet" + i, 6371, 69634000 + 1000000 * i, star);
+      planet.addMoon(new Moon(name + "Moon" + i, 375, 31855, planet));
+      solarSystem.addPlanet(planet);
+    }
+    return solarSystem;
+  }
+
+  private static Map<String, SolarSystem> universe(SolarSystem... solarSystems) {
+    Map<String, SolarSystem> universe = new LinkedHashMap<>();
+    for (SolarSystem solarSystem : solarSystems) {
+      universe.put(solarSystem.getName(), solarSystem);
+    }
+    return universe;
+  }
+
+  private List<String> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".seg"))
+          .sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void manifestNamesTheSegmentOfEverySolarSystem() throws IOException {
+    SegmentedCatalog catalog = SegmentedCatalog.open(directory.toString());
+    Map<String, SolarSystem> universe = universe(newSolarSystem("Sun", 2), newSolarSystem("Vega", 1));
+    assertEquals(2, catalog.save(universe));
+    List<String> manifest = Files.readAllLines(directory.resolve(SegmentedCatalog.MANIFEST), StandardCharsets.UTF_8);
+    assertEquals("segments 1", manifest.get(0));
+    assertEquals("1", manifest.get(1));
+    assertEquals(4, manifest.size());
+    assertTrue(manifest.get(2).endsWith(":Sun"));
+    assertTrue(manifest.get(3).endsWith(":Vega"));
+    assertFalse(Files.exists(directory.resolve(SegmentedCatalog.MANIFEST + ".tmp")));
+
+    Map<String, String> texts = SegmentedCatalog.open(directory.toString()).read();
+    assertEquals(List.of("Sun", "Vega"), new ArrayList<>(texts.keySet()));
+    assertEquals(universe.get("Sun").toString(), texts.get("Sun"));
+    assertEquals(universe.get("Vega").toString(), texts.get("Vega"));
+  }
+
+  @Test
+  public void onlyChangedSolarSystemsAreRewritten() throws IOException {
+    SegmentedCatalog catalog = SegmentedCatalog.open(directory.toString());
+    SolarSystem sun = newSolarSystem("Sun", 2);
+    SolarSystem vega = newSolarSystem("Vega", 1);
+    assertEquals(2, catalog.save(universe(sun, vega)));
+    assertEquals(0, catalog.save(universe(sun, vega)));
+
+    vega.getPlanets().get(0).addMoon(new Moon("VegaMoonExtra", 300, 40000, vega.getPlanets().get(0)));
+    assertEquals(1, catalog.save(universe(sun, vega)));
+    assertEquals(2, segmentFiles().size());
+
+    assertEquals(0, catalog.save(universe(sun)));
+    assertEquals(1, segmentFiles().size());
+    assertEquals(1, catalog.size());
+  }
+
+  @Test
+  public void reparsedSolarSystemsAreNotRewrittenUnlessTheyChanged() throws IOException {
+    SegmentedCatalog catalog = SegmentedCatalog.open(directory.toString());
+    assertEquals(2, catalog.save(universe(newSolarSystem("Sun", 2), newSolarSystem("Vega", 1))));
+    assertEquals(0, catalog.save(universe(newSolarSystem("Sun", 2), newSolarSystem("Vega", 1))));
+    assertEquals(1, catalog.save(universe(newSolarSystem("Sun", 2), newSolarSystem("Vega", 2))));
+
+    SegmentedCatalog reopened = SegmentedCatalog.open(directory.toString());
+    assertEquals(0, reopened.save(universe(newSolarSystem("Sun", 2), newSolarSystem("Vega", 2))));
+  }
+
+  @Test
+  public void solarSystemsWithoutAStarAreLeftOut() throws IOException {
+    SegmentedCatalog catalog = SegmentedCatalog.open(directory.toString());
+    Map<String, SolarSystem> universe = universe(newSolarSystem("Sun", 1));
+    universe.put("Empty", new SolarSystem("Empty", null));
+    assertEquals(1, catalog.save(universe));
+    assertEquals(1, catalog.size());
+  }
+
+  @Test
+  public void corruptManifestIsReported() throws IOException {
+    Files.writeString(directory.resolve(SegmentedCatalog.MANIFEST), "segments 1\nnot a number\n");
+    assertThrows(IOException.class, () -> SegmentedCatalog.open(directory.toString()));
+    Files.writeString(directory.resolve(SegmentedCatalog.MANIFEST), "something else\n");
+    assertThrows(IOException.class, () -> SegmentedCatalog.open(directory.toString()));
+  }
+}
@@ -0,0 +1,194 @@
+package controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import model.BodyStatistics;
+import model.Planet;
+import model.SolarSystem;
+import model.Star;
+import model.UniverseSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SolarSystemControllerTest {
+  private static final String CATALOG = "Sun:696340\n"
+      + "-Earth:6371:69634000\n"
+      + "--Moon:375:31855\n"
+      + "-Mars:3396:69634010\n"
+      + "--Phobos:200:16980\n"
+      + "--Deimos:199:16985\n"
+      + "ProximaCentauri:141900\n"
+      + "-ProximaCentaurib:6372:14190000\n";
+
+  @TempDir
+  Path directory;
+
+  private String writeCatalog() throws IOException {
+    Path file = directory.resolve("catalog.txt");
+    Files.writeString(file, CATALOG);
+    return file.toString();
+  }
+
+  private static void assertCounts(BodyStatistics statistics) {
+    assertEquals(3, statistics.getPlanetCount());
+    assertEquals(3, statistics.getMoonCount());
+    assertEquals(6371 + 3396 + 6372, statistics.getPlanetRadiusSum(), 1e-9);
+    assertEquals(375 + 200 + 199, statistics.getMoonRadiusSum(), 1e-9);
+  }
+
+  @Test
+  public void loadedBodiesAreCounted() throws IOException {
+    SolarSystemController controller = new SolarSystemController();
+    controller.loadSolarSystemFromFile(writeCatalog());
+    assertCounts(controller.getUniverseStatistics());
+  }
+
+  @Test
+  public void lazilyLoadedBodiesAreCountedOnceParsed() throws IOException {
+    SolarSystemController controller = new SolarSystemController();
+    controller.loadSolarSystemFromFileLazily(writeCatalog());
+    assertNotNull(controller.getSolarSystem("Sun"));
+    assertCounts(controller.getUniverseStatistics());
+  }
+
+  @Test
+  public void namesOfTheLazilyIndexedCatalogAreTaken() throws IOException {
+    SolarSystemController controller = new SolarSystemController();
+    controller.loadSolarSystemFromFileLazily(writeCatalog());
+    controller.addSolarSystem(new SolarSystem("Sun", new Star("Sun", 700000)), false);
+    controller.createSolarSystem("ProximaCentauri", 150000);
+    assertEquals(696340, controller.getSolarSystem("Sun").getStar().getRadius(), 1e-9);
+    assertEquals(2, controller.getSolarSystem("Sun").getPlanets().size());
+    assertEquals(141900, controller.getSolarSystem("ProximaCentauri").getStar().getRadius(), 1e-9);
+    assertCounts(controller.getUniverseStatistics());
+  }
+
+  @Test
+  public void savingOverTheLazilyIndexedCatalogKeepsEveryBody() throws IOException {
+    String filePath = writeCatalog();
+    SolarSystemController controller = new SolarSystemController();
+    controller.loadSolarSystemFromFileLazily(filePath);
+    controller.saveSolarSystemsToFile(filePath);
+
+    SolarSystemController reloaded = new SolarSystemController();
+    reloaded.loadSolarSystemFromFile(filePath);
+    assertCounts(reloaded.getUniverseStatistics());
+  }
+
+  @Test
+  public void importedNamesTheTextFormatCannotHoldAreRejected() throws IOException {
+    Path file = directory.resolve("import.csv");
+    Files.writeString(file, "type,name,radius,orbitRadius,star,planet\n"
+        + "star,Sun,696340,,,\n"
+        + "star,Bad:Star,696340,,,\n"
+        + "star,-Dash,696340,,,\n"
+        + "planet,Earth,6371,10000000,Sun,\n"
+        + "planet,Ea:rth,6371,12000000,Sun,\n"
+        + "moon,-Moon,375,31855,Sun,Earth\n");
+    SolarSystemController controller = new SolarSystemController();
+    controller.importSolarSystemsFromFile(file.toString());
+    assertNotNull(controller.getSolarSystem("Sun"));
+    assertNull(controller.getSolarSystem("Bad:Star"));
+    assertNull(controller.getSolarSystem("-Dash"));
+    BodyStatistics statistics = controller.getUniverseStatistics();
+    assertEquals(1, statistics.getPlanetCount());
+    assertEquals(0, statistics.getMoonCount());
+  }
+
+  @Test
+  public void childrenOfRejectedNamesakesAreNotAddedToExistingBodies() throws IOException {
+    SolarSystemController controller = new SolarSystemController();
+    controller.loadSolarSystemFromFile(writeCatalog());
+    Path file = directory.resolve("import.csv");
+    Files.writeString(file, "type,name,radius,orbitRadius,star,planet\n"
+        + "star,Sun,10,,,\n"
+        + "planet,Venus,6051,10000000,Sun,\n"
+        + "star,ProximaCentauri,141900,,,\n"
+        + "planet,ProximaCentaurib,6372,14190000,ProximaCentauri,\n"
+        + "moon,Luna,375,31855,ProximaCentauri,ProximaCentaurib\n"
+        + "planet,Unknown,1,2,ProximaCentauri,\n"
+        + "moon,Lost,375,31855,ProximaCentauri,Unknown\n");
+    controller.importSolarSystemsFromFile(file.toString());
+    assertCounts(controller.getUniverseStatistics());
+    assertEquals(0, controller.getSolarSystem("ProximaCentauri").getPlanets().get(0).getMoons().size());
+  }
+
+  @Test
+  public void evictedChangesSurviveASegmentedSave() throws IOException {
+    SolarSystemController controller = new SolarSystemController();
+    controller.loadSolarSystemFromFile(writeCatalog());
+    controller.enableBoundedMemory(1, "lru", directory.resolve("store").toString());
+    controller.getSolarSystem("ProximaCentauri");
+    controller.getSolarSystem("Sun");
+    controller.addPlanet("ProximaCentauri", "Venus", "6051", "1500000");
+    controller.saveSolarSystemsToFile(directory.resolve("segments") + "/");
+    controller.getSolarSystem("Sun");
+    assertEquals(2, controller.getSolarSystem("ProximaCentauri").getPlanets().size());
+  }
+
+  @Test
+  public void undoAndRedoKeepUnchangedPlanetsAndTheirCounts() throws IOException {
+    SolarSystemController controller = new SolarSystemController();
+    controller.loadSolarSystemFromFile(writeCatalog());
+    Planet earth = controller.getSolarSystem("Sun").getPlanets().get(0);
+    controller.removeMoon("Sun", "Mars", "Phobos");
+    controller.addPlanet("Sun", "Venus", "6051", "10000000");
+    controller.undo("Sun");
+    controller.undo("Sun");
+    assertCounts(controller.getUniverseStatistics());
+    assertEquals(2, controller.getSolarSystem("Sun").getPlanetByName("Mars").getMoons().size());
+    controller.redo("Sun");
+    controller.redo("Sun");
+    assertEquals(4, controller.getUniverseStatistics().getPlanetCount());
+    assertEquals(2, controller.getUniverseStatistics().getMoonCount());
+    assertEquals("Venus", controller.getSolarSystem("Sun").getPlanets().get(2).getName());
+    assertTrue(earth == controller.getSolarSystem("Sun").getPlanets().get(0));
+  }
+
+  @Test
+  public void snapshotsAreReadOnAnotherThreadWhileSolarSystemsChange() throws Exception {
+    SolarSystemController controller = new SolarSystemController();
+    controller.loadSolarSystemFromFileLazily(writeCatalog());
+    controller.getSolarSystem("Sun");
+    Map<String, String> expected = new LinkedHashMap<>();
+    try (UniverseSnapshot snapshot = controller.pinSnapshot()) {
+      snapshot.getSolarSystems().forEach((name, version) -> expected.put(name, version.toString()));
+      assertEquals(2, expected.size());
+      ExecutorService reader = Executors.newSingleThreadExecutor();
+      AtomicBoolean done = new AtomicBoolean();
+      Future<Integer> reads = reader.submit(() -> {
+        int count = 0;
+        while (!done.get()) {
+          Map<String, String> seen = new LinkedHashMap<>();
+          snapshot.getSolarSystems().forEach((name, version) -> seen.put(name, version.toString()));
+          assertEquals(expected, seen);
+          count++;
+        }
+        return count;
+      });
+      for (int i = 0; i < 200; i++) {
+        controller.addPlanet("Sun", "Venus" + i, "6051", "10000000");
+        controller.addPlanet("ProximaCentauri", "Venus" + i, "6051", "1500000");
+        controller.removePlanet("Sun", "Earth");
+        controller.undo("Sun");
+      }
+      controller.removePlanet("ProximaCentauri", "ProximaCentaurib");
+      done.set(true);
+      assertTrue(reads.get() > 0);
+      reader.shutdown();
+    }
+    assertEquals(202, controller.getSolarSystem("Sun").getPlanets().size());
+  }
+}
@@ -0,0 +1,99 @@
+package controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import model.Moon;
+import model.NBodySimulation;
+import model.Planet;
+import model.SolarSystem;
+import model.Star;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrajectoryFileTest {
+  private static final int SAMPLES = 5000;
+  private static final double TIME_STEP = 60;
+
+  @TempDir
+  Path directory;
+
+  private static NBodySimulation newSimulation() {
+    Star sun = new Star("Sun", 696340);
+    SolarSystem solarSystem = new SolarSystem("Sun", sun);
+    Planet earth = new Planet("Earth", 6371, 69634000, sun);
+    earth.addMoon(new Moon("Moon", 375, 31855, earth));
+    solarSystem.addPlanet(earth);
+    return new NBodySimulation(List.of(solarSystem));
+  }
+
+  @Test
+  public void recordedStatesReadBackExactlyAcrossChunks() throws IOException {
+    NBodySimulation simulation = newSimulation();
+    int bodies = simulation.getBodyCount();
+    double[][][] expected = new double[bodies][TrajectoryWriter.COLUMNS][SAMPLES];
+    Path path = directory.resolve("trajectory.sst");
+    try (TrajectoryWriter writer = new TrajectoryWriter(path, simulation, TIME_STEP)) {
+      for (int sample = 0; sample < SAMPLES; sample++) {
+        if (sample > 0) {
+          simulation.step(1, TIME_STEP);
+        }
+        for (int body = 0; body < bodies; body++) {
+          for (int column = 0; column < TrajectoryWriter.COLUMNS; column++) {
+            expected[body][column][sample] = simulation.getState(body, column);
+          }
+        }
+        writer.append();
+      }
+    }
+    try (TrajectoryReader reader = new TrajectoryReader(path)) {
+      assertEquals(bodies, reader.getBodyCount());
+      assertEquals(SAMPLES, reader.getSampleCount());
+      for (int body = 0; body < bodies; body++) {
+        assertEquals(simulation.getName(body), reader.getName(body));
+        assertEquals(body, reader.indexOf(simulation.getName(body)));
+        for (int column = 0; column < TrajectoryWriter.COLUMNS; column++) {
+          assertArrayEquals(expected[body][column], reader.read(body, column, 0, SAMPLES));
+          assertArrayEquals(Arrays.copyOfRange(expected[body][column], 4090, 4200),
+              reader.read(body, column, 4090, 4200));
+        }
+      }
+      assertEquals(-1, reader.indexOf("Sun/Pluto"));
+    }
+  }
+
+  @Test
+  public void samplesAreFoundByTime() throws IOException {
+    NBodySimulation simulation = newSimulation();
+    Path path = directory.resolve("trajectory.sst");
+    try (TrajectoryWriter writer = new TrajectoryWriter(path, simulation, TIME_STEP)) {
+      for (int sample = 0; sample < 10; sample++) {
+        writer.append();
+        simulation.step(1, TIME_STEP);
+      }
+    }
+    try (TrajectoryReader reader = new TrajectoryReader(path)) {
+      double start = reader.getTime(0);
+      assertEquals(start + 3 * TIME_STEP, reader.getTime(3), 1e-9);
+      assertEquals(3, reader.sampleAt(start + 3 * TIME_STEP));
+      assertEquals(4, reader.sampleAt(start + 3.5 * TIME_STEP));
+      assertEquals(4, reader.sampleAfter(start + 3 * TIME_STEP));
+      assertEquals(0, reader.sampleAt(start - TIME_STEP));
+      assertEquals(10, reader.sampleAfter(start + 100 * TIME_STEP));
+      assertEquals(0, reader.read(0, 0, 5, 5).length);
+    }
+  }
+
+  @Test
+  public void otherFilesAreRejected() throws IOException {
+    Path path = directory.resolve("catalog.txt");
+    Files.writeString(path, "Sun:696340\n".repeat(10));
+    assertThrows(IOException.class, () -> new TrajectoryReader(path));
+  }
+}
@@ -0,0 +1,78 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+public class BloomFilterTest {
+  private static final int NAMES = 20000;
+  private static final int PROBES = 200000;
+
+  private static double falsePositiveRate(BloomFilter filter) {
+    int falsePositives = 0;
+    for (int i = 0; i < PROBES; i++) {
+      if (filter.mightContain("absent" + i)) {
+        falsePositives++;
+      }
+    }
+    return (double) falsePositives / PROBES;
+  }
+
+  @Test
+  public void addedNamesAreAlwaysReported() {
+    BloomFilter filter = new BloomFilter(100, 0.01);
+    for (int i = 0; i < NAMES; i++) {
+      filter.add("name" + i);
+    }
+    for (int i = 0; i < NAMES; i++) {
+      assertTrue(filter.mightContain("name" + i), "name" + i);
+    }
+    assertEquals(NAMES, filter.size());
+  }
+
+  @Test
+  public void falsePositivesStayWithinTwiceTheFirstRate() {
+    BloomFilter sized = new BloomFilter(NAMES, 0.01);
+    BloomFilter grown = new BloomFilter(NAMES / 16, 0.01);
+    for (int i = 0; i < NAMES; i++) {
+      sized.add("name" + i);
+      grown.add("name" + i);
+    }
+    double sizedRate = falsePositiveRate(sized);
+    double grownRate = falsePositiveRate(grown);
+    assertTrue(sizedRate <= 0.015, "rate of a filter that did not grow: " + sizedRate);
+    assertTrue(grownRate <= 0.025, "rate of a filter that grew: " + grownRate);
+    assertTrue(grown.getFalsePositiveRate() <= 0.025, "estimated rate: " + grown.getFalsePositiveRate());
+  }
+
+  @Test
+  public void filterSurvivesWriteAndRead() throws IOException {
+    BloomFilter filter = new BloomFilter(64, 0.01);
+    for (int i = 0; i < 1000; i++) {
+      filter.add("name" + i);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    filter.writeTo(new DataOutputStream(bytes));
+    BloomFilter read = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(filter.size(), read.size());
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(read.mightContain("name" + i));
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(filter.mightContain("absent" + i), read.mightContain("absent" + i));
+    }
+  }
+
+  @Test
+  public void invalidParametersAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1));
+  }
+}
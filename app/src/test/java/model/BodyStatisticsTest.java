@@ -0,0 +1,59 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class BodyStatisticsTest {
+  private static final Star SUN = new Star("Sun", 696340);
+
+  private static Planet planet(String name, double orbitRadius, double... moonOrbits) {
+    Planet planet = new Planet(name, 6000, orbitRadius, SUN);
+    for (int i = 0; i < moonOrbits.length; i++) {
+      planet.addMoon(new Moon(name + "Moon" + i, 300, moonOrbits[i], planet));
+    }
+    return planet;
+  }
+
+  @Test
+  public void extremeOrbitsAreFoundAgainAfterRemovals() {
+    SolarSystem solarSystem = new SolarSystem("Sun", SUN);
+    Planet inner = planet("Inner", 7000000, 40000, 90000);
+    Planet middle = planet("Middle", 8000000, 50000);
+    Planet outer = planet("Outer", 9000000, 60000, 70000);
+    solarSystem.addPlanet(inner);
+    solarSystem.addPlanet(middle);
+    solarSystem.addPlanet(outer);
+    BodyStatistics statistics = solarSystem.getStatistics();
+    assertEquals(7000000, statistics.getMinPlanetOrbitRadius(), 1e-9);
+    assertEquals(40000, statistics.getMinMoonOrbitRadius(), 1e-9);
+    assertEquals(90000, statistics.getMaxMoonOrbitRadius(), 1e-9);
+
+    solarSystem.removePlanet(inner);
+    assertEquals(8000000, statistics.getMinPlanetOrbitRadius(), 1e-9);
+    assertEquals(50000, statistics.getMinMoonOrbitRadius(), 1e-9);
+    assertEquals(70000, statistics.getMaxMoonOrbitRadius(), 1e-9);
+
+    outer.removeMoon("OuterMoon1");
+    assertEquals(60000, statistics.getMaxMoonOrbitRadius(), 1e-9);
+    assertEquals(60000, outer.getStatistics().getMaxMoonOrbitRadius(), 1e-9);
+
+    solarSystem.removePlanet(outer);
+    solarSystem.removePlanet(middle);
+    assertTrue(Double.isNaN(statistics.getMaxPlanetOrbitRadius()));
+    assertTrue(Double.isNaN(statistics.getMinMoonOrbitRadius()));
+  }
+
+  @Test
+  public void universeStatisticsKeepEveryOrbit() {
+    BodyStatistics universe = new BodyStatistics();
+    Planet first = planet("First", 7000000);
+    Planet second = planet("Second", 7000000);
+    universe.addPlanet(first);
+    universe.addPlanet(second);
+    universe.removePlanet(first);
+    assertEquals(7000000, universe.getMinPlanetOrbitRadius(), 1e-9);
+    assertEquals(1, universe.getDistinctOrbitCount());
+  }
+}
@@ -0,0 +1,34 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class NGramIndexTest {
+  @Test
+  public void shortNamesOneSwapApartAreFound() {
+    NGramIndex index = new NGramIndex();
+    index.add("Ba");
+    index.add("Io");
+    index.add("Titan");
+    assertEquals(List.of("Ba"), index.closest("ab", 3));
+    assertEquals(List.of("Io"), index.closest("oi", 3));
+  }
+
+  @Test
+  public void removedShortNamesAreNotFound() {
+    NGramIndex index = new NGramIndex();
+    index.add("Ba");
+    index.remove("Ba");
+    assertEquals(List.of(), index.closest("ab", 3));
+  }
+
+  @Test
+  public void closestAmongChecksOnlyTheGivenNames() {
+    List<String> planets = List.of("Mars", "Venus", "Earth", "Maps");
+    assertEquals(List.of("Maps", "Mars"), NGramIndex.closestAmong("Mats", planets, 3));
+    assertEquals(List.of("Venus"), NGramIndex.closestAmong("Vneus", planets, 3));
+    assertEquals(List.of(), NGramIndex.closestAmong("Mars", List.of("Mars"), 3));
+  }
+}
@@ -0,0 +1,56 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class OrbitIntervalIndexTest {
+
+  private static boolean overlaps(double[] band, double radius, double orbitRadius) {
+    return band[1] - band[0] < orbitRadius + radius && band[1] + band[0] > orbitRadius - radius;
+  }
+
+  @Test
+  public void findOverlapMatchesBruteForceAfterInsertsAndDeletes() {
+    Random random = new Random(7);
+    OrbitIntervalIndex index = new OrbitIntervalIndex();
+    Map<String, double[]> bands = new LinkedHashMap<>();
+    for (int i = 0; i < 3000; i++) {
+      if (bands.isEmpty() || random.nextInt(3) > 0) {
+        String name = "OrbitIntervalIndexTest" + i;
+        double[] band = {1 + random.nextInt(50), random.nextInt(100000)};
+        index.add(name, band[0], band[1]);
+        bands.put(name, band);
+      } else {
+        String name = bands.keySet().iterator().next();
+        double[] band = bands.remove(name);
+        index.remove(name, band[0], band[1]);
+      }
+      double radius = 1 + random.nextInt(50);
+      double orbitRadius = random.nextInt(100000);
+      boolean expected = bands.values().stream().anyMatch(band -> overlaps(band, radius, orbitRadius));
+      String found = index.findOverlap(radius, orbitRadius);
+      assertEquals(expected, found != null, "overlap of " + orbitRadius + " +- " + radius);
+      if (found != null) {
+        assertTrue(overlaps(bands.get(found), radius, orbitRadius), found + " does not overlap");
+      }
+    }
+  }
+
+  @Test
+  public void bandsThatOnlyTouchDoNotOverlap() {
+    OrbitIntervalIndex index = new OrbitIntervalIndex();
+    index.add("OrbitIntervalIndexTestInner", 10, 100);
+    assertNull(index.findOverlap(10, 120));
+    assertNull(index.findOverlap(10, 80));
+    assertNotNull(index.findOverlap(10, 119));
+    index.remove("OrbitIntervalIndexTestInner", 10, 100);
+    assertNull(index.findOverlap(10, 100));
+  }
+}
@@ -0,0 +1,67 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class PersistentListTest {
+
+  private static <T> List<T> toList(PersistentList<T> list) {
+    List<T> values = new ArrayList<>();
+    for (T value : list) {
+      values.add(value);
+    }
+    return values;
+  }
+
+  @Test
+  public void randomOperationsMatchArrayList() {
+    Random random = new Random(42);
+    PersistentList<Integer> list = PersistentList.empty();
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      int operation = random.nextInt(3);
+      if (operation == 0 || expected.isEmpty()) {
+        list = list.add(i);
+        expected.add(i);
+      } else if (operation == 1) {
+        int index = random.nextInt(expected.size());
+        list = list.set(index, -i);
+        expected.set(index, -i);
+      } else {
+        int index = random.nextInt(expected.size());
+        list = list.remove(index);
+        expected.remove(index);
+      }
+      assertEquals(expected.size(), list.size());
+    }
+    assertEquals(expected, toList(list));
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), list.get(i));
+    }
+  }
+
+  @Test
+  public void modificationsLeaveEarlierVersionsUnchanged() {
+    PersistentList<String> first = PersistentList.<String>empty().add("a").add("b").add("c");
+    PersistentList<String> second = first.set(1, "x");
+    PersistentList<String> third = second.remove(0);
+    PersistentList<String> fourth = third.add("d");
+    assertEquals(List.of("a", "b", "c"), toList(first));
+    assertEquals(List.of("a", "x", "c"), toList(second));
+    assertEquals(List.of("x", "c"), toList(third));
+    assertEquals(List.of("x", "c", "d"), toList(fourth));
+  }
+
+  @Test
+  public void indexOutsideTheListIsRejected() {
+    PersistentList<String> list = PersistentList.<String>empty().add("a");
+    assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> list.set(-1, "b"));
+    assertThrows(IndexOutOfBoundsException.class, () -> list.remove(1));
+  }
+}
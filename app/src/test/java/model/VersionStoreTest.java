@@ -0,0 +1,151 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+public class VersionStoreTest {
+
+  private static SolarSystem newSolarSystem(String name) {
+    Star star = new Star(name, 696340);
+    SolarSystem solarSystem = new SolarSystem(name, star);
+    solarSystem.addPlanet(new Planet(name + "Earth", 6371, 10000000, star));
+    return solarSystem;
+  }
+
+  @Test
+  public void snapshotKeepsTheVersionsOfItsPin() {
+    VersionStore store = new VersionStore();
+    SolarSystem sun = newSolarSystem("Sun");
+    SolarSystemVersion pinned = SolarSystemVersion.of(sun);
+    UniverseSnapshot first = store.pin(List.of("Sun"), name -> () -> pinned);
+    assertTrue(store.isTracked("Sun"));
+
+    SolarSystemVersion changed = pinned.withPlanetRemoved("SunEarth");
+    store.commit("Sun", changed);
+    UniverseSnapshot second = store.pin(List.of("Sun"), name -> {
+      throw new AssertionError("a tracked solar system is captured again");
+    });
+    assertSame(pinned, first.getSolarSystem("Sun"));
+    assertSame(changed, second.getSolarSystem("Sun"));
+    assertNull(first.getSolarSystem("Vega"));
+
+    store.commit("Sun", null);
+    assertSame(pinned, first.getSolarSystem("Sun"));
+    assertSame(changed, second.getSolarSystem("Sun"));
+
+    first.close();
+    second.close();
+    assertFalse(store.isTracked("Sun"));
+    assertThrows(IllegalStateException.class, () -> first.getSolarSystem("Sun"));
+  }
+
+  @Test
+  public void solarSystemsAddedAfterARemovalAreCapturedAgain() {
+    VersionStore store = new VersionStore();
+    SolarSystemVersion sun = SolarSystemVersion.of(newSolarSystem("Sun"));
+    UniverseSnapshot first = store.pin(List.of("Sun"), name -> () -> sun);
+    store.commit("Sun", null);
+
+    SolarSystemVersion readded = SolarSystemVersion.of(newSolarSystem("Sun"));
+    AtomicInteger captured = new AtomicInteger();
+    UniverseSnapshot second = store.pin(List.of("Sun"), name -> {
+      captured.incrementAndGet();
+      return () -> readded;
+    });
+    assertEquals(1, captured.get());
+    assertSame(sun, first.getSolarSystem("Sun"));
+    assertSame(readded, second.getSolarSystem("Sun"));
+    second.close();
+    first.close();
+  }
+
+  @Test
+  public void sourcesAreReadUntilTheWriterResolvesThem() {
+    VersionStore store = new VersionStore();
+    SolarSystem sun = newSolarSystem("Sun");
+    AtomicInteger reads = new AtomicInteger();
+    UniverseSnapshot snapshot = store.pin(List.of("Sun"), name -> () -> {
+      reads.incrementAndGet();
+      return SolarSystemVersion.of(sun);
+    });
+    String pinned = sun.toString();
+    assertEquals(0, reads.get());
+    assertEquals(pinned, snapshot.getSolarSystem("Sun").toString());
+    assertEquals(1, reads.get());
+
+    SolarSystemHistory history = new SolarSystemHistory(SolarSystemVersion.of(sun));
+    store.resolve("Sun", history::current);
+    Planet planet = new Planet("Mars", 3389, 20000000, sun.getStar());
+    sun.addPlanet(planet);
+    history.record(history.current().withPlanetAdded(planet));
+    store.commit("Sun", history.current());
+    assertEquals(pinned, snapshot.getSolarSystem("Sun").toString());
+    assertEquals(1, reads.get());
+    snapshot.close();
+    assertFalse(store.isTracked("Sun"));
+  }
+
+  @Test
+  public void commitsWithoutReadersKeepNoVersions() {
+    VersionStore store = new VersionStore();
+    store.commit("Sun", SolarSystemVersion.of(newSolarSystem("Sun")));
+    assertFalse(store.isTracked("Sun"));
+  }
+
+  @Test
+  public void readersOnOtherThreadsSeeTheirPinWhileTheWriterCommits() throws InterruptedException {
+    VersionStore store = new VersionStore();
+    SolarSystem sun = newSolarSystem("Sun");
+    SolarSystemHistory history = new SolarSystemHistory(SolarSystemVersion.of(sun));
+    SolarSystemVersion initial = history.current();
+    UniverseSnapshot snapshot = store.pin(List.of("Sun"), name -> () -> initial);
+    String expected = snapshot.getSolarSystem("Sun").toString();
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    AtomicBoolean done = new AtomicBoolean();
+    Thread reader = new Thread(() -> {
+      try {
+        while (!done.get()) {
+          Map<String, SolarSystemVersion> solarSystems = snapshot.getSolarSystems();
+          assertEquals(expected, solarSystems.get("Sun").toString());
+        }
+      } catch (Throwable e) {
+        failure.set(e);
+      }
+    });
+    reader.start();
+    for (int i = 0; i < 2000; i++) {
+      Planet planet = new Planet("Planet" + i, 2000, 11000000, sun.getStar());
+      sun.addPlanet(planet);
+      history.record(history.current().withPlanetAdded(planet));
+      store.commit("Sun", history.current());
+      SolarSystemVersion current = history.current();
+      try (UniverseSnapshot other = store.pin(List.of("Sun"), name -> () -> current)) {
+        assertEquals(sun.toString(), other.getSolarSystem("Sun").toString());
+      }
+      if (i % 2 == 1) {
+        sun.removePlanet(planet);
+        history.record(history.current().withPlanetRemoved(planet.getName()));
+        store.commit("Sun", history.current());
+      }
+    }
+    done.set(true);
+    reader.join();
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    snapshot.close();
+    assertFalse(store.isTracked("Sun"));
+  }
+}